@@ -0,0 +1,71 @@
+package Sim.Bench;
+
+import Sim.NetworkAddr;
+
+import java.util.SplittableRandom;
+
+/**
+ * Measures the basic operations on addresses: creating them with the constructor and through the
+ * {@link NetworkAddr#of} flyweight, prefix matching, hashing and comparing.
+ * <p>
+ * Run with {@code java -cp bin Sim.Bench.AddressBenchmark}.
+ */
+public class AddressBenchmark {
+    private static final int OPERATIONS = 1 << 16;
+
+    public static void main(String[] args) {
+        var random = new SplittableRandom(1);
+        long[] networks = new long[OPERATIONS];
+        long[] nodes = new long[OPERATIONS];
+        var addresses = new NetworkAddr[OPERATIONS];
+        var copies = new NetworkAddr[OPERATIONS];
+        for (int i = 0; i < OPERATIONS; ++i) {
+            // A few hundred hosts on a few networks, like the addresses of a simulation.
+            networks[i] = 0x1111_0000_0000_0000L + random.nextInt(16);
+            nodes[i] = random.nextInt(256);
+            addresses[i] = new NetworkAddr(networks[i], nodes[i], 16 + random.nextInt(49));
+            copies[i] = new NetworkAddr(networks[i], nodes[i], addresses[i].getPrefixBits());
+        }
+
+        System.out.printf("%-14s %14s%n", "operation", "ns/op");
+        print("new", Harness.measure(() -> {
+            long sum = 0;
+            for (int i = 0; i < OPERATIONS; ++i) {
+                sum += new NetworkAddr(networks[i], nodes[i]).hashCode();
+            }
+            return sum;
+        }, OPERATIONS));
+        print("of", Harness.measure(() -> {
+            long sum = 0;
+            for (int i = 0; i < OPERATIONS; ++i) {
+                sum += NetworkAddr.of(networks[i], nodes[i]).hashCode();
+            }
+            return sum;
+        }, OPERATIONS));
+        print("matches", Harness.measure(() -> {
+            long sum = 0;
+            for (int i = 0; i < OPERATIONS; ++i) {
+                sum += addresses[i].matches(networks[(i + 1) & (OPERATIONS - 1)]) ? 1 : 0;
+            }
+            return sum;
+        }, OPERATIONS));
+        print("hashCode", Harness.measure(() -> {
+            long sum = 0;
+            for (var address : addresses) {
+                sum += address.hashCode();
+            }
+            return sum;
+        }, OPERATIONS));
+        print("equals", Harness.measure(() -> {
+            long sum = 0;
+            for (int i = 0; i < OPERATIONS; ++i) {
+                sum += addresses[i].equals(copies[(i + (i & 1)) & (OPERATIONS - 1)]) ? 1 : 0;
+            }
+            return sum;
+        }, OPERATIONS));
+    }
+
+    private static void print(String operation, Harness.Result result) {
+        System.out.printf("%-14s %14s%n", operation, result);
+    }
+}
@@ -0,0 +1,37 @@
+package Sim.Bench;
+
+/**
+ * Runs every benchmark with its default sizes, one after the other in the same JVM. For numbers to compare between
+ * two versions, run the benchmark in question on its own, a few times, on an otherwise idle machine.
+ * <p>
+ * Run with {@code java -cp bin Sim.Bench.Benchmarks}.
+ */
+public class Benchmarks {
+    public static void main(String[] args) {
+        var none = new String[0];
+        section("Engine");
+        EngineBenchmark.main(none);
+        section("Forwarding");
+        ForwardingBenchmark.main(none);
+        section("Dispatch");
+        DispatchBenchmark.main(none);
+        section("Route lookup");
+        RouteLookupBenchmark.main(none);
+        section("Binding cache");
+        BindingCacheBenchmark.main(none);
+        section("Lossy link");
+        LinkBenchmark.main(none);
+        section("Addresses");
+        AddressBenchmark.main(none);
+        section("Traffic generators");
+        TrafficBenchmark.main(none);
+        section("Samplers");
+        SamplerBenchmark.main(none);
+        section("Hybrid flows");
+        HybridBenchmark.main(none);
+    }
+
+    private static void section(String name) {
+        System.out.printf("%n== %s%n", name);
+    }
+}
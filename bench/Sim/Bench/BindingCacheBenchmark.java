@@ -0,0 +1,98 @@
+package Sim.Bench;
+
+import Sim.BindingCache;
+import Sim.NetworkAddr;
+
+import java.util.HashMap;
+import java.util.SplittableRandom;
+
+/**
+ * Compares {@link BindingCache} with the {@code HashMap<NetworkAddr, NetworkAddr>} routers used before, for home agents
+ * with many bindings: the time to insert all bindings, the longest single insert, which shows the pauses while the
+ * table grows, the time per lookup, and the heap used per binding.
+ * <p>
+ * Run with {@code java -cp bin Sim.Bench.BindingCacheBenchmark [bindings...]}. Ten million bindings need a heap of
+ * about 4 GB for the HashMap, for example {@code -Xmx6g}.
+ */
+public class BindingCacheBenchmark {
+    private static final int LOOKUPS = 1 << 20;
+    private static final int WARMUP_RUNS = 3;
+    private static final int MEASURED_RUNS = 5;
+
+    public static void main(String[] args) {
+        int[] sizes = Harness.sizes(args, 10_000, 100_000, 1_000_000);
+
+        System.out.printf("%10s %-8s %12s %14s %14s %12s%n",
+                "bindings", "cache", "insert ns/op", "max insert us", "lookup ns/op", "bytes/entry");
+        for (int bindings : sizes) {
+            var random = new SplittableRandom(bindings);
+            long[] homeNodes = new long[bindings];
+            for (int i = 0; i < bindings; ++i) {
+                homeNodes[i] = random.nextLong();
+            }
+            int[] lookups = new int[LOOKUPS];
+            for (int i = 0; i < LOOKUPS; ++i) {
+                lookups[i] = random.nextInt(bindings);
+            }
+            long homeNetwork = 0x1111_0000_0000_0000L;
+            long careOfNetwork = 0x2222_0000_0000_0000L;
+
+            // The map is looked up with the addresses packets carry, so those are created up front.
+            var addresses = new NetworkAddr[bindings];
+            for (int i = 0; i < bindings; ++i) {
+                addresses[i] = new NetworkAddr(homeNetwork, homeNodes[i]);
+            }
+
+            long before = usedMemory();
+            var map = new HashMap<NetworkAddr, NetworkAddr>();
+            long maxInsert = 0;
+            long start = System.nanoTime();
+            for (int i = 0; i < bindings; ++i) {
+                long t = System.nanoTime();
+                map.put(new NetworkAddr(homeNetwork, homeNodes[i]), new NetworkAddr(careOfNetwork, homeNodes[i]));
+                maxInsert = Math.max(maxInsert, System.nanoTime() - t);
+            }
+            double insert = (double) (System.nanoTime() - start) / bindings;
+            long mapBytes = usedMemory() - before;
+            double lookup = Harness.measure(() -> {
+                long found = 0;
+                for (int i : lookups) {
+                    found += map.get(addresses[i]).nodeId();
+                }
+                return found;
+            }, LOOKUPS, WARMUP_RUNS, MEASURED_RUNS).mean();
+            System.out.printf("%10d %-8s %12.1f %14.1f %14.1f %12.1f%n", bindings, "HashMap", insert, maxInsert / 1e3,
+                    lookup, (double) mapBytes / bindings);
+            map.clear();
+
+            before = usedMemory();
+            var cache = new BindingCache();
+            maxInsert = 0;
+            start = System.nanoTime();
+            for (int i = 0; i < bindings; ++i) {
+                long t = System.nanoTime();
+                cache.put(homeNetwork, homeNodes[i], careOfNetwork, homeNodes[i], Double.POSITIVE_INFINITY);
+                maxInsert = Math.max(maxInsert, System.nanoTime() - t);
+            }
+            insert = (double) (System.nanoTime() - start) / bindings;
+            long cacheBytes = usedMemory() - before;
+            lookup = Harness.measure(() -> {
+                long found = 0;
+                for (int i : lookups) {
+                    found += cache.getCareOfNode(cache.find(homeNetwork, homeNodes[i], 0));
+                }
+                return found;
+            }, LOOKUPS, WARMUP_RUNS, MEASURED_RUNS).mean();
+            System.out.printf("%10d %-8s %12.1f %14.1f %14.1f %12.1f%n", bindings, "Binding", insert, maxInsert / 1e3,
+                    lookup, (double) cacheBytes / bindings);
+        }
+    }
+
+    private static long usedMemory() {
+        var runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; ++i) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
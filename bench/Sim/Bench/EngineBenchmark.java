@@ -0,0 +1,74 @@
+package Sim.Bench;
+
+import Sim.Event;
+import Sim.SimEngine;
+import Sim.SimEnt;
+import Sim.TimerEvent;
+
+import java.util.SplittableRandom;
+
+/**
+ * Measures the time the engine takes per event, with a given number of events pending, using the hold model: every
+ * dispatched event schedules one more at a random delay, so the queue depth stays the same throughout. Events are
+ * scheduled both with {@link SimEngine#register}, which hands out a new handle per event, and with
+ * {@link SimEngine#schedule}, which reuses pooled handles.
+ * <p>
+ * Run with {@code java -cp bin Sim.Bench.EngineBenchmark [queue depths...]}.
+ */
+public class EngineBenchmark {
+    private static final int EVENTS = 1 << 20;
+
+    public static void main(String[] args) {
+        int[] depths = Harness.sizes(args, 1, 64, 4096, 65536);
+
+        System.out.printf("%8s %20s %20s%n", "depth", "register ns/event", "schedule ns/event");
+        for (int depth : depths) {
+            var register = Harness.measure(() -> hold(depth, false), EVENTS + depth);
+            var schedule = Harness.measure(() -> hold(depth, true), EVENTS + depth);
+            System.out.printf("%8d %20s %20s%n", depth, register, schedule);
+        }
+    }
+
+    // Runs the hold model for EVENTS events and returns the time the last one ran at.
+    private static long hold(int depth, boolean pooled) {
+        var engine = new SimEngine();
+        var entity = new Holder(engine, pooled);
+        for (int i = 0; i < depth; ++i) {
+            entity.reschedule();
+        }
+        engine.run();
+        return (long) entity.lastTime;
+    }
+
+    private static final class Holder extends SimEnt {
+        private final SplittableRandom _random = new SplittableRandom(1);
+        private final TimerEvent _timer = new TimerEvent();
+        private final boolean _pooled;
+        private int _remaining = EVENTS;
+        double lastTime = 0;
+
+        Holder(SimEngine engine, boolean pooled) {
+            super(engine);
+            _pooled = pooled;
+        }
+
+        void reschedule() {
+            // Exponential delays with mean 1, the usual choice for the hold model.
+            double delay = -Math.log(1 - _random.nextDouble());
+            if (_pooled) {
+                getEngine().schedule(this, this, _timer, delay);
+            } else {
+                getEngine().register(this, this, new TimerEvent(), delay);
+            }
+        }
+
+        @Override
+        public void recv(SimEnt src, Event ev) {
+            lastTime = getEngine().getTime();
+            if (_remaining > 0) {
+                _remaining -= 1;
+                reschedule();
+            }
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package Sim.Bench;
+
+import Sim.Link;
+import Sim.Message;
+import Sim.NetworkAddr;
+import Sim.Router;
+import Sim.SimEngine;
+
+import java.util.SplittableRandom;
+
+/**
+ * Measures the time a router takes to forward a packet, with one route per connected interface, from receiving the
+ * packet to the link delivering it. Packets go to a fixed set of destinations, once few enough for all of them to stay
+ * in the forwarding cache, and once too many, so most packets take the longest prefix match.
+ * <p>
+ * Run with {@code java -cp bin Sim.Bench.ForwardingBenchmark [routes...]}.
+ */
+public class ForwardingBenchmark {
+    private static final int PACKETS = 1 << 12;
+    private static final int RUNS = 200;
+
+    public static void main(String[] args) {
+        int[] sizes = Harness.sizes(args, 10, 100, 1000, 10_000);
+
+        System.out.printf("%8s %22s %22s%n", "routes", "64 dsts ns/packet", "4096 dsts ns/packet");
+        for (int routes : sizes) {
+            System.out.printf("%8d %22s %22s%n", routes, measure(routes, 64), measure(routes, 4096));
+        }
+    }
+
+    private static Harness.Result measure(int routes, int destinations) {
+        var random = new SplittableRandom(routes);
+        var engine = new SimEngine();
+        var router = new Router(engine, "R", routes, new NetworkAddr(0x0100_0000_0000_0000L, 0, 32));
+        var sink = new PacketSink(engine);
+        var prefixes = new long[routes];
+        for (int i = 0; i < routes; ++i) {
+            prefixes[i] = random.nextLong() & 0xFFFF_FFFF_FFFF_0000L;
+            var link = new Link(engine);
+            router.connectInterface(i, new NetworkAddr(prefixes[i], 0, 48), link);
+            link.setConnector(sink);
+        }
+        engine.run();
+
+        var targets = new NetworkAddr[destinations];
+        for (int i = 0; i < destinations; ++i) {
+            targets[i] = new NetworkAddr(prefixes[random.nextInt(routes)] | random.nextInt(0x10000), 1 + i);
+        }
+        var source = new NetworkAddr(0x0100_0000_0000_0000L, 1);
+        var messages = new Message[PACKETS];
+        for (int i = 0; i < PACKETS; ++i) {
+            messages[i] = new Message(source, targets[random.nextInt(destinations)], i);
+        }
+
+        return Harness.measure(() -> {
+            for (var msg : messages) {
+                router.recv(sink, msg);
+            }
+            engine.run();
+            return sink.received;
+        }, PACKETS, RUNS / 4, RUNS);
+    }
+}
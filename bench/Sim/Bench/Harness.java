@@ -0,0 +1,99 @@
+package Sim.Bench;
+
+/**
+ * Measurement loop shared by the benchmarks. A workload runs a batch of operations and is called for a number of
+ * warm-up runs, and for at least half a second, so the JIT has compiled it, and then for the measured runs, each timed
+ * on its own. The result is the
+ * mean time per operation with the standard deviation between runs, which tells whether a difference between two
+ * numbers means anything.
+ * <p>
+ * Workloads return a value computed from their work, which is folded into a field that is never read, so the JIT
+ * cannot drop the work as unused.
+ */
+public final class Harness {
+    /**
+     * A batch of operations to time.
+     */
+    public interface Workload {
+        long run();
+    }
+
+    /**
+     * Time per operation.
+     *
+     * @param mean   mean over the measured runs in nanoseconds.
+     * @param stddev standard deviation between the runs in nanoseconds.
+     */
+    public record Result(double mean, double stddev) {
+        // Operations per second at the mean time.
+        public double throughput() {
+            return 1e9 / mean;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%.1f +- %.1f", mean, stddev);
+        }
+    }
+
+    public static final int WARMUP_RUNS = 5;
+    public static final int MEASURED_RUNS = 20;
+    private static final long MIN_WARMUP_NANOS = 500_000_000L;
+
+    private static volatile long _sink;
+
+    private Harness() {
+    }
+
+    public static Result measure(Workload workload, long operations) {
+        return measure(workload, operations, WARMUP_RUNS, MEASURED_RUNS);
+    }
+
+    /**
+     * Times a workload.
+     *
+     * @param workload     workload to run.
+     * @param operations   number of operations in one run of the workload.
+     * @param warmupRuns   runs before measuring, more are made if these take less than half a second.
+     * @param measuredRuns runs measured.
+     * @return time per operation.
+     */
+    public static Result measure(Workload workload, long operations, int warmupRuns, int measuredRuns) {
+        long sink = 0;
+        long warmupStart = System.nanoTime();
+        for (int i = 0; i < warmupRuns || System.nanoTime() - warmupStart < MIN_WARMUP_NANOS; ++i) {
+            sink += workload.run();
+        }
+        double sum = 0;
+        double sumOfSquares = 0;
+        for (int i = 0; i < measuredRuns; ++i) {
+            long start = System.nanoTime();
+            sink += workload.run();
+            double perOperation = (double) (System.nanoTime() - start) / operations;
+            sum += perOperation;
+            sumOfSquares += perOperation * perOperation;
+        }
+        _sink += sink;
+        double mean = sum / measuredRuns;
+        double variance = measuredRuns > 1 ? (sumOfSquares - sum * mean) / (measuredRuns - 1) : 0;
+        return new Result(mean, Math.sqrt(Math.max(0, variance)));
+    }
+
+    /**
+     * Parses the sizes a benchmark runs with from its arguments.
+     *
+     * @param args     command line arguments, one size each.
+     * @param defaults sizes used when there are no arguments.
+     * @return the sizes.
+     */
+    public static int[] sizes(String[] args, int... defaults) {
+        if (args.length == 0) {
+            return defaults;
+        }
+        int[] sizes = new int[args.length];
+        for (int i = 0; i < args.length; ++i) {
+            sizes[i] = Integer.parseInt(args[i]);
+        }
+        return sizes;
+    }
+}
@@ -0,0 +1,113 @@
+package Sim.Bench;
+
+import Sim.Link;
+import Sim.NetworkAddr;
+import Sim.Node;
+import Sim.QueuedLink;
+import Sim.Router;
+import Sim.SimEngine;
+import Sim.Traffic.ConstantBitRate;
+import Sim.Traffic.PoissonProcess;
+import Sim.Traffic.TrafficGenerator;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+
+/**
+ * Compares background traffic sent as packets with the same traffic sent as fluid flows. A foreground node sends
+ * constant bit rate traffic over a 10 Mbit/s bottleneck between two routers, shared with background nodes sending
+ * Poisson traffic at a fraction of its bit rate. For each load it prints the events, the wall time, the share of
+ * foreground packets that arrived and the mean time packets waited in the bottleneck's queue: all packets when the
+ * background is sent as packets, which is the time average of the queue since they arrive as a Poisson process, and
+ * only the foreground packets when it is fluid.
+ * <p>
+ * Run with {@code java -cp bin Sim.Bench.HybridBenchmark [seconds [loads...]]}, 60 seconds of simulated time and loads
+ * of 50, 80, 95 and 120% by default.
+ */
+public class HybridBenchmark {
+    private static final double BIT_RATE = 10e6;
+    private static final int BACKGROUND_NODES = 8;
+    private static final int FOREGROUND_INTERVAL = 10;
+
+    private record Result(long events, double wallMs, int sent, int received, double queueingDelay) {
+    }
+
+    private record Pair(Node sender, Node receiver) {
+    }
+
+    public static void main(String[] args) {
+        double seconds = args.length > 0 ? Double.parseDouble(args[0]) : 60;
+        int[] loads = Harness.sizes(args.length > 0 ? Arrays.copyOfRange(args, 1, args.length) : args, 50, 80, 95, 120);
+
+        System.out.printf("%6s %-8s %12s %10s %12s %14s%n", "load", "mode", "events", "wall ms", "delivered", "queueing ms");
+        for (int load : loads) {
+            for (boolean fluid : new boolean[]{false, true}) {
+                run(seconds, load / 100.0, fluid);
+                var result = run(seconds, load / 100.0, fluid);
+                System.out.printf("%5d%% %-8s %12d %10.0f %11.1f%% %14.2f%n", load, fluid ? "fluid" : "packets",
+                        result.events, result.wallMs, 100.0 * result.received / result.sent, result.queueingDelay);
+            }
+        }
+    }
+
+    // Builds and runs the dumbbell. Nodes behind the left router send to nodes behind the right one.
+    private static Result run(double seconds, double load, boolean fluid) {
+        var engine = new SimEngine();
+        var left = new Router(engine, "L", 1 + 1 + BACKGROUND_NODES, network(1));
+        var right = new Router(engine, "R", 1 + 1 + BACKGROUND_NODES, network(2));
+        var bottleneck = new QueuedLink(engine, BIT_RATE, 10, 100);
+        left.connectInterface(0, network(2), bottleneck);
+        right.connectInterface(0, network(1), bottleneck);
+
+        double duration = seconds * 1000;
+        int foregroundPackets = (int) (duration / FOREGROUND_INTERVAL);
+        var foreground = pair(engine, left, right, 1, new ConstantBitRate(foregroundPackets, FOREGROUND_INTERVAL));
+
+        // Mean time between the packets of each background node to reach the load together.
+        double packetTime = 1280 * 8000.0 / BIT_RATE;
+        double interval = packetTime * BACKGROUND_NODES / load;
+        for (int k = 0; k < BACKGROUND_NODES; ++k) {
+            var background = new PoissonProcess((int) (duration / interval), interval);
+            var sender = pair(engine, left, right, 2 + k, background).sender;
+            sender.setBackground(fluid);
+            sender.StartSending(address(2, 2 + k), 0);
+        }
+        foreground.sender.StartSending(address(2, 1), 0);
+
+        // Routers and nodes print their statistics at the end.
+        var out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        long start = System.nanoTime();
+        try {
+            engine.run();
+        } finally {
+            System.setOut(out);
+        }
+        double wallMs = (System.nanoTime() - start) / 1e6;
+        return new Result(engine.getDispatchedCount(), wallMs, foregroundPackets,
+                foreground.receiver.getPacketsReceived(), bottleneck.getAverageQueueingDelay());
+    }
+
+    // Connects a sender on the left and a receiver on the right, both on interface i.
+    private static Pair pair(SimEngine engine, Router left, Router right, int i, TrafficGenerator traffic) {
+        var senderLink = new Link(engine);
+        var sender = new Node(engine, "S" + i, address(1, i), network(1), traffic, null);
+        sender.setPeer(senderLink);
+        left.connectInterface(i, address(1, i), senderLink);
+
+        var receiverLink = new Link(engine);
+        var receiver = new Node(engine, "D" + i, address(2, i), network(2), null, null);
+        receiver.setPeer(receiverLink);
+        right.connectInterface(i, address(2, i), receiverLink);
+        return new Pair(sender, receiver);
+    }
+
+    private static NetworkAddr network(int router) {
+        return new NetworkAddr((long) router << 32, 0, 32);
+    }
+
+    private static NetworkAddr address(int router, int i) {
+        return new NetworkAddr(((long) router << 32) + i, 1);
+    }
+}
@@ -0,0 +1,220 @@
+package Sim.Bench;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Just enough JSON for benchmark results: writing maps, lists, strings and numbers, and reading them back into
+ * {@link Map}, {@link List}, {@link String}, {@link Double}, {@link Boolean} and null.
+ */
+final class Json {
+    private final String _text;
+    private int _position = 0;
+
+    private Json(String text) {
+        _text = text;
+    }
+
+    static String write(Object value) {
+        var out = new StringBuilder();
+        write(out, value, "");
+        return out.append('\n').toString();
+    }
+
+    static Object parse(String text) {
+        var json = new Json(text);
+        var value = json.value();
+        json.skipWhitespace();
+        if (json._position != text.length()) {
+            throw json.error("unexpected text after the value");
+        }
+        return value;
+    }
+
+    private static void write(StringBuilder out, Object value, String indent) {
+        if (value instanceof Map<?, ?> map) {
+            out.append('{');
+            var inner = indent + "  ";
+            var separator = "\n";
+            for (var entry : map.entrySet()) {
+                out.append(separator).append(inner);
+                writeString(out, entry.getKey().toString());
+                out.append(": ");
+                write(out, entry.getValue(), inner);
+                separator = ",\n";
+            }
+            out.append(map.isEmpty() ? "}" : "\n" + indent + "}");
+        } else if (value instanceof List<?> list) {
+            out.append('[');
+            var inner = indent + "  ";
+            var separator = "\n";
+            for (var element : list) {
+                out.append(separator).append(inner);
+                write(out, element, inner);
+                separator = ",\n";
+            }
+            out.append(list.isEmpty() ? "]" : "\n" + indent + "]");
+        } else if (value instanceof String string) {
+            writeString(out, string);
+        } else if (value instanceof Double number && (number.isNaN() || number.isInfinite())) {
+            out.append("null");
+        } else if (value instanceof Double number && number == Math.rint(number) && Math.abs(number) < 1e15) {
+            out.append(number.longValue());
+        } else {
+            out.append(value);
+        }
+    }
+
+    private static void writeString(StringBuilder out, String string) {
+        out.append('"');
+        for (int i = 0; i < string.length(); ++i) {
+            char c = string.charAt(i);
+            switch (c) {
+                case '"' -> out.append("\\\"");
+                case '\\' -> out.append("\\\\");
+                case '\n' -> out.append("\\n");
+                case '\t' -> out.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        out.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+                }
+            }
+        }
+        out.append('"');
+    }
+
+    private Object value() {
+        skipWhitespace();
+        if (_position == _text.length()) {
+            throw error("unexpected end");
+        }
+        char c = _text.charAt(_position);
+        return switch (c) {
+            case '{' -> object();
+            case '[' -> array();
+            case '"' -> string();
+            case 't' -> literal("true", Boolean.TRUE);
+            case 'f' -> literal("false", Boolean.FALSE);
+            case 'n' -> literal("null", null);
+            default -> number();
+        };
+    }
+
+    private Map<String, Object> object() {
+        var map = new LinkedHashMap<String, Object>();
+        expect('{');
+        skipWhitespace();
+        if (peek() == '}') {
+            _position += 1;
+            return map;
+        }
+        do {
+            skipWhitespace();
+            var key = string();
+            skipWhitespace();
+            expect(':');
+            map.put(key, value());
+            skipWhitespace();
+        } while (next() == ',');
+        _position -= 1;
+        expect('}');
+        return map;
+    }
+
+    private List<Object> array() {
+        var list = new ArrayList<>();
+        expect('[');
+        skipWhitespace();
+        if (peek() == ']') {
+            _position += 1;
+            return list;
+        }
+        do {
+            list.add(value());
+            skipWhitespace();
+        } while (next() == ',');
+        _position -= 1;
+        expect(']');
+        return list;
+    }
+
+    private String string() {
+        expect('"');
+        var out = new StringBuilder();
+        char c;
+        while ((c = next()) != '"') {
+            if (c == '\\') {
+                c = next();
+                switch (c) {
+                    case 'n' -> out.append('\n');
+                    case 't' -> out.append('\t');
+                    case 'r' -> out.append('\r');
+                    case 'b' -> out.append('\b');
+                    case 'f' -> out.append('\f');
+                    case 'u' -> {
+                        out.append((char) Integer.parseInt(_text.substring(_position, _position + 4), 16));
+                        _position += 4;
+                    }
+                    default -> out.append(c);
+                }
+            } else {
+                out.append(c);
+            }
+        }
+        return out.toString();
+    }
+
+    private Double number() {
+        int start = _position;
+        while (_position < _text.length() && "+-.eE0123456789".indexOf(_text.charAt(_position)) >= 0) {
+            _position += 1;
+        }
+        try {
+            return Double.valueOf(_text.substring(start, _position));
+        } catch (NumberFormatException e) {
+            _position = start;
+            throw error("expected a value");
+        }
+    }
+
+    private Object literal(String word, Object value) {
+        if (!_text.startsWith(word, _position)) {
+            throw error("expected " + word);
+        }
+        _position += word.length();
+        return value;
+    }
+
+    private void expect(char c) {
+        if (next() != c) {
+            _position -= 1;
+            throw error("expected '" + c + "'");
+        }
+    }
+
+    private char peek() {
+        return _position < _text.length() ? _text.charAt(_position) : 0;
+    }
+
+    private char next() {
+        if (_position == _text.length()) {
+            throw error("unexpected end");
+        }
+        return _text.charAt(_position++);
+    }
+
+    private void skipWhitespace() {
+        while (_position < _text.length() && Character.isWhitespace(_text.charAt(_position))) {
+            _position += 1;
+        }
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException("JSON " + message + " at offset " + _position);
+    }
+}
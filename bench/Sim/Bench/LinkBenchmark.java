@@ -0,0 +1,80 @@
+package Sim.Bench;
+
+import Sim.CoDel;
+import Sim.Link;
+import Sim.LossyLink;
+import Sim.Message;
+import Sim.NetworkAddr;
+import Sim.QueueDiscipline;
+import Sim.QueuedLink;
+import Sim.RandomEarlyDetection;
+import Sim.SimEngine;
+
+import java.util.function.Function;
+
+/**
+ * Measures the time a {@link LossyLink} takes per packet, from receiving it to delivering it or dropping it, with
+ * different amounts of jitter and loss, and the same for a {@link QueuedLink} with each queue discipline. The queued
+ * links get a burst of packets at once, so the queue fills up and the disciplines have to work.
+ * <p>
+ * Run with {@code java -cp bin Sim.Bench.LinkBenchmark}.
+ */
+public class LinkBenchmark {
+    private static final int PACKETS = 1 << 12;
+    private static final int RUNS = 200;
+
+    private record Setting(double delay, double jitter, double dropProbability) {
+    }
+
+    private record Queue(String name, QueueDiscipline discipline) {
+    }
+
+    public static void main(String[] args) {
+        var settings = new Setting[]{
+                new Setting(0, 0, 0),
+                new Setting(100, 0, 0),
+                new Setting(100, 20, 0),
+                new Setting(100, 20, 0.1),
+                new Setting(100, 20, 0.5),
+        };
+
+        System.out.printf("%8s %8s %8s %16s%n", "delay", "jitter", "drop", "ns/packet");
+        for (var setting : settings) {
+            var result = measure(engine -> new LossyLink(engine, setting.delay, setting.jitter, setting.dropProbability, 1));
+            System.out.printf("%8.0f %8.0f %8.2f %16s%n", setting.delay, setting.jitter, setting.dropProbability, result);
+        }
+
+        var queues = new Queue[]{
+                new Queue("drop-tail", QueueDiscipline.DROP_TAIL),
+                new Queue("RED", new RandomEarlyDetection(PACKETS / 8.0, PACKETS / 2.0, 0.1, 1)),
+                new Queue("CoDel", new CoDel()),
+        };
+        System.out.printf("%n%-10s %16s%n", "queue", "ns/packet");
+        for (var queue : queues) {
+            var result = measure(engine -> new QueuedLink(engine, 100e6, 10, PACKETS / 4, queue.discipline));
+            System.out.printf("%-10s %16s%n", queue.name, result);
+        }
+    }
+
+    private static Harness.Result measure(Function<SimEngine, Link> factory) {
+        var engine = new SimEngine();
+        var link = factory.apply(engine);
+        var sender = new PacketSink(engine);
+        var receiver = new PacketSink(engine);
+        link.setConnector(sender);
+        link.setConnector(receiver);
+        engine.run();
+
+        var messages = new Message[PACKETS];
+        for (int i = 0; i < PACKETS; ++i) {
+            messages[i] = new Message(new NetworkAddr(1, 1), new NetworkAddr(2, 1), i);
+        }
+        return Harness.measure(() -> {
+            for (var msg : messages) {
+                link.recv(sender, msg);
+            }
+            engine.run();
+            return receiver.received;
+        }, PACKETS, RUNS / 4, RUNS);
+    }
+}
@@ -0,0 +1,274 @@
+package Sim.Bench;
+
+import Sim.SimEngine;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs whole simulations, headless and with fixed seeds, and reports for each scenario the number of events, the wall
+ * time, events per second, the peak heap and the allocation rate, as JSON. Given a baseline written by an earlier run,
+ * it fails when a scenario got slower, or uses more memory, than the tolerance allows, or when it no longer simulates
+ * the same thing.
+ * <p>
+ * Run with {@code java -cp bin Sim.Bench.MacroBenchmark [options]}:
+ * <ul>
+ *     <li>{@code --scenario handover-grid,cbr-soak,cbr-burst,handover-storm}, the scenarios to run, all by default.</li>
+ *     <li>{@code --scale 1}, multiplies the number of packets of every scenario.</li>
+ *     <li>{@code --warmup 1} and {@code --runs 3}, runs of each scenario before and while measuring.</li>
+ *     <li>{@code --out results.json}, where to write the results, standard output by default.</li>
+ *     <li>{@code --baseline bench/baseline.json}, results to compare with.</li>
+ *     <li>{@code --tolerance 0.2} or {@code --tolerance events_per_sec=0.3}, the relative change allowed, for all
+ *     metrics or for one. Can be given more than once.</li>
+ * </ul>
+ * The exit status is 1 if any scenario regressed against the baseline.
+ */
+public class MacroBenchmark {
+    private interface Workload {
+        // Builds the scenario in an engine and returns a function that counts the packets received after the run.
+        Counter build(SimEngine engine, double scale);
+    }
+
+    private interface Counter {
+        long packetsReceived();
+    }
+
+    private record Scenario(String name, Workload workload) {
+    }
+
+    private static final List<Scenario> SCENARIOS = List.of(
+            // The topology of Run scaled to 8 home agents with 64 mobile nodes, each handing over once.
+            new Scenario("handover-grid", (engine, scale) -> {
+                int packets = packets(2000, scale);
+                var network = new MobileNetwork(engine, 8, 64, packets, 10, 1);
+                var random = network.getRandom();
+                double duration = packets * 10.0;
+                for (int k = 0; k < network.getMobileCount(); ++k) {
+                    network.scheduleHandover(k, random.nextDouble(0.05 * duration, 0.95 * duration), false);
+                }
+                return network::getPacketsReceived;
+            }),
+            // One mobile node and its correspondent sending constant bit rate traffic for a long time.
+            new Scenario("cbr-soak", (engine, scale) -> {
+                var network = new MobileNetwork(engine, 2, 1, packets(500_000, scale), 1, 2);
+                return network::getPacketsReceived;
+            }),
+            // The same with the nodes sending their packets in bursts of 16.
+            new Scenario("cbr-burst", (engine, scale) -> {
+                var network = new MobileNetwork(engine, 2, 1, packets(500_000, scale), 1, 2, 16);
+                return network::getPacketsReceived;
+            }),
+            // 256 mobile nodes moving away from home and back every 200 ms.
+            new Scenario("handover-storm", (engine, scale) -> {
+                int packets = packets(1000, scale);
+                var network = new MobileNetwork(engine, 4, 256, packets, 10, 3);
+                var random = network.getRandom();
+                double end = packets * 10.0;
+                for (int k = 0; k < network.getMobileCount(); ++k) {
+                    boolean home = false;
+                    for (double time = random.nextDouble(100, 300); time < end; time += 200) {
+                        network.scheduleHandover(k, time, home);
+                        home = !home;
+                    }
+                }
+                return network::getPacketsReceived;
+            }));
+
+    // Metrics where a higher value is better, all others are better lower.
+    private static final List<String> HIGHER_IS_BETTER = List.of("events_per_sec");
+
+    // Metrics compared with the tolerance, the others are only reported.
+    private static final List<String> GATED = List.of("events_per_sec", "peak_heap_bytes", "alloc_bytes_per_event");
+
+    // Metrics that must not change at all, they show that the scenario still simulates the same thing.
+    private static final List<String> EXACT = List.of("events", "packets_received");
+
+    private static final double DEFAULT_TOLERANCE = 0.2;
+
+    public static void main(String[] args) throws IOException {
+        var names = new ArrayList<String>();
+        for (var scenario : SCENARIOS) {
+            names.add(scenario.name);
+        }
+        double scale = 1;
+        int warmup = 1;
+        int runs = 3;
+        String out = null;
+        String baseline = null;
+        var tolerances = new HashMap<String, Double>();
+
+        for (int i = 0; i < args.length; i += 2) {
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("missing value for " + args[i]);
+            }
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--scenario" -> names = new ArrayList<>(Arrays.asList(value.split(",")));
+                case "--scale" -> scale = Double.parseDouble(value);
+                case "--warmup" -> warmup = Integer.parseInt(value);
+                case "--runs" -> runs = Integer.parseInt(value);
+                case "--out" -> out = value;
+                case "--baseline" -> baseline = value;
+                case "--tolerance" -> {
+                    int equals = value.indexOf('=');
+                    if (equals < 0) {
+                        tolerances.put("", Double.parseDouble(value));
+                    } else {
+                        tolerances.put(value.substring(0, equals), Double.parseDouble(value.substring(equals + 1)));
+                    }
+                }
+                default -> throw new IllegalArgumentException("unknown option " + args[i]);
+            }
+        }
+
+        var results = new ArrayList<Map<String, Object>>();
+        for (var name : names) {
+            var scenario = SCENARIOS.stream().filter(s -> s.name.equals(name.trim())).findFirst()
+                    .orElseThrow(() -> new IllegalArgumentException("unknown scenario " + name));
+            var result = measure(scenario, scale, warmup, runs);
+            System.err.printf("%-16s %12.0f events %10.0f ms %12.0f events/s %8.1f MB peak heap %10.1f MB/s allocated%n",
+                    scenario.name, result.get("events"), result.get("wall_ms"), result.get("events_per_sec"),
+                    (double) result.get("peak_heap_bytes") / (1 << 20), (double) result.get("alloc_bytes_per_sec") / (1 << 20));
+            results.add(result);
+        }
+
+        var document = new LinkedHashMap<String, Object>();
+        document.put("java", System.getProperty("java.version"));
+        document.put("processors", (double) Runtime.getRuntime().availableProcessors());
+        document.put("scale", scale);
+        document.put("scenarios", results);
+        var json = Json.write(document);
+        if (out == null) {
+            System.out.print(json);
+        } else {
+            Files.writeString(Path.of(out), json);
+        }
+
+        if (baseline != null && !compare(document, Json.parse(Files.readString(Path.of(baseline))), tolerances)) {
+            System.exit(1);
+        }
+    }
+
+    private static int packets(int packets, double scale) {
+        return Math.max(1, (int) Math.round(packets * scale));
+    }
+
+    // Runs a scenario and returns its metrics. Times and allocations are the median of the measured runs, the peak heap
+    // is the largest of them.
+    private static Map<String, Object> measure(Scenario scenario, double scale, int warmup, int runs) {
+        for (int i = 0; i < warmup; ++i) {
+            var engine = new SimEngine();
+            scenario.workload.build(engine, scale);
+            engine.run();
+        }
+
+        var threads = ManagementFactory.getThreadMXBean();
+        var allocations = threads instanceof com.sun.management.ThreadMXBean sun && sun.isThreadAllocatedMemorySupported()
+                ? sun : null;
+        var heapPools = ManagementFactory.getMemoryPoolMXBeans().stream()
+                .filter(pool -> pool.getType() == MemoryType.HEAP).toList();
+
+        double[] wall = new double[runs];
+        double[] allocated = new double[runs];
+        long peakHeap = 0;
+        long events = 0;
+        long received = 0;
+        for (int i = 0; i < runs; ++i) {
+            System.gc();
+            heapPools.forEach(pool -> pool.resetPeakUsage());
+            long allocatedBefore = allocations == null ? 0 : allocations.getCurrentThreadAllocatedBytes();
+            long start = System.nanoTime();
+
+            var engine = new SimEngine();
+            var counter = scenario.workload.build(engine, scale);
+            engine.run();
+
+            wall[i] = (System.nanoTime() - start) / 1e6;
+            allocated[i] = allocations == null ? Double.NaN : allocations.getCurrentThreadAllocatedBytes() - allocatedBefore;
+            // The pools peak at different times, so their sum is an upper bound of the heap in use at any one time.
+            peakHeap = Math.max(peakHeap, heapPools.stream().mapToLong(pool -> pool.getPeakUsage().getUsed()).sum());
+            if (i > 0 && (events != engine.getDispatchedCount() || received != counter.packetsReceived())) {
+                throw new IllegalStateException(scenario.name + " is not deterministic");
+            }
+            events = engine.getDispatchedCount();
+            received = counter.packetsReceived();
+        }
+
+        double wallMs = median(wall);
+        double allocatedBytes = median(allocated);
+        var result = new LinkedHashMap<String, Object>();
+        result.put("name", scenario.name);
+        result.put("events", (double) events);
+        result.put("packets_received", (double) received);
+        result.put("wall_ms", wallMs);
+        result.put("events_per_sec", events / (wallMs / 1e3));
+        result.put("peak_heap_bytes", (double) peakHeap);
+        result.put("alloc_bytes_per_sec", allocatedBytes / (wallMs / 1e3));
+        result.put("alloc_bytes_per_event", allocatedBytes / events);
+        return result;
+    }
+
+    private static double median(double[] values) {
+        var sorted = values.clone();
+        Arrays.sort(sorted);
+        int middle = sorted.length / 2;
+        return sorted.length % 2 == 1 ? sorted[middle] : (sorted[middle - 1] + sorted[middle]) / 2;
+    }
+
+    // Prints how every scenario compares with the baseline, and returns false if any of them regressed.
+    @SuppressWarnings("unchecked")
+    private static boolean compare(Map<String, Object> current, Object baselineDocument, Map<String, Double> tolerances) {
+        var baseline = (Map<String, Object>) baselineDocument;
+        if (!current.get("scale").equals(baseline.get("scale"))) {
+            System.err.printf("baseline was run with scale %s, not %s%n", baseline.get("scale"), current.get("scale"));
+            return false;
+        }
+        var previous = new HashMap<String, Map<String, Object>>();
+        for (var scenario : (List<Map<String, Object>>) baseline.get("scenarios")) {
+            previous.put((String) scenario.get("name"), scenario);
+        }
+
+        boolean passed = true;
+        for (var scenario : (List<Map<String, Object>>) current.get("scenarios")) {
+            var name = (String) scenario.get("name");
+            var before = previous.get(name);
+            if (before == null) {
+                System.err.printf("%-16s not in the baseline%n", name);
+                continue;
+            }
+            for (var metric : EXACT) {
+                double now = (Double) scenario.get(metric);
+                double then = (Double) before.get(metric);
+                if (now != then) {
+                    System.err.printf("%-16s %-22s changed from %.0f to %.0f, the scenario no longer simulates the same"
+                            + " thing and the baseline has to be rewritten%n", name, metric, then, now);
+                    passed = false;
+                }
+            }
+            for (var metric : GATED) {
+                Object value = before.get(metric);
+                if (value == null) {
+                    continue;
+                }
+                double then = (Double) value;
+                double now = (Double) scenario.get(metric);
+                double change = now / then - 1;
+                double tolerance = tolerances.getOrDefault(metric, tolerances.getOrDefault("", DEFAULT_TOLERANCE));
+                boolean worse = HIGHER_IS_BETTER.contains(metric) ? change < -tolerance : change > tolerance;
+                System.err.printf("%-16s %-22s %14.1f -> %14.1f %+7.1f%% %s%n", name, metric, then, now, change * 100,
+                        worse ? "REGRESSION" : "ok");
+                passed &= !worse;
+            }
+        }
+        return passed;
+    }
+}
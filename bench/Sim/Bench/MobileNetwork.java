@@ -0,0 +1,164 @@
+package Sim.Bench;
+
+import Sim.Events.StartHandover;
+import Sim.Link;
+import Sim.LossyLink;
+import Sim.LossyModel;
+import Sim.NetworkAddr;
+import Sim.Node;
+import Sim.Router;
+import Sim.SimEngine;
+import Sim.Traffic.ConstantBitRate;
+import Sim.Traffic.CountingSink;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * The topology of {@code Run} scaled up: a number of edge routers, each the home agent of some mobile nodes, connected
+ * to each other in a full mesh and to a core router that the correspondent nodes are attached to. Every mobile node
+ * exchanges constant bit rate traffic with its own correspondent node, and can hand over to the next edge router and
+ * back home.
+ * <p>
+ * Every router only has routes for its neighbours' networks, as in {@code Run}, so packets for a mobile node that is
+ * between networks are dropped by its home agent rather than sent around.
+ */
+final class MobileNetwork {
+    private static final long CORE_NETWORK = 0x7F00_0000_0000_0000L;
+
+    // Delay and jitter of the access links between mobile nodes and their routers.
+    private static final LossyModel ACCESS = new LossyModel(5, 1, 0.001);
+
+    private final int _routers;
+    private final int _perRouter;
+    private final List<Router> _edges = new ArrayList<>();
+    private final List<Node> _mobileNodes = new ArrayList<>();
+    private final List<Node> _correspondents = new ArrayList<>();
+    private final SplittableRandom _random;
+    private long _handovers = 0;
+
+    /**
+     * Builds the network in an engine and starts the traffic.
+     *
+     * @param engine   engine to build in.
+     * @param routers  number of edge routers.
+     * @param mobiles  number of mobile nodes, spread evenly over the edge routers.
+     * @param packets  packets each node sends.
+     * @param interval time between the packets of a node.
+     * @param seed     seed for the links and anything else random.
+     */
+    MobileNetwork(SimEngine engine, int routers, int mobiles, int packets, int interval, long seed) {
+        this(engine, routers, mobiles, packets, interval, seed, 1);
+    }
+
+    /**
+     * Builds the network in an engine and starts the traffic, with every node sending its packets in bursts.
+     *
+     * @param engine    engine to build in.
+     * @param routers   number of edge routers.
+     * @param mobiles   number of mobile nodes, spread evenly over the edge routers.
+     * @param packets   packets each node sends.
+     * @param interval  time between the packets of a node.
+     * @param seed      seed for the links and anything else random.
+     * @param burstSize packets each node sends per timer, see {@link Node#setBurstSize}.
+     */
+    MobileNetwork(SimEngine engine, int routers, int mobiles, int packets, int interval, long seed, int burstSize) {
+        _routers = routers;
+        _perRouter = (mobiles + routers - 1) / routers;
+        _random = new SplittableRandom(seed);
+
+        // Interface 0 of an edge router leads to the core, then come the mesh links, the home interfaces of its mobile
+        // nodes and the interfaces for nodes visiting from the previous edge router. Edge a reaches edge b on interface
+        // b if b is above it, and b + 1 otherwise.
+        var core = new Router(engine, "Core", routers + mobiles, new NetworkAddr(CORE_NETWORK, 0, 32));
+        for (int e = 0; e < routers; ++e) {
+            var edge = new Router(engine, "E" + e, routers + 2 * _perRouter, edgeNetwork(e));
+            var uplink = new Link(engine);
+            edge.connectInterface(0, new NetworkAddr(CORE_NETWORK, 0, 32), uplink);
+            core.connectInterface(e, edgeNetwork(e), uplink);
+            _edges.add(edge);
+        }
+        for (int a = 0; a < routers; ++a) {
+            for (int b = a + 1; b < routers; ++b) {
+                var mesh = new Link(engine);
+                _edges.get(a).connectInterface(b, edgeNetwork(b), mesh);
+                _edges.get(b).connectInterface(1 + a, edgeNetwork(a), mesh);
+            }
+        }
+
+        for (int k = 0; k < mobiles; ++k) {
+            int home = k % routers;
+            var mobileAddress = new NetworkAddr(edgeNetwork(home).networkId() + homeInterface(k), 1 + k);
+            var correspondentAddress = new NetworkAddr(CORE_NETWORK + routers + k, 1);
+
+            var mobileLink = new LossyLink(engine, ACCESS, _random.nextLong());
+            var mobile = new Node(engine, "MN" + k, mobileAddress, edgeNetwork(home),
+                    new ConstantBitRate(packets, interval), new CountingSink());
+            mobile.setPeer(mobileLink);
+            _edges.get(home).connectInterface(homeInterface(k), mobileAddress, mobileLink);
+
+            var correspondentLink = new LossyLink(engine, ACCESS, _random.nextLong());
+            var correspondent = new Node(engine, "CN" + k, correspondentAddress, new NetworkAddr(CORE_NETWORK, 0, 32),
+                    new ConstantBitRate(packets, interval), new CountingSink());
+            correspondent.setPeer(correspondentLink);
+            core.connectInterface(routers + k, correspondentAddress, correspondentLink);
+
+            mobile.setBurstSize(burstSize);
+            correspondent.setBurstSize(burstSize);
+            mobile.StartSending(correspondentAddress, 0);
+            correspondent.StartSending(mobileAddress, 0);
+            _mobileNodes.add(mobile);
+            _correspondents.add(correspondent);
+        }
+    }
+
+    int getMobileCount() {
+        return _mobileNodes.size();
+    }
+
+    SplittableRandom getRandom() {
+        return _random;
+    }
+
+    /**
+     * Schedules a regular handover of a mobile node, to the edge router after its home agent or back home.
+     *
+     * @param mobile index of the mobile node.
+     * @param time   time of the handover.
+     * @param home   true to move back to the home agent.
+     */
+    void scheduleHandover(int mobile, double time, boolean home) {
+        int homeRouter = mobile % _routers;
+        var node = _mobileNodes.get(mobile);
+        var handover = home
+                ? new StartHandover(_edges.get(homeRouter), homeInterface(mobile))
+                : new StartHandover(_edges.get((homeRouter + 1) % _routers), _routers + _perRouter + mobile / _routers);
+        node.getEngine().register(node, node, handover, time);
+        _handovers += 1;
+    }
+
+    long getHandovers() {
+        return _handovers;
+    }
+
+    // Packets received by all nodes.
+    long getPacketsReceived() {
+        long received = 0;
+        for (var node : _mobileNodes) {
+            received += node.getPacketsReceived();
+        }
+        for (var node : _correspondents) {
+            received += node.getPacketsReceived();
+        }
+        return received;
+    }
+
+    private int homeInterface(int mobile) {
+        return _routers + mobile / _routers;
+    }
+
+    private static NetworkAddr edgeNetwork(int edge) {
+        return new NetworkAddr((long) (edge + 1) << 32, 0, 32);
+    }
+}
@@ -0,0 +1,22 @@
+package Sim.Bench;
+
+import Sim.Event;
+import Sim.Message;
+import Sim.SimEngine;
+import Sim.SimEnt;
+
+// Entity at the end of a link that counts the packets it receives.
+final class PacketSink extends SimEnt {
+    long received = 0;
+
+    PacketSink(SimEngine engine) {
+        super(engine);
+    }
+
+    @Override
+    public void recv(SimEnt src, Event ev) {
+        if (ev instanceof Message) {
+            received += 1;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package Sim.Bench;
+
+import Sim.NetworkAddr;
+import Sim.PrefixTrie;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares longest prefix matching with {@link PrefixTrie} against a linear scan over a routing table sorted by prefix
+ * length, which is how routers looked up routes before.
+ * <p>
+ * Run with {@code java -cp bin Sim.Bench.RouteLookupBenchmark [routes...]}.
+ */
+public class RouteLookupBenchmark {
+    private static final int LOOKUPS = 1 << 16;
+    private static final int WARMUP_RUNS = 5;
+    private static final int MEASURED_RUNS = 10;
+
+    public static void main(String[] args) {
+        int[] sizes = Harness.sizes(args, 16, 256, 4096);
+
+        System.out.printf("%8s %14s %14s %9s%n", "routes", "linear ns/op", "trie ns/op", "speedup");
+        for (int routes : sizes) {
+            var random = new Random(routes);
+            var table = createTable(routes, random);
+            long[] addresses = createAddresses(table, random);
+
+            var trie = new PrefixTrie<NetworkAddr>();
+            for (var addr : table) {
+                if (trie.get(addr.networkId(), addr.getPrefixBits()) == null) {
+                    trie.put(addr.networkId(), addr.getPrefixBits(), addr);
+                }
+            }
+
+            // Both must find the same route, otherwise the comparison is meaningless.
+            for (long address : addresses) {
+                if (linear(table, address) != trie.lookup(address)) {
+                    throw new IllegalStateException("lookups disagree for " + Long.toHexString(address));
+                }
+            }
+
+            double linear = Harness.measure(() -> {
+                long found = 0;
+                for (long address : addresses) {
+                    var route = linear(table, address);
+                    found += route == null ? 0 : route.getPrefixBits();
+                }
+                return found;
+            }, LOOKUPS, WARMUP_RUNS, MEASURED_RUNS).mean();
+            double trieTime = Harness.measure(() -> {
+                long found = 0;
+                for (long address : addresses) {
+                    var route = trie.lookup(address);
+                    found += route == null ? 0 : route.getPrefixBits();
+                }
+                return found;
+            }, LOOKUPS, WARMUP_RUNS, MEASURED_RUNS).mean();
+            System.out.printf("%8d %14.1f %14.1f %8.1fx%n", routes, linear, trieTime, linear / trieTime);
+        }
+    }
+
+    // Routes with prefixes between /16 and /64, sorted with the longest prefix first like a router's table.
+    private static List<NetworkAddr> createTable(int routes, Random random) {
+        var table = new ArrayList<NetworkAddr>(routes);
+        for (int i = 0; i < routes; ++i) {
+            table.add(new NetworkAddr(random.nextLong(), 0, 16 + random.nextInt(49)));
+        }
+        table.sort((lhs, rhs) -> rhs.getPrefixBits() - lhs.getPrefixBits());
+        return table;
+    }
+
+    // Addresses inside random routes, and one in eight that most likely matches nothing.
+    private static long[] createAddresses(List<NetworkAddr> table, Random random) {
+        long[] addresses = new long[LOOKUPS];
+        for (int i = 0; i < addresses.length; ++i) {
+            if (i % 8 == 0) {
+                addresses[i] = random.nextLong();
+            } else {
+                var route = table.get(random.nextInt(table.size()));
+                long host = route.getPrefixBits() >= 64 ? 0 : random.nextLong() >>> route.getPrefixBits();
+                addresses[i] = route.networkId() ^ host;
+            }
+        }
+        return addresses;
+    }
+
+    private static NetworkAddr linear(List<NetworkAddr> table, long address) {
+        for (var addr : table) {
+            if (addr.matches(address)) {
+                return addr;
+            }
+        }
+        return null;
+    }
+}
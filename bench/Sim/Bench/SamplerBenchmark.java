@@ -0,0 +1,72 @@
+package Sim.Bench;
+
+import Sim.Sampling.AliasTable;
+import Sim.Sampling.PoissonSampler;
+
+import java.util.SplittableRandom;
+
+/**
+ * Compares {@link PoissonSampler} with the multiplicative method of Knuth that the Poisson traffic generator used
+ * before, which draws about lambda uniform values per sample and never finishes above lambda 745, where
+ * {@code exp(-lambda)} is 0. Also measures exponential samples and {@link AliasTable} draws from tables of several
+ * sizes.
+ * <p>
+ * Run with {@code java -cp bin Sim.Bench.SamplerBenchmark [lambdas...]}.
+ */
+public class SamplerBenchmark {
+    private static final int SAMPLES = 1 << 16;
+
+    // Largest lambda Knuth's method is run with, it gets slow long before it stops working.
+    private static final int KNUTH_LIMIT = 700;
+
+    public static void main(String[] args) {
+        int[] lambdas = Harness.sizes(args, 1, 10, 100, 700, 10_000);
+
+        System.out.printf("%10s %16s %16s%n", "lambda", "knuth ns", "sampler ns");
+        for (int lambda : lambdas) {
+            var random = new SplittableRandom(1);
+            var sampler = new PoissonSampler(lambda);
+            var knuth = lambda <= KNUTH_LIMIT ? measure(() -> knuth(lambda, random)).toString() : "-";
+            var result = measure(() -> sampler.sample(random));
+            System.out.printf("%10d %16s %16s%n", lambda, knuth, result);
+        }
+
+        var random = new SplittableRandom(1);
+        System.out.printf("%n%-18s %16s%n", "sampler", "ns/sample");
+        System.out.printf("%-18s %16s%n", "exponential", measure(() -> (long) (random.nextExponential() * 100)));
+        for (int size : new int[]{4, 256, 65536}) {
+            var weights = new double[size];
+            for (int i = 0; i < size; ++i) {
+                weights[i] = random.nextDouble();
+            }
+            var table = new AliasTable(weights);
+            System.out.printf("%-18s %16s%n", "alias " + size, measure(() -> table.sample(random)));
+        }
+    }
+
+    private interface Sample {
+        long next();
+    }
+
+    private static Harness.Result measure(Sample sample) {
+        return Harness.measure(() -> {
+            long sum = 0;
+            for (int i = 0; i < SAMPLES; ++i) {
+                sum += sample.next();
+            }
+            return sum;
+        }, SAMPLES);
+    }
+
+    // The method Poisson used before, as it was.
+    private static long knuth(int lambda, SplittableRandom random) {
+        double limit = Math.exp(-lambda);
+        int k = 0;
+        double p = 1;
+        do {
+            k = k + 1;
+            p = p * random.nextDouble();
+        } while (p > limit);
+        return k - 1;
+    }
+}
@@ -0,0 +1,42 @@
+package Sim.Bench;
+
+import Sim.Traffic.ConstantBitRate;
+import Sim.Traffic.Empirical;
+import Sim.Traffic.Gaussian;
+import Sim.Traffic.Poisson;
+import Sim.Traffic.PoissonProcess;
+import Sim.Traffic.TrafficGenerator;
+
+/**
+ * Measures {@link TrafficGenerator#getNextSendTime} of every traffic generator. The Poisson generator switches method at
+ * lambda 10, so it is measured for several.
+ * <p>
+ * Run with {@code java -cp bin Sim.Bench.TrafficBenchmark [poisson lambdas...]}.
+ */
+public class TrafficBenchmark {
+    private static final int SAMPLES = 1 << 16;
+
+    public static void main(String[] args) {
+        int[] lambdas = Harness.sizes(args, 1, 10, 100);
+
+        System.out.printf("%-16s %14s%n", "generator", "ns/sample");
+        print("cbr", new ConstantBitRate(0, 10));
+        print("gaussian", new Gaussian(0, 10, 2, 1));
+        for (int lambda : lambdas) {
+            print("poisson " + lambda, new Poisson(0, lambda, 1));
+        }
+        print("poisson process", new PoissonProcess(0, 10, 1));
+        print("empirical", new Empirical(0, new double[]{1, 5, 10, 50}, new double[]{4, 3, 2, 1}, 1));
+    }
+
+    private static void print(String name, TrafficGenerator generator) {
+        var result = Harness.measure(() -> {
+            double sum = 0;
+            for (int i = 0; i < SAMPLES; ++i) {
+                sum += generator.getNextSendTime();
+            }
+            return (long) sum;
+        }, SAMPLES);
+        System.out.printf("%-16s %14s%n", name, result);
+    }
+}
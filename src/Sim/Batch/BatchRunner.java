@@ -0,0 +1,237 @@
+package Sim.Batch;
+
+import Sim.SweepRunner;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+
+/**
+ * Runs a batch experiment: several seeded replications of every point in a parameter grid, all of them in parallel,
+ * and summarises each metric with its mean and 95% confidence interval.
+ * <p>
+ * Replication i uses the same seed for every point, so the points are compared under the same random numbers and the
+ * differences between them are less noisy than with independent seeds. Common random numbers can be turned off, and
+ * every simulation then gets a seed of its own. The seed of a simulation is the master seed of its engine, see
+ * {@link Sim.RandomStreams}.
+ * <p>
+ * Run from the command line with a comma separated list of values for each parameter, for example
+ * {@code --delay 50,100 --drop 0,0.01 --traffic cbr,poisson --replications 20 --out results.csv}. The result is one CSV
+ * row per point.
+ */
+public class BatchRunner {
+    /**
+     * One simulation of a batch, a point of the grid together with the seed of the replication.
+     *
+     * @param point parameters of the simulation.
+     * @param index index of the replication.
+     * @param seed  seed for all random generators in the simulation.
+     */
+    public record Replication(Point point, int index, long seed) {
+    }
+
+    /**
+     * Summary of the replications of one point.
+     *
+     * @param point   parameters of the point.
+     * @param metrics summary of each metric, in the order the scenario returns them.
+     */
+    public record Result(Point point, List<Summary> metrics) {
+    }
+
+    private final SweepRunner _sweep;
+    private int _replications = 10;
+    private long _seed = 1;
+    private boolean _commonRandomNumbers = true;
+
+    /**
+     * Creates a batch runner with one thread per available core.
+     */
+    public BatchRunner() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a batch runner.
+     *
+     * @param threads number of simulations to run at the same time.
+     */
+    public BatchRunner(int threads) {
+        _sweep = new SweepRunner(threads);
+    }
+
+    public void setReplications(int replications) {
+        if (replications < 1) {
+            throw new IllegalArgumentException("a batch needs at least one replication");
+        }
+        _replications = replications;
+    }
+
+    public void setSeed(long seed) {
+        _seed = seed;
+    }
+
+    public void setCommonRandomNumbers(boolean commonRandomNumbers) {
+        _commonRandomNumbers = commonRandomNumbers;
+    }
+
+    /**
+     * Runs every replication of every point. All simulations are handed to the thread pool at once, so the cores are
+     * kept busy until the whole batch is done rather than waiting for the slowest replication of each point.
+     *
+     * @param points   points of the experiment.
+     * @param scenario builds a simulation and returns its metrics.
+     * @return a summary for each point, in the same order as the points.
+     */
+    public List<Result> run(List<Point> points, SweepRunner.Scenario<Replication, double[]> scenario) {
+        var seeds = new SplittableRandom(_seed);
+        long[] replicationSeeds = new long[_replications];
+        for (int i = 0; i < _replications; ++i) {
+            replicationSeeds[i] = seeds.nextLong();
+        }
+
+        var replications = new ArrayList<Replication>(points.size() * _replications);
+        for (var point : points) {
+            for (int i = 0; i < _replications; ++i) {
+                replications.add(new Replication(point, i, _commonRandomNumbers ? replicationSeeds[i] : seeds.nextLong()));
+            }
+        }
+        var samples = _sweep.run(replications, Replication::seed, scenario);
+
+        var results = new ArrayList<Result>(points.size());
+        for (int p = 0; p < points.size(); ++p) {
+            var summaries = new ArrayList<Summary>();
+            for (int i = 0; i < _replications; ++i) {
+                double[] metrics = samples.get(p * _replications + i);
+                while (summaries.size() < metrics.length) {
+                    summaries.add(new Summary());
+                }
+                for (int m = 0; m < metrics.length; ++m) {
+                    summaries.get(m).add(metrics[m]);
+                }
+            }
+            results.add(new Result(points.get(p), summaries));
+        }
+        return results;
+    }
+
+    /**
+     * Writes the results as CSV, one row per point with the parameters followed by the mean and the half width of the
+     * 95% confidence interval of each metric.
+     *
+     * @param results results to write.
+     * @param metrics names of the metrics.
+     * @param out     stream to write to.
+     */
+    public static void writeCsv(List<Result> results, List<String> metrics, PrintStream out) {
+        var header = new StringBuilder("delay,jitter,drop_probability,traffic,packets,interval,stddev,handover,handover_time,replications");
+        for (var metric : metrics) {
+            header.append(',').append(metric).append("_mean,").append(metric).append("_ci95");
+        }
+        out.println(header);
+
+        for (var result : results) {
+            var point = result.point();
+            var row = new StringBuilder();
+            row.append(format(point.delay())).append(',')
+                    .append(format(point.jitter())).append(',')
+                    .append(format(point.dropProbability())).append(',')
+                    .append(point.traffic().name().toLowerCase(Locale.ROOT)).append(',')
+                    .append(point.packets()).append(',')
+                    .append(point.interval()).append(',')
+                    .append(format(point.stddev())).append(',')
+                    .append(point.handover().name().toLowerCase(Locale.ROOT)).append(',')
+                    .append(format(point.handoverTime())).append(',')
+                    .append(result.metrics().isEmpty() ? 0 : result.metrics().get(0).getCount());
+            for (var summary : result.metrics()) {
+                row.append(',').append(format(summary.getMean()))
+                        .append(',').append(format(summary.getConfidenceInterval95()));
+            }
+            out.println(row);
+        }
+    }
+
+    private static String format(double value) {
+        if (Double.isNaN(value)) {
+            return "";
+        }
+        if (Double.isInfinite(value)) {
+            return Double.toString(value);
+        }
+        return new BigDecimal(value).round(new MathContext(6)).stripTrailingZeros().toPlainString();
+    }
+
+    public static void main(String[] args) throws IOException {
+        var grid = new Grid();
+        int threads = Runtime.getRuntime().availableProcessors();
+        int replications = 10;
+        long seed = 1;
+        boolean commonRandomNumbers = true;
+        String out = null;
+
+        for (int i = 0; i < args.length; i += 2) {
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("missing value for " + args[i]);
+            }
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--delay" -> grid.delays(doubles(value));
+                case "--jitter" -> grid.jitters(doubles(value));
+                case "--drop" -> grid.dropProbabilities(doubles(value));
+                case "--traffic" -> grid.traffic(Arrays.stream(value.split(","))
+                        .map(name -> Point.Traffic.valueOf(name.trim().toUpperCase(Locale.ROOT)))
+                        .toArray(Point.Traffic[]::new));
+                case "--packets" -> grid.packets(ints(value));
+                case "--interval" -> grid.intervals(ints(value));
+                case "--stddev" -> grid.stddevs(doubles(value));
+                case "--handover" -> grid.handovers(Arrays.stream(value.split(","))
+                        .map(name -> Point.Handover.valueOf(name.trim().toUpperCase(Locale.ROOT)))
+                        .toArray(Point.Handover[]::new));
+                case "--handover-time" -> grid.handoverTimes(doubles(value));
+                case "--replications" -> replications = Integer.parseInt(value);
+                case "--seed" -> seed = Long.parseLong(value);
+                case "--common-random-numbers" -> commonRandomNumbers = Boolean.parseBoolean(value);
+                case "--threads" -> threads = Integer.parseInt(value);
+                case "--out" -> out = value;
+                default -> throw new IllegalArgumentException("unknown option " + args[i]);
+            }
+        }
+
+        var runner = new BatchRunner(threads);
+        runner.setReplications(replications);
+        runner.setSeed(seed);
+        runner.setCommonRandomNumbers(commonRandomNumbers);
+        var points = grid.points();
+
+        // Engines do not trace unless asked to, so the simulations run without any console output.
+        long start = System.nanoTime();
+        var results = runner.run(points, new HandoverScenario());
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        if (out == null) {
+            writeCsv(results, HandoverScenario.METRICS, System.out);
+        } else {
+            try (var file = new PrintStream(new FileOutputStream(out))) {
+                writeCsv(results, HandoverScenario.METRICS, file);
+            }
+        }
+        int simulations = points.size() * replications;
+        System.err.printf("%d points x %d replications = %d simulations in %.2f s (%.1f simulations/s)%n",
+                points.size(), replications, simulations, seconds, simulations / seconds);
+    }
+
+    private static double[] doubles(String values) {
+        return Arrays.stream(values.split(",")).mapToDouble(value -> Double.parseDouble(value.trim())).toArray();
+    }
+
+    private static int[] ints(String values) {
+        return Arrays.stream(values.split(",")).mapToInt(value -> Integer.parseInt(value.trim())).toArray();
+    }
+}
@@ -0,0 +1,101 @@
+package Sim.Batch;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A grid of parameters, where every combination of the values given for each parameter is one point of an experiment.
+ * Parameters that are not set keep a single default value, taken from the example in {@code Run}.
+ */
+public class Grid {
+    private double[] _delays = {100};
+    private double[] _jitters = {0};
+    private double[] _dropProbabilities = {0};
+    private Point.Traffic[] _traffic = {Point.Traffic.CBR};
+    private int[] _packets = {20};
+    private int[] _intervals = {100};
+    private double[] _stddevs = {0};
+    private Point.Handover[] _handovers = {Point.Handover.REGULAR};
+    private double[] _handoverTimes = {1000};
+
+    public Grid delays(double... delays) {
+        _delays = nonEmpty(delays.clone(), delays.length);
+        return this;
+    }
+
+    public Grid jitters(double... jitters) {
+        _jitters = nonEmpty(jitters.clone(), jitters.length);
+        return this;
+    }
+
+    public Grid dropProbabilities(double... dropProbabilities) {
+        _dropProbabilities = nonEmpty(dropProbabilities.clone(), dropProbabilities.length);
+        return this;
+    }
+
+    public Grid traffic(Point.Traffic... traffic) {
+        _traffic = nonEmpty(traffic.clone(), traffic.length);
+        return this;
+    }
+
+    public Grid packets(int... packets) {
+        _packets = nonEmpty(packets.clone(), packets.length);
+        return this;
+    }
+
+    public Grid intervals(int... intervals) {
+        _intervals = nonEmpty(intervals.clone(), intervals.length);
+        return this;
+    }
+
+    public Grid stddevs(double... stddevs) {
+        _stddevs = nonEmpty(stddevs.clone(), stddevs.length);
+        return this;
+    }
+
+    public Grid handovers(Point.Handover... handovers) {
+        _handovers = nonEmpty(handovers.clone(), handovers.length);
+        return this;
+    }
+
+    public Grid handoverTimes(double... handoverTimes) {
+        _handoverTimes = nonEmpty(handoverTimes.clone(), handoverTimes.length);
+        return this;
+    }
+
+    /**
+     * Returns every combination of the parameters. The last parameter, the handover time, varies fastest.
+     *
+     * @return all points of the grid.
+     */
+    public List<Point> points() {
+        var points = new ArrayList<Point>();
+        for (double delay : _delays) {
+            for (double jitter : _jitters) {
+                for (double drop : _dropProbabilities) {
+                    for (var traffic : _traffic) {
+                        for (int packets : _packets) {
+                            for (int interval : _intervals) {
+                                for (double stddev : _stddevs) {
+                                    for (var handover : _handovers) {
+                                        for (double handoverTime : _handoverTimes) {
+                                            points.add(new Point(delay, jitter, drop, traffic, packets, interval, stddev, handover, handoverTime));
+                                        }
+                                    }
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return points;
+    }
+
+    private static <T> T nonEmpty(T values, int length) {
+        if (length == 0) {
+            throw new IllegalArgumentException("a grid parameter needs at least one value");
+        }
+        return values;
+    }
+}
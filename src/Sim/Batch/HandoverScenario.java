@@ -0,0 +1,102 @@
+package Sim.Batch;
+
+import Sim.Events.StartHandover;
+import Sim.Link;
+import Sim.LossyLink;
+import Sim.LossyModel;
+import Sim.NetworkAddr;
+import Sim.Node;
+import Sim.Router;
+import Sim.SimEngine;
+import Sim.SweepRunner;
+import Sim.Traffic.ConstantBitRate;
+import Sim.Traffic.CountingSink;
+import Sim.Traffic.FileSink;
+import Sim.Traffic.Gaussian;
+import Sim.Traffic.Poisson;
+import Sim.Traffic.PoissonProcess;
+import Sim.Traffic.TrafficGenerator;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * The topology from {@code Run}: a mobile node (MN) at its home agent (HA) and a correspondent node (CN) behind a
+ * second router (R2), both attached through lossy links. CN sends traffic to MN, which moves to R2 during the run.
+ */
+public class HandoverScenario implements SweepRunner.Scenario<BatchRunner.Replication, double[]> {
+    /**
+     * Names of the metrics, in the order they are returned for each replication.
+     */
+    public static final List<String> METRICS = List.of(
+            "sent", "received", "tunneled", "dropped", "loss_rate", "mean_interarrival", "no_route");
+
+    @Override
+    public Supplier<double[]> build(SimEngine engine, BatchRunner.Replication replication) {
+        var point = replication.point();
+
+        // Each random element of the scenario draws from a named stream of the engine, which is seeded with the seed of
+        // the replication. The traffic generator takes the stream of its node.
+        var streams = engine.getRandomStreams();
+        var access = new LossyModel(point.delay(), point.jitter(), point.dropProbability());
+        var link1 = new LossyLink(engine, access, streams.stream("MN link"));
+        var link2 = new LossyLink(engine, access, streams.stream("CN link"));
+
+        var HNAddress = new NetworkAddr(0x1111_0000_0000_0000L, 0, 32);
+        var FNAddress = new NetworkAddr(0x2222_0000_0000_0000L, 0, 32);
+        var MNAddress = new NetworkAddr(0x1111_0000_0000_0000L, 1);
+        var CNAddress = new NetworkAddr(0x2222_0000_0000_0000L, 2);
+
+        var traffic = createTraffic(point);
+        var mnSink = new FileSink();
+        var cnSink = new CountingSink();
+        var mobileNode = new Node(engine, "MN", MNAddress, HNAddress, new ConstantBitRate(0, point.interval()), mnSink);
+        var correspondentNode = new Node(engine, "CN", CNAddress, FNAddress, traffic, cnSink);
+        mobileNode.setPeer(link1);
+        correspondentNode.setPeer(link2);
+
+        var homeAgent = new Router(engine, "HA", 5, HNAddress);
+        var router2 = new Router(engine, "R2", 5, FNAddress);
+        homeAgent.connectInterface(0, MNAddress, link1);
+        router2.connectInterface(0, CNAddress, link2);
+
+        var routerToRouter = new Link(engine);
+        homeAgent.connectInterface(1, FNAddress, routerToRouter);
+        router2.connectInterface(1, HNAddress, routerToRouter);
+
+        switch (point.handover()) {
+            case REGULAR -> engine.register(mobileNode, mobileNode, new StartHandover(router2, 3), point.handoverTime());
+            case FAST -> engine.register(mobileNode, mobileNode, new StartHandover(router2, "R2", 3), point.handoverTime());
+            case NONE -> {
+            }
+        }
+
+        homeAgent.startSendingProxyAdvertisements(0);
+        router2.startSendingProxyAdvertisements(0);
+        mobileNode.StartSending(CNAddress, 0);
+        correspondentNode.StartSending(MNAddress, 0);
+
+        return () -> {
+            double sent = traffic.getMessagesSent();
+            double received = mobileNode.getPacketsReceived();
+            return new double[]{
+                    sent,
+                    received,
+                    mobileNode.getTunneledPacketsReceived(),
+                    link1.getNumDroppedPackets() + link2.getNumDroppedPackets(),
+                    sent == 0 ? Double.NaN : 1 - received / sent,
+                    mnSink.getMeanTimeBetweenPackets(),
+                    homeAgent.getPacketsDroppedNoInterface() + router2.getPacketsDroppedNoInterface(),
+            };
+        };
+    }
+
+    private static TrafficGenerator createTraffic(Point point) {
+        return switch (point.traffic()) {
+            case CBR -> new ConstantBitRate(point.packets(), point.interval());
+            case GAUSSIAN -> new Gaussian(point.packets(), point.interval(), point.stddev());
+            case POISSON -> new Poisson(point.packets(), point.interval());
+            case EXPONENTIAL -> new PoissonProcess(point.packets(), point.interval());
+        };
+    }
+}
@@ -0,0 +1,32 @@
+package Sim.Batch;
+
+/**
+ * Parameters for one point of a batch experiment.
+ *
+ * @param delay           base delay of the lossy access links.
+ * @param jitter          jitter of the lossy access links.
+ * @param dropProbability probability that an access link drops a packet.
+ * @param traffic         distribution of the time between packets sent by the correspondent node.
+ * @param packets         number of packets sent by the correspondent node.
+ * @param interval        time between packets for constant bit rate, the mean for Gaussian and exponential, and lambda
+ *                        for Poisson.
+ * @param stddev          standard deviation of the time between packets, only used for Gaussian traffic.
+ * @param handover        handover performed by the mobile node.
+ * @param handoverTime    time when the mobile node starts the handover.
+ */
+public record Point(double delay, double jitter, double dropProbability, Traffic traffic, int packets, int interval,
+                    double stddev, Handover handover, double handoverTime) {
+    /**
+     * Traffic generators that can be used in an experiment.
+     */
+    public enum Traffic {
+        CBR, GAUSSIAN, POISSON, EXPONENTIAL
+    }
+
+    /**
+     * Handover performed by the mobile node, if any.
+     */
+    public enum Handover {
+        NONE, REGULAR, FAST
+    }
+}
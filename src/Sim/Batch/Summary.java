@@ -0,0 +1,80 @@
+package Sim.Batch;
+
+/**
+ * Running mean and variance of a metric over replications, with a 95% confidence interval for the mean based on the
+ * Student t distribution.
+ */
+public class Summary {
+    // Two sided 97.5% quantiles of the t distribution for 1 to 30 degrees of freedom.
+    private static final double[] T_975 = {
+            12.706, 4.303, 3.182, 2.776, 2.571, 2.447, 2.365, 2.306, 2.262, 2.228,
+            2.201, 2.179, 2.160, 2.145, 2.131, 2.120, 2.110, 2.101, 2.093, 2.086,
+            2.080, 2.074, 2.069, 2.064, 2.060, 2.056, 2.052, 2.048, 2.045, 2.042,
+    };
+
+    // 97.5% quantile of the normal distribution.
+    private static final double Z_975 = 1.959964;
+
+    private long _count = 0;
+    private double _mean = 0;
+
+    // Sum of squared differences from the mean, updated with Welford's method.
+    private double _m2 = 0;
+
+    /**
+     * Adds a sample. NaN samples, such as a metric that could not be measured in a replication, are ignored.
+     *
+     * @param value sample to add.
+     */
+    public void add(double value) {
+        if (Double.isNaN(value)) {
+            return;
+        }
+        _count += 1;
+        double delta = value - _mean;
+        _mean += delta / _count;
+        _m2 += delta * (value - _mean);
+    }
+
+    public long getCount() {
+        return _count;
+    }
+
+    public double getMean() {
+        return _count == 0 ? Double.NaN : _mean;
+    }
+
+    /**
+     * Returns the sample standard deviation.
+     *
+     * @return the standard deviation, or NaN with fewer than two samples.
+     */
+    public double getStddev() {
+        return _count < 2 ? Double.NaN : Math.sqrt(_m2 / (_count - 1));
+    }
+
+    /**
+     * Returns the half width of the 95% confidence interval for the mean, the interval is the mean plus or minus this.
+     *
+     * @return the half width, or NaN with fewer than two samples.
+     */
+    public double getConfidenceInterval95() {
+        if (_count < 2) {
+            return Double.NaN;
+        }
+        return quantile975(_count - 1) * getStddev() / Math.sqrt(_count);
+    }
+
+    /**
+     * Quantile of the t distribution, from the table for small degrees of freedom and from the Cornish-Fisher
+     * expansion around the normal quantile for larger ones, which is accurate to three decimals there.
+     */
+    private static double quantile975(long degreesOfFreedom) {
+        if (degreesOfFreedom <= T_975.length) {
+            return T_975[(int) degreesOfFreedom - 1];
+        }
+        double z = Z_975;
+        double df = degreesOfFreedom;
+        return z + (z * z * z + z) / (4 * df) + (5 * Math.pow(z, 5) + 16 * z * z * z + 3 * z) / (96 * df * df);
+    }
+}
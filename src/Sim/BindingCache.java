@@ -0,0 +1,357 @@
+package Sim;
+
+/**
+ * Binding cache of a home agent, from the home address of a mobile node to its care of address, for as long as the
+ * binding's lifetime lasts.
+ * <p>
+ * Bindings are stored by the network and node ids of the addresses in parallel arrays, with open addressing and linear
+ * probing, so a binding costs no objects and a lookup does not allocate. Bindings whose lifetime has run out are no
+ * longer returned, and are replaced by the next update for the same home address.
+ * <p>
+ * Growing the table does not rehash everything at once. A new table twice the size takes over, and every later update
+ * moves a few bindings over from the old one, which is still searched until it is empty. That keeps the cost of any
+ * single update bounded, even with millions of bindings.
+ */
+public class BindingCache {
+    /**
+     * Receives the bindings of a cache, see {@link #forEach}.
+     */
+    public interface Visitor {
+        void visit(long homeNetwork, long homeNode, long careOfNetwork, long careOfNode, double expires);
+    }
+
+    // Slot states.
+    private static final byte EMPTY = 0;
+    private static final byte FULL = 1;
+    private static final byte MOVED = 2;
+
+    // Slots of the old table moved by every update while the table grows.
+    private static final int MIGRATION_STEP = 8;
+
+    // Tables grow when they are three quarters full.
+    private static final int MIN_CAPACITY = 16;
+
+    // Set in positions returned by find for bindings in the old table. Tables never hold more than 2^30 slots.
+    private static final int IN_OLD = 1 << 30;
+
+    private static final class Table {
+        final long[] homeNetwork;
+        final long[] homeNode;
+        final long[] careOfNetwork;
+        final long[] careOfNode;
+        final double[] expires;
+
+        // EMPTY or FULL, and MOVED in an old table for bindings that have been moved or removed. Probes do not stop at
+        // a MOVED slot, so the bindings after it are still found.
+        final byte[] state;
+        final int mask;
+        int size = 0;
+
+        Table(int capacity) {
+            homeNetwork = new long[capacity];
+            homeNode = new long[capacity];
+            careOfNetwork = new long[capacity];
+            careOfNode = new long[capacity];
+            expires = new double[capacity];
+            state = new byte[capacity];
+            mask = capacity - 1;
+        }
+
+        Table(Table other) {
+            homeNetwork = other.homeNetwork.clone();
+            homeNode = other.homeNode.clone();
+            careOfNetwork = other.careOfNetwork.clone();
+            careOfNode = other.careOfNode.clone();
+            expires = other.expires.clone();
+            state = other.state.clone();
+            mask = other.mask;
+            size = other.size;
+        }
+
+        int find(long network, long node) {
+            int i = hash(network, node) & mask;
+            while (state[i] != EMPTY) {
+                if (state[i] == FULL && homeNetwork[i] == network && homeNode[i] == node) {
+                    return i;
+                }
+                i = (i + 1) & mask;
+            }
+            return -1;
+        }
+
+        void insert(long network, long node, long coaNetwork, long coaNode, double expiresAt) {
+            int i = hash(network, node) & mask;
+            while (state[i] != EMPTY) {
+                i = (i + 1) & mask;
+            }
+            homeNetwork[i] = network;
+            homeNode[i] = node;
+            careOfNetwork[i] = coaNetwork;
+            careOfNode[i] = coaNode;
+            expires[i] = expiresAt;
+            state[i] = FULL;
+            size += 1;
+        }
+
+        // Removes a slot from a table that only holds EMPTY and FULL slots, shifting later bindings of the same probe
+        // sequence back so lookups still find them.
+        void delete(int i) {
+            int j = i;
+            while (true) {
+                j = (j + 1) & mask;
+                if (state[j] == EMPTY) {
+                    break;
+                }
+                int home = hash(homeNetwork[j], homeNode[j]) & mask;
+                // Move the binding at j into the hole at i unless its home lies cyclically in (i, j].
+                boolean between = i <= j ? (i < home && home <= j) : (i < home || home <= j);
+                if (!between) {
+                    homeNetwork[i] = homeNetwork[j];
+                    homeNode[i] = homeNode[j];
+                    careOfNetwork[i] = careOfNetwork[j];
+                    careOfNode[i] = careOfNode[j];
+                    expires[i] = expires[j];
+                    i = j;
+                }
+            }
+            state[i] = EMPTY;
+            size -= 1;
+        }
+    }
+
+    private Table _table;
+
+    // Table being emptied into _table while the cache grows, or null, and the next of its slots to move.
+    private Table _old = null;
+    private int _migrated = 0;
+
+    /**
+     * Creates an empty binding cache.
+     */
+    public BindingCache() {
+        this(MIN_CAPACITY);
+    }
+
+    /**
+     * Creates an empty binding cache with room for a number of bindings before it has to grow.
+     *
+     * @param expected number of bindings expected.
+     */
+    public BindingCache(int expected) {
+        int capacity = MIN_CAPACITY;
+        while (3L * capacity < 4L * expected && capacity < (1 << 30)) {
+            capacity <<= 1;
+        }
+        _table = new Table(capacity);
+    }
+
+    private BindingCache(BindingCache other) {
+        _table = new Table(other._table);
+        _old = other._old == null ? null : new Table(other._old);
+        _migrated = other._migrated;
+    }
+
+    /**
+     * Returns a copy of the cache, that can be changed without affecting this one.
+     */
+    public BindingCache copy() {
+        return new BindingCache(this);
+    }
+
+    /**
+     * Binds a home address to a care of address, replacing any binding the home address had.
+     *
+     * @param homeNetwork   network id of the home address.
+     * @param homeNode      node id of the home address.
+     * @param careOfNetwork network id of the care of address.
+     * @param careOfNode    node id of the care of address.
+     * @param expires       time the binding expires, or infinity if it never does.
+     */
+    public void put(long homeNetwork, long homeNode, long careOfNetwork, long careOfNode, double expires) {
+        migrate();
+        int i = _table.find(homeNetwork, homeNode);
+        if (i >= 0) {
+            _table.careOfNetwork[i] = careOfNetwork;
+            _table.careOfNode[i] = careOfNode;
+            _table.expires[i] = expires;
+            return;
+        }
+        if (_old != null) {
+            removeOld(homeNetwork, homeNode);
+        }
+
+        if (4L * (_table.size + 1) > 3L * (_table.mask + 1)) {
+            grow();
+        }
+        _table.insert(homeNetwork, homeNode, careOfNetwork, careOfNode, expires);
+    }
+
+    public void put(NetworkAddr homeAddress, NetworkAddr careOfAddress, double expires) {
+        put(homeAddress.networkId(), homeAddress.nodeId(), careOfAddress.networkId(), careOfAddress.nodeId(), expires);
+    }
+
+    /**
+     * Removes the binding of a home address.
+     *
+     * @param homeNetwork network id of the home address.
+     * @param homeNode    node id of the home address.
+     * @return true if the home address had a binding, even an expired one.
+     */
+    public boolean remove(long homeNetwork, long homeNode) {
+        migrate();
+        int i = _table.find(homeNetwork, homeNode);
+        if (i >= 0) {
+            _table.delete(i);
+            return true;
+        }
+        return _old != null && removeOld(homeNetwork, homeNode);
+    }
+
+    /**
+     * Looks up the care of address of a home address.
+     *
+     * @param homeNetwork network id of the home address.
+     * @param homeNode    node id of the home address.
+     * @param now         current time, bindings that expired by then are ignored.
+     * @return the care of address, or null if the home address has no binding that is still valid.
+     */
+    public NetworkAddr get(long homeNetwork, long homeNode, double now) {
+        int position = find(homeNetwork, homeNode, now);
+        return position < 0 ? null : NetworkAddr.of(getCareOfNetwork(position), getCareOfNode(position));
+    }
+
+    /**
+     * Finds the binding of a home address, for reading its care of address without creating an address object. The
+     * position is only valid until the cache is modified.
+     *
+     * @param homeNetwork network id of the home address.
+     * @param homeNode    node id of the home address.
+     * @param now         current time, bindings that expired by then are ignored.
+     * @return position of the binding, or -1 if the home address has no binding that is still valid.
+     */
+    public int find(long homeNetwork, long homeNode, double now) {
+        int i = _table.find(homeNetwork, homeNode);
+        if (i >= 0) {
+            return _table.expires[i] > now ? i : -1;
+        }
+        if (_old != null && (i = _old.find(homeNetwork, homeNode)) >= 0 && _old.expires[i] > now) {
+            return i | IN_OLD;
+        }
+        return -1;
+    }
+
+    public long getCareOfNetwork(int position) {
+        return (position & IN_OLD) == 0 ? _table.careOfNetwork[position] : _old.careOfNetwork[position & ~IN_OLD];
+    }
+
+    public long getCareOfNode(int position) {
+        return (position & IN_OLD) == 0 ? _table.careOfNode[position] : _old.careOfNode[position & ~IN_OLD];
+    }
+
+    public NetworkAddr get(NetworkAddr homeAddress, double now) {
+        return get(homeAddress.networkId(), homeAddress.nodeId(), now);
+    }
+
+    /**
+     * Returns the time the binding of a home address expires.
+     *
+     * @param homeNetwork network id of the home address.
+     * @param homeNode    node id of the home address.
+     * @return the expiry time, or NaN if the home address has no binding.
+     */
+    public double getExpiry(long homeNetwork, long homeNode) {
+        int i = _table.find(homeNetwork, homeNode);
+        if (i >= 0) {
+            return _table.expires[i];
+        }
+        if (_old != null && (i = _old.find(homeNetwork, homeNode)) >= 0) {
+            return _old.expires[i];
+        }
+        return Double.NaN;
+    }
+
+    // Number of bindings, including expired ones that have not been removed or replaced yet.
+    public int size() {
+        return _table.size + (_old == null ? 0 : _old.size);
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Removes all bindings.
+     */
+    public void clear() {
+        _table = new Table(MIN_CAPACITY);
+        _old = null;
+        _migrated = 0;
+    }
+
+    /**
+     * Calls a visitor for every binding, in no particular order.
+     *
+     * @param visitor visitor to call.
+     */
+    public void forEach(Visitor visitor) {
+        visit(_table, visitor);
+        if (_old != null) {
+            visit(_old, visitor);
+        }
+    }
+
+    private static void visit(Table table, Visitor visitor) {
+        for (int i = 0; i <= table.mask; ++i) {
+            if (table.state[i] == FULL) {
+                visitor.visit(table.homeNetwork[i], table.homeNode[i], table.careOfNetwork[i], table.careOfNode[i],
+                        table.expires[i]);
+            }
+        }
+    }
+
+    private boolean removeOld(long homeNetwork, long homeNode) {
+        int i = _old.find(homeNetwork, homeNode);
+        if (i < 0) {
+            return false;
+        }
+        _old.state[i] = MOVED;
+        _old.size -= 1;
+        return true;
+    }
+
+    // Starts moving the bindings into a table twice the size. If the previous move has not finished, it is finished
+    // first, which only happens when the cache doubles again before a few updates have been made.
+    private void grow() {
+        while (_old != null) {
+            migrate();
+        }
+        _old = _table;
+        _table = new Table((_old.mask + 1) * 2);
+        _migrated = 0;
+    }
+
+    // Moves the next few bindings of the old table, and drops it once it is empty.
+    private void migrate() {
+        if (_old == null) {
+            return;
+        }
+        int end = Math.min(_migrated + MIGRATION_STEP, _old.mask + 1);
+        for (; _migrated < end; ++_migrated) {
+            if (_old.state[_migrated] == FULL) {
+                _table.insert(_old.homeNetwork[_migrated], _old.homeNode[_migrated], _old.careOfNetwork[_migrated],
+                        _old.careOfNode[_migrated], _old.expires[_migrated]);
+                _old.state[_migrated] = MOVED;
+                _old.size -= 1;
+            }
+        }
+        if (_old.size == 0 || _migrated > _old.mask) {
+            _old = null;
+        }
+    }
+
+    private static int hash(long network, long node) {
+        long h = network * 0x9E3779B97F4A7C15L + node;
+        h = (h ^ (h >>> 31)) * 0xBF58476D1CE4E5B9L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,247 @@
+package Sim;
+
+import java.util.Arrays;
+
+/**
+ * Event queue based on the calendar queue by R. Brown, "Calendar Queues: A Fast O(1) Priority Queue Implementation
+ * for the Simulation Event Set Problem" (1988).
+ * <p>
+ * Time is divided into days of a fixed width, and each day is mapped to one of the buckets like days in a year. When
+ * the pending events are evenly spread in time, which is the case for constant bit rate traffic and fixed link delays,
+ * enqueue and dequeue only touch a handful of events and run in amortised O(1).
+ * <p>
+ * The number of buckets follows the number of pending events, and the day width is re-estimated from the spacing of
+ * the next events each time the calendar is resized. Each bucket is kept sorted on (time, resolver), so events come
+ * out in exactly the same order as with the other queues.
+ */
+public class CalendarEventQueue implements EventQueue {
+    // Never shrink below this number of buckets.
+    private static final int MIN_BUCKETS = 16;
+
+    // Number of events to look at when estimating a new day width.
+    private static final int WIDTH_SAMPLES = 25;
+
+    // Events in each bucket, sorted in descending order so the earliest event is the last one.
+    private EventHandle[][] _buckets;
+
+    // Number of events in each bucket.
+    private int[] _counts;
+
+    // Width of each day in the calendar.
+    private double _width = 1.0;
+
+    // The day we are currently dequeuing events from, counted from time zero.
+    private long _currentDay = 0;
+
+    // Total number of events in the calendar.
+    private int _size = 0;
+
+    // Set while the buckets are being rebuilt, so the rebuild does not trigger yet another resize.
+    private boolean _resizing = false;
+
+    /**
+     * Creates a new empty calendar queue.
+     */
+    public CalendarEventQueue() {
+        allocate(MIN_BUCKETS);
+    }
+
+    @Override
+    public void add(EventHandle handle) {
+        long day = dayOf(handle._simSlot._msek);
+        if (_size == 0 || day < _currentDay) {
+            // Either the first event or one scheduled before the current day, start searching from its day.
+            _currentDay = day;
+        }
+        insert(bucketOf(day), handle);
+        _size += 1;
+
+        if (!_resizing && _size > 2 * _buckets.length) {
+            resize(_buckets.length * 2);
+        }
+    }
+
+    @Override
+    public EventHandle peek() {
+        int bucket = findNextBucket();
+        return bucket < 0 ? null : _buckets[bucket][_counts[bucket] - 1];
+    }
+
+    @Override
+    public EventHandle poll() {
+        int bucket = findNextBucket();
+        if (bucket < 0) {
+            return null;
+        }
+
+        int last = --_counts[bucket];
+        EventHandle handle = _buckets[bucket][last];
+        _buckets[bucket][last] = null;
+        _size -= 1;
+
+        if (!_resizing && _buckets.length > MIN_BUCKETS && _size < _buckets.length / 2) {
+            resize(_buckets.length / 2);
+        }
+        return handle;
+    }
+
+    @Override
+    public int size() {
+        return _size;
+    }
+
+    @Override
+    public void clear() {
+        allocate(MIN_BUCKETS);
+        _currentDay = 0;
+        _size = 0;
+    }
+
+    /**
+     * Returns the number of buckets currently used by the calendar.
+     *
+     * @return number of buckets.
+     */
+    public int getBucketCount() {
+        return _buckets.length;
+    }
+
+    /**
+     * Returns the width of each day in the calendar.
+     *
+     * @return day width in simulation time.
+     */
+    public double getDayWidth() {
+        return _width;
+    }
+
+    /**
+     * Finds the bucket holding the earliest event, and moves the current day forward to that event's day.
+     *
+     * @return bucket index, or -1 if the calendar is empty.
+     */
+    private int findNextBucket() {
+        if (_size == 0) {
+            return -1;
+        }
+
+        // Walk at most one year from the current day, the first event that belongs to the day we are looking at is
+        // the earliest event in the calendar.
+        for (int i = 0; i < _buckets.length; ++i) {
+            long day = _currentDay + i;
+            int bucket = bucketOf(day);
+            int count = _counts[bucket];
+            if (count > 0 && dayOf(_buckets[bucket][count - 1]._simSlot._msek) == day) {
+                _currentDay = day;
+                return bucket;
+            }
+        }
+
+        // Nothing within a year, the events are sparse. Fall back to a direct search among the earliest event in
+        // each bucket.
+        int best = -1;
+        for (int bucket = 0; bucket < _buckets.length; ++bucket) {
+            int count = _counts[bucket];
+            if (count > 0 && (best < 0 || _buckets[bucket][count - 1]._simSlot.compareTo(_buckets[best][_counts[best] - 1]._simSlot) < 0)) {
+                best = bucket;
+            }
+        }
+        _currentDay = dayOf(_buckets[best][_counts[best] - 1]._simSlot._msek);
+        return best;
+    }
+
+    /**
+     * Inserts an event into a bucket, keeping the bucket sorted in descending order.
+     */
+    private void insert(int bucket, EventHandle handle) {
+        EventHandle[] events = _buckets[bucket];
+        int count = _counts[bucket];
+        if (count == events.length) {
+            events = Arrays.copyOf(events, Math.max(4, count * 2));
+            _buckets[bucket] = events;
+        }
+
+        // Events are mostly scheduled later than the ones already present, so search from the front where the
+        // latest events are.
+        int i = 0;
+        while (i < count && events[i]._simSlot.compareTo(handle._simSlot) > 0) {
+            ++i;
+        }
+        System.arraycopy(events, i, events, i + 1, count - i);
+        events[i] = handle;
+        _counts[bucket] = count + 1;
+    }
+
+    /**
+     * Changes the number of buckets, and re-estimates the day width from the next few events.
+     *
+     * @param bucketCount new number of buckets.
+     */
+    private void resize(int bucketCount) {
+        _resizing = true;
+
+        // Take out all events in order. The first ones are used to estimate the width.
+        EventHandle[] events = new EventHandle[_size];
+        int n = 0;
+        EventHandle handle;
+        while ((handle = poll()) != null) {
+            events[n++] = handle;
+        }
+
+        _width = estimateWidth(events, n);
+        allocate(bucketCount);
+        for (int i = 0; i < n; ++i) {
+            add(events[i]);
+        }
+
+        _resizing = false;
+    }
+
+    /**
+     * Estimates a good day width from the spacing between the next events, as described by Brown. Separations that
+     * are much larger than the average are ignored, so a few far away events do not stretch the days.
+     *
+     * @param events events sorted in the order they will be executed.
+     * @param count  number of events in the array.
+     * @return new day width, or the current width if there is not enough information.
+     */
+    private double estimateWidth(EventHandle[] events, int count) {
+        int samples = Math.min(count, WIDTH_SAMPLES);
+        if (samples < 2) {
+            return _width;
+        }
+
+        double first = events[0]._simSlot._msek;
+        double last = events[samples - 1]._simSlot._msek;
+        double average = (last - first) / (samples - 1);
+
+        double total = 0;
+        int used = 0;
+        for (int i = 1; i < samples; ++i) {
+            double separation = events[i]._simSlot._msek - events[i - 1]._simSlot._msek;
+            if (separation <= 2 * average) {
+                total += separation;
+                used += 1;
+            }
+        }
+
+        double width = used > 0 ? 3 * total / used : 0;
+        return width > 0 ? width : _width;
+    }
+
+    private void allocate(int bucketCount) {
+        _buckets = new EventHandle[bucketCount][];
+        _counts = new int[bucketCount];
+        for (int i = 0; i < bucketCount; ++i) {
+            _buckets[i] = new EventHandle[4];
+        }
+    }
+
+    private long dayOf(double time) {
+        return (long) Math.floor(time / _width);
+    }
+
+    private int bucketOf(long day) {
+        return (int) Math.floorMod(day, (long) _buckets.length);
+    }
+}
@@ -0,0 +1,110 @@
+package Sim;
+
+/**
+ * Controlled delay (RFC 8289). Packets are dropped at the head of the queue once every packet has been queued for
+ * longer than the target for a whole interval, and then ever more often, at intervals shrinking with the square root
+ * of the number of drops, until a packet gets through in less than the target again.
+ * <p>
+ * The RFC does not drop when less than an MTU is left in the queue. A queued link decides when a packet arrives, before
+ * the packets behind it are known, so that check is left out; a queue that short has a sojourn time under the target
+ * at any sensible bit rate anyway.
+ */
+public class CoDel extends QueueDiscipline {
+    public static final double DEFAULT_TARGET = 5;
+    public static final double DEFAULT_INTERVAL = 100;
+
+    private final double _target;
+    private final double _interval;
+
+    // Time the sojourn time may stay above the target until dropping starts, or 0 if it is below.
+    private double _firstAboveTime = 0;
+
+    // Time of the next drop while dropping.
+    private double _dropNext = 0;
+
+    // Drops since dropping started, and at the end of the previous dropping state.
+    private int _count = 0;
+    private int _lastCount = 0;
+
+    private boolean _dropping = false;
+
+    /**
+     * Instantiates CoDel with the target of 5 ms and interval of 100 ms the RFC recommends.
+     */
+    public CoDel() {
+        this(DEFAULT_TARGET, DEFAULT_INTERVAL);
+    }
+
+    /**
+     * Instantiates CoDel.
+     *
+     * @param target   acceptable time for packets to be queued.
+     * @param interval time the target may be exceeded before dropping starts, in the order of a round trip time.
+     */
+    public CoDel(double target, double interval) {
+        if (target <= 0 || interval <= 0) {
+            throw new IllegalArgumentException("CoDel target and interval must be positive: " + target + ", " + interval);
+        }
+        _target = target;
+        _interval = interval;
+    }
+
+    public boolean isDropping() {
+        return _dropping;
+    }
+
+    // A drop at the head takes no time to transmit, so the next packet reaches the head at the same time and is asked
+    // next, which is the loop dropping several packets in one dequeue in the RFC.
+    @Override
+    protected boolean dropAtHead(double now, double sojourn) {
+        boolean okToDrop = isAboveTarget(now, sojourn);
+        if (_dropping) {
+            if (!okToDrop) {
+                _dropping = false;
+                return false;
+            }
+            if (now < _dropNext) {
+                return false;
+            }
+            _count += 1;
+            _dropNext = controlLaw(_dropNext, _count);
+            return true;
+        }
+        if (!okToDrop) {
+            return false;
+        }
+        _dropping = true;
+        int delta = _count - _lastCount;
+        _count = delta > 1 && now - _dropNext < 16 * _interval ? delta : 1;
+        _dropNext = controlLaw(now, _count);
+        _lastCount = _count;
+        return true;
+    }
+
+    private boolean isAboveTarget(double now, double sojourn) {
+        if (sojourn < _target) {
+            _firstAboveTime = 0;
+            return false;
+        }
+        if (_firstAboveTime == 0) {
+            _firstAboveTime = now + _interval;
+            return false;
+        }
+        return now >= _firstAboveTime;
+    }
+
+    private double controlLaw(double time, int count) {
+        return time + _interval / Math.sqrt(count);
+    }
+
+    @Override
+    protected QueueDiscipline copy() {
+        var copy = new CoDel(_target, _interval);
+        copy._firstAboveTime = _firstAboveTime;
+        copy._dropNext = _dropNext;
+        copy._count = _count;
+        copy._lastCount = _lastCount;
+        copy._dropping = _dropping;
+        return copy;
+    }
+}
@@ -0,0 +1,101 @@
+package Sim;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Table of event handlers for one kind of entity, indexed by {@link EventTypes} id, so receiving an event costs one
+ * array read instead of a chain of {@code instanceof} checks.
+ * <p>
+ * Handlers are registered for classes, and an event is handled by the handler of the most specific registered class
+ * it is an instance of, so a handler for {@code IPv6Tunneled} takes precedence over one for {@code Message} whatever
+ * the order of registration. Which handler an event class gets is worked out the first time the class is dispatched,
+ * and kept in the table from then on. Events without a handler are ignored.
+ * <p>
+ * Dispatchers are meant to be shared by all entities of a class through a static field, and may be used from several
+ * threads at once. Register all handlers before the first event is dispatched.
+ *
+ * @param <T> type of the entities the handlers are called on.
+ */
+public final class EventDispatcher<T extends SimEnt> {
+    /**
+     * Handles one class of events for an entity.
+     */
+    public interface Handler<T, E extends Event> {
+        void handle(T target, SimEnt src, E event);
+    }
+
+    private static final Handler<Object, Event> IGNORE = (target, src, event) -> {
+    };
+
+    private final List<Class<?>> _types = new ArrayList<>();
+    private final List<Handler<T, Event>> _handlers = new ArrayList<>();
+
+    // Resolved handlers by event type id, null where the type has not been resolved yet. Only replaced as a whole, so
+    // readers never see a partly filled table.
+    @SuppressWarnings("unchecked")
+    private volatile Handler<T, Event>[] _table = (Handler<T, Event>[]) new Handler<?, ?>[0];
+
+    /**
+     * Registers the handler for a class of events, and for subclasses that have no handler of their own.
+     *
+     * @param type    event class.
+     * @param handler handler to call.
+     * @return this dispatcher, so registrations can be chained.
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized <E extends Event> EventDispatcher<T> on(Class<E> type, Handler<T, ? super E> handler) {
+        int index = _types.indexOf(type);
+        if (index >= 0) {
+            _handlers.set(index, (Handler<T, Event>) handler);
+        } else {
+            _types.add(type);
+            _handlers.add((Handler<T, Event>) handler);
+        }
+        _table = Arrays.copyOf(_table, 0);
+        return this;
+    }
+
+    /**
+     * Calls the handler for an event.
+     *
+     * @param target entity receiving the event.
+     * @param src    entity that sent the event.
+     * @param event  the event.
+     */
+    public void dispatch(T target, SimEnt src, Event event) {
+        int id = EventTypes.of(event);
+        var table = _table;
+        Handler<T, Event> handler;
+        if (id >= table.length || (handler = table[id]) == null) {
+            handler = resolve(id);
+        }
+        handler.handle(target, src, event);
+    }
+
+    // Finds the handler of the most specific registered class an event type belongs to, and stores it in the table.
+    @SuppressWarnings("unchecked")
+    private synchronized Handler<T, Event> resolve(int id) {
+        var type = EventTypes.type(id);
+        Class<?> best = null;
+        var handler = (Handler<T, Event>) (Handler<?, Event>) IGNORE;
+        for (int i = 0; i < _types.size(); ++i) {
+            var candidate = _types.get(i);
+            if (candidate.isAssignableFrom(type) && (best == null || best.isAssignableFrom(candidate))) {
+                best = candidate;
+                handler = _handlers.get(i);
+            }
+        }
+
+        var table = _table;
+        if (id >= table.length) {
+            table = Arrays.copyOf(table, Math.max(id + 1, EventTypes.count()));
+        } else {
+            table = table.clone();
+        }
+        table[id] = handler;
+        _table = table;
+        return handler;
+    }
+}
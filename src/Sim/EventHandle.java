@@ -3,15 +3,52 @@ package Sim;
 // This class holds information about the simulation entity (like e.g. a node, switch or router) that triggered
 // the even (like sending a message,timer event etc.), the target (receiver of the event) and information in the event
 // Finally the time (simSlot) is the time when the target should have the event.
+// Handles created through SimEngine.schedule are owned by the engine and recycled once they have been dispatched, so
+// the fields are only written by the engine.
 public class EventHandle {
-    public final SimEnt _registrator, _target;
-    public final Event _event;
+    public SimEnt _registrator, _target;
+    public Event _event;
     public final SimTimeSlot _simSlot;
 
+    // If the handle should be returned to the engine's pool after it has been dispatched.
+    boolean _pooled = false;
+
+    // Set while the event is in the engine's queue.
+    boolean _pending = false;
+
+    // Set when the event has been erased. Erased events stay in the queue and are skipped when they come up.
+    boolean _cancelled = false;
+
     EventHandle(SimEnt registrator, SimEnt target, Event event, SimTimeSlot simSlot) {
         _registrator = registrator;
         _target = target;
         _event = event;
         _simSlot = simSlot;
     }
+
+    // Reuses a recycled handle for a new event.
+    void set(SimEnt registrator, SimEnt target, Event event, double msek, long resolver) {
+        _registrator = registrator;
+        _target = target;
+        _event = event;
+        _simSlot.set(msek, resolver);
+        _cancelled = false;
+    }
+
+    public boolean isCancelled() {
+        return _cancelled;
+    }
+
+    // Returns true if the handle still holds the given event and it is waiting to be dispatched. Handles from the pool
+    // are reused for other events once dispatched, so holders of such a handle check for their event.
+    boolean isPending(Event event) {
+        return _pending && !_cancelled && _event == event;
+    }
+
+    // Drops the references held by a handle that is put back in the pool.
+    void clear() {
+        _registrator = null;
+        _target = null;
+        _event = null;
+    }
 }
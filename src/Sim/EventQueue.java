@@ -0,0 +1,71 @@
+package Sim;
+
+/**
+ * Pending event list used by the {@link SimEngine}.
+ * <p>
+ * Implementations must hand out events in the order defined by {@link SimTimeSlot#compareTo}, that is by time first
+ * and by registration order for events scheduled at the same time. This keeps runs reproducible regardless of which
+ * queue is selected.
+ * <p>
+ * There is no way to take out a single event: erased events stay in the queue as cancelled handles until they come up
+ * or {@link #removeCancelled} drops them all at once, which keeps cancelling O(1).
+ */
+public interface EventQueue {
+    /**
+     * Adds a scheduled event to the queue.
+     *
+     * @param handle event to add.
+     */
+    void add(EventHandle handle);
+
+    /**
+     * Returns the next event without removing it.
+     *
+     * @return the earliest event, or null if the queue is empty.
+     */
+    EventHandle peek();
+
+    /**
+     * Removes and returns the next event.
+     *
+     * @return the earliest event, or null if the queue is empty.
+     */
+    EventHandle poll();
+
+    /**
+     * Removes all events that have been cancelled from the queue. The default implementation takes out every event
+     * and adds back the ones that are still live, queues that can filter in place should override it.
+     *
+     * @return number of events removed.
+     */
+    default int removeCancelled() {
+        EventHandle[] live = new EventHandle[size()];
+        int count = 0;
+        int removed = 0;
+        EventHandle handle;
+        while ((handle = poll()) != null) {
+            if (handle.isCancelled()) {
+                handle._pending = false;
+                removed += 1;
+            } else {
+                live[count++] = handle;
+            }
+        }
+        for (int i = 0; i < count; ++i) {
+            add(live[i]);
+        }
+        return removed;
+    }
+
+    /**
+     * Returns the number of events in the queue.
+     *
+     * @return number of events.
+     */
+    int size();
+
+    /**
+     * Removes all events from the queue.
+     */
+    void clear();
+}
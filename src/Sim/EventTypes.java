@@ -0,0 +1,62 @@
+package Sim;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Small integer ids for event classes, handed out the first time a class is seen. Ids are dense and start at zero, so
+ * they can index arrays, and a lookup after the first one is a {@link ClassValue} read without any allocation.
+ * <p>
+ * Ids depend on the order classes are first looked up in, they are stable within a run but not between runs. Anything
+ * written to a file should carry the class name along with the id.
+ */
+public final class EventTypes {
+    private static final List<Class<?>> _types = new ArrayList<>();
+
+    // Ids by class, the ClassValue may compute a value for the same class on two threads at once and both must agree.
+    private static final Map<Class<?>, Integer> _assigned = new HashMap<>();
+
+    private static final ClassValue<Integer> _ids = new ClassValue<>() {
+        @Override
+        protected Integer computeValue(Class<?> type) {
+            synchronized (_types) {
+                return _assigned.computeIfAbsent(type, key -> {
+                    _types.add(key);
+                    return _types.size() - 1;
+                });
+            }
+        }
+    };
+
+    private EventTypes() {
+    }
+
+    public static int of(Event event) {
+        return _ids.get(event.getClass());
+    }
+
+    public static int of(Class<? extends Event> type) {
+        return _ids.get(type);
+    }
+
+    /**
+     * Returns the class with an id.
+     *
+     * @param id id handed out by {@link #of}.
+     * @return the event class.
+     */
+    public static Class<?> type(int id) {
+        synchronized (_types) {
+            return _types.get(id);
+        }
+    }
+
+    // Number of ids handed out so far.
+    public static int count() {
+        synchronized (_types) {
+            return _types.size();
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package Sim;
+
+import Sim.Traffic.TrafficGenerator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Background traffic sent as a rate rather than packet by packet. The flow takes the mean rate and variation of a
+ * traffic generator and follows the route packets to its destination would take when it starts, through the routers'
+ * tables and the binding of a home agent. Along the route it takes capacity from each {@link QueuedLink}, and loses
+ * what a lossy link would drop or an overloaded link cannot carry, see {@link FluidModel}. It schedules no events
+ * while it runs, so a background node sending millions of packets costs two events.
+ * <p>
+ * The route is not followed again when nodes move, so background flows are meant for nodes that stay where they are.
+ */
+public final class FluidFlow {
+    // Most links a route may cross, more means the routers send packets in a loop.
+    private static final int MAX_HOPS = 256;
+
+    // A link on the route and the end the flow enters it from.
+    record Hop(Link link, SimEnt from) {
+    }
+
+    private final NetworkAddr _destination;
+
+    // Bits and packets sent per millisecond, and the squared coefficients of variation of the times between packets
+    // and of their sizes.
+    final double _bitRate;
+    final double _packetRate;
+    final double _intervalVariation;
+    final double _packetSizeVariation;
+
+    // The route, empty if the destination cannot be reached, and the rate of the flow entering each link of it.
+    final List<Hop> _route;
+    final double[] _inputs;
+
+    // Rate the flow reaches its destination at, in bits per millisecond.
+    double _output = 0;
+
+    // Bits and packets sent and bits delivered up to the time they were last accounted for.
+    private double _sentBits = 0;
+    private double _sentPackets = 0;
+    private double _deliveredBits = 0;
+    private double _accountedTime;
+    private boolean _active = false;
+
+    /**
+     * Creates a flow from a node with the rate of its traffic generator.
+     *
+     * @param source      node sending the flow, connected to its link.
+     * @param destination address the flow is sent to.
+     * @param generator   traffic generator the rate and variation are taken from.
+     */
+    FluidFlow(Node source, NetworkAddr destination, TrafficGenerator generator) {
+        _destination = destination;
+        double interval = generator.getMeanInterval();
+        if (!(interval > 0)) {
+            throw new IllegalArgumentException("A fluid flow needs a positive mean interval: " + interval);
+        }
+        _packetRate = 1 / interval;
+        _bitRate = generator.getMeanPacketSize() * 8 * _packetRate;
+        _intervalVariation = generator.getIntervalVariation();
+        _packetSizeVariation = generator.getPacketSizeVariation();
+        _route = route(source._peer, source, destination);
+        _inputs = new double[_route.size()];
+    }
+
+    // Follows the route from a link through the routers, tunneling to the care of address where a home agent has a
+    // binding for the destination, until it reaches an end that is not a router.
+    private static List<Hop> route(SimEnt first, SimEnt source, NetworkAddr destination) {
+        var route = new ArrayList<Hop>();
+        var target = destination;
+        var from = source;
+        var next = first;
+        while (next instanceof Link link) {
+            if (route.size() == MAX_HOPS) {
+                throw new IllegalStateException("Routing loop on the way to " + destination);
+            }
+            route.add(new Hop(link, from));
+            var end = from == link._connectorA ? link._connectorB : link._connectorA;
+            if (!(end instanceof Router router)) {
+                return route;
+            }
+            var careOfAddress = router.lookupBinding(target.networkId(), target.nodeId());
+            if (careOfAddress != null) {
+                target = careOfAddress;
+            }
+            from = router;
+            next = router.lookupRoute(target.networkId());
+        }
+        // No route, nothing arrives.
+        return List.of();
+    }
+
+    public NetworkAddr getDestination() {
+        return _destination;
+    }
+
+    /**
+     * Returns the rate the flow is sent at.
+     *
+     * @return the rate in bits per second.
+     */
+    public double getBitRate() {
+        return _bitRate * 1000;
+    }
+
+    /**
+     * Returns the rate the flow currently reaches its destination at, after what the links on the way lose.
+     *
+     * @return the rate in bits per second, 0 when the flow is not running.
+     */
+    public double getThroughput() {
+        return _active ? _output * 1000 : 0;
+    }
+
+    /**
+     * Returns the links on the route of the flow, in order.
+     *
+     * @return the links, empty if the destination cannot be reached.
+     */
+    public List<Link> getRoute() {
+        var links = new ArrayList<Link>(_route.size());
+        for (var hop : _route) {
+            links.add(hop.link());
+        }
+        return Collections.unmodifiableList(links);
+    }
+
+    public boolean isActive() {
+        return _active;
+    }
+
+    /**
+     * Returns the number of packets the flow stands for up to the time it was last accounted for, when it started,
+     * stopped or another flow did. Fractions of a packet are kept.
+     *
+     * @return the packets sent.
+     */
+    public double getSentPackets() {
+        return _sentPackets;
+    }
+
+    public double getSentBytes() {
+        return _sentBits / 8;
+    }
+
+    public double getDeliveredBytes() {
+        return _deliveredBits / 8;
+    }
+
+    public double getLostBytes() {
+        return (_sentBits - _deliveredBits) / 8;
+    }
+
+    // Counts what was sent and delivered at the current rates since the last time, and marks the flow as running.
+    void account(double now, boolean active) {
+        if (_active) {
+            _sentBits += _bitRate * (now - _accountedTime);
+            _sentPackets += _packetRate * (now - _accountedTime);
+            _deliveredBits += _output * (now - _accountedTime);
+        }
+        _accountedTime = now;
+        _active = active;
+    }
+}
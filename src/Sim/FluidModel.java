@@ -0,0 +1,125 @@
+package Sim;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Carries the fluid flows of an engine over its links. Whenever a flow starts or stops, the rates of all running flows
+ * are worked out again, link by link along their routes: a flow enters a link at the rate it left the one before, a
+ * lossy link passes the share it does not drop, and a {@link QueuedLink} whose flows together exceed its bit rate
+ * passes each the same share of it. Flows sharing links depend on each other, so this is repeated until the rates
+ * settle. Rates change at once all along the route, the time the fluid takes to get there is left out.
+ * <p>
+ * Each queued link is then told the load of the fluid on each direction, and how much the times between its packets
+ * and their sizes vary, as squared coefficients of variation merged over the flows weighted by their packet rates.
+ * The link works out from these how long packets sent into it wait, see {@link QueuedLink}. Packets take no part in
+ * how the fluid flows share a link.
+ * <p>
+ * Fluid flows are run by a sequential {@link SimEngine}, logical processes of a parallel engine do not share them.
+ */
+final class FluidModel {
+    // Passes over the flows before the rates are taken as settled, and the change in rate that counts as settled.
+    private static final int MAX_PASSES = 64;
+    private static final double EPSILON = 1e-9;
+
+    private final List<FluidFlow> _flows = new ArrayList<>();
+
+    // Queued link directions that carried fluid after the last update, so they are cleared when their flows stop.
+    private List<FluidFlow.Hop> _loaded = List.of();
+
+    void start(FluidFlow flow, double now) {
+        for (var running : _flows) {
+            running.account(now, true);
+        }
+        flow.account(now, true);
+        _flows.add(flow);
+        update();
+    }
+
+    void stop(FluidFlow flow, double now) {
+        for (var running : _flows) {
+            running.account(now, running != flow);
+        }
+        _flows.remove(flow);
+        flow._output = 0;
+        update();
+    }
+
+    // Totals of the flows entering a link direction.
+    private static final class Load {
+        double bits;
+        double packets;
+        double intervalVariation;
+        double squaredSizes;
+    }
+
+    private void update() {
+        var loads = new HashMap<FluidFlow.Hop, Load>();
+        for (int pass = 0; pass < MAX_PASSES; ++pass) {
+            loads.clear();
+            for (var flow : _flows) {
+                for (int k = 0; k < flow._route.size(); ++k) {
+                    var load = loads.computeIfAbsent(flow._route.get(k), hop -> new Load());
+                    double packets = flow._inputs[k] / flow._bitRate * flow._packetRate;
+                    double size = flow._bitRate / flow._packetRate;
+                    load.bits += flow._inputs[k];
+                    load.packets += packets;
+                    load.intervalVariation += packets * flow._intervalVariation;
+                    load.squaredSizes += packets * size * size * (1 + flow._packetSizeVariation);
+                }
+            }
+
+            boolean settled = true;
+            for (var flow : _flows) {
+                double rate = flow._bitRate;
+                for (int k = 0; k < flow._route.size(); ++k) {
+                    settled &= Math.abs(flow._inputs[k] - rate) <= EPSILON * flow._bitRate;
+                    flow._inputs[k] = rate;
+                    rate *= passed(flow._route.get(k), loads.get(flow._route.get(k)));
+                }
+                flow._output = flow._route.isEmpty() ? 0 : rate;
+            }
+            if (settled && pass > 0) {
+                break;
+            }
+        }
+
+        var loaded = new ArrayList<FluidFlow.Hop>();
+        for (var entry : loads.entrySet()) {
+            if (entry.getKey().link() instanceof QueuedLink link) {
+                setFluid(link, entry.getKey().from(), entry.getValue());
+                loaded.add(entry.getKey());
+            }
+        }
+        for (var hop : _loaded) {
+            if (!loads.containsKey(hop)) {
+                ((QueuedLink) hop.link()).setFluid(hop.from(), 0, 0, 0, 0);
+            }
+        }
+        _loaded = loaded;
+    }
+
+    // Share of the fluid entering a link that comes out of it.
+    private static double passed(FluidFlow.Hop hop, Load load) {
+        if (hop.link() instanceof QueuedLink link) {
+            double capacity = link.getBitRate() / 1000;
+            return load.bits > capacity ? capacity / load.bits : 1;
+        }
+        if (hop.link().getModel() instanceof LossyModel model) {
+            return 1 - model.dropProbability();
+        }
+        return 1;
+    }
+
+    private static void setFluid(QueuedLink link, SimEnt from, Load load) {
+        if (load.packets == 0) {
+            link.setFluid(from, 0, 0, 0, 0);
+            return;
+        }
+        double capacity = link.getBitRate() / 1000;
+        double meanSize = load.bits / load.packets;
+        link.setFluid(from, load.bits / capacity, load.intervalVariation / load.packets,
+                Math.max(0, load.squaredSizes / load.packets / (meanSize * meanSize) - 1), meanSize / capacity);
+    }
+}
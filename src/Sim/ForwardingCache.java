@@ -0,0 +1,221 @@
+package Sim;
+
+import java.util.Arrays;
+
+/**
+ * Bounded cache from a destination address to the forwarding decision a router made for it: the care of address to
+ * tunnel to, if any, and the link to send on.
+ * <p>
+ * Entries are kept in a fixed number of slots and evicted with the CLOCK algorithm, an approximation of least recently
+ * used. Each hit sets a reference bit, and when a slot is needed the clock hand skips, and clears, entries that have
+ * been referenced since it last passed. Slots are found through an open addressing index keyed by the hash of the
+ * address, and looking up a destination by its fields does not allocate.
+ * <p>
+ * A decision to tunnel holds until the binding it was made from expires. An entry looked up at or after that time is a
+ * miss, so a router that has not yet removed the expired binding forwards the same way whether or not it was cached.
+ */
+public class ForwardingCache {
+    /**
+     * A cached forwarding decision.
+     *
+     * @param destination   destination of the packets.
+     * @param careOfAddress address packets are tunneled to, or null if they are sent as they are.
+     * @param link          link to send the packets on, or null if there was no route.
+     */
+    public record Entry(NetworkAddr destination, NetworkAddr careOfAddress, SimEnt link) {
+    }
+
+    // Cached entries, in the order the clock hand visits them.
+    private final Entry[] _entries;
+
+    // Set when an entry has been hit since the clock hand last passed it.
+    private final boolean[] _referenced;
+
+    // Time each entry stops holding, or infinity if it holds until the cache is cleared.
+    private final double[] _expires;
+
+    // Open addressing table from the hash of a destination to its slot plus one, zero means empty.
+    private final int[] _index;
+    private final int _mask;
+
+    private int _count = 0;
+    private int _hand = 0;
+
+    // Statistics.
+    private long _hits = 0;
+    private long _misses = 0;
+    private long _evictions = 0;
+    private long _invalidations = 0;
+
+    /**
+     * Creates an empty cache.
+     *
+     * @param capacity maximum number of destinations to cache.
+     */
+    public ForwardingCache(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("a forwarding cache needs room for at least one entry");
+        }
+        _entries = new Entry[capacity];
+        _referenced = new boolean[capacity];
+        _expires = new double[capacity];
+
+        // Keep the index at most half full, so probe sequences stay short.
+        int size = Integer.highestOneBit(capacity * 2 - 1) * 2;
+        _index = new int[size];
+        _mask = size - 1;
+    }
+
+    /**
+     * Looks up the decision cached for a destination.
+     *
+     * @param destination destination address.
+     * @param now         current time, entries that expired by then are misses.
+     * @return the cached entry, or null on a miss.
+     */
+    public Entry get(NetworkAddr destination, double now) {
+        return get(destination.networkId(), destination.nodeId(), destination.getPrefixBits(), now);
+    }
+
+    /**
+     * Looks up the decision cached for a destination given by its fields, without needing an address object.
+     *
+     * @param networkId  network id of the destination.
+     * @param nodeId     node id of the destination.
+     * @param prefixBits prefix length of the destination.
+     * @param now        current time, entries that expired by then are misses.
+     * @return the cached entry, or null on a miss.
+     */
+    public Entry get(long networkId, long nodeId, int prefixBits, double now) {
+        int slot = find(networkId, nodeId, prefixBits);
+        if (slot < 0 || _expires[slot] <= now) {
+            _misses += 1;
+            return null;
+        }
+        _referenced[slot] = true;
+        _hits += 1;
+        return _entries[slot];
+    }
+
+    // Returns the slot of a destination, or -1 if it is not cached.
+    private int find(long networkId, long nodeId, int prefixBits) {
+        int i = NetworkAddr.hash(networkId, nodeId, prefixBits) & _mask;
+        int slot;
+        while ((slot = _index[i]) != 0) {
+            var destination = _entries[slot - 1].destination();
+            if (destination.is(networkId, nodeId) && destination.getPrefixBits() == prefixBits) {
+                return slot - 1;
+            }
+            i = (i + 1) & _mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Caches the decision for a destination that missed, replacing an expired entry for it or evicting another entry if
+     * the cache is full.
+     *
+     * @param destination   destination address.
+     * @param careOfAddress address to tunnel to, or null.
+     * @param link          link to send on, or null.
+     * @param expires       time the decision stops holding, or infinity.
+     * @return the new entry.
+     */
+    public Entry put(NetworkAddr destination, NetworkAddr careOfAddress, SimEnt link, double expires) {
+        var entry = new Entry(destination, careOfAddress, link);
+        int slot = find(destination.networkId(), destination.nodeId(), destination.getPrefixBits());
+        if (slot >= 0) {
+            _entries[slot] = entry;
+            _expires[slot] = expires;
+            return entry;
+        }
+
+        if (_count < _entries.length) {
+            slot = _count++;
+        } else {
+            while (_referenced[_hand]) {
+                _referenced[_hand] = false;
+                _hand = (_hand + 1) % _entries.length;
+            }
+            slot = _hand;
+            _hand = (_hand + 1) % _entries.length;
+            unindex(slot);
+            _evictions += 1;
+        }
+
+        _entries[slot] = entry;
+        _referenced[slot] = false;
+        _expires[slot] = expires;
+
+        int i = destination.hashCode() & _mask;
+        while (_index[i] != 0) {
+            i = (i + 1) & _mask;
+        }
+        _index[i] = slot + 1;
+        return entry;
+    }
+
+    /**
+     * Drops all entries, called whenever the routes or bindings they were computed from change.
+     */
+    public void clear() {
+        if (_count == 0) {
+            return;
+        }
+        Arrays.fill(_entries, 0, _count, null);
+        Arrays.fill(_referenced, false);
+        Arrays.fill(_index, 0);
+        _count = 0;
+        _hand = 0;
+        _invalidations += 1;
+    }
+
+    public int size() {
+        return _count;
+    }
+
+    public int getCapacity() {
+        return _entries.length;
+    }
+
+    public long getHits() {
+        return _hits;
+    }
+
+    public long getMisses() {
+        return _misses;
+    }
+
+    public long getEvictions() {
+        return _evictions;
+    }
+
+    // Number of times a non-empty cache has been cleared.
+    public long getInvalidations() {
+        return _invalidations;
+    }
+
+    // Removes a slot from the index, shifting later entries of the same probe sequence back so lookups still find them.
+    private void unindex(int slot) {
+        int i = _entries[slot].destination().hashCode() & _mask;
+        while (_index[i] != slot + 1) {
+            i = (i + 1) & _mask;
+        }
+
+        int j = i;
+        while (true) {
+            j = (j + 1) & _mask;
+            if (_index[j] == 0) {
+                break;
+            }
+            int home = _entries[_index[j] - 1].destination().hashCode() & _mask;
+            // Move the entry at j into the hole at i unless its home lies cyclically in (i, j].
+            boolean between = i <= j ? (i < home && home <= j) : (i < home || home <= j);
+            if (!between) {
+                _index[i] = _index[j];
+                i = j;
+            }
+        }
+        _index[i] = 0;
+    }
+}
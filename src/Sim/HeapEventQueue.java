@@ -0,0 +1,189 @@
+package Sim;
+
+import java.util.Arrays;
+
+/**
+ * Event queue backed by an implicit 4-ary min-heap.
+ * <p>
+ * The keys are kept in primitive arrays next to the handles, so comparisons while sifting never have to follow a
+ * pointer to the handle or its time slot. Peeking at the next event is O(1), adding and polling are O(log n) with a
+ * shallower tree than a binary heap.
+ */
+public class HeapEventQueue implements EventQueue {
+    // Number of children for each node in the heap.
+    private static final int ARITY = 4;
+
+    // Time each event should be executed at.
+    private double[] _times;
+
+    // Tie breaker for events executed at the same time.
+    private long[] _resolvers;
+
+    // The events themselves, stored at the same index as their keys.
+    private EventHandle[] _handles;
+
+    // Number of events in the heap.
+    private int _size = 0;
+
+    /**
+     * Creates a new empty heap with a default capacity.
+     */
+    public HeapEventQueue() {
+        this(64);
+    }
+
+    /**
+     * Creates a new empty heap.
+     *
+     * @param initialCapacity number of events the heap can hold before it has to grow.
+     */
+    public HeapEventQueue(int initialCapacity) {
+        int capacity = Math.max(initialCapacity, 1);
+        _times = new double[capacity];
+        _resolvers = new long[capacity];
+        _handles = new EventHandle[capacity];
+    }
+
+    @Override
+    public void add(EventHandle handle) {
+        if (_size == _handles.length) {
+            grow();
+        }
+        siftUp(_size++, handle._simSlot._msek, handle._simSlot._resolver, handle);
+    }
+
+    @Override
+    public EventHandle peek() {
+        return _size == 0 ? null : _handles[0];
+    }
+
+    @Override
+    public EventHandle poll() {
+        if (_size == 0) {
+            return null;
+        }
+        EventHandle first = _handles[0];
+        removeAt(0);
+        return first;
+    }
+
+    /**
+     * Filters out the cancelled events in place and rebuilds the heap bottom-up, which is O(n).
+     */
+    @Override
+    public int removeCancelled() {
+        int count = 0;
+        for (int i = 0; i < _size; ++i) {
+            EventHandle handle = _handles[i];
+            if (handle.isCancelled()) {
+                handle._pending = false;
+            } else {
+                set(count++, _times[i], _resolvers[i], handle);
+            }
+        }
+        Arrays.fill(_handles, count, _size, null);
+        int removed = _size - count;
+        _size = count;
+
+        for (int i = (_size - 2) / ARITY; i >= 0; --i) {
+            siftDown(i, _times[i], _resolvers[i], _handles[i]);
+        }
+        return removed;
+    }
+
+    @Override
+    public int size() {
+        return _size;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(_handles, 0, _size, null);
+        _size = 0;
+    }
+
+    /**
+     * Removes the element at a position in the heap, and moves the last element into its place.
+     *
+     * @param index position to remove.
+     */
+    private void removeAt(int index) {
+        int last = --_size;
+        double time = _times[last];
+        long resolver = _resolvers[last];
+        EventHandle handle = _handles[last];
+        _handles[last] = null;
+
+        if (index == last) {
+            return;
+        }
+
+        siftDown(index, time, resolver, handle);
+        if (_handles[index] == handle) {
+            siftUp(index, time, resolver, handle);
+        }
+    }
+
+    /**
+     * Moves a key towards the root until its parent is smaller, and stores it at the final position.
+     */
+    private void siftUp(int index, double time, long resolver, EventHandle handle) {
+        while (index > 0) {
+            int parent = (index - 1) / ARITY;
+            if (!less(time, resolver, _times[parent], _resolvers[parent])) {
+                break;
+            }
+            set(index, _times[parent], _resolvers[parent], _handles[parent]);
+            index = parent;
+        }
+        set(index, time, resolver, handle);
+    }
+
+    /**
+     * Moves a key towards the leaves until all its children are larger, and stores it at the final position.
+     */
+    private void siftDown(int index, double time, long resolver, EventHandle handle) {
+        while (true) {
+            int firstChild = index * ARITY + 1;
+            if (firstChild >= _size) {
+                break;
+            }
+
+            // Find the smallest child.
+            int smallest = firstChild;
+            int end = Math.min(firstChild + ARITY, _size);
+            for (int child = firstChild + 1; child < end; ++child) {
+                if (less(_times[child], _resolvers[child], _times[smallest], _resolvers[smallest])) {
+                    smallest = child;
+                }
+            }
+
+            if (!less(_times[smallest], _resolvers[smallest], time, resolver)) {
+                break;
+            }
+            set(index, _times[smallest], _resolvers[smallest], _handles[smallest]);
+            index = smallest;
+        }
+        set(index, time, resolver, handle);
+    }
+
+    private void set(int index, double time, long resolver, EventHandle handle) {
+        _times[index] = time;
+        _resolvers[index] = resolver;
+        _handles[index] = handle;
+    }
+
+    /**
+     * Same ordering as SimTimeSlot.compareTo, but on the primitive keys.
+     */
+    private static boolean less(double lhsTime, long lhsResolver, double rhsTime, long rhsResolver) {
+        return lhsTime < rhsTime || (lhsTime == rhsTime && lhsResolver < rhsResolver);
+    }
+
+    private void grow() {
+        int capacity = _handles.length * 2;
+        _times = Arrays.copyOf(_times, capacity);
+        _resolvers = Arrays.copyOf(_resolvers, capacity);
+        _handles = Arrays.copyOf(_handles, capacity);
+    }
+}
@@ -4,32 +4,93 @@ import Sim.Events.Connected;
 import Sim.Events.Disconnected;
 import Sim.Events.EnterNetwork;
 import Sim.Events.LeaveNetwork;
+import Sim.Trace.TraceLevel;
+import Sim.Trace.TracePoint;
 
-// This class implements a link without any loss, jitter or delay
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.random.RandomGenerator;
+
+// This class implements a link, by default without any loss, jitter or delay.
+// A link model decides the fate of each message, drawing from the link's
+// random stream for the direction the message travels in
 public class Link extends SimEnt {
+    private static final TracePoint TRACE_CONNECTORS = TracePoint.define(TraceLevel.INFO, "** Link setConnector(), connectorA: %s, connectorB: %s");
+    private static final TracePoint TRACE_DISABLED = TracePoint.define(TraceLevel.DEBUG, "Link recv msg [%s], dropping since link is disabled");
+    private static final TracePoint TRACE_DETACHED = TracePoint.define(TraceLevel.DEBUG, "Link recv msg [%s], dropping since the other side has left");
+    private static final TracePoint TRACE_DROP = TracePoint.define(TraceLevel.DEBUG, "== Link drop packet: [%s]");
+
     protected SimEnt _connectorA = null;
     protected SimEnt _connectorB = null;
 
-    // Delay until a message is forwarded on the link.
-    protected double _now = 0;
-
     // If the node's link is connected has connected to a valid interface.
     protected boolean _enabled = true;
 
-    public Link() {
-        super();
+    // Decides the delay of each message, or drops it.
+    private final LinkModel _model;
+
+    // Random streams for the model, one per direction. A link between two logical processes of a parallel engine is
+    // run by both sides at the same time, and each side only sends in one direction.
+    private RandomGenerator.JumpableGenerator _randomAToB;
+    private RandomGenerator.JumpableGenerator _randomBToA;
+
+    // Events sent to connector A and to anything else, numbered apart since each direction is sent by another logical
+    // process when the link is between two of them.
+    private long _sentToA = 0;
+    private long _sentToB = 0;
+
+    // Number of messages the model has dropped. A link between two logical processes of a parallel engine is run by
+    // both sides at the same time, so the count is atomic.
+    private final AtomicInteger _numDroppedPackets = new AtomicInteger();
+
+    // The ideal model draws no random numbers, so the link takes no stream.
+    public Link(SimEngine engine) {
+        this(engine, LinkModel.IDEAL, (RandomGenerator.JumpableGenerator) null);
+    }
+
+    // A link with a model, drawing from the next unnamed stream of the engine.
+    public Link(SimEngine engine, LinkModel model) {
+        this(engine, model, engine.getRandomStreams().nextStream());
+    }
+
+    // A link with a model, whose random values can be reproduced with the seed.
+    public Link(SimEngine engine, LinkModel model, long seed) {
+        this(engine, model, RandomStreams.seeded(seed));
+    }
+
+    // A link with a model drawing from the given stream. The other direction draws from a copy of it that has jumped
+    // ahead, so the two never overlap.
+    public Link(SimEngine engine, LinkModel model, RandomGenerator.JumpableGenerator random) {
+        super(engine);
+        _model = model;
+        _randomAToB = random;
+        _randomBToA = random == null ? null : random.copy();
+        if (_randomBToA != null) {
+            _randomBToA.jump();
+        }
+    }
+
+    public LinkModel getModel() {
+        return _model;
+    }
+
+    // Number of messages dropped by the model since the link was created.
+    public int getNumDroppedPackets() {
+        return _numDroppedPackets.get();
     }
 
     // Connects the link to some simulation entity like
     // a node, switch, router etc.
     public void setConnector(SimEnt connectTo) {
+        getEngine().modifying(this);
         if (_connectorA == null) {
             _connectorA = connectTo;
         } else {
             _connectorB = connectTo;
         }
 
-        System.out.printf("** Link setConnector(), connectorA: %s, connectorB: %s%n", _connectorA, _connectorB);
+        tracer().trace(TRACE_CONNECTORS, _connectorA, _connectorB);
         if (_connectorA != null) {
             if (_connectorB == null) {
                 // Disconnected.
@@ -46,29 +107,92 @@ public class Link extends SimEnt {
     public void recv(SimEnt src, Event ev) {
         if (ev instanceof EnterNetwork event) {
             if (event.getRouter() == null) {
-                forward(src, ev);
+                forward(src, ev, 0);
             } else {
-                send(event.getRouter(), ev, 0);
+                post(event.getRouter(), ev, 0);
             }
         } else if (ev instanceof LeaveNetwork) {
-            forward(src, ev);
-        } else if (ev instanceof Message) {
-            forward(src, ev);
+            forward(src, ev, 0);
+        } else if (ev instanceof Message msg) {
+            // A node can send between its router leaving the link and the next one joining it, at the same instant.
+            if ((src == _connectorA ? _connectorB : _connectorA) == null) {
+                tracer().trace(TRACE_DETACHED, ev);
+                return;
+            }
+            double delay = _model.delay(msg, src == _connectorA ? _randomAToB : _randomBToA);
+            if (delay < 0) {
+                tracer().trace(TRACE_DROP, ev);
+                _numDroppedPackets.incrementAndGet();
+                return;
+            }
+            forward(src, ev, delay);
         }
     }
 
-    protected void forward(SimEnt src, Event ev) {
+    // Forwards an event to the other side of the link after the given delay.
+    protected void forward(SimEnt src, Event ev, double delay) {
         if (!_enabled) {
-            System.err.println("Link recv msg, dropping since link is disabled");
+            tracer().trace(TRACE_DISABLED, ev);
             return;
         }
 
         //System.out.println("Link recv msg, passes it through");
         if (src == _connectorA) {
-            send(_connectorB, ev, _now);
+            post(_connectorB, ev, delay);
         } else {
-            send(_connectorA, ev, _now);
+            post(_connectorA, ev, delay);
+        }
+    }
+
+    // The events to each side are numbered on their own, even and odd, so the two sides never hand out the same number.
+    @Override
+    long nextResolver(SimEnt target) {
+        long sequence = target == _connectorA ? _sentToA++ << 1 : _sentToB++ << 1 | 1;
+        return SimTimeSlot.resolver(getId(), sequence);
+    }
+
+    // The smallest delay a message can have on this link. Events crossing the link can never arrive earlier than this,
+    // which is what lets a parallel engine run each side independently for that long.
+    public double getMinimumDelay() {
+        return _model.getMinimumDelay();
+    }
+
+    // State saved for rollbacks in the optimistic engine. It holds copies of the random streams, so a rolled back
+    // message draws the same delay and drop when it is executed again.
+    private record LinkState(SimEnt connectorA, SimEnt connectorB, boolean enabled, int numDroppedPackets,
+                             RandomGenerator.JumpableGenerator randomAToB, RandomGenerator.JumpableGenerator randomBToA) {
+    }
+
+    @Override
+    protected Object saveState() {
+        return new LinkState(_connectorA, _connectorB, _enabled, _numDroppedPackets.get(), copyOf(_randomAToB),
+                copyOf(_randomBToA));
+    }
+
+    @Override
+    protected void restoreState(Object state) {
+        var saved = (LinkState) state;
+        _connectorA = saved.connectorA;
+        _connectorB = saved.connectorB;
+        _enabled = saved.enabled;
+        _numDroppedPackets.set(saved.numDroppedPackets);
+        _randomAToB = copyOf(saved.randomAToB);
+        _randomBToA = copyOf(saved.randomBToA);
+    }
+
+    private static RandomGenerator.JumpableGenerator copyOf(RandomGenerator.JumpableGenerator random) {
+        return random == null ? null : random.copy();
+    }
+
+    @Override
+    protected List<SimEnt> neighbours() {
+        var neighbours = new ArrayList<SimEnt>(2);
+        if (_connectorA != null) {
+            neighbours.add(_connectorA);
+        }
+        if (_connectorB != null) {
+            neighbours.add(_connectorB);
         }
-        _now = 0;
+        return neighbours;
     }
 }
\ No newline at end of file
@@ -0,0 +1,47 @@
+package Sim;
+
+import java.util.random.RandomGenerator;
+
+/**
+ * Decides, for each message crossing a {@link Link}, whether it is dropped and otherwise how long it takes. A model
+ * keeps no state of its own: anything random is drawn from the generator of the link, and the decision is returned
+ * rather than stored, so one model can be shared by any number of links, and by both sides of a link between logical
+ * processes of a parallel engine.
+ */
+public interface LinkModel {
+    /**
+     * Returned by {@link #delay} for a message that is dropped.
+     */
+    double DROP = -1;
+
+    /**
+     * Forwards every message at once.
+     */
+    LinkModel IDEAL = new LinkModel() {
+        @Override
+        public double delay(Message msg, RandomGenerator random) {
+            return 0;
+        }
+
+        @Override
+        public double getMinimumDelay() {
+            return 0;
+        }
+    };
+
+    /**
+     * Returns the delay of a message crossing the link.
+     *
+     * @param msg    message entering the link.
+     * @param random random generator of the link.
+     * @return the delay in milliseconds, or {@link #DROP} (any negative value) to drop the message.
+     */
+    double delay(Message msg, RandomGenerator random);
+
+    /**
+     * Returns the smallest delay the model gives a message, which a parallel engine uses as lookahead.
+     *
+     * @return the minimum delay.
+     */
+    double getMinimumDelay();
+}
@@ -0,0 +1,28 @@
+package Sim;
+
+import java.util.random.RandomGenerator;
+
+/**
+ * The model of a {@link LossyLink}: each message is dropped with a probability, and otherwise delayed by the delay plus
+ * a random value evenly distributed in [-jitter, jitter), truncated to whole milliseconds and never below 0.
+ *
+ * @param delay           base delay for each packet.
+ * @param jitter          jitter for each packet, time added or removed from each packet.
+ * @param dropProbability probability that a packet is dropped in [0, 1].
+ */
+public record LossyModel(double delay, double jitter, double dropProbability) implements LinkModel {
+    @Override
+    public double delay(Message msg, RandomGenerator random) {
+        if (random.nextDouble() < dropProbability) {
+            return DROP;
+        }
+        double jitter = this.jitter * 2 * random.nextDouble() - this.jitter;
+        return Math.max(0, (int) (delay + jitter));
+    }
+
+    // Delays are truncated to whole milliseconds, so the same is done here.
+    @Override
+    public double getMinimumDelay() {
+        return Math.max(0, Math.floor(delay - jitter));
+    }
+}
@@ -1,12 +1,16 @@
 package Sim;
 
 // This class implements an event that send a Message, currently the only
-// fields in the message are who the sender is, the destination and a sequence 
-// number
+// fields in the message are who the sender is, the destination, a sequence
+// number and its size on the wire
 public class Message implements Event {
+    // Size in bytes of messages that are not given one, the minimum MTU of IPv6.
+    public static final int DEFAULT_SIZE = 1280;
+
     private NetworkAddr _source;
     private NetworkAddr _destination;
     private int _seq = 0;
+    private int _size = DEFAULT_SIZE;
 
     public Message(NetworkAddr from, NetworkAddr to, int seq) {
         _source = from;
@@ -14,6 +18,11 @@ public class Message implements Event {
         _seq = seq;
     }
 
+    public Message(NetworkAddr from, NetworkAddr to, int seq, int size) {
+        this(from, to, seq);
+        setSize(size);
+    }
+
     public NetworkAddr source() {
         return _source;
     }
@@ -30,6 +39,18 @@ public class Message implements Event {
         return _seq;
     }
 
+    // Size in bytes, which is what a link with a bit rate takes time to send.
+    public int size() {
+        return _size;
+    }
+
+    public void setSize(int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("message size must not be negative: " + size);
+        }
+        _size = size;
+    }
+
     public void entering(SimEnt locale) {
     }
 
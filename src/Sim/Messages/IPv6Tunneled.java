@@ -4,11 +4,15 @@ import Sim.Message;
 import Sim.NetworkAddr;
 
 public class IPv6Tunneled extends IPv6 {
+    // Bytes the outer IPv6 header adds to the tunneled packet.
+    public static final int HEADER_SIZE = 40;
+
     private final Message _originalPacket;
 
     public IPv6Tunneled(NetworkAddr from, NetworkAddr to, int seq, Message originalPacket) {
         super(from, to, seq);
         _originalPacket = originalPacket;
+        setSize(originalPacket.size() + HEADER_SIZE);
     }
 
     public Message getOriginalPacket() {
@@ -8,16 +8,27 @@ import Sim.NetworkAddr;
  * Reference: https://datatracker.ietf.org/doc/html/rfc6275#section-6.1.7
  */
 public class BindingUpdate extends MobilityHeader {
+    // Lifetime of bindings that never expire, used when no lifetime is given.
+    public static final double INFINITE_LIFETIME = Double.POSITIVE_INFINITY;
+
     // Unsigned 16-bit. Use to sequence binding updates, will be returned in the Binding Acknowledgement.
     private final int _sequence;
 
     // When the MN is on a foreign network and sends binding updates we have to keep track of which one it is.
     private final NetworkAddr _homeAddress;
 
+    // Time the binding is valid for, in milliseconds. Zero asks the home agent to remove the binding.
+    private final double _lifetime;
+
     public BindingUpdate(NetworkAddr from, NetworkAddr to, int seq, int sequence, NetworkAddr homeAddress) {
+        this(from, to, seq, sequence, homeAddress, INFINITE_LIFETIME);
+    }
+
+    public BindingUpdate(NetworkAddr from, NetworkAddr to, int seq, int sequence, NetworkAddr homeAddress, double lifetime) {
         super(from, to, seq);
         _sequence = sequence;
         _homeAddress = homeAddress;
+        _lifetime = lifetime;
     }
 
     public int getSequence() {
@@ -28,6 +39,20 @@ public class BindingUpdate extends MobilityHeader {
         return _homeAddress;
     }
 
+    public double getLifetime() {
+        return _lifetime;
+    }
+
+    /**
+     * Checks if this update removes the binding, which it does when the lifetime is zero or when the care of address
+     * is the home address, that is when the mobile node is back in its home network.
+     *
+     * @return true if the binding should be removed.
+     */
+    public boolean isDeregistration() {
+        return _lifetime == 0 || source().equals(_homeAddress);
+    }
+
     @Override
     public String toString() {
         return String.format("BindingUpdate (MH), src=%s, dst=%s", source(), destination());
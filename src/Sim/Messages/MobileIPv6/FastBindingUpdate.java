@@ -24,7 +24,16 @@ public class FastBindingUpdate extends BindingUpdate {
      * @param newCareOfAddress the new care of address in the next router network.
      */
     public FastBindingUpdate(NetworkAddr from, NetworkAddr to, int seq, int sequence, NetworkAddr homeAddress, String interfaceName, NetworkAddr newCareOfAddress) {
-        super(from, to, seq, sequence, homeAddress);
+        this(from, to, seq, sequence, homeAddress, interfaceName, newCareOfAddress, INFINITE_LIFETIME);
+    }
+
+    /**
+     * Create a FastBindingUpdate message for a binding that expires.
+     *
+     * @param lifetime time the binding to the new care of address is valid for.
+     */
+    public FastBindingUpdate(NetworkAddr from, NetworkAddr to, int seq, int sequence, NetworkAddr homeAddress, String interfaceName, NetworkAddr newCareOfAddress, double lifetime) {
+        super(from, to, seq, sequence, homeAddress, lifetime);
         _interfaceName = interfaceName;
         _newCareOfAddress = newCareOfAddress;
     }
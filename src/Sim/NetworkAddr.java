@@ -5,34 +5,80 @@ package Sim;
 // compared to the network part of the IP address like 132.17.9.0). Then _nodeId represent
 // the host part.
 
-import java.util.Objects;
-
 /**
  * IPv6 address.
+ * <p>
+ * Addresses are immutable, with the prefix mask and the hash computed once when they are created. Addresses that are
+ * built over and over, like the address of a home agent or of a router interface, should come from {@link #of}, which
+ * hands out shared instances instead of allocating.
  */
 public class NetworkAddr {
+    // Mask with the first n bits set, for each prefix length n. Prefixes outside [0, 64] use the nearest mask.
+    private static final long[] MASKS = new long[65];
+
+    static {
+        for (int i = 1; i <= 64; ++i) {
+            MASKS[i] = -1L << (64 - i);
+        }
+    }
+
+    // Shared instances handed out by of. A slot holds the last address created for its hash, so the table never grows
+    // and a lookup that hits does not allocate. Addresses are immutable, so threads may race on a slot without harm.
+    private static final int INTERNED = 1 << 12;
+    private static final NetworkAddr[] _interned = new NetworkAddr[INTERNED];
+
+    // Declared after the masks, which the constructor needs.
     public static final NetworkAddr UNSPECIFIED = new NetworkAddr(0x0L, 0x0L);
 
     public static final NetworkAddr ALL_NODES_MULTICAST = new NetworkAddr(0xFF02_0000_0000_0000L, 0x0000_0000_0000_0001);
     public static final NetworkAddr ALL_ROUTER_MULTICAST = new NetworkAddr(0xFF02_0000_0000_0000L, 0x0000_0000_0000_0002);
 
-    private long _networkId;
-    private long _nodeId;
-    private int _prefix;
-    private long _mask;
+    private final long _networkId;
+    private final long _nodeId;
+    private final int _prefix;
+    private final long _mask;
+    private final int _hash;
 
     public NetworkAddr(long network, long node) {
-        _networkId = network;
-        _nodeId = node;
-        _prefix = 64;
-        _mask = createMask(_prefix);
+        this(network, node, 64);
     }
 
     public NetworkAddr(long network, long node, int prefix) {
         _networkId = network;
         _nodeId = node;
         _prefix = prefix;
-        _mask = createMask(_prefix);
+        _mask = MASKS[Math.max(0, Math.min(64, prefix))];
+        _hash = hash(network, node, prefix);
+    }
+
+    /**
+     * Returns an address with a /64 prefix, shared with earlier callers if one was created recently.
+     *
+     * @param network network id.
+     * @param node    node id.
+     * @return the address.
+     */
+    public static NetworkAddr of(long network, long node) {
+        return of(network, node, 64);
+    }
+
+    /**
+     * Returns an address, shared with earlier callers if one was created recently. Shared addresses are equal but not
+     * necessarily the same instance, so compare them with equals.
+     *
+     * @param network network id.
+     * @param node    node id.
+     * @param prefix  prefix length in bits.
+     * @return the address.
+     */
+    public static NetworkAddr of(long network, long node, int prefix) {
+        int slot = hash(network, node, prefix) & (INTERNED - 1);
+        var addr = _interned[slot];
+        if (addr == null || addr._networkId != network || addr._nodeId != node || addr._prefix != prefix) {
+            addr = new NetworkAddr(network, node, prefix);
+            _interned[slot] = addr;
+        }
+        return addr;
     }
 
     public long networkId() {
@@ -47,13 +93,22 @@ public class NetworkAddr {
         return (_networkId & _mask) == (networkId & _mask);
     }
 
+    // Checks if this is the address with the given fields, ignoring the prefix.
+    public boolean is(long networkId, long nodeId) {
+        return _networkId == networkId && _nodeId == nodeId;
+    }
+
     public int getPrefixBits() {
         return _prefix;
     }
 
     @Override
     public String toString() {
-        return String.format("%s:%s/%d", getHex(_networkId), getHex(_nodeId), _prefix);
+        var text = new StringBuilder(48);
+        appendHex(text, _networkId);
+        text.append(':');
+        appendHex(text, _nodeId);
+        return text.append('/').append(_prefix).toString();
     }
 
     @Override
@@ -61,29 +116,26 @@ public class NetworkAddr {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         NetworkAddr that = (NetworkAddr) o;
-        return _networkId == that._networkId && _nodeId == that._nodeId && _prefix == that._prefix;
+        return _hash == that._hash && _networkId == that._networkId && _nodeId == that._nodeId && _prefix == that._prefix;
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(_networkId, _nodeId, _prefix);
+        return _hash;
     }
 
-    private String getHex(long part) {
-        return String.format("%h:%h:%h:%h", (part >> 48) & 0xFFFF, (part >> 32) & 0xFFFF, (part >> 16) & 0xFFFF, part & 0xFFFF);
+    // Hash of the fields of an address, for tables that look addresses up by their fields without creating one.
+    static int hash(long network, long node, int prefix) {
+        long h = network * 0x9E3779B97F4A7C15L + node;
+        h = (h ^ (h >>> 29)) * 0xBF58476D1CE4E5B9L + prefix;
+        return (int) (h ^ (h >>> 32));
     }
 
-    /**
-     * Generates the mask to mask out all the bits of the prefix part.
-     *
-     * @return mask with the first numBits bits set.
-     */
-    private long createMask(int numBits) {
-        long mask = 0;
-        for (int i = 0; i < (64 - numBits); ++i) {
-            mask <<= 1;
-            mask |= 1;
-        }
-        return ~mask;
+    // Appends the four 16-bit groups of a part of the address in hex, separated by colons.
+    private static void appendHex(StringBuilder text, long part) {
+        text.append(Long.toHexString((part >> 48) & 0xFFFF)).append(':')
+                .append(Long.toHexString((part >> 32) & 0xFFFF)).append(':')
+                .append(Long.toHexString((part >> 16) & 0xFFFF)).append(':')
+                .append(Long.toHexString(part & 0xFFFF));
     }
 }
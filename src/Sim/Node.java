@@ -4,14 +4,29 @@ import Sim.Events.*;
 import Sim.Messages.ICMPv6.*;
 import Sim.Messages.IPv6Tunneled;
 import Sim.Messages.MobileIPv6.*;
+import Sim.Trace.TraceLevel;
+import Sim.Trace.TracePoint;
 import Sim.Traffic.CountingSink;
 import Sim.Traffic.Sink;
 import Sim.Traffic.TrafficGenerator;
 
+import java.util.Arrays;
+import java.util.List;
+
 /**
  * A Mobile node that supports fast handovers.
  */
 public class Node extends SimEnt {
+    // Trace points. Data packets are traced at DEBUG, control messages and attachment changes at INFO.
+    private static final TracePoint TRACE_SEND = TracePoint.define(TraceLevel.DEBUG, "%s: send [%s]");
+    private static final TracePoint TRACE_RECV_PACKET = TracePoint.define(TraceLevel.DEBUG, "%s: recv [%s]");
+    private static final TracePoint TRACE_RECV = TracePoint.define(TraceLevel.INFO, "%s: recv [%s]");
+    private static final TracePoint TRACE_CONNECTED = TracePoint.define(TraceLevel.INFO, "%s: [%s] connected to new network");
+    private static final TracePoint TRACE_DISCONNECTED = TracePoint.define(TraceLevel.INFO, "%s: [%s] disconnected from current network");
+    private static final TracePoint TRACE_AUTO_CONFIGURED = TracePoint.define(TraceLevel.INFO, "%s completed IPv6 stateless auto configuration");
+    private static final TracePoint TRACE_FAST_HANDOVER_READY = TracePoint.define(TraceLevel.INFO, "%s fast handover setup complete");
+    private static final TracePoint TRACE_NO_NEXT_ROUTER = TracePoint.define(TraceLevel.ERROR, "Err: %s has no router to connect to next");
+
     // Name for the node.
     private final String _name;
 
@@ -42,6 +57,38 @@ public class Node extends SimEnt {
     // Current sequence number for each packet.
     private int _seq = 0;
 
+    // Timer that is re-armed for each packet the traffic generator sends, or for each burst of packets.
+    private final TimerEvent _sendTimer = new TimerEvent();
+
+    // Packets sent per send timer, see setBurstSize.
+    private int _burstSize = 1;
+
+    // The current burst: the time each packet reaches the link, its size, and the message handed to the link with the
+    // handle of that event. The first _burstUnsent packets are still to be handed to the link, which is only the case
+    // after a burst was cut short.
+    private double[] _burstTimes;
+    private int[] _burstSizes;
+    private Message[] _burstMessages;
+    private EventHandle[] _burstHandles;
+    private int _burstLength = 0;
+    private int _burstUnsent = 0;
+
+    // Time of the first packet after the current burst, and the send timer armed for it.
+    private double _nextSendTime = 0;
+    private EventHandle _sendTimerHandle = null;
+
+    // Background nodes send their traffic as a fluid flow, see setBackground.
+    private boolean _background = false;
+    private FluidFlow _fluidFlow = null;
+
+    // Lifetime asked for in binding updates. Bindings that expire are refreshed after REFRESH_FRACTION of it.
+    private double _bindingLifetime = BindingUpdate.INFINITE_LIFETIME;
+    private static final double REFRESH_FRACTION = 0.8;
+
+    // Timer that refreshes the binding at the home agent while we are away from home.
+    private final TimerEvent _refreshTimer = new TimerEvent();
+    private boolean _refreshTimerArmed = false;
+
     // Fields that are required for us to store when performing a fast handover.
     private record Handover(NetworkAddr newCareOfAddress, SimEnt router, int interfaceId) {
     }
@@ -56,14 +103,17 @@ public class Node extends SimEnt {
     // When we leave a network we can pick which one to connect to after we have disconnected.
     private EnterNetwork _connectNext = null;
 
-    public Node(String name, NetworkAddr addr, NetworkAddr haAddress, TrafficGenerator generator, Sink sink) {
-        super();
+    public Node(SimEngine engine, String name, NetworkAddr addr, NetworkAddr haAddress, TrafficGenerator generator, Sink sink) {
+        super(engine);
         _name = name;
-        _linkLocal = new NetworkAddr(0xfe80000000000000L, addr.nodeId());
+        _linkLocal = NetworkAddr.of(0xfe80000000000000L, addr.nodeId());
         _homeAddress = addr;
         _homeAgent = haAddress;
         _trafficGenerator = generator;
         _sink = sink;
+        if (generator != null) {
+            generator.attach(engine.getRandomStreams(), name);
+        }
     }
 
     /**
@@ -79,10 +129,148 @@ public class Node extends SimEnt {
         }
     }
 
+    // State saved for rollbacks in the optimistic engine.
+    private record NodeState(NetworkAddr homeAddress, NetworkAddr careOfAddress, boolean ipConfigurationCompleted,
+                             NetworkAddr dst, int seq, Handover handover, int pktsReceived, int tunneledPktsReceived,
+                             EnterNetwork connectNext, boolean refreshTimerArmed, Object trafficGenerator,
+                             Object sink, BurstState burst) {
+    }
+
+    private record BurstState(double[] times, int[] sizes, Message[] messages, EventHandle[] handles, int length,
+                              int unsent, double nextSendTime, EventHandle sendTimerHandle) {
+    }
+
+    @Override
+    protected Object saveState() {
+        return new NodeState(_homeAddress, _careOfAddress, _ipConfigurationCompleted, _dst, _seq, _handover,
+                _pktsReceived, _tunneledPktsReceived, _connectNext, _refreshTimerArmed,
+                _trafficGenerator == null ? null : _trafficGenerator.saveState(),
+                _sink == null ? null : _sink.saveState(),
+                _burstSize == 1 ? null : new BurstState(_burstTimes.clone(), _burstSizes.clone(),
+                        _burstMessages.clone(), _burstHandles.clone(), _burstLength, _burstUnsent, _nextSendTime,
+                        _sendTimerHandle));
+    }
+
+    @Override
+    protected void restoreState(Object state) {
+        var saved = (NodeState) state;
+        _homeAddress = saved.homeAddress;
+        _careOfAddress = saved.careOfAddress;
+        _ipConfigurationCompleted = saved.ipConfigurationCompleted;
+        _dst = saved.dst;
+        _seq = saved.seq;
+        _handover = saved.handover;
+        _pktsReceived = saved.pktsReceived;
+        _tunneledPktsReceived = saved.tunneledPktsReceived;
+        _connectNext = saved.connectNext;
+        _refreshTimerArmed = saved.refreshTimerArmed;
+        if (saved.trafficGenerator != null) {
+            _trafficGenerator.restoreState(saved.trafficGenerator);
+        }
+        if (saved.sink != null) {
+            _sink.restoreState(saved.sink);
+        }
+        if (saved.burst != null) {
+            var burst = saved.burst;
+            System.arraycopy(burst.times, 0, _burstTimes, 0, burst.length);
+            System.arraycopy(burst.sizes, 0, _burstSizes, 0, burst.length);
+            System.arraycopy(burst.messages, 0, _burstMessages, 0, burst.length);
+            System.arraycopy(burst.handles, 0, _burstHandles, 0, burst.length);
+            _burstLength = burst.length;
+            _burstUnsent = burst.unsent;
+            _nextSendTime = burst.nextSendTime;
+            _sendTimerHandle = burst.sendTimerHandle;
+        }
+    }
+
+    @Override
+    protected List<SimEnt> neighbours() {
+        return _peer == null ? List.of() : List.of(_peer);
+    }
+
     public NetworkAddr getHomeAddress() {
         return _homeAddress;
     }
 
+    /**
+     * Sets the lifetime of the bindings the node registers at its home agent. Bindings that expire are refreshed
+     * before they run out, for as long as the node is away from home.
+     * <p>
+     * The refresh timer arms itself again every time, so once the node has left home with a finite lifetime the engine
+     * never runs out of events and {@link SimEngine#run()} does not return by itself. End such a run with
+     * {@link SimEngine#stop()}, from an event at the time the run should end.
+     *
+     * @param lifetime lifetime in milliseconds, or infinity for bindings that never expire.
+     */
+    public void setBindingLifetime(double lifetime) {
+        if (!(lifetime > 0)) {
+            throw new IllegalArgumentException("Binding lifetime must be positive: " + lifetime);
+        }
+        _bindingLifetime = lifetime;
+    }
+
+    /**
+     * Sets how many packets the node sends per send timer. With a burst size of k, each timer plans the next k packets
+     * of the traffic generator and hands them to the link at once, each scheduled for the exact time it would have been
+     * sent, so the node needs one timer event per k packets instead of one per packet. When the node's addresses
+     * change, or it sends a message of its own, the packets of the burst that have not reached the link yet are taken
+     * back and sent again from their times, with the new addresses and sequence numbers, so every packet is sent as it
+     * would have been one at a time. Only events of other entities at exactly the same time may come in another order.
+     *
+     * @param burstSize packets per burst, 1 to send every packet from its own timer.
+     */
+    public void setBurstSize(int burstSize) {
+        if (burstSize < 1) {
+            throw new IllegalArgumentException("Burst size must be at least 1: " + burstSize);
+        }
+        _burstSize = burstSize;
+        _burstTimes = burstSize == 1 ? null : new double[burstSize];
+        _burstSizes = burstSize == 1 ? null : new int[burstSize];
+        _burstMessages = burstSize == 1 ? null : new Message[burstSize];
+        _burstHandles = burstSize == 1 ? null : new EventHandle[burstSize];
+        _burstLength = 0;
+        _burstUnsent = 0;
+    }
+
+    /**
+     * Makes the node send its traffic as a {@link FluidFlow} rather than packet by packet. The flow runs at the mean
+     * rate of the traffic generator for as long as the generator would take to send its packets, takes its share of
+     * the links on its route and adds to their queues, but sends no packets, so the destination receives none. Meant
+     * for background load on the links that foreground nodes send their packets over, on a sequential engine. When the
+     * flow stops, the traffic generator is credited with the packets it stood for, so a later StartSending only sends
+     * the packets that are left.
+     *
+     * @param background true to send fluid traffic from the next StartSending on.
+     * @throws IllegalStateException if the node runs in a logical process of a parallel engine.
+     */
+    public void setBackground(boolean background) {
+        if (background && (_logicalProcess >= 0 || getEngine()._coordinator != null)) {
+            throw new IllegalStateException("Fluid flows need a sequential engine: " + this);
+        }
+        _background = background;
+    }
+
+    public boolean isBackground() {
+        return _background;
+    }
+
+    /**
+     * Returns the fluid flow of a background node.
+     *
+     * @return the flow started last, or null if none was started.
+     */
+    public FluidFlow getFluidFlow() {
+        return _fluidFlow;
+    }
+
+    public int getPacketsReceived() {
+        return _pktsReceived;
+    }
+
+    public int getTunneledPacketsReceived() {
+        return _tunneledPktsReceived;
+    }
+
     /**
      * Gets the node's current address, which is the CoA if it is configured, otherwise it is the home address.
      *
@@ -103,81 +291,78 @@ public class Node extends SimEnt {
      * @param startSeq Starting sequence number.
      */
     public void StartSending(NetworkAddr dst, int startSeq) {
+        if (_background) {
+            startFluidFlow(dst);
+            return;
+        }
+        if (_burstSize == 1) {
+            _dst = dst;
+            _seq = startSeq;
+            scheduleTimer(_sendTimer, 0);
+            return;
+        }
+        // Packets already planned are sent to the new destination.
+        cutBurst();
         _dst = dst;
         _seq = startSeq;
-        send(this, new TimerEvent(), 0);
+        if (_burstLength == 0) {
+            _nextSendTime = getEngine().getTime();
+            armBurstTimer(_nextSendTime);
+        }
     }
 
+    // Handlers for the events a node receives. Subclasses are handled before their superclasses, so proxy router
+    // advertisements are not taken for router advertisements, nor tunneled messages for plain ones. Other ICMPv6 and
+    // Mobility Header messages, such as router solicitations and binding updates, are ignored.
+    private static final EventDispatcher<Node> DISPATCHER = new EventDispatcher<Node>()
+            .on(Connected.class, (node, src, event) -> node.processConnected(event))
+            .on(Disconnected.class, (node, src, event) -> node.processDisconnected(event))
+            .on(StartHandover.class, (node, src, event) -> node.processStartHandover(event))
+            .on(TimerEvent.class, (node, src, event) -> {
+                if (event == node._refreshTimer) {
+                    node.processRefreshTimer();
+                } else {
+                    node.processTimerEvent(event);
+                }
+            })
+            .on(ICMPv6.class, (node, src, msg) -> {
+            })
+            .on(PrRtAdv.class, (node, src, msg) -> node.processPrRtAdv(msg))
+            .on(RouterAdvertisement.class, (node, src, msg) -> node.processRouterAdvertisement(msg))
+            .on(MobilityHeader.class, (node, src, msg) -> {
+            })
+            .on(FastBindingAck.class, (node, src, msg) -> node.processFastBindingAck(msg))
+            .on(BindingAck.class, (node, src, msg) -> node.processBindingUpdateAck(msg))
+            .on(IPv6Tunneled.class, Node::processTunneledMessage)
+            .on(Message.class, Node::processMessage);
+
     // This method is called upon that an event destined for this node triggers.
     @Override
     public void recv(SimEnt src, Event ev) {
-        if (ev instanceof Connected event) {
-            processConnected(event);
-        } else if (ev instanceof Disconnected event) {
-            processDisconnected(event);
-        } else if (ev instanceof StartHandover event) {
-            processStartHandover(event);
-        } else if (ev instanceof TimerEvent event) {
-            processTimerEvent(event);
-        } else if (ev instanceof ICMPv6 msg) {
-            processICMPMessage(msg);
-        } else if (ev instanceof MobilityHeader msg) {
-            processMobilityHeader(msg);
-        } else if (ev instanceof Message msg) {
-            processMessage(src, msg);
-        }
+        DISPATCHER.dispatch(this, src, ev);
     }
 
     /**
-     * Handle ICMPv6 messages.
+     * Process tunneled messages, the original message is received as if it had been sent directly.
      *
-     * @param ev ICMPv6 Message.
-     */
-    public void processICMPMessage(ICMPv6 ev) {
-        // Unhandled packets:
-        // - RtSolPr
-        // - RouterSolicitation
-        if (ev instanceof PrRtAdv msg) {
-            processPrRtAdv(msg);
-        } else if (ev instanceof RouterAdvertisement msg) {
-            processRouterAdvertisement(msg);
-        }
-    }
-
-    /**
-     * Process messages with a Mobility Header.
-     *
-     * @param ev message with mobility header.
+     * @param src entity we got message from.
+     * @param ev  tunneled message.
      */
-    public void processMobilityHeader(MobilityHeader ev) {
-        // Unhandled packets:
-        // - FastBindingUpdate
-        // - BindingUpdate
-        // - HandoverInitiate
-        // - HandoverAcknowledge.
-        if (ev instanceof FastBindingAck msg) {
-            processFastBindingAck(msg);
-        } else if (ev instanceof BindingAck msg) {
-            processBindingUpdateAck(msg);
-        }
+    public void processTunneledMessage(SimEnt src, IPv6Tunneled ev) {
+        tracer().trace(TRACE_RECV_PACKET, this, ev);
+        recv(src, ev.getOriginalPacket());
+        _tunneledPktsReceived += 1;
     }
 
     /**
-     * Process generic messages. This includes tunneled messages.
+     * Process generic messages.
      *
      * @param src entity we got message from.
      * @param ev  generic message.
      */
     public void processMessage(SimEnt src, Message ev) {
-        if (ev instanceof IPv6Tunneled msg) {
-            System.out.printf("[%d] %s: recv [%s]%n", (int) SimEngine.getTime(), this, ev);
-            recv(src, msg.getOriginalPacket());
-            _tunneledPktsReceived += 1;
-            return;
-        }
-
         // Generic message, no specific handling.
-        System.out.printf("[%d] %s: recv [%s]%n", (int) SimEngine.getTime(), this, ev);
+        tracer().trace(TRACE_RECV_PACKET, this, ev);
         _pktsReceived += 1;
         if (_sink != null) {
             _sink.process(src, ev);
@@ -190,13 +375,13 @@ public class Node extends SimEnt {
      * @param ev connected event.
      */
     protected void processConnected(Connected ev) {
-        System.out.printf("[%d] %s: [%s] connected to new network%n", (int) SimEngine.getTime(), this, ev);
+        tracer().trace(TRACE_CONNECTED, this, ev);
 
         // Only send if we have not configured our IPs yet, we might have done this if we performed a fast handover.
         if (_homeAddress == null || _careOfAddress == null) {
             // Send a Router Solicitation straight away, we skip the random delay since we are a mobile node.
             // RFC 4861 (https://datatracker.ietf.org/doc/html/rfc4861) mentions that the delay may be omitted for this.
-            var msg = new RouterSolicitation(NetworkAddr.UNSPECIFIED, NetworkAddr.ALL_ROUTER_MULTICAST, _seq++);
+            var msg = new RouterSolicitation(NetworkAddr.UNSPECIFIED, NetworkAddr.ALL_ROUTER_MULTICAST, nextSeq());
             sendMessage(msg);
         }
 
@@ -212,12 +397,12 @@ public class Node extends SimEnt {
      * @param ev the disconnected event.
      */
     protected void processDisconnected(Disconnected ev) {
-        System.out.printf("[%d] %s: [%s] disconnected from current network%n", (int) SimEngine.getTime(), this, ev);
+        tracer().trace(TRACE_DISCONNECTED, this, ev);
         if (_connectNext != null) {
             sendMessage(_connectNext);
             _connectNext = null;
         } else {
-            System.out.printf("Err: %s has no router to connect to next%n", this);
+            tracer().trace(TRACE_NO_NEXT_ROUTER, this);
         }
 
         // Next sink counter.
@@ -232,31 +417,179 @@ public class Node extends SimEnt {
      * @param ignoredEv timer event.
      */
     protected void processTimerEvent(TimerEvent ignoredEv) {
+        if (_fluidFlow != null && _fluidFlow.isActive()) {
+            stopFluidFlow();
+            return;
+        }
+        if (_burstSize > 1) {
+            sendBurst();
+            return;
+        }
         if (_trafficGenerator != null && _trafficGenerator.shouldSend()) {
             // Send message.
-            var msg = new Message(_homeAddress, _dst, _seq++);
+            var msg = new Message(_homeAddress, _dst, _seq++, _trafficGenerator.getPacketSize());
             if (_careOfAddress != null) {
                 //System.out.printf("%s has CoA, tunneling message with seq: %d to %s%n", this, msg.seq(), _homeAddress);
                 // If we have a care of address, tunnel the message to the home agent.
-                var haAddress = new NetworkAddr(_homeAddress.networkId(), 0);
+                var haAddress = NetworkAddr.of(_homeAddress.networkId(), 0);
                 msg = new IPv6Tunneled(_careOfAddress, haAddress, 0, msg);
             }
             sendMessage(msg);
             _trafficGenerator.addPacketSent();
 
-            System.out.printf("[%d] %s: send [%s]%n", (int) SimEngine.getTime(), this, msg);
+            tracer().trace(TRACE_SEND, this, msg);
 
             // Schedule next message.
             double nextSendTime = _trafficGenerator.getNextSendTime();
-            send(this, new TimerEvent(), nextSendTime);
+            scheduleTimer(_sendTimer, nextSendTime);
+        }
+    }
+
+    // Starts the fluid flow of a background node, and the timer that stops it when the packets left to send would have
+    // been sent.
+    private void startFluidFlow(NetworkAddr dst) {
+        _dst = dst;
+        if (_trafficGenerator == null) {
+            return;
+        }
+        if (_fluidFlow != null && _fluidFlow.isActive()) {
+            stopFluidFlow();
+            eraseScheduledEvent(_sendTimerHandle);
+        }
+        int packets = _trafficGenerator.getPacketsToSend() - _trafficGenerator.getMessagesSent();
+        if (packets <= 0) {
+            return;
+        }
+        _fluidFlow = new FluidFlow(this, dst, _trafficGenerator);
+        getEngine().getFluidModel().start(_fluidFlow, getEngine().getTime());
+        _sendTimerHandle = send(this, _sendTimer, packets * _trafficGenerator.getMeanInterval());
+    }
+
+    // Stops the fluid flow and counts the packets it stood for as sent by the traffic generator.
+    private void stopFluidFlow() {
+        getEngine().getFluidModel().stop(_fluidFlow, getEngine().getTime());
+        int left = _trafficGenerator.getPacketsToSend() - _trafficGenerator.getMessagesSent();
+        _trafficGenerator.addPacketsSent((int) Math.min(left, Math.round(_fluidFlow.getSentPackets())));
+    }
+
+    /**
+     * Sends the packets of a burst that was cut short, and plans new ones up to the burst size, handing each to the
+     * link with the delay until its time. The timer is then armed for the packet after the burst.
+     */
+    private void sendBurst() {
+        _sendTimerHandle = null;
+        for (int i = 0; i < _burstUnsent; ++i) {
+            handOver(i);
+        }
+        int length = _burstUnsent;
+        _burstUnsent = 0;
+
+        if (_trafficGenerator != null) {
+            while (length < _burstSize && _trafficGenerator.shouldSend()) {
+                _burstTimes[length] = _nextSendTime;
+                _burstSizes[length] = _trafficGenerator.getPacketSize();
+                _trafficGenerator.addPacketSent();
+                handOver(length);
+                length += 1;
+                _nextSendTime += _trafficGenerator.getNextSendTime();
+            }
+        }
+        // Drop the messages and handles of the previous burst.
+        if (length < _burstLength) {
+            Arrays.fill(_burstMessages, length, _burstLength, null);
+            Arrays.fill(_burstHandles, length, _burstLength, null);
+        }
+        _burstLength = length;
+
+        if (_trafficGenerator != null && _trafficGenerator.shouldSend()) {
+            armBurstTimer(_nextSendTime);
+        }
+    }
+
+    // Hands a packet of the burst to the link, tunneled to the home agent if we have a care of address.
+    private void handOver(int i) {
+        Message msg = new Message(_homeAddress, _dst, _seq++, _burstSizes[i]);
+        if (_careOfAddress != null) {
+            msg = new IPv6Tunneled(_careOfAddress, NetworkAddr.of(_homeAddress.networkId(), 0), 0, msg);
+        }
+        // The handle comes from the engine's pool, so planning a packet allocates no more than sending it from a timer.
+        _burstMessages[i] = msg;
+        var engine = getEngine();
+        _burstHandles[i] = engine.schedulePooled(this, _peer, msg, Math.max(0, _burstTimes[i] - engine.getTime()));
+        tracer().trace(TRACE_SEND, this, msg);
+    }
+
+    // Takes back the packets of the burst that have not reached the link yet, along with their sequence numbers, and
+    // arms the timer to send them again from the first of them. Called before the node's addresses change and before
+    // it takes a sequence number for a message of its own.
+    private void cutBurst() {
+        if (_burstSize == 1) {
+            return;
+        }
+        int kept = 0;
+        for (int i = 0; i < _burstLength; ++i) {
+            if (i >= _burstUnsent) {
+                if (!_burstHandles[i].isPending(_burstMessages[i])) {
+                    continue;
+                }
+                eraseScheduledEvent(_burstHandles[i]);
+                // Packets reach the link in the order they were numbered, so the ones taken back have the last numbers.
+                _seq -= 1;
+            }
+            _burstTimes[kept] = _burstTimes[i];
+            _burstSizes[kept] = _burstSizes[i];
+            _burstMessages[kept] = null;
+            _burstHandles[kept] = null;
+            kept += 1;
+        }
+        Arrays.fill(_burstMessages, kept, _burstLength, null);
+        Arrays.fill(_burstHandles, kept, _burstLength, null);
+        _burstLength = kept;
+        _burstUnsent = kept;
+        if (kept > 0) {
+            armBurstTimer(_burstTimes[0]);
+        }
+    }
+
+    // Takes the next sequence number for a message of the node's own.
+    private int nextSeq() {
+        cutBurst();
+        return _seq++;
+    }
+
+    // Arms the send timer with a handle from the engine's pool like the packets, so a burst allocates no handles.
+    private void armBurstTimer(double time) {
+        if (_sendTimerHandle != null && _sendTimerHandle.isPending(_sendTimer)) {
+            eraseScheduledEvent(_sendTimerHandle);
+        }
+        var engine = getEngine();
+        _sendTimerHandle = engine.schedulePooled(this, this, _sendTimer, Math.max(0, time - engine.getTime()));
+    }
+
+    /**
+     * Refreshes the binding at the home agent before it expires.
+     */
+    protected void processRefreshTimer() {
+        _refreshTimerArmed = false;
+        if (_careOfAddress != null && _ipConfigurationCompleted) {
+            var msg = new BindingUpdate(_careOfAddress, _homeAgent, nextSeq(), 0, _homeAddress, _bindingLifetime);
+            sendMessage(msg);
+            armRefreshTimer();
+        }
+    }
+
+    private void armRefreshTimer() {
+        if (!_refreshTimerArmed && _bindingLifetime != BindingUpdate.INFINITE_LIFETIME) {
+            scheduleTimer(_refreshTimer, _bindingLifetime * REFRESH_FRACTION);
+            _refreshTimerArmed = true;
         }
     }
 
     protected void processStartHandover(StartHandover ev) {
-        System.out.printf("[%d] %s: recv [%s]%n", (int) SimEngine.getTime(), this, ev);
+        tracer().trace(TRACE_RECV, this, ev);
         if (ev.isFastHandover()) {
             // We want to switch to a new network soon. So start the handover process.
-            var msg = new RtSolPr(getCurrentAddress(), NetworkAddr.ALL_ROUTER_MULTICAST, _seq++, ev.getNextAccessRouter(), ev.getNextInterfaceId());
+            var msg = new RtSolPr(getCurrentAddress(), NetworkAddr.ALL_ROUTER_MULTICAST, nextSeq(), ev.getNextAccessRouter(), ev.getNextInterfaceId());
             sendMessage(msg);
 
             _handover = new Handover(null, ev.getRouter(), ev.getNextInterfaceId());
@@ -266,11 +599,12 @@ public class Node extends SimEnt {
             _connectNext = new EnterNetwork(this, ev.getRouter(), ev.getNextInterfaceId());
             _ipConfigurationCompleted = false;
             _careOfAddress = null;
+            cutBurst();
         }
     }
 
     protected void processRouterAdvertisement(RouterAdvertisement ev) {
-        System.out.printf("[%d] %s: recv [%s]%n", (int) SimEngine.getTime(), this, ev);
+        tracer().trace(TRACE_RECV, this, ev);
 
         if (_ipConfigurationCompleted) {
             // This isn't exactly correct, but we don't care about advertisement right now if we have already performed
@@ -280,21 +614,23 @@ public class Node extends SimEnt {
 
         // Check if we entered our home network or a foreign network.
         if (_homeAddress == null) {
-            _homeAddress = new NetworkAddr(ev.getNetworkPrefix(), _linkLocal.nodeId());
+            _homeAddress = NetworkAddr.of(ev.getNetworkPrefix(), _linkLocal.nodeId());
         } else {
             var prefix = ev.getNetworkPrefix();
             BindingUpdate msg;
 
-            // Check if we re-entered the home network.
+            // Check if we re-entered the home network, then the binding is removed.
             if (_homeAddress.networkId() == prefix) {
-                msg = new BindingUpdate(_homeAddress, _homeAgent, _seq++, 0, _homeAddress);
+                msg = new BindingUpdate(_homeAddress, _homeAgent, nextSeq(), 0, _homeAddress, 0);
             } else {
-                _careOfAddress = new NetworkAddr(prefix, _linkLocal.nodeId());
-                msg = new BindingUpdate(_careOfAddress, _homeAgent, _seq++, 0, _homeAddress);
+                _careOfAddress = NetworkAddr.of(prefix, _linkLocal.nodeId());
+                msg = new BindingUpdate(_careOfAddress, _homeAgent, nextSeq(), 0, _homeAddress, _bindingLifetime);
+                armRefreshTimer();
             }
             sendMessage(msg);
         }
-        System.out.printf("%s completed IPv6 stateless auto configuration%n", this);
+        tracer().trace(TRACE_AUTO_CONFIGURED, this);
+        cutBurst();
 
         // IP configuration done. Here we should do neighbor discovery to see if this address exists on the network.
         // which is left for future work.
@@ -306,29 +642,31 @@ public class Node extends SimEnt {
             // Skip advertisements intended for routers.
             return;
         }
-        System.out.printf("[%d] %s: recv [%s]%n", (int) SimEngine.getTime(), this, ev);
+        tracer().trace(TRACE_RECV, this, ev);
 
-        var nextCareOfAddress = new NetworkAddr(ev.getNetworkPrefix(), _linkLocal.nodeId());
-        var msg = new FastBindingUpdate(getCurrentAddress(), _homeAddress, _seq++, 0, _homeAddress, ev.getInterfaceName(), nextCareOfAddress);
+        var nextCareOfAddress = NetworkAddr.of(ev.getNetworkPrefix(), _linkLocal.nodeId());
+        var msg = new FastBindingUpdate(getCurrentAddress(), _homeAddress, nextSeq(), 0, _homeAddress, ev.getInterfaceName(), nextCareOfAddress, _bindingLifetime);
         sendMessage(msg);
 
         _handover = new Handover(nextCareOfAddress, _handover.router, _handover.interfaceId);
     }
 
     protected void processBindingUpdateAck(BindingAck ev) {
-        System.out.printf("[%d] %s: recv [%s]%n", (int) SimEngine.getTime(), this, ev);
+        tracer().trace(TRACE_RECV, this, ev);
     }
 
     protected void processFastBindingAck(FastBindingAck ev) {
         // When we this ack, the fast handover process is completed, and we should disconnect from the current network,
         // and join the new network.
-        System.out.printf("[%d] %s: recv [%s]%n", (int) SimEngine.getTime(), this, ev);
+        tracer().trace(TRACE_RECV, this, ev);
 
         var LeaveEvent = new LeaveNetwork(getCurrentAddress());
         _connectNext = new EnterNetwork(this, _handover.router, _handover.interfaceId);
         _careOfAddress = _handover.newCareOfAddress;
+        armRefreshTimer();
+        cutBurst();
 
-        System.out.printf("%s fast handover setup complete%n", this);
+        tracer().trace(TRACE_FAST_HANDOVER_READY, this);
         sendMessage(LeaveEvent);
     }
 
@@ -338,7 +676,7 @@ public class Node extends SimEnt {
      * @param ev message to send.
      */
     protected void sendMessage(Event ev) {
-        send(_peer, ev, 0);
+        post(_peer, ev, 0);
     }
 
     /**
@@ -0,0 +1,538 @@
+package Sim;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CyclicBarrier;
+
+/**
+ * Optimistic parallel simulation engine based on Time Warp (Jefferson, "Virtual Time", 1985).
+ * <p>
+ * Unlike {@link ParallelSimEngine} this engine does not need any lookahead, so it also works for topologies connected
+ * with plain links without delay. Each logical process executes its events as soon as it has them, and saves the state
+ * of the target entity through {@link SimEnt#saveState()} before each event. When an event arrives from another
+ * process with a time earlier than events already executed, the process rolls back: the executed events are undone in
+ * reverse order, their entities restored, and every event they sent is cancelled. Cancelled events in the same process
+ * are erased from the queue, events sent to other processes are cancelled with an anti-message, which can in turn make
+ * that process roll back.
+ * <p>
+ * Entities changed by an event other than its target, such as the link a router connects to when a node enters its
+ * network, announce it through {@code SimEngine.modifying} and are saved and restored along with the target.
+ * <p>
+ * The processes meet at a barrier after each batch of events. There every process takes in the events sent to it, and
+ * global virtual time (GVT), the earliest time any process can still roll back to, is computed. History older than GVT
+ * is committed and dropped (fossil collection). Optionally the optimism can be bounded so processes never run further
+ * ahead than a window past GVT.
+ * <p>
+ * Events erased with {@link SimEngine#deregister} while executing an event are put back when that event is rolled back.
+ * Only events in the same process are put back, so entities should not erase events sent to another process. Output
+ * written by entities, such as printed log lines, is not undone by a rollback, and events cannot be scheduled with a
+ * negative delay.
+ */
+public final class OptimisticSimEngine implements Runnable, SimEngine.Coordinator {
+    // Number of events a process executes between two GVT computations.
+    private static final int DEFAULT_BATCH_SIZE = 1024;
+
+    // An event sent from another process, or an anti-message cancelling an event sent earlier.
+    private record Remote(EventHandle handle, boolean anti) {
+    }
+
+    // An entity other than the target changed by an event, and its state from before the event.
+    private record Modified(SimEnt entity, Object state) {
+    }
+
+    // An event that has been executed but not committed, with what is needed to undo it. Most events only change their
+    // target and erase nothing, so modified and erased are null unless they did.
+    private record Executed(EventHandle handle, Object state, ArrayList<EventHandle> sent,
+                            ArrayList<Modified> modified, ArrayList<EventHandle> erased) {
+    }
+
+    // A logical process, its engine and the history needed for rollbacks.
+    private static final class Process {
+        final int _index;
+        final SimEngine _engine = new SimEngine();
+        final ConcurrentLinkedQueue<Remote> _inbox = new ConcurrentLinkedQueue<>();
+        final ArrayDeque<Executed> _history = new ArrayDeque<>();
+
+        // Events sent, other entities changed and events erased by the event currently being executed.
+        ArrayList<EventHandle> _sent = null;
+        ArrayList<Modified> _modified = null;
+        ArrayList<EventHandle> _erased = null;
+
+        long _executed = 0;
+        long _committed = 0;
+        long _rollbacks = 0;
+        long _rolledBack = 0;
+        long _antiMessages = 0;
+
+        Process(int index) {
+            _index = index;
+        }
+    }
+
+    private final Process[] _processes;
+
+    // All entities that have been assigned to a process.
+    private final ArrayList<SimEnt> _entities = new ArrayList<>();
+
+    // Number of events each process executes before the next GVT computation.
+    private int _batchSize = DEFAULT_BATCH_SIZE;
+
+    // How far past GVT processes may run.
+    private double _optimismWindow = Double.POSITIVE_INFINITY;
+
+    // Written by the barrier action and read by the workers after the barrier.
+    private double _gvt = 0;
+    private double _horizon = Double.POSITIVE_INFINITY;
+    private boolean _done = false;
+
+    private CyclicBarrier _executeBarrier;
+    private CyclicBarrier _gvtBarrier;
+    private volatile Throwable _failure = null;
+    private long _gvtRounds = 0;
+
+    /**
+     * Creates an optimistic engine with one logical process per available core.
+     */
+    public OptimisticSimEngine() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates an optimistic engine.
+     *
+     * @param processes number of logical processes, each is run by its own thread.
+     */
+    public OptimisticSimEngine(int processes) {
+        if (processes < 1) {
+            throw new IllegalArgumentException("an optimistic engine needs at least one logical process");
+        }
+        _processes = new Process[processes];
+        for (int i = 0; i < processes; ++i) {
+            var process = new Process(i);
+            process._engine._coordinator = this;
+            process._engine._logicalProcess = i;
+            _processes[i] = process;
+        }
+    }
+
+    /**
+     * Sets the number of events each process executes between two GVT computations. Smaller batches commit and free
+     * history sooner, larger batches spend less time at the barrier.
+     *
+     * @param batchSize events per batch.
+     */
+    public void setBatchSize(int batchSize) {
+        _batchSize = Math.max(1, batchSize);
+    }
+
+    /**
+     * Bounds how far past GVT a process may execute events, which limits the cost of a rollback. Infinite by default.
+     *
+     * @param window simulation time past GVT.
+     */
+    public void setOptimismWindow(double window) {
+        _optimismWindow = window;
+    }
+
+    /**
+     * Places an entity in a specific logical process.
+     *
+     * @param entity  entity to place.
+     * @param process logical process.
+     * @throws IllegalStateException if the entity is a background node, which needs a sequential engine.
+     */
+    public void assign(SimEnt entity, int process) {
+        if (process < 0 || process >= _processes.length) {
+            throw new IllegalArgumentException("no logical process " + process);
+        }
+        if (entity instanceof Node node && node.isBackground()) {
+            throw new IllegalStateException("Fluid flows need a sequential engine: " + node);
+        }
+        entity._logicalProcess = process;
+        _entities.add(entity);
+    }
+
+    /**
+     * Discovers the topology reachable from the given entities and splits it into logical processes. Every router forms
+     * a group together with the links and nodes closest to it, and the groups are packed onto the processes.
+     *
+     * @param roots entities to start the discovery from, typically the routers.
+     */
+    public void partition(SimEnt... roots) {
+        var entities = Topology.discover(List.of(roots));
+
+        // Grow a group from every router at the same time, so each entity joins the router it is closest to.
+        var groupOf = new IdentityHashMap<SimEnt, Integer>();
+        var groups = new ArrayList<ArrayList<SimEnt>>();
+        var queue = new ArrayDeque<SimEnt>();
+        for (var entity : entities) {
+            if (entity instanceof Router) {
+                groupOf.put(entity, groups.size());
+                groups.add(new ArrayList<>(List.of(entity)));
+                queue.add(entity);
+            }
+        }
+        while (!queue.isEmpty()) {
+            var entity = queue.poll();
+            int group = groupOf.get(entity);
+            for (var neighbour : entity.neighbours()) {
+                if (neighbour != null && !groupOf.containsKey(neighbour)) {
+                    groupOf.put(neighbour, group);
+                    groups.get(group).add(neighbour);
+                    queue.add(neighbour);
+                }
+            }
+        }
+
+        // Without routers everything is kept together.
+        for (var entity : entities) {
+            if (!groupOf.containsKey(entity)) {
+                if (groups.isEmpty()) {
+                    groups.add(new ArrayList<>());
+                }
+                groupOf.put(entity, 0);
+                groups.get(0).add(entity);
+            }
+        }
+
+        int[] processes = Topology.pack(groups, _processes.length);
+        for (int i = 0; i < groups.size(); ++i) {
+            for (var entity : groups.get(i)) {
+                assign(entity, processes[i]);
+            }
+        }
+    }
+
+    /**
+     * Runs the simulation until there are no events left or one of the processes is stopped. Events registered before
+     * the run, in the engine the entities were created with, are moved to the process owning their target.
+     */
+    @Override
+    public void run() {
+        for (var initial : Topology.engines(_entities)) {
+            EventHandle handle;
+            while ((handle = initial.take()) != null) {
+                var engine = _processes[ownerOf(handle._target, 0)]._engine;
+                engine.enqueue(new EventHandle(handle._registrator, handle._target, handle._event, new SimTimeSlot(handle._simSlot._msek, engine.nextResolver())));
+            }
+        }
+
+        _done = false;
+        _failure = null;
+        _executeBarrier = new CyclicBarrier(_processes.length);
+        _gvtBarrier = new CyclicBarrier(_processes.length, this::computeGvt);
+        computeGvt();
+
+        var threads = new Thread[_processes.length];
+        for (int i = 0; i < threads.length; ++i) {
+            var process = _processes[i];
+            threads[i] = new Thread(() -> work(process), "TW-" + i);
+            threads[i].start();
+        }
+        for (var thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("interrupted while waiting for logical processes", e);
+            }
+        }
+
+        if (_failure != null) {
+            throw new IllegalStateException("logical process failed", _failure);
+        }
+    }
+
+    public int getProcessCount() {
+        return _processes.length;
+    }
+
+    public double getGvt() {
+        return _gvt;
+    }
+
+    public long getGvtRounds() {
+        return _gvtRounds;
+    }
+
+    // Number of events executed, including the ones that were later rolled back.
+    public long getExecutedCount() {
+        long total = 0;
+        for (var process : _processes) {
+            total += process._executed;
+        }
+        return total;
+    }
+
+    // Number of events that have passed GVT and can no longer be rolled back.
+    public long getCommittedCount() {
+        long total = 0;
+        for (var process : _processes) {
+            total += process._committed;
+        }
+        return total;
+    }
+
+    public long getRollbackCount() {
+        long total = 0;
+        for (var process : _processes) {
+            total += process._rollbacks;
+        }
+        return total;
+    }
+
+    // Number of executed events that were undone by rollbacks.
+    public long getRolledBackCount() {
+        long total = 0;
+        for (var process : _processes) {
+            total += process._rolledBack;
+        }
+        return total;
+    }
+
+    public long getAntiMessageCount() {
+        long total = 0;
+        for (var process : _processes) {
+            total += process._antiMessages;
+        }
+        return total;
+    }
+
+    // Called for each event scheduled by a process. All events are created here, so the ones sent while executing an
+    // event can be recorded and cancelled if that event is rolled back.
+    @Override
+    public EventHandle register(SimEngine from, SimEnt registrator, SimEnt target, Event event, double time, double delay) {
+        if (delay < 0) {
+            throw new IllegalStateException(String.format("%s scheduled [%s] with negative delay %s", registrator, event, delay));
+        }
+
+        var process = _processes[from._logicalProcess];
+        int owner = ownerOf(target, process._index);
+        EventHandle handle;
+        if (owner == process._index) {
+            handle = new EventHandle(registrator, target, event, new SimTimeSlot(time, from.nextResolver()));
+            from.enqueue(handle);
+        } else {
+            // The receiving process hands out the tie breaker when the event arrives.
+            handle = new EventHandle(registrator, target, event, new SimTimeSlot(time, -1));
+            _processes[owner]._inbox.add(new Remote(handle, false));
+        }
+
+        if (process._sent != null) {
+            process._sent.add(handle);
+        }
+        return handle;
+    }
+
+    // Called before an event changes an entity other than its target, saves the entity the first time it is changed.
+    @Override
+    public void modifying(SimEngine from, SimEnt entity) {
+        var process = _processes[from._logicalProcess];
+        if (process._sent == null) {
+            return;
+        }
+        if (process._modified == null) {
+            process._modified = new ArrayList<>(2);
+        }
+        for (var modified : process._modified) {
+            if (modified.entity == entity) {
+                return;
+            }
+        }
+        process._modified.add(new Modified(entity, entity.saveState()));
+    }
+
+    // Called when an event is erased, remembers it if the event currently being executed erased it.
+    @Override
+    public void erased(SimEngine from, EventHandle handle) {
+        var process = _processes[from._logicalProcess];
+        if (process._sent == null || ownerOf(handle._target, process._index) != process._index) {
+            return;
+        }
+        if (process._erased == null) {
+            process._erased = new ArrayList<>(2);
+        }
+        process._erased.add(handle);
+    }
+
+    // Run by each worker thread.
+    private void work(Process process) {
+        SimEngine.bind(process._engine);
+        try {
+            while (!_done) {
+                // A process that has failed keeps meeting the others at the barriers, so the round can finish and the
+                // barrier action can end the run.
+                if (_failure == null) {
+                    try {
+                        executeBatch(process);
+                    } catch (RuntimeException | Error e) {
+                        fail(e);
+                    }
+                }
+
+                // Once everyone has stopped executing, no new events are sent. Taking in the inbox can still cause
+                // rollbacks and anti-messages, but those never go further back than the events put back in the queue,
+                // so GVT can be computed from the queues after the second barrier.
+                _executeBarrier.await();
+                if (_failure == null) {
+                    try {
+                        receive(process);
+                    } catch (RuntimeException | Error e) {
+                        fail(e);
+                    }
+                }
+                _gvtBarrier.await();
+            }
+        } catch (InterruptedException | BrokenBarrierException e) {
+            fail(e);
+        } finally {
+            SimEngine.bind(null);
+        }
+    }
+
+    // Executes up to one batch of events, stopping early at the optimism horizon.
+    private void executeBatch(Process process) {
+        for (int i = 0; i < _batchSize; ++i) {
+            receive(process);
+            var next = process._engine.peekLive();
+            if (next == null || next._simSlot._msek >= _horizon) {
+                break;
+            }
+            execute(process, next);
+        }
+    }
+
+    private synchronized void fail(Throwable e) {
+        if (_failure == null) {
+            _failure = e;
+        }
+    }
+
+    // Executes the next event in a process, saving what is needed to undo it.
+    private void execute(Process process, EventHandle handle) {
+        process._engine.take();
+        Object state = handle._target.saveState();
+        process._sent = new ArrayList<>(2);
+        process._engine.dispatch(handle);
+        process._history.addLast(new Executed(handle, state, process._sent, process._modified, process._erased));
+        process._sent = null;
+        process._modified = null;
+        process._erased = null;
+        process._executed += 1;
+    }
+
+    // Takes in the events and anti-messages sent to a process, rolling back if any of them is in its past.
+    private void receive(Process process) {
+        var engine = process._engine;
+        Remote remote;
+        while ((remote = process._inbox.poll()) != null) {
+            var handle = remote.handle;
+            if (!remote.anti) {
+                handle._simSlot.set(handle._simSlot._msek, engine.nextResolver());
+                var last = process._history.peekLast();
+                if (last != null && last.handle._simSlot.compareTo(handle._simSlot) > 0) {
+                    rollback(process, handle._simSlot, false);
+                }
+                engine.enqueue(handle);
+            } else if (handle._pending) {
+                engine.deregister(handle);
+            } else if (!handle._cancelled) {
+                // Already executed, undo it and everything after it before erasing it.
+                rollback(process, handle._simSlot, true);
+                engine.deregister(handle);
+            }
+        }
+    }
+
+    // Undoes executed events later than the given time slot, or at it if inclusive.
+    private void rollback(Process process, SimTimeSlot slot, boolean inclusive) {
+        process._rollbacks += 1;
+        while (!process._history.isEmpty()) {
+            var last = process._history.peekLast();
+            int order = last.handle._simSlot.compareTo(slot);
+            if (order < 0 || (order == 0 && !inclusive)) {
+                break;
+            }
+            process._history.pollLast();
+            process._rolledBack += 1;
+
+            // Events it erased are put back before the events it sent are cancelled, which may include some of them.
+            if (last.erased != null) {
+                for (int i = last.erased.size() - 1; i >= 0; --i) {
+                    process._engine.restore(last.erased.get(i));
+                }
+            }
+            if (last.modified != null) {
+                for (int i = last.modified.size() - 1; i >= 0; --i) {
+                    var modified = last.modified.get(i);
+                    modified.entity.restoreState(modified.state);
+                }
+            }
+            if (last.state != null) {
+                last.handle._target.restoreState(last.state);
+            }
+            process._engine.enqueue(last.handle);
+            for (var sent : last.sent) {
+                cancel(process, sent);
+            }
+        }
+    }
+
+    // Cancels an event sent by an event that has been undone.
+    private void cancel(Process process, EventHandle sent) {
+        int owner = ownerOf(sent._target, process._index);
+        if (owner == process._index) {
+            process._engine.deregister(sent);
+        } else {
+            _processes[owner]._inbox.add(new Remote(sent, true));
+            process._antiMessages += 1;
+        }
+    }
+
+    // Barrier action. Computes GVT, commits the history before it, and decides if the simulation is done.
+    private void computeGvt() {
+        if (_failure != null) {
+            _done = true;
+            return;
+        }
+
+        double gvt = Double.POSITIVE_INFINITY;
+        boolean inTransit = false;
+        for (var process : _processes) {
+            if (process._engine.isStopped()) {
+                _done = true;
+                return;
+            }
+            var next = process._engine.peekLive();
+            if (next != null) {
+                gvt = Math.min(gvt, next._simSlot._msek);
+            }
+            for (var remote : process._inbox) {
+                gvt = Math.min(gvt, remote.handle._simSlot._msek);
+                inTransit = true;
+            }
+        }
+
+        for (var process : _processes) {
+            while (!process._history.isEmpty() && process._history.peekFirst().handle._simSlot._msek < gvt) {
+                process._history.pollFirst();
+                process._committed += 1;
+            }
+        }
+
+        _gvt = gvt;
+        _horizon = gvt + _optimismWindow;
+        _gvtRounds += 1;
+        if (gvt == Double.POSITIVE_INFINITY && !inTransit) {
+            _done = true;
+        }
+    }
+
+    private static int ownerOf(SimEnt entity, int fallback) {
+        return entity._logicalProcess < 0 ? fallback : entity._logicalProcess;
+    }
+}
@@ -0,0 +1,380 @@
+package Sim;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+
+/**
+ * Conservative parallel simulation engine.
+ * <p>
+ * The topology is split into logical processes, each with its own {@link SimEngine} and worker thread. Links with a
+ * minimum delay, such as a {@link LossyLink} between two routers, are where the topology is cut. Everything connected
+ * through links without delay ends up in the same process.
+ * <p>
+ * The processes are synchronised with a YAWNS style window protocol. The smallest minimum delay of the links that
+ * connect two processes is the lookahead L. If the earliest pending event in any process is at time T, no event sent
+ * between processes can arrive before T + L, so all processes can run the window [T, T + L) independently. At the end
+ * of each window the processes meet at a barrier, where the events sent between them are delivered.
+ * <p>
+ * Events at the same time run in the order of their tie breaker, which is handed out by the entity that sends them,
+ * see {@code SimTimeSlot.resolver}: by the id of the sender, then in the order it sent them. A {@link SimEngine} orders
+ * them the same way, so the result neither depends on thread timing nor on the partitioning, and a partitioned run
+ * dispatches the same events in the same order as a sequential one with the same seeds.
+ * <p>
+ * Links between two processes belong to neither, they are run by the process that sends to them. Events that are sent
+ * to another process without going through such a link are only allowed if their delay is at least the lookahead.
+ * Mobile nodes that move between routers send {@code EnterNetwork} directly to the new router, so they have to be
+ * placed in the same process as every router they can move to, see {@link #colocate}.
+ */
+public final class ParallelSimEngine implements Runnable, SimEngine.Coordinator {
+    // An event sent from one process to another, delivered at the end of the window with the tie breaker it was sent
+    // with.
+    private record RemoteEvent(SimEnt registrator, SimEnt target, Event event, double time, long resolver) {
+    }
+
+    // One engine per logical process.
+    private final SimEngine[] _processes;
+
+    // Events sent by each process during the current window.
+    private final ArrayList<ArrayList<RemoteEvent>> _outboxes = new ArrayList<>();
+
+    // All entities that have been assigned to a process.
+    private final ArrayList<SimEnt> _entities = new ArrayList<>();
+
+    // Pairs of entities that must be placed in the same process.
+    private final ArrayList<SimEnt[]> _colocated = new ArrayList<>();
+
+    // Smallest delay of the links between two processes.
+    private double _lookahead = Double.POSITIVE_INFINITY;
+
+    // End of the window currently being run, and if the simulation has finished. Written by the barrier action and
+    // read by the workers after the barrier.
+    private double _windowEnd = 0;
+    private boolean _done = false;
+
+    private CyclicBarrier _barrier;
+    private volatile Throwable _failure = null;
+
+    // Statistics.
+    private long _windows = 0;
+    private long _remoteEvents = 0;
+
+    /**
+     * Creates a parallel engine with one logical process per available core.
+     */
+    public ParallelSimEngine() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a parallel engine.
+     *
+     * @param processes number of logical processes, each is run by its own thread.
+     */
+    public ParallelSimEngine(int processes) {
+        if (processes < 1) {
+            throw new IllegalArgumentException("a parallel engine needs at least one logical process");
+        }
+        _processes = new SimEngine[processes];
+        for (int i = 0; i < processes; ++i) {
+            var process = new SimEngine();
+            process._coordinator = this;
+            process._logicalProcess = i;
+            _processes[i] = process;
+            _outboxes.add(new ArrayList<>());
+        }
+    }
+
+    /**
+     * Makes sure two entities end up in the same logical process when the topology is partitioned.
+     *
+     * @param a first entity.
+     * @param b second entity.
+     */
+    public void colocate(SimEnt a, SimEnt b) {
+        _colocated.add(new SimEnt[]{a, b});
+    }
+
+    /**
+     * Places an entity in a specific logical process. Pass -1 to let the entity run in whichever process sends to it,
+     * which is only safe for entities that do not keep state, or keep it per direction like links do.
+     *
+     * @param entity  entity to place.
+     * @param process logical process, or -1.
+     * @throws IllegalStateException if the entity is a background node, which needs a sequential engine.
+     */
+    public void assign(SimEnt entity, int process) {
+        if (process < -1 || process >= _processes.length) {
+            throw new IllegalArgumentException("no logical process " + process);
+        }
+        if (entity instanceof Node node && node.isBackground()) {
+            throw new IllegalStateException("Fluid flows need a sequential engine: " + node);
+        }
+        entity._logicalProcess = process;
+        _entities.add(entity);
+    }
+
+    /**
+     * Discovers the topology reachable from the given entities and splits it into logical processes.
+     * <p>
+     * Links with a minimum delay are cut, and the remaining connected groups are packed onto the processes, largest
+     * group first onto the process with the fewest entities.
+     *
+     * @param roots entities to start the discovery from, typically the routers.
+     */
+    public void partition(SimEnt... roots) {
+        // Find all reachable entities.
+        var reachable = new ArrayList<>(List.of(roots));
+        for (var pair : _colocated) {
+            reachable.add(pair[0]);
+            reachable.add(pair[1]);
+        }
+        var entities = Topology.discover(reachable);
+        var index = new IdentityHashMap<SimEnt, Integer>();
+        for (int i = 0; i < entities.size(); ++i) {
+            index.put(entities.get(i), i);
+        }
+
+        // Group everything that is connected without a delay.
+        int[] parent = new int[entities.size()];
+        for (int i = 0; i < parent.length; ++i) {
+            parent[i] = i;
+        }
+        for (int i = 0; i < entities.size(); ++i) {
+            var entity = entities.get(i);
+            if (isCut(entity)) {
+                continue;
+            }
+            for (var neighbour : entity.neighbours()) {
+                if (!isCut(neighbour)) {
+                    union(parent, i, index.get(neighbour));
+                }
+            }
+        }
+        for (var pair : _colocated) {
+            union(parent, index.get(pair[0]), index.get(pair[1]));
+        }
+
+        // Collect the groups, in the order they were discovered.
+        var groups = new ArrayList<ArrayList<SimEnt>>();
+        int[] groupOfRoot = new int[entities.size()];
+        Arrays.fill(groupOfRoot, -1);
+        for (int i = 0; i < entities.size(); ++i) {
+            if (isCut(entities.get(i))) {
+                continue;
+            }
+            int root = find(parent, i);
+            if (groupOfRoot[root] < 0) {
+                groupOfRoot[root] = groups.size();
+                groups.add(new ArrayList<>());
+            }
+            groups.get(groupOfRoot[root]).add(entities.get(i));
+        }
+
+        int[] processes = Topology.pack(groups, _processes.length);
+        for (int i = 0; i < groups.size(); ++i) {
+            for (var entity : groups.get(i)) {
+                assign(entity, processes[i]);
+            }
+        }
+
+        for (var entity : entities) {
+            if (isCut(entity)) {
+                assign(entity, -1);
+            }
+        }
+    }
+
+    /**
+     * Runs the simulation until there are no events left or one of the processes is stopped. Events registered before
+     * the run, in the engine the entities were created with, are moved to the process owning their target.
+     */
+    @Override
+    public void run() {
+        _lookahead = computeLookahead();
+
+        // Move the initial events, keeping their tie breakers so ties are resolved the same way.
+        for (var initial : Topology.engines(_entities)) {
+            // The entities trace to the process running them, so the processes take over the trace of the simulation.
+            var tracer = initial.getTracer();
+            if (tracer.getSink() != null) {
+                for (var process : _processes) {
+                    process.getTracer().enable(tracer.getSink(), tracer.getLevel());
+                }
+            }
+
+            EventHandle handle;
+            while ((handle = initial.take()) != null) {
+                int process = handle._target._logicalProcess;
+                if (process < 0) {
+                    process = Math.max(handle._registrator._logicalProcess, 0);
+                }
+                _processes[process].scheduleAt(handle._registrator, handle._target, handle._event, handle._simSlot._msek,
+                        handle._simSlot._resolver);
+            }
+        }
+
+        _done = false;
+        _failure = null;
+        _barrier = new CyclicBarrier(_processes.length, this::nextWindow);
+        nextWindow();
+
+        var threads = new Thread[_processes.length];
+        for (int i = 0; i < threads.length; ++i) {
+            int process = i;
+            threads[i] = new Thread(() -> work(process), "LP-" + i);
+            threads[i].start();
+        }
+        for (var thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("interrupted while waiting for logical processes", e);
+            }
+        }
+
+        if (_failure != null) {
+            throw new IllegalStateException("logical process failed", _failure);
+        }
+    }
+
+    public int getProcessCount() {
+        return _processes.length;
+    }
+
+    public SimEngine getProcess(int process) {
+        return _processes[process];
+    }
+
+    public double getLookahead() {
+        return _lookahead;
+    }
+
+    public long getWindowCount() {
+        return _windows;
+    }
+
+    public long getRemoteEventCount() {
+        return _remoteEvents;
+    }
+
+    // Called for each event scheduled by a process. Events for another process are buffered until the end of the
+    // window, they cannot be erased so the handle is never queued.
+    @Override
+    public EventHandle register(SimEngine from, SimEnt registrator, SimEnt target, Event event, double time, double delay) {
+        int process = target._logicalProcess;
+        if (process < 0 || process == from._logicalProcess) {
+            return null;
+        }
+
+        if (delay < _lookahead) {
+            throw new IllegalStateException(String.format("%s sent [%s] to %s in another logical process with delay %s, below the lookahead %s",
+                    registrator, event, target, delay, _lookahead));
+        }
+        long resolver = from.resolver(registrator, target);
+        _outboxes.get(from._logicalProcess).add(new RemoteEvent(registrator, target, event, time, resolver));
+        return new EventHandle(registrator, target, event, new SimTimeSlot(time, resolver));
+    }
+
+    // Run by each worker thread, one window at a time.
+    private void work(int index) {
+        var process = _processes[index];
+        SimEngine.bind(process);
+        try {
+            while (!_done) {
+                // A process that has failed keeps meeting the others at the barrier, so the barrier action can end
+                // the run instead of leaving the others waiting.
+                if (_failure == null) {
+                    try {
+                        process.runUntil(_windowEnd);
+                    } catch (RuntimeException | Error e) {
+                        fail(e);
+                    }
+                }
+                _barrier.await();
+            }
+        } catch (InterruptedException | BrokenBarrierException e) {
+            fail(e);
+        } finally {
+            SimEngine.bind(null);
+        }
+    }
+
+    private synchronized void fail(Throwable e) {
+        if (_failure == null) {
+            _failure = e;
+        }
+    }
+
+    // Barrier action. Delivers the events sent during the last window, and computes the next window.
+    private void nextWindow() {
+        if (_failure != null) {
+            _done = true;
+            return;
+        }
+
+        for (var outbox : _outboxes) {
+            for (var event : outbox) {
+                _processes[event.target._logicalProcess].scheduleAt(event.registrator, event.target, event.event, event.time,
+                        event.resolver);
+            }
+            _remoteEvents += outbox.size();
+            outbox.clear();
+        }
+
+        double next = Double.POSITIVE_INFINITY;
+        for (var process : _processes) {
+            if (process.isStopped()) {
+                _done = true;
+                return;
+            }
+            next = Math.min(next, process.nextEventTime());
+        }
+
+        if (next == Double.POSITIVE_INFINITY) {
+            _done = true;
+        } else {
+            _windowEnd = next + _lookahead;
+            _windows += 1;
+        }
+    }
+
+    // The smallest minimum delay of the links that connect two different processes.
+    private double computeLookahead() {
+        double lookahead = Double.POSITIVE_INFINITY;
+        for (var entity : _entities) {
+            if (entity instanceof Link link && link._logicalProcess < 0) {
+                var ends = link.neighbours();
+                if (ends.size() == 2 && ends.get(0)._logicalProcess != ends.get(1)._logicalProcess) {
+                    lookahead = Math.min(lookahead, link.getMinimumDelay());
+                }
+            }
+        }
+        return lookahead;
+    }
+
+    // Links with a minimum delay are where the topology is cut between processes.
+    private static boolean isCut(SimEnt entity) {
+        return entity instanceof Link link && link.getMinimumDelay() > 0;
+    }
+
+    private static int find(int[] parent, int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+
+    private static void union(int[] parent, int a, int b) {
+        int rootA = find(parent, a);
+        int rootB = find(parent, b);
+        if (rootA != rootB) {
+            parent[Math.max(rootA, rootB)] = Math.min(rootA, rootB);
+        }
+    }
+}
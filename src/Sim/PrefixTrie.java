@@ -0,0 +1,278 @@
+package Sim;
+
+import java.util.Arrays;
+
+/**
+ * Path compressed binary trie for longest prefix matching on 64-bit network ids.
+ * <p>
+ * Every node holds a whole prefix, and only nodes where prefixes branch off or end are stored, so a lookup visits about
+ * log2 of the number of prefixes nodes instead of one per bit. The nodes live in flat arrays, with the two children of
+ * node n at index 2n and 2n + 1 of the child array. Node 0 is the root, the prefix of length zero, and nodes that are
+ * no longer needed when a prefix is removed are reused.
+ *
+ * @param <V> type of the values stored for each prefix.
+ */
+public class PrefixTrie<V> {
+    // Longest prefix that can be stored, longer prefixes are treated as this.
+    public static final int MAX_PREFIX = 64;
+
+    // Mask with the first n bits set, for each prefix length n.
+    private static final long[] MASKS = new long[MAX_PREFIX + 1];
+
+    static {
+        for (int i = 1; i <= MAX_PREFIX; ++i) {
+            MASKS[i] = -1L << (MAX_PREFIX - i);
+        }
+    }
+
+    // Prefix of each node, with the bits after the prefix length cleared.
+    private long[] _keys;
+
+    // Prefix length of each node.
+    private int[] _lengths;
+
+    // Value stored at each node, or null if the node only joins two branches.
+    private Object[] _values;
+
+    // Child indexes, 0 means no child since the root is never a child.
+    private int[] _children;
+
+    // Number of node slots in use, including free ones below it.
+    private int _nodes = 1;
+
+    // Free nodes, linked through their first child slot.
+    private int _free = 0;
+
+    // Number of prefixes stored.
+    private int _size = 0;
+
+    /**
+     * Creates an empty trie.
+     */
+    public PrefixTrie() {
+        _keys = new long[16];
+        _lengths = new int[16];
+        _values = new Object[16];
+        _children = new int[2 * 16];
+    }
+
+    /**
+     * Stores a value for a prefix, replacing any value already stored for it.
+     *
+     * @param prefix network id, the bits after the prefix length are ignored.
+     * @param length prefix length in bits.
+     * @param value  value to store, not null.
+     * @return the value previously stored for the prefix, or null.
+     */
+    public V put(long prefix, int length, V value) {
+        if (value == null) {
+            throw new IllegalArgumentException("a prefix trie cannot store null");
+        }
+        int bits = clamp(length);
+        long key = prefix & MASKS[bits];
+
+        int node = 0;
+        while (true) {
+            int nodeLength = _lengths[node];
+            int common = commonLength(key, bits, _keys[node], nodeLength);
+
+            if (common == nodeLength && common == bits) {
+                // The prefix already has a node.
+                @SuppressWarnings("unchecked")
+                V previous = (V) _values[node];
+                _values[node] = value;
+                if (previous == null) {
+                    _size += 1;
+                }
+                return previous;
+            }
+
+            if (common == nodeLength) {
+                // The node is a prefix of the new prefix, continue below it.
+                int slot = 2 * node + bit(key, nodeLength);
+                int child = _children[slot];
+                if (child == 0) {
+                    // Allocate before indexing, growing replaces the child array.
+                    int leaf = allocate(key, bits, value);
+                    _children[slot] = leaf;
+                    _size += 1;
+                    return null;
+                }
+                node = child;
+                continue;
+            }
+
+            // The new prefix diverges from the node, or ends in the middle of it. Either way a node is put in front of
+            // it, which takes its place under the parent. Since the root has length zero this never happens there.
+            int parentSlot = findSlot(node);
+            int front;
+            if (common == bits) {
+                front = allocate(key, bits, value);
+            } else {
+                int leaf = allocate(key, bits, value);
+                front = allocate(key & MASKS[common], common, null);
+                _children[2 * front + bit(key, common)] = leaf;
+            }
+            _children[2 * front + bit(_keys[node], common)] = node;
+            _children[parentSlot] = front;
+            _size += 1;
+            return null;
+        }
+    }
+
+    /**
+     * Returns the value stored for exactly this prefix.
+     *
+     * @param prefix network id, the bits after the prefix length are ignored.
+     * @param length prefix length in bits.
+     * @return the stored value, or null.
+     */
+    @SuppressWarnings("unchecked")
+    public V get(long prefix, int length) {
+        int node = find(prefix, clamp(length));
+        return node < 0 ? null : (V) _values[node];
+    }
+
+    /**
+     * Removes the value stored for a prefix, and frees the nodes that are no longer needed.
+     *
+     * @param prefix network id, the bits after the prefix length are ignored.
+     * @param length prefix length in bits.
+     * @return the removed value, or null if nothing was stored for the prefix.
+     */
+    public V remove(long prefix, int length) {
+        int node = find(prefix, clamp(length));
+        if (node < 0 || _values[node] == null) {
+            return null;
+        }
+
+        @SuppressWarnings("unchecked")
+        V previous = (V) _values[node];
+        _values[node] = null;
+        _size -= 1;
+
+        // A node without a value is only kept while it joins two branches.
+        while (node != 0 && _values[node] == null) {
+            int left = _children[2 * node];
+            int right = _children[2 * node + 1];
+            if (left != 0 && right != 0) {
+                break;
+            }
+            int parentSlot = findSlot(node);
+            _children[parentSlot] = left != 0 ? left : right;
+            release(node);
+            node = parentSlot / 2;
+        }
+        return previous;
+    }
+
+    /**
+     * Finds the value of the longest stored prefix that matches an address.
+     *
+     * @param address network id to look up.
+     * @return the value of the longest matching prefix, or null if no prefix matches.
+     */
+    @SuppressWarnings("unchecked")
+    public V lookup(long address) {
+        Object best = _values[0];
+        int node = _children[bit(address, 0)];
+        while (node != 0) {
+            int length = _lengths[node];
+            if (((address ^ _keys[node]) & MASKS[length]) != 0) {
+                break;
+            }
+            if (_values[node] != null) {
+                best = _values[node];
+            }
+            if (length == MAX_PREFIX) {
+                break;
+            }
+            node = _children[2 * node + bit(address, length)];
+        }
+        return (V) best;
+    }
+
+    public int size() {
+        return _size;
+    }
+
+    /**
+     * Removes all prefixes.
+     */
+    public void clear() {
+        Arrays.fill(_children, 0, 2 * _nodes, 0);
+        Arrays.fill(_values, 0, _nodes, null);
+        _nodes = 1;
+        _free = 0;
+        _size = 0;
+    }
+
+    // Returns the node holding exactly this prefix, or -1.
+    private int find(long prefix, int bits) {
+        long key = prefix & MASKS[bits];
+        int node = 0;
+        while (_lengths[node] < bits) {
+            node = _children[2 * node + bit(key, _lengths[node])];
+            if (node == 0 || _lengths[node] > bits || ((key ^ _keys[node]) & MASKS[_lengths[node]]) != 0) {
+                return -1;
+            }
+        }
+        return _lengths[node] == bits && _keys[node] == key ? node : -1;
+    }
+
+    // Returns the child slot of the parent pointing at a node, found by walking down from the root.
+    private int findSlot(int node) {
+        long key = _keys[node];
+        int current = 0;
+        while (true) {
+            int slot = 2 * current + bit(key, _lengths[current]);
+            if (_children[slot] == node) {
+                return slot;
+            }
+            current = _children[slot];
+        }
+    }
+
+    private int allocate(long key, int length, Object value) {
+        int node;
+        if (_free != 0) {
+            node = _free;
+            _free = _children[2 * node];
+            _children[2 * node] = 0;
+        } else {
+            if (_nodes == _values.length) {
+                int capacity = _values.length * 2;
+                _keys = Arrays.copyOf(_keys, capacity);
+                _lengths = Arrays.copyOf(_lengths, capacity);
+                _values = Arrays.copyOf(_values, capacity);
+                _children = Arrays.copyOf(_children, 2 * capacity);
+            }
+            node = _nodes++;
+        }
+        _keys[node] = key;
+        _lengths[node] = length;
+        _values[node] = value;
+        return node;
+    }
+
+    private void release(int node) {
+        _values[node] = null;
+        _children[2 * node] = _free;
+        _children[2 * node + 1] = 0;
+        _free = node;
+    }
+
+    // Number of leading bits two prefixes have in common, at most the shorter length.
+    private static int commonLength(long a, int aLength, long b, int bLength) {
+        int common = Long.numberOfLeadingZeros(a ^ b);
+        return Math.min(common, Math.min(aLength, bLength));
+    }
+
+    private static int bit(long value, int depth) {
+        return (int) (value >>> (MAX_PREFIX - 1 - depth)) & 1;
+    }
+
+    private static int clamp(int length) {
+        return Math.max(0, Math.min(MAX_PREFIX, length));
+    }
+}
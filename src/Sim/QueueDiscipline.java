@@ -0,0 +1,63 @@
+package Sim;
+
+/**
+ * Decides which packets a {@link QueuedLink} drops once they are queued. The queue itself is always bounded, and a
+ * packet arriving at a full queue is dropped whatever the discipline, so this base class on its own is drop-tail.
+ * <p>
+ * A queued link keeps one discipline per direction and calls it in the order packets arrive. Since the queue is FIFO,
+ * the time a packet will reach the head of the queue is already known when it arrives, so disciplines that act when a
+ * packet is dequeued, like {@link CoDel}, are asked then with that future time.
+ */
+public class QueueDiscipline {
+    /**
+     * Drops packets only when the queue is full.
+     */
+    public static final QueueDiscipline DROP_TAIL = new QueueDiscipline();
+
+    protected QueueDiscipline() {
+    }
+
+    /**
+     * Decides whether an arriving packet is dropped before it is queued.
+     *
+     * @param now              arrival time.
+     * @param queued           packets in the queue, including the one being transmitted.
+     * @param idleSince        time the queue became empty, if it is empty.
+     * @param transmissionTime time it takes to transmit the packet.
+     * @return true to drop the packet.
+     */
+    protected boolean dropOnArrival(double now, int queued, double idleSince, double transmissionTime) {
+        return false;
+    }
+
+    /**
+     * Decides whether a packet reaching the head of the queue is dropped instead of transmitted.
+     *
+     * @param now     time the packet reaches the head of the queue.
+     * @param sojourn time the packet has been queued.
+     * @return true to drop the packet.
+     */
+    protected boolean dropAtHead(double now, double sojourn) {
+        return false;
+    }
+
+    /**
+     * Returns a discipline with the same settings and state, drawing the same random numbers from here on, for rollbacks
+     * in the optimistic engine. Disciplines without state can return themselves.
+     *
+     * @return the copy.
+     */
+    protected QueueDiscipline copy() {
+        return this;
+    }
+
+    /**
+     * Returns a discipline with the same settings and state for the other direction of a link, drawing random numbers
+     * independent of this one's. Disciplines that draw none return a copy.
+     *
+     * @return the copy for the other direction.
+     */
+    protected QueueDiscipline split() {
+        return copy();
+    }
+}
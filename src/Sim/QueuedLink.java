@@ -0,0 +1,371 @@
+package Sim;
+
+import Sim.Trace.TraceLevel;
+import Sim.Trace.TracePoint;
+
+/**
+ * QueuedLink is a Link with a bit rate and a propagation delay, where each direction has its own bounded FIFO queue in
+ * front of the transmitter. A packet takes its size divided by the bit rate to transmit, waits in the queue while the
+ * packets ahead of it are transmitted, and is dropped when the queue is full or when the queue discipline says so.
+ * <p>
+ * No events are scheduled for the queue. Since the queue is FIFO, a packet leaves it when the transmitter is done with
+ * the packets ahead of it, which is known when it arrives, so each direction only keeps the time its transmitter is
+ * busy until and the times the queued packets leave, and the packet is forwarded once, with the queueing,
+ * transmission and propagation delay added up.
+ * <p>
+ * Background traffic modelled by a {@link FluidModel} takes part of the bit rate of a direction. Beyond the bit rate it
+ * fills the queue at the rate it exceeds it, and the queue drains again when it falls below. Below the bit rate a
+ * packet also waits for the mean queue the background packets would have formed together with the packets sent into
+ * the link, from the Kingman approximation rho / (1 - rho) * (ca^2 + cs^2) / 2 times the mean transmission time, where
+ * rho is the load of both, ca^2 the squared coefficient of variation of the times between the background packets,
+ * weighted by their share of the load, and cs^2 that of their transmission times. For Poisson background traffic this
+ * is the Pollaczek-Khinchine formula. The wait is kept out of the transmitter's work, so the packets behind it do not
+ * wait for it twice. A queue full of overloading traffic drops the share of the packets the load exceeds the bit rate
+ * by, evenly spread rather than at random.
+ */
+public class QueuedLink extends Link {
+    private static final TracePoint TRACE_DROP = TracePoint.define(TraceLevel.DEBUG, "== Link queue drop packet: [%s], queued: %d");
+
+    // Fluid packet times the load of the packets sent into a direction with fluid traffic is averaged over.
+    private static final double FOREGROUND_WINDOW = 1000;
+
+    // Bit rate in bits per second, and the propagation delay in milliseconds.
+    private final double _bitRate;
+    private final double _delay;
+
+    // Queues from connector A to B and the other way. Each is only used by the side that sends into it, so the two
+    // sides of a link between logical processes of a parallel engine never share one.
+    private Direction _aToB;
+    private Direction _bToA;
+
+    /**
+     * Instantiates a drop-tail QueuedLink.
+     *
+     * @param engine   engine the link runs in.
+     * @param bitRate  bits per second each direction transmits.
+     * @param delay    propagation delay in milliseconds.
+     * @param capacity packets each direction can queue, including the one being transmitted.
+     */
+    public QueuedLink(SimEngine engine, double bitRate, double delay, int capacity) {
+        this(engine, bitRate, delay, capacity, QueueDiscipline.DROP_TAIL);
+    }
+
+    /**
+     * Instantiates a QueuedLink.
+     *
+     * @param engine     engine the link runs in.
+     * @param bitRate    bits per second each direction transmits.
+     * @param delay      propagation delay in milliseconds.
+     * @param capacity   packets each direction can queue, including the one being transmitted.
+     * @param discipline queue discipline, copied for one direction and split for the other.
+     */
+    public QueuedLink(SimEngine engine, double bitRate, double delay, int capacity, QueueDiscipline discipline) {
+        super(engine);
+        if (bitRate <= 0) {
+            throw new IllegalArgumentException("Bit rate must be positive: " + bitRate);
+        }
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Queue capacity must be at least 1: " + capacity);
+        }
+        _bitRate = bitRate;
+        _delay = delay;
+        _aToB = new Direction(capacity, discipline.copy());
+        _bToA = new Direction(capacity, discipline.split());
+    }
+
+    public double getBitRate() {
+        return _bitRate;
+    }
+
+    /**
+     * Returns the time it takes to transmit a message.
+     *
+     * @param msg message to transmit.
+     * @return the transmission time in milliseconds.
+     */
+    public double getTransmissionTime(Message msg) {
+        return msg.size() * 8000.0 / _bitRate;
+    }
+
+    public long getDroppedPackets() {
+        return _aToB._dropped + _bToA._dropped;
+    }
+
+    public long getTransmittedPackets() {
+        return _aToB._transmitted + _bToA._transmitted;
+    }
+
+    public long getTransmittedBytes() {
+        return _aToB._transmittedBytes + _bToA._transmittedBytes;
+    }
+
+    /**
+     * Returns the average time transmitted packets waited in the queue before their transmission started.
+     *
+     * @return the average queueing delay in milliseconds, or 0 if nothing was transmitted.
+     */
+    public double getAverageQueueingDelay() {
+        long transmitted = getTransmittedPackets();
+        return transmitted == 0 ? 0 : (_aToB._queueingDelay + _bToA._queueingDelay) / transmitted;
+    }
+
+    /**
+     * Returns the largest number of packets that were queued in one direction at the same time.
+     *
+     * @return the largest queue length.
+     */
+    public int getMaxQueueLength() {
+        return Math.max(_aToB._maxQueued, _bToA._maxQueued);
+    }
+
+    /**
+     * Returns the propagation delay, which is the least any packet takes to cross the link.
+     *
+     * @return the minimum delay for a packet.
+     */
+    @Override
+    public double getMinimumDelay() {
+        return _delay;
+    }
+
+    /**
+     * Returns the largest fraction of the bit rate of a direction that fluid background traffic takes.
+     *
+     * @return the load, above 1 when the link is overloaded.
+     */
+    public double getFluidLoad() {
+        return Math.max(_aToB._fluidLoad, _bToA._fluidLoad);
+    }
+
+    // Sets the fluid background traffic sent into the link from one end: the fraction of the bit rate it takes, the
+    // squared coefficients of variation of the times between its packets and of their sizes, and the mean time one of
+    // them takes to transmit.
+    void setFluid(SimEnt from, double load, double intervalVariation, double sizeVariation, double packetTime) {
+        var direction = from == _connectorA ? _aToB : _bToA;
+        direction.setFluid(getEngine().getTime(), load, intervalVariation, sizeVariation, packetTime);
+    }
+
+    @Override
+    public void recv(SimEnt src, Event ev) {
+        if (ev instanceof Message msg && _enabled) {
+            var direction = src == _connectorA ? _aToB : _bToA;
+            double now = getEngine().getTime();
+            double arrival = direction.enqueue(this, msg, now);
+            if (arrival < 0) {
+                // The queue length would be boxed before the tracer checks the level.
+                if (tracer().isEnabled(TRACE_DROP)) {
+                    tracer().trace(TRACE_DROP, ev, direction._queued);
+                }
+                return;
+            }
+            forward(src, ev, arrival - now);
+            return;
+        }
+        super.recv(src, ev);
+    }
+
+    // State saved for rollbacks in the optimistic engine.
+    private record QueuedLinkState(Object linkState, Direction aToB, Direction bToA) {
+    }
+
+    @Override
+    protected Object saveState() {
+        return new QueuedLinkState(super.saveState(), _aToB.save(), _bToA.save());
+    }
+
+    @Override
+    protected void restoreState(Object state) {
+        var saved = (QueuedLinkState) state;
+        super.restoreState(saved.linkState);
+        _aToB.restore(saved.aToB);
+        _bToA.restore(saved.bToA);
+    }
+
+    // One direction of the link: a ring of the times the queued packets leave the queue, oldest first, and the time
+    // the transmitter is busy until.
+    private static final class Direction {
+        private final double[] _leaves;
+        private QueueDiscipline _discipline;
+        private int _head = 0;
+        private int _queued = 0;
+        private double _busyUntil = 0;
+
+        // Fluid background traffic: the fraction of the bit rate it takes, the squared coefficients of variation of the
+        // times between its packets and of their sizes, the mean time one of them takes to transmit, and the time the
+        // work it added was last accounted for.
+        private double _fluidLoad = 0;
+        private double _fluidIntervalVariation = 0;
+        private double _fluidSizeVariation = 0;
+        private double _fluidPacketTime = 0;
+        private double _fluidTime = 0;
+
+        // Fraction of the bit rate taken by the packets sent into the link while there is fluid, averaged over the
+        // last FOREGROUND_WINDOW fluid packet times, and when it was last updated.
+        private double _foregroundLoad = 0;
+        private double _foregroundTime = 0;
+
+        // Share of a packet still to be dropped at a full, overloaded queue, see enqueue.
+        private double _fluidDrops = 0;
+
+        private long _transmitted = 0;
+        private long _transmittedBytes = 0;
+        private long _dropped = 0;
+        private double _queueingDelay = 0;
+        private int _maxQueued = 0;
+
+        private Direction(int capacity, QueueDiscipline discipline) {
+            this(new double[capacity], discipline);
+        }
+
+        private Direction(double[] leaves, QueueDiscipline discipline) {
+            _leaves = leaves;
+            _discipline = discipline;
+        }
+
+        // Queues a message arriving now and returns when it arrives at the other side, or -1 if it is dropped.
+        private double enqueue(QueuedLink link, Message msg, double now) {
+            while (_queued > 0 && _leaves[_head] <= now) {
+                _head = (_head + 1) % _leaves.length;
+                _queued -= 1;
+            }
+
+            // Behind fluid traffic the queue also holds its packets, counted from the work ahead, up to all but one
+            // place. Load beyond the bit rate keeps the queue full, and packets get in as space frees up, so they lose
+            // the share of the load beyond the bit rate, the same as the fluid.
+            double transmissionTime = link.getTransmissionTime(msg);
+            int queued = _queued;
+            double wait = 0;
+            boolean overflow = false;
+            if (_fluidLoad > 0) {
+                advanceFluid(now);
+                double load = _fluidLoad + foregroundLoad(now, transmissionTime);
+                wait = fluidWait(load);
+                double work = Math.max(0, _busyUntil - now) + wait;
+                queued = Math.max(queued, (int) Math.min(Math.ceil(work / _fluidPacketTime), _leaves.length - 1));
+                if (load > 1 && queued >= _leaves.length - 1) {
+                    _fluidDrops += 1 - 1 / load;
+                    overflow = _fluidDrops >= 1;
+                    if (overflow) {
+                        _fluidDrops -= 1;
+                    }
+                }
+            }
+
+            if (overflow || queued == _leaves.length
+                    || _discipline.dropOnArrival(now, queued, _busyUntil, transmissionTime)) {
+                _dropped += 1;
+                return -1;
+            }
+
+            // A packet dropped at the head leaves the queue when it gets there and takes no time to transmit. The mean
+            // wait behind fluid packets is added on top, without letting the packet overtake the one before it.
+            double start = Math.max(now, _busyUntil);
+            double head = start;
+            if (wait > 0) {
+                head = start + wait;
+                if (_queued > 0) {
+                    head = Math.max(head, _leaves[(_head + _queued - 1) % _leaves.length]);
+                }
+            }
+            boolean dropped = _discipline.dropAtHead(head, head - now);
+            double leaves = dropped ? head : head + transmissionTime;
+            _leaves[(_head + _queued) % _leaves.length] = leaves;
+            _queued += 1;
+            _maxQueued = Math.max(_maxQueued, _queued);
+            _busyUntil = dropped ? start : start + transmissionTime;
+            if (dropped) {
+                _dropped += 1;
+                return -1;
+            }
+
+            _transmitted += 1;
+            _transmittedBytes += msg.size();
+            _queueingDelay += head - now;
+            return leaves + link._delay;
+        }
+
+        private void setFluid(double now, double load, double intervalVariation, double sizeVariation,
+                              double packetTime) {
+            if (_fluidLoad > 0) {
+                advanceFluid(now);
+            }
+            _fluidLoad = load;
+            _fluidIntervalVariation = intervalVariation;
+            _fluidSizeVariation = sizeVariation;
+            _fluidPacketTime = packetTime;
+            _fluidTime = now;
+        }
+
+        // Adds the work the fluid traffic brought since it was last accounted for. The work changes by the load less
+        // the bit rate, and is held to all but one place in the queue; beyond that the fluid is lost. When the work
+        // runs out, the transmitter has been idle since that time.
+        private void advanceFluid(double now) {
+            double work = Math.max(0, _busyUntil - _fluidTime);
+            double change = (_fluidLoad - 1) * (now - _fluidTime);
+            if (work + change > 0) {
+                _busyUntil = now + Math.min(work + change, (_leaves.length - 1) * _fluidPacketTime);
+            } else if (work > 0) {
+                _busyUntil = _fluidTime + work / (1 - _fluidLoad);
+            }
+            _fluidTime = now;
+        }
+
+        // Adds a packet arriving now to the load of the packets, and returns it.
+        private double foregroundLoad(double now, double transmissionTime) {
+            double window = FOREGROUND_WINDOW * _fluidPacketTime;
+            _foregroundLoad = _foregroundLoad * Math.exp((_foregroundTime - now) / window) + transmissionTime / window;
+            _foregroundTime = now;
+            return _foregroundLoad;
+        }
+
+        // Mean time a packet waits for the packets of the fluid and the other packets queued at random, for a load
+        // below the bit rate. The packets sent into the link are taken to come at even times.
+        private double fluidWait(double load) {
+            if (load >= 1) {
+                return 0;
+            }
+            double intervalVariation = _fluidLoad / load * _fluidIntervalVariation;
+            double wait = load / (1 - load) * (intervalVariation + _fluidSizeVariation) / 2 * _fluidPacketTime;
+            // The mean queue alone never fills it, some packets still get through.
+            return Math.min(wait, (_leaves.length - 1) * _fluidPacketTime);
+        }
+
+        // Returns a copy for rollbacks, saved before every event the link gets. It only holds the times of the packets
+        // that are queued, oldest first, rather than a ring as large as the queue.
+        private Direction save() {
+            var saved = new Direction(new double[_queued], _discipline.copy());
+            for (int i = 0; i < _queued; ++i) {
+                saved._leaves[i] = _leaves[(_head + i) % _leaves.length];
+            }
+            saved.copyFrom(this);
+            return saved;
+        }
+
+        // Puts back a state returned by save into the ring of this direction. The saved state is left as it is, as
+        // the engine may restore it again.
+        private void restore(Direction saved) {
+            System.arraycopy(saved._leaves, 0, _leaves, 0, saved._queued);
+            _head = 0;
+            _discipline = saved._discipline.copy();
+            copyFrom(saved);
+        }
+
+        private void copyFrom(Direction other) {
+            _queued = other._queued;
+            _busyUntil = other._busyUntil;
+            _fluidLoad = other._fluidLoad;
+            _fluidIntervalVariation = other._fluidIntervalVariation;
+            _fluidSizeVariation = other._fluidSizeVariation;
+            _fluidPacketTime = other._fluidPacketTime;
+            _fluidTime = other._fluidTime;
+            _foregroundLoad = other._foregroundLoad;
+            _foregroundTime = other._foregroundTime;
+            _fluidDrops = other._fluidDrops;
+            _transmitted = other._transmitted;
+            _transmittedBytes = other._transmittedBytes;
+            _dropped = other._dropped;
+            _queueingDelay = other._queueingDelay;
+            _maxQueued = other._maxQueued;
+        }
+    }
+}
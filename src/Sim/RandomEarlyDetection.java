@@ -0,0 +1,117 @@
+package Sim;
+
+import java.util.random.RandomGenerator;
+
+/**
+ * Random early detection (Floyd and Jacobson, 1993). Arriving packets are dropped with a probability that grows
+ * linearly from 0 to the maximum probability as the average queue length goes from the minimum to the maximum
+ * threshold, and always above that. The average is an exponentially weighted moving average of the queue length seen
+ * by arriving packets, which decays while the queue is idle as if packets of the current size had arrived to an empty
+ * queue.
+ */
+public class RandomEarlyDetection extends QueueDiscipline {
+    // Weight of the queue length that was just seen in the average.
+    public static final double DEFAULT_WEIGHT = 0.002;
+
+    private final double _minThreshold;
+    private final double _maxThreshold;
+    private final double _maxProbability;
+    private final double _weight;
+    private final RandomGenerator.JumpableGenerator _random;
+
+    // Average queue length.
+    private double _average = 0;
+
+    // Packets queued since the last drop, which spreads the drops out evenly.
+    private int _count = -1;
+
+    /**
+     * Instantiates random early detection with the default weight.
+     *
+     * @param minThreshold   average queue length in packets where dropping starts.
+     * @param maxThreshold   average queue length in packets from which every packet is dropped.
+     * @param maxProbability probability of a drop just below the maximum threshold.
+     * @param seed           seed for the drops.
+     */
+    public RandomEarlyDetection(double minThreshold, double maxThreshold, double maxProbability, long seed) {
+        this(minThreshold, maxThreshold, maxProbability, DEFAULT_WEIGHT, RandomStreams.seeded(seed));
+    }
+
+    /**
+     * Instantiates random early detection.
+     *
+     * @param minThreshold   average queue length in packets where dropping starts.
+     * @param maxThreshold   average queue length in packets from which every packet is dropped.
+     * @param maxProbability probability of a drop just below the maximum threshold.
+     * @param weight         weight in (0, 1] of the latest queue length in the average.
+     * @param seed           seed for the drops.
+     */
+    public RandomEarlyDetection(double minThreshold, double maxThreshold, double maxProbability, double weight, long seed) {
+        this(minThreshold, maxThreshold, maxProbability, weight, RandomStreams.seeded(seed));
+    }
+
+    private RandomEarlyDetection(double minThreshold, double maxThreshold, double maxProbability, double weight,
+                                 RandomGenerator.JumpableGenerator random) {
+        if (minThreshold < 0 || maxThreshold <= minThreshold) {
+            throw new IllegalArgumentException("RED thresholds must satisfy 0 <= min < max: " + minThreshold + ", " + maxThreshold);
+        }
+        if (weight <= 0 || weight > 1) {
+            throw new IllegalArgumentException("RED weight must be in (0, 1]: " + weight);
+        }
+        _minThreshold = minThreshold;
+        _maxThreshold = maxThreshold;
+        _maxProbability = maxProbability;
+        _weight = weight;
+        _random = random;
+    }
+
+    public double getAverageQueueLength() {
+        return _average;
+    }
+
+    @Override
+    protected boolean dropOnArrival(double now, int queued, double idleSince, double transmissionTime) {
+        if (queued == 0 && transmissionTime > 0) {
+            double idlePackets = (now - idleSince) / transmissionTime;
+            _average *= Math.pow(1 - _weight, idlePackets);
+        }
+        _average += _weight * (queued - _average);
+
+        if (_average < _minThreshold) {
+            _count = -1;
+            return false;
+        }
+        if (_average >= _maxThreshold) {
+            _count = 0;
+            return true;
+        }
+        _count += 1;
+        double probability = _maxProbability * (_average - _minThreshold) / (_maxThreshold - _minThreshold);
+        if (_count * probability < 1 && _random.nextDouble() * (1 - _count * probability) >= probability) {
+            return false;
+        }
+        _count = 0;
+        return true;
+    }
+
+    // The copy continues from the same point of the stream, so a rolled back link drops the same packets again.
+    @Override
+    protected QueueDiscipline copy() {
+        return copy(_random.copy());
+    }
+
+    // The other direction draws from a copy of the stream jumped ahead, so the two directions drop independently.
+    @Override
+    protected QueueDiscipline split() {
+        var random = _random.copy();
+        random.jump();
+        return copy(random);
+    }
+
+    private RandomEarlyDetection copy(RandomGenerator.JumpableGenerator random) {
+        var copy = new RandomEarlyDetection(_minThreshold, _maxThreshold, _maxProbability, _weight, random);
+        copy._average = _average;
+        copy._count = _count;
+        return copy;
+    }
+}
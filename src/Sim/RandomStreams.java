@@ -0,0 +1,105 @@
+package Sim;
+
+import java.util.random.RandomGenerator;
+import java.util.random.RandomGeneratorFactory;
+
+/**
+ * Random number streams of a simulation, all derived from one master seed. Every entity that draws random numbers gets
+ * a stream of its own, so no two entities, and no two threads of a parallel engine, ever share a generator, and the
+ * same seed always gives the same run.
+ * <p>
+ * A stream is best asked for by name. The name alone picks the stream, whatever other streams were handed out before,
+ * so the same entity draws the same numbers in every simulation with the same seed even if the topology around it
+ * changes. That is what makes common random numbers work: simulations of different points of a sweep run with the same
+ * seed compare their parameters under the same randomness, and the differences between them are far less noisy than
+ * with independent seeds. Streams for entities without a name are numbered in the order they are asked for.
+ * <p>
+ * Each simulation has its own instance, see {@link SimEngine#getRandomStreams()}. Like building a topology, asking for
+ * streams is done from one thread; the streams themselves are then only used by the entity they were handed to.
+ * <p>
+ * The streams are xoshiro256++ generators, which can be copied, so the optimistic engine can save where an entity's
+ * stream was and put it back on a rollback. Jumping one ahead by 2<sup>128</sup> values gives a second stream that
+ * never overlaps the first, such as one for the other direction of a link.
+ */
+public final class RandomStreams {
+    /**
+     * Master seed of engines that were not given one.
+     */
+    public static final long DEFAULT_SEED = 1;
+
+    // Looking an algorithm up goes through a service loader, so it is done once.
+    private static final RandomGeneratorFactory<RandomGenerator.JumpableGenerator> GENERATORS =
+            RandomGeneratorFactory.of("Xoshiro256PlusPlus");
+
+    private final long _seed;
+
+    // Number of the next unnamed stream.
+    private long _nextStream = 0;
+
+    public RandomStreams(long seed) {
+        _seed = seed;
+    }
+
+    public long getSeed() {
+        return _seed;
+    }
+
+    /**
+     * Returns the stream with the given name.
+     *
+     * @param name name of the stream, unique within the simulation.
+     * @return a new generator, drawing the same numbers for the same seed and name.
+     */
+    public RandomGenerator.JumpableGenerator stream(String name) {
+        return stream(name, 0);
+    }
+
+    /**
+     * Returns a stream of a numbered family, like one for each of many entities of the same kind.
+     *
+     * @param name  name of the family.
+     * @param index number of the stream within the family.
+     * @return a new generator, drawing the same numbers for the same seed, name and index.
+     */
+    public RandomGenerator.JumpableGenerator stream(String name, long index) {
+        // FNV-1a over the name, then mixed with the seed and the index.
+        long hash = 0xCBF2_9CE4_8422_2325L;
+        for (int i = 0; i < name.length(); ++i) {
+            hash = (hash ^ name.charAt(i)) * 0x100_0000_01B3L;
+        }
+        return derive(mix(hash) ^ index);
+    }
+
+    /**
+     * Returns the next unnamed stream. Unlike named streams these depend on the order they are asked for in.
+     *
+     * @return a new generator.
+     */
+    public RandomGenerator.JumpableGenerator nextStream() {
+        return derive(mix(~_nextStream++));
+    }
+
+    /**
+     * Returns a stream of the same kind as the others that only depends on the given seed, for entities that are given
+     * a seed of their own instead of a stream.
+     *
+     * @param seed seed of the stream.
+     * @return a new generator, drawing the same numbers for the same seed.
+     */
+    public static RandomGenerator.JumpableGenerator seeded(long seed) {
+        return GENERATORS.create(seed);
+    }
+
+    // The generator spreads its seed over all 256 bits of its state, so streams with different keys start at unrelated
+    // points of a period far too long to run into each other.
+    private RandomGenerator.JumpableGenerator derive(long key) {
+        return GENERATORS.create(mix(_seed + mix(key)));
+    }
+
+    // The finaliser of MurmurHash3, which spreads every bit of the input over the output.
+    private static long mix(long z) {
+        z = (z ^ (z >>> 33)) * 0xFF51_AFD7_ED55_8CCDL;
+        z = (z ^ (z >>> 33)) * 0xC4CE_B9FE_1A85_EC53L;
+        return z ^ (z >>> 33);
+    }
+}
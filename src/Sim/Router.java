@@ -5,20 +5,49 @@ import Sim.Events.LeaveNetwork;
 import Sim.Messages.ICMPv6.*;
 import Sim.Messages.IPv6Tunneled;
 import Sim.Messages.MobileIPv6.*;
+import Sim.Trace.TraceLevel;
+import Sim.Trace.TracePoint;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 
 /**
  * todo
  */
 public class Router extends SimEnt {
+    // Trace points. Forwarded and tunneled packets are traced at DEBUG, control messages at INFO.
+    private static final TracePoint TRACE_RECV = TracePoint.define(TraceLevel.INFO, "%s: recv [%s]");
+    private static final TracePoint TRACE_ENTER = TracePoint.define(TraceLevel.INFO, "%s: [%s]");
+    private static final TracePoint TRACE_LEAVE = TracePoint.define(TraceLevel.INFO, "%s: [%s] [src=%s]");
+    private static final TracePoint TRACE_PROXY_TIMER = TracePoint.define(TraceLevel.INFO, "%s: send Proxy Advertisement to other routers");
+    private static final TracePoint TRACE_PROXY_ADVERTISEMENTS = TracePoint.define(TraceLevel.INFO, "%s: send Proxy Advertisements to all routers");
+    private static final TracePoint TRACE_SEND_BINDING_UPDATE = TracePoint.define(TraceLevel.INFO, "%s: send [%s]");
+    private static final TracePoint TRACE_BINDING_UPDATE = TracePoint.define(TraceLevel.INFO, "%s: update binding cache [home=%s, coa=%s]");
+    private static final TracePoint TRACE_BINDING_REMOVED = TracePoint.define(TraceLevel.INFO, "%s: remove binding [home=%s]");
+    private static final TracePoint TRACE_BINDING_EXPIRED = TracePoint.define(TraceLevel.INFO, "%s: binding expired [home=%s]");
+    private static final TracePoint TRACE_UNPACK = TracePoint.define(TraceLevel.DEBUG, "%s: recv [%s]. Unpack and send [%s]");
+    private static final TracePoint TRACE_FORWARD_TUNNELED = TracePoint.define(TraceLevel.DEBUG, "%s: recv [%s]. Forwarding");
+    private static final TracePoint TRACE_TUNNEL = TracePoint.define(TraceLevel.DEBUG, "%s: tunnel [%s] to dst=%s");
+    private static final TracePoint TRACE_FORWARD = TracePoint.define(TraceLevel.DEBUG, "%s: forward [%s]");
+    private static final TracePoint TRACE_ROUTING_TABLE = TracePoint.define(TraceLevel.INFO, "%s: routing table");
+    private static final TracePoint TRACE_ROUTE = TracePoint.define(TraceLevel.INFO, "  interface %s -> %s");
+    private static final TracePoint TRACE_PROXY_CACHE = TracePoint.define(TraceLevel.INFO, "%s: proxy advertisement cache");
+    private static final TracePoint TRACE_PROXY_ENTRY = TracePoint.define(TraceLevel.INFO, "  %s -> %s");
+    private static final TracePoint TRACE_NO_SUCH_PORT = TracePoint.define(TraceLevel.ERROR, "ERR: %s: trying to connect to port not in router");
+    private static final TracePoint TRACE_INTERFACE_IN_USE = TracePoint.define(TraceLevel.ERROR, "ERR: %s: cannot bind to interface %s, already in use");
+    private static final TracePoint TRACE_NO_ROUTE = TracePoint.define(TraceLevel.ERROR, "ERR: %s wants to send to %s but interface is unbound");
+
     // The router's name.
     private final String _name;
 
     // Routing table, which holds a prefix which corresponds to an interface.
     private ArrayList<RouteTableEntry> _routingTable = new ArrayList<>();
 
+    // The routing table indexed by prefix, used to find the longest matching prefix when forwarding. When several
+    // entries have the same prefix, the one connected first is used.
+    private final PrefixTrie<RouteTableEntry> _routes = new PrefixTrie<>();
+
     // Notes if the interfaces are currently in use.
     private final SimEnt[] _interfaces;
 
@@ -26,7 +55,24 @@ public class Router extends SimEnt {
     private final NetworkAddr _baseAddress;
 
     // Cache for home addresses to current care of addresses.
-    private final HashMap<NetworkAddr, NetworkAddr> _bindingCache = new HashMap<>();
+    private BindingCache _bindingCache = new BindingCache();
+
+    // Default time between expiry ticks in milliseconds. Bindings are removed at the first tick after they expire.
+    private static final double DEFAULT_EXPIRY_RESOLUTION = 100;
+
+    // Deadlines of the bindings that expire, in ticks of _expiryResolution. The wheel only holds deadlines while there
+    // are bindings that expire, and a single timer advances it one tick at a time, however many bindings there are.
+    private TimingWheel _expiryWheel = new TimingWheel(0);
+    private double _expiryResolution = DEFAULT_EXPIRY_RESOLUTION;
+    private final TimerEvent _expiryTimer = new TimerEvent();
+    private boolean _expiryTimerArmed = false;
+
+    // Number of destinations the forwarding cache holds.
+    private static final int FORWARDING_CACHE_SIZE = 256;
+
+    // Forwarding decisions for recent destinations, so the binding cache and the routes are only looked up on a miss.
+    // Cleared whenever the binding cache or the interfaces change.
+    private final ForwardingCache _forwardingCache = new ForwardingCache(FORWARDING_CACHE_SIZE);
 
     // So to make this work we send proxy advertisements to other routers, so they can store those for routers that are
     // one hop away.
@@ -34,6 +80,9 @@ public class Router extends SimEnt {
     // Time between sending out advertisements in milliseconds.
     private int _timeBetweenAdvertisements;
 
+    // Timer that is re-armed for each advertisement.
+    private final TimerEvent _advertisementTimer = new TimerEvent();
+
     // Data stored for each proxy advertisement entry.
     private record ProxyAdvertisementEntry(NetworkAddr interfaceAddr,
                                            NetworkAddr from,
@@ -48,7 +97,8 @@ public class Router extends SimEnt {
                                 NetworkAddr homeAgentAddress,
                                 NetworkAddr homeAddress,
                                 NetworkAddr currentCareOfAddress,
-                                NetworkAddr nextCareOfAddress) {
+                                NetworkAddr nextCareOfAddress,
+                                double lifetime) {
     }
 
     // Cache of the handovers in progress.
@@ -57,14 +107,33 @@ public class Router extends SimEnt {
     // Count of how many packets we dropped, because no interface could be found for the address.
     private int _pktsDroppedNoInterface = 0;
 
+    // Copy of the tables for rollbacks in the optimistic engine. Forwarding does not change the tables, so the copy is
+    // shared between saved states until one of the tables is modified.
+    private record Tables(ArrayList<RouteTableEntry> routingTable,
+                          SimEnt[] interfaces,
+                          BindingCache bindingCache,
+                          HashMap<String, ProxyAdvertisementEntry> proxyAdvertisements,
+                          HashMap<Integer, FastHandover> handovers) {
+    }
+
+    // State saved for rollbacks in the optimistic engine.
+    private record RouterState(Tables tables, int timeBetweenAdvertisements, int pktsDroppedNoInterface,
+                               long expiryTick, boolean expiryTimerArmed) {
+    }
+
+    // Copy of the current tables, or null if they have been modified since the last copy.
+    private Tables _savedTables = null;
+
     /**
      * Instantiate a new router.
      *
+     * @param engine     engine the router runs in.
      * @param name       name of the router.
      * @param interfaces maximum number of interfaces.
      * @param baseAddr   address to use as base for network addresses.
      */
-    public Router(String name, int interfaces, NetworkAddr baseAddr) {
+    public Router(SimEngine engine, String name, int interfaces, NetworkAddr baseAddr) {
+        super(engine);
         _name = name;
         _interfaces = new SimEnt[interfaces];
         _baseAddress = baseAddr;
@@ -78,7 +147,20 @@ public class Router extends SimEnt {
      */
     public void startSendingProxyAdvertisements(int delay) {
         _timeBetweenAdvertisements = delay;
-        send(this, new TimerEvent(), 0);
+        scheduleTimer(_advertisementTimer, 0);
+    }
+
+    /**
+     * Sets the time between checks for expired bindings. Bindings are removed at the first check after their lifetime
+     * has run out, until then they are still used. Set this before any binding with a lifetime has been added.
+     *
+     * @param resolution time between checks in milliseconds.
+     */
+    public void setBindingExpiryResolution(double resolution) {
+        if (!(resolution > 0)) {
+            throw new IllegalArgumentException("Expiry resolution must be positive: " + resolution);
+        }
+        _expiryResolution = resolution;
     }
 
     // This method connects links to the router and also informs the
@@ -88,10 +170,17 @@ public class Router extends SimEnt {
             var entry = new RouteTableEntry(link, addr, interfaceNumber);
             _interfaces[interfaceNumber] = link;
             _routingTable.add(entry);
+            _forwardingCache.clear();
+            if (_routes.get(addr.networkId(), addr.getPrefixBits()) == null) {
+                _routes.put(addr.networkId(), addr.getPrefixBits(), entry);
+            }
+            tablesChanged();
             _routingTable.sort((lhs, rhs) -> rhs.getAddr().getPrefixBits() - lhs.getAddr().getPrefixBits());
-            debugRoutingTables();
+            if (tracer().isEnabled(TRACE_ROUTE)) {
+                traceRoutingTable();
+            }
         } else {
-            System.out.printf("ERR: %s: trying to connect to port not in router", this);
+            tracer().trace(TRACE_NO_SUCH_PORT, this);
         }
 
         link.setConnector(this);
@@ -105,10 +194,12 @@ public class Router extends SimEnt {
     public void disconnectInterface(long networkId) {
         // Find all the table entries that map to this interface and remove those.
         ArrayList<RouteTableEntry> keep = new ArrayList<>();
+        ArrayList<RouteTableEntry> removed = new ArrayList<>();
         for (RouteTableEntry entry : _routingTable) {
             if (entry.getAddr().networkId() != networkId) {
                 keep.add(entry);
             } else {
+                removed.add(entry);
                 var link = (Link) _interfaces[entry.getInterfaceId()];
                 if (link != null) {
                     _interfaces[entry.getInterfaceId()] = null;
@@ -117,87 +208,116 @@ public class Router extends SimEnt {
             }
         }
         _routingTable = keep;
+        _forwardingCache.clear();
+
+        // Remove the prefixes, letting another entry with the same prefix take over.
+        for (var entry : removed) {
+            var addr = entry.getAddr();
+            if (_routes.get(addr.networkId(), addr.getPrefixBits()) == entry) {
+                _routes.remove(addr.networkId(), addr.getPrefixBits());
+                int length = Math.min(addr.getPrefixBits(), PrefixTrie.MAX_PREFIX);
+                for (var other : keep) {
+                    var otherAddr = other.getAddr();
+                    if (Math.min(otherAddr.getPrefixBits(), PrefixTrie.MAX_PREFIX) == length && otherAddr.matches(addr.networkId())) {
+                        _routes.put(addr.networkId(), addr.getPrefixBits(), other);
+                        break;
+                    }
+                }
+            }
+        }
+        tablesChanged();
     }
 
     // This method searches for an entry in the routing table that matches
     // the network number in the destination field of a messages. The link
     // represents that network number is returned
     private SimEnt getInterface(long networkAddress) {
-        for (var entry : _routingTable) {
-            if (entry.getAddr().matches(networkAddress)) {
-                return entry.link();
-            }
-        }
-        return null;
+        var entry = _routes.lookup(networkAddress);
+        return entry == null ? null : entry.link();
     }
 
     /**
-     * Processing of received messages.
+     * Finds the link packets for a network are sent on, by longest prefix match.
      *
-     * @param src entity that sent the message.
-     * @param ev  the event itself.
+     * @param networkId network id of the destination.
+     * @return the link, or null if there is no route.
+     */
+    public SimEnt lookupRoute(long networkId) {
+        return getInterface(networkId);
+    }
+
+    /**
+     * Looks up the care of address bound to a home address in the binding cache.
+     *
+     * @param networkId network id of the home address.
+     * @param nodeId    node id of the home address.
+     * @return the care of address, or null if the address has no binding.
      */
+    public NetworkAddr lookupBinding(long networkId, long nodeId) {
+        return _bindingCache.get(networkId, nodeId, getEngine().getTime());
+    }
+
     @Override
-    public void recv(SimEnt src, Event ev) {
-        if (ev instanceof EnterNetwork event) {
-            processEnterNetwork(src, event);
-        } else if (ev instanceof LeaveNetwork event) {
-            processLeaveNetwork(src, event);
-        } else if (ev instanceof TimerEvent) {
-            System.out.printf("[%d] %s: send Proxy Advertisement to other routers%n", (int) SimEngine.getTime(), this);
-            sendProxyAdvertisements();
-            if (_timeBetweenAdvertisements != 0) {
-                send(this, new TimerEvent(), _timeBetweenAdvertisements);
+    protected List<SimEnt> neighbours() {
+        var neighbours = new ArrayList<SimEnt>();
+        for (var link : _interfaces) {
+            if (link != null) {
+                neighbours.add(link);
             }
-        } else if (ev instanceof ICMPv6 msg) {
-            processICMPMessage(src, msg);
-        } else if (ev instanceof MobilityHeader msg) {
-            processMobilityMessage(src, msg);
-        } else if (ev instanceof IPv6Tunneled msg) {
-            processTunneledMessage(msg);
-        } else if (ev instanceof Message msg) {
-            // For regular data messages, just forward those.
-            forwardMessage(msg);
         }
-    }
+        return neighbours;
+    }
+
+    // Handlers for the events a router receives. Subclasses are handled before their superclasses, so tunneled
+    // messages and fast binding updates are not taken for plain messages and binding updates. ICMPv6 and Mobility
+    // Header messages without a handler of their own are dropped rather than forwarded.
+    private static final EventDispatcher<Router> DISPATCHER = new EventDispatcher<Router>()
+            .on(EnterNetwork.class, Router::processEnterNetwork)
+            .on(LeaveNetwork.class, Router::processLeaveNetwork)
+            .on(TimerEvent.class, (router, src, ev) -> router.processTimerEvent(ev))
+            .on(ICMPv6.class, (router, src, msg) -> {
+            })
+            .on(RtSolPr.class, Router::processRtSolPr)
+            .on(PrRtAdv.class, Router::processPrRtAdv)
+            .on(RouterSolicitation.class, Router::processRouterSolicitation)
+            .on(RouterAdvertisement.class, (router, src, msg) -> router.processRouterAdvertisement(msg))
+            .on(MobilityHeader.class, (router, src, msg) -> {
+            })
+            .on(FastBindingUpdate.class, (router, src, msg) -> router.processFastBindingUpdate(msg))
+            .on(FastBindingAck.class, (router, src, msg) -> router.processFastBindingAck(msg))
+            .on(BindingUpdate.class, (router, src, msg) -> router.processBindingUpdate(msg))
+            .on(BindingAck.class, (router, src, msg) -> router.processBindingAck(msg))
+            .on(HandoverInitiate.class, (router, src, msg) -> router.processHandoverInitiate(msg))
+            .on(HandoverAcknowledge.class, (router, src, msg) -> router.processHandoverAck(msg))
+            .on(IPv6Tunneled.class, (router, src, msg) -> router.processTunneledMessage(msg))
+            // For regular data messages, just forward those.
+            .on(Message.class, (router, src, msg) -> router.forwardMessage(msg));
 
     /**
-     * Handles the processing of ICMPv6 messages.
+     * Processing of received messages.
      *
      * @param src entity that sent the message.
-     * @param ev  the ICMPv6 message.
+     * @param ev  the event itself.
      */
-    protected void processICMPMessage(SimEnt src, ICMPv6 ev) {
-        if (ev instanceof RtSolPr msg) {
-            processRtSolPr(src, msg);
-        } else if (ev instanceof PrRtAdv msg) {
-            processPrRtAdv(src, msg);
-        } else if (ev instanceof RouterSolicitation msg) {
-            processRouterSolicitation(src, msg);
-        } else if (ev instanceof RouterAdvertisement msg) {
-            processRouterAdvertisement(msg);
-        }
+    @Override
+    public void recv(SimEnt src, Event ev) {
+        DISPATCHER.dispatch(this, src, ev);
     }
 
     /**
-     * Handles the processing of MobilityHeader messages.
+     * Handles the router's timers, the expiry timer of the binding cache and the proxy advertisement timer.
      *
-     * @param src the entity that sent the message.
-     * @param ev  the Mobility Header message.
+     * @param ev the timer event.
      */
-    protected void processMobilityMessage(SimEnt src, MobilityHeader ev) {
-        if (ev instanceof FastBindingUpdate msg) {
-            processFastBindingUpdate(msg);
-        } else if (ev instanceof FastBindingAck msg) {
-            processFastBindingAck(msg);
-        } else if (ev instanceof BindingUpdate msg) {
-            processBindingUpdate(msg);
-        } else if (ev instanceof BindingAck msg) {
-            processBindingAck(msg);
-        } else if (ev instanceof HandoverInitiate msg) {
-            processHandoverInitiate(msg);
-        } else if (ev instanceof HandoverAcknowledge msg) {
-            processHandoverAck(msg);
+    protected void processTimerEvent(TimerEvent ev) {
+        if (ev == _expiryTimer) {
+            expireBindings();
+        } else {
+            tracer().trace(TRACE_PROXY_TIMER, this);
+            sendProxyAdvertisements();
+            if (_timeBetweenAdvertisements != 0) {
+                scheduleTimer(_advertisementTimer, _timeBetweenAdvertisements);
+            }
         }
     }
 
@@ -208,16 +328,16 @@ public class Router extends SimEnt {
      * @param ev  the join event.
      */
     protected void processEnterNetwork(SimEnt src, EnterNetwork ev) {
-        System.out.printf("[%d] %s: [%s]%n", (int) SimEngine.getTime(), this, ev);
+        tracer().trace(TRACE_ENTER, this, ev);
 
         var interfaceId = ev.getInterfaceId();
         if (_interfaces[interfaceId] != null) {
             // Cannot bind to an interface that's already in use.
-            System.err.printf("ERR: %s: cannot bind to interface %d, already in use%n", this, interfaceId);
+            tracer().trace(TRACE_INTERFACE_IN_USE, this, interfaceId);
             return;
         }
 
-        var addr = new NetworkAddr(getInterfaceAddress(interfaceId), 0, 64);
+        var addr = NetworkAddr.of(getInterfaceAddress(interfaceId), 0, 64);
         connectInterface(interfaceId, addr, (Link) src);
     }
 
@@ -228,7 +348,7 @@ public class Router extends SimEnt {
      * @param ev  leave network event.
      */
     protected void processLeaveNetwork(SimEnt src, LeaveNetwork ev) {
-        System.out.printf("[%d] %s: [%s] [src=%s]%n", (int) SimEngine.getTime(), this, ev, ev.getSourceAddress());
+        tracer().trace(TRACE_LEAVE, this, ev, ev.getSourceAddress());
         disconnectInterface(ev.getSourceAddress().networkId());
     }
 
@@ -243,10 +363,10 @@ public class Router extends SimEnt {
         // This happens when an MN is on a foreign network and sends to a CN.
         if (addressedToRouter(ev.destination())) {
             var original = ev.getOriginalPacket();
-            System.out.printf("[%d] %s: recv [%s]. Unpack and send [%s]%n", (int) SimEngine.getTime(), this, ev, original);
+            tracer().trace(TRACE_UNPACK, this, ev, original);
             forwardMessage(original);
         } else {
-            System.out.printf("[%d] %s: recv [%s]. Forwarding%n", (int) SimEngine.getTime(), this, ev);
+            tracer().trace(TRACE_FORWARD_TUNNELED, this, ev);
             forwardMessage(ev);
         }
     }
@@ -257,7 +377,7 @@ public class Router extends SimEnt {
      * @param ev Solicitation message.
      */
     protected void processRouterSolicitation(SimEnt src, RouterSolicitation ev) {
-        System.out.printf("[%d] %s: recv [%s]%n", (int) SimEngine.getTime(), this, ev);
+        tracer().trace(TRACE_RECV, this, ev);
 
         // Find which link received the solicitation, so we can send back the advertisement to the correct link.
         for (var entry : _routingTable) {
@@ -280,7 +400,7 @@ public class Router extends SimEnt {
      * @param ev Router Advertisement message.
      */
     protected void processRouterAdvertisement(RouterAdvertisement ev) {
-        System.out.printf("[%d] %s: recv [%s]%n", (int) SimEngine.getTime(), this, ev);
+        tracer().trace(TRACE_RECV, this, ev);
         // Do nothing.
     }
 
@@ -294,8 +414,10 @@ public class Router extends SimEnt {
      * @param ev  the Router Solicitation for Proxy Advertisement message.
      */
     protected void processRtSolPr(SimEnt src, RtSolPr ev) {
-        System.out.printf("[%d] %s: recv [%s]%n", (int) SimEngine.getTime(), this, ev);
-        debugProxyAdvertisements();
+        tracer().trace(TRACE_RECV, this, ev);
+        if (tracer().isEnabled(TRACE_PROXY_ENTRY)) {
+            traceProxyAdvertisements();
+        }
 
         var interfaceName = getInterfaceName(ev.getName(), ev.getInterfaceId());
         var entry = _proxyAdvertisements.get(interfaceName);
@@ -315,7 +437,7 @@ public class Router extends SimEnt {
      * @param ev  the Proxy Router Advertisement message.
      */
     protected void processPrRtAdv(SimEnt src, PrRtAdv ev) {
-        System.out.printf("[%d] %s: recv [%s]%n", (int) SimEngine.getTime(), this, ev);
+        tracer().trace(TRACE_RECV, this, ev);
 
         // Find the interface address that received the message.
         NetworkAddr interfaceAddress = null;
@@ -323,7 +445,7 @@ public class Router extends SimEnt {
         for (var entry : _routingTable) {
             if (entry.link() == src) {
                 long interfaceNetwork = getInterfaceAddress(entry.getInterfaceId());
-                interfaceAddress = new NetworkAddr(interfaceNetwork, 0);
+                interfaceAddress = NetworkAddr.of(interfaceNetwork, 0);
                 from = entry.getAddr();
             }
         }
@@ -331,6 +453,7 @@ public class Router extends SimEnt {
         if (interfaceAddress != null && from != null) {
             var entry = new ProxyAdvertisementEntry(interfaceAddress, from, ev);
             _proxyAdvertisements.put(ev.getInterfaceName(), entry);
+            tablesChanged();
         }
     }
 
@@ -345,10 +468,14 @@ public class Router extends SimEnt {
             forwardMessage(ev);
             return;
         }
-        System.out.printf("[%d] %s: recv [%s]%n", (int) SimEngine.getTime(), this, ev);
+        tracer().trace(TRACE_RECV, this, ev);
 
-        // Addressed to us, so update the care of address.
-        updateBindingCache(ev.getHomeAddress(), ev.source());
+        // Addressed to us, so update the care of address, or remove it when the node is back home.
+        if (ev.isDeregistration()) {
+            removeBinding(ev.getHomeAddress());
+        } else {
+            updateBindingCache(ev.getHomeAddress(), ev.source(), ev.getLifetime());
+        }
 
         var msg = new BindingAck(ev.destination(), ev.source(), 0);
         forwardMessage(msg);
@@ -363,7 +490,7 @@ public class Router extends SimEnt {
         if (!addressedToRouter(ev.destination())) {
             forwardMessage(ev);
         }
-        System.out.printf("[%d] %s: recv [%s]%n", (int) SimEngine.getTime(), this, ev);
+        tracer().trace(TRACE_RECV, this, ev);
         // Do nothing if addressed to us.
     }
 
@@ -374,15 +501,16 @@ public class Router extends SimEnt {
      * @param ev fast binding update message.
      */
     protected void processFastBindingUpdate(FastBindingUpdate ev) {
-        System.out.printf("[%d] %s: recv [%s]%n", (int) SimEngine.getTime(), this, ev);
+        tracer().trace(TRACE_RECV, this, ev);
 
         // Intercept the fast binding update, otherwise we cannot know the home agent address.
         var entry = _proxyAdvertisements.get(ev.getInterfaceName());
         if (entry != null) {
-            var homeAgentAddress = new NetworkAddr(ev.destination().networkId(), 0);
-            var handover = new FastHandover(ev.getSequence(), homeAgentAddress, ev.getHomeAddress(), ev.source(), ev.getNewCareOfAddress());
+            var homeAgentAddress = NetworkAddr.of(ev.destination().networkId(), 0);
+            var handover = new FastHandover(ev.getSequence(), homeAgentAddress, ev.getHomeAddress(), ev.source(), ev.getNewCareOfAddress(), ev.getLifetime());
             var identifier = ev.getSequence();
             _handovers.put(identifier, handover);
+            tablesChanged();
 
             // If this is addressed to the current router, initiate then handover procedure.
             var advEntry = _proxyAdvertisements.get(ev.getInterfaceName());
@@ -398,7 +526,7 @@ public class Router extends SimEnt {
      * @param ev the Fast Binding Ack message.
      */
     protected void processFastBindingAck(FastBindingAck ev) {
-        System.out.printf("[%d] %s: recv [%s]%n", (int) SimEngine.getTime(), this, ev);
+        tracer().trace(TRACE_RECV, this, ev);
         // Do nothing, these should only be sent from the current router to the node.
     }
 
@@ -414,7 +542,7 @@ public class Router extends SimEnt {
             forwardMessage(ev);
             return;
         }
-        System.out.printf("[%d] %s: recv [%s]%n", (int) SimEngine.getTime(), this, ev);
+        tracer().trace(TRACE_RECV, this, ev);
 
         // We don't perform a lot of processing and always accept new nodes!
         var msg = new HandoverAcknowledge(ev.destination(), ev.source(), 0, ev.getIdentifier());
@@ -433,19 +561,20 @@ public class Router extends SimEnt {
             forwardMessage(ev);
             return;
         }
-        System.out.printf("[%d] %s: recv [%s]%n", (int) SimEngine.getTime(), this, ev);
+        tracer().trace(TRACE_RECV, this, ev);
 
         var handover = _handovers.get(ev.getIdentifier());
         if (handover != null) {
             _handovers.remove(ev.getIdentifier());
+            tablesChanged();
 
             // Check if we are the HA for this MN.
             if (addressedToRouter(handover.homeAgentAddress)) {
-                updateBindingCache(handover.homeAddress, handover.nextCareOfAddress);
+                updateBindingCache(handover.homeAddress, handover.nextCareOfAddress, handover.lifetime);
             } else {
                 // Send binding update to HA.
-                var BU = new BindingUpdate(handover.nextCareOfAddress, handover.homeAgentAddress, 0, 0, handover.homeAddress);
-                System.out.printf("*********** %s: send [%s]%n", this, BU);
+                var BU = new BindingUpdate(handover.nextCareOfAddress, handover.homeAgentAddress, 0, 0, handover.homeAddress, handover.lifetime);
+                tracer().trace(TRACE_SEND_BINDING_UPDATE, this, BU);
                 forwardMessage(BU);
             }
 
@@ -464,19 +593,32 @@ public class Router extends SimEnt {
      * @param ev message to forward.
      */
     protected void forwardMessage(Message ev) {
-        if (_bindingCache.containsKey(ev.destination())) {
-            var coa = _bindingCache.get(ev.destination());
-            System.out.printf("[%d] %s: tunnel [%s] to dst=%s%n", (int) SimEngine.getTime(), this, ev, coa);
+        double now = getEngine().getTime();
+        var route = _forwardingCache.get(ev.destination(), now);
+        if (route == null) {
+            var destination = ev.destination();
+            var coa = _bindingCache.get(destination, now);
+            var next = coa != null ? coa : destination;
+            // Tunneling only holds until the binding expires, even if the expiry timer has not removed it yet.
+            double expires = coa != null
+                    ? _bindingCache.getExpiry(destination.networkId(), destination.nodeId())
+                    : Double.POSITIVE_INFINITY;
+            route = _forwardingCache.put(destination, coa, getInterface(next.networkId()), expires);
+        }
+
+        if (route.careOfAddress() != null) {
+            var coa = route.careOfAddress();
+            tracer().trace(TRACE_TUNNEL, this, ev, coa);
             ev = new IPv6Tunneled(ev.destination(), coa, 0, ev);
         }
 
-        SimEnt sendNext = getInterface(ev.destination().networkId());
+        SimEnt sendNext = route.link();
         if (sendNext == null) {
             _pktsDroppedNoInterface += 1;
-            System.out.printf("ERR: %s wants to send to %s but interface is unbound%n", this, ev.destination());
+            tracer().trace(TRACE_NO_ROUTE, this, ev.destination());
         } else {
-            System.out.printf("[%d] %s: forward [%s]%n", (int) SimEngine.getTime(), this, ev);
-            send(sendNext, ev, 0);
+            tracer().trace(TRACE_FORWARD, this, ev);
+            post(sendNext, ev, 0);
         }
     }
 
@@ -484,7 +626,7 @@ public class Router extends SimEnt {
      * Send out proxy advertisements to ...
      */
     protected void sendProxyAdvertisements() {
-        System.out.printf("[%d] %s: send Proxy Advertisements to all routers%n", (int) SimEngine.getTime(), this);
+        tracer().trace(TRACE_PROXY_ADVERTISEMENTS, this);
         for (int i = 0; i < _interfaces.length; ++i) {
             var interfaceName = getInterfaceName(_name, i);
             var interfaceNetwork = getInterfaceAddress(i);
@@ -504,10 +646,135 @@ public class Router extends SimEnt {
      *
      * @param homeAddress   The node's home address.
      * @param careOfAddress The node's new care of address.
+     * @param lifetime      Time the binding is valid for, it replaces the lifetime of an earlier binding.
+     */
+    private void updateBindingCache(NetworkAddr homeAddress, NetworkAddr careOfAddress, double lifetime) {
+        tracer().trace(TRACE_BINDING_UPDATE, this, homeAddress, careOfAddress);
+        double expires = getEngine().getTime() + lifetime;
+        _bindingCache.put(homeAddress, careOfAddress, expires);
+        if (expires != Double.POSITIVE_INFINITY) {
+            scheduleExpiry(homeAddress.networkId(), homeAddress.nodeId(), expires);
+        }
+        _forwardingCache.clear();
+        tablesChanged();
+    }
+
+    /**
+     * Removes the binding of a home address, when the node has returned home or asks for it to be removed.
+     *
+     * @param homeAddress The node's home address.
+     */
+    private void removeBinding(NetworkAddr homeAddress) {
+        tracer().trace(TRACE_BINDING_REMOVED, this, homeAddress);
+        if (_bindingCache.remove(homeAddress.networkId(), homeAddress.nodeId())) {
+            _forwardingCache.clear();
+            tablesChanged();
+        }
+    }
+
+    /**
+     * Adds the deadline of a binding to the expiry wheel, and starts the expiry timer if it is not running. A refreshed
+     * binding leaves its old deadline in the wheel, which is ignored when it comes up.
+     */
+    private void scheduleExpiry(long homeNetwork, long homeNode, double expires) {
+        if (_expiryWheel.isEmpty()) {
+            // Skip the ticks that passed while there was nothing to expire.
+            _expiryWheel.advance(currentExpiryTick(), this::expireBinding);
+        }
+        _expiryWheel.schedule(homeNetwork, homeNode, expiryTick(expires));
+        armExpiryTimer();
+    }
+
+    /**
+     * Runs the next expiry tick, and keeps the timer going while there are deadlines left. The timer is armed for one
+     * tick at a time, so the wheel's tick is the clock, and the time is never turned back into a tick: with a
+     * resolution such as 0.7 the time of tick 3 divided by the resolution is just below 3.
+     */
+    private void expireBindings() {
+        _expiryTimerArmed = false;
+        _expiryWheel.advance(_expiryWheel.getTick() + 1, this::expireBinding);
+        armExpiryTimer();
+    }
+
+    // Called by the wheel for every deadline that has passed. The binding may have been refreshed or removed since the
+    // deadline was added, so it is only removed if its deadline has come, compared in ticks like the wheel does.
+    private void expireBinding(long homeNetwork, long homeNode) {
+        double expires = _bindingCache.getExpiry(homeNetwork, homeNode);
+        if (!Double.isNaN(expires) && expiryTick(expires) <= _expiryWheel.getTick()) {
+            tracer().trace(TRACE_BINDING_EXPIRED, this, NetworkAddr.of(homeNetwork, homeNode));
+            _bindingCache.remove(homeNetwork, homeNode);
+            _forwardingCache.clear();
+            tablesChanged();
+        }
+    }
+
+    private void armExpiryTimer() {
+        if (!_expiryTimerArmed && !_expiryWheel.isEmpty()) {
+            double next = (_expiryWheel.getTick() + 1) * _expiryResolution;
+            scheduleTimer(_expiryTimer, Math.max(0, next - getEngine().getTime()));
+            _expiryTimerArmed = true;
+        }
+    }
+
+    private long currentExpiryTick() {
+        return (long) Math.floor(getEngine().getTime() / _expiryResolution);
+    }
+
+    // The tick a binding expiring at the given time is removed at, the first one at or after that time.
+    private long expiryTick(double expires) {
+        return (long) Math.ceil(expires / _expiryResolution);
+    }
+
+    @Override
+    protected Object saveState() {
+        if (_savedTables == null) {
+            _savedTables = new Tables(new ArrayList<>(_routingTable), _interfaces.clone(), _bindingCache.copy(),
+                    new HashMap<>(_proxyAdvertisements), new HashMap<>(_handovers));
+        }
+        return new RouterState(_savedTables, _timeBetweenAdvertisements, _pktsDroppedNoInterface,
+                _expiryWheel.getTick(), _expiryTimerArmed);
+    }
+
+    @Override
+    protected void restoreState(Object state) {
+        var saved = (RouterState) state;
+        var tables = saved.tables;
+        _routingTable = new ArrayList<>(tables.routingTable);
+        _forwardingCache.clear();
+        _routes.clear();
+        for (var entry : _routingTable) {
+            var addr = entry.getAddr();
+            if (_routes.get(addr.networkId(), addr.getPrefixBits()) == null) {
+                _routes.put(addr.networkId(), addr.getPrefixBits(), entry);
+            }
+        }
+        System.arraycopy(tables.interfaces, 0, _interfaces, 0, _interfaces.length);
+        _bindingCache = tables.bindingCache.copy();
+
+        // The wheel is not saved, its deadlines are added again from the bindings that expire.
+        _expiryWheel = new TimingWheel(saved.expiryTick);
+        _bindingCache.forEach((homeNetwork, homeNode, careOfNetwork, careOfNode, expires) -> {
+            if (expires != Double.POSITIVE_INFINITY) {
+                _expiryWheel.schedule(homeNetwork, homeNode, expiryTick(expires));
+            }
+        });
+        _expiryTimerArmed = saved.expiryTimerArmed;
+        _proxyAdvertisements.clear();
+        _proxyAdvertisements.putAll(tables.proxyAdvertisements);
+        _handovers.clear();
+        _handovers.putAll(tables.handovers);
+        _timeBetweenAdvertisements = saved.timeBetweenAdvertisements;
+        _pktsDroppedNoInterface = saved.pktsDroppedNoInterface;
+
+        // The tables are now equal to the saved copy, so it can be shared again.
+        _savedTables = tables;
+    }
+
+    /**
+     * Marks the tables as modified, so the next saved state takes a new copy.
      */
-    private void updateBindingCache(NetworkAddr homeAddress, NetworkAddr careOfAddress) {
-        System.out.printf("[%d] %s: update binding cache [home=%s, coa=%s]%n", (int) SimEngine.getTime(), this, homeAddress, careOfAddress);
-        _bindingCache.put(homeAddress, careOfAddress);
+    private void tablesChanged() {
+        _savedTables = null;
     }
 
     /**
@@ -517,13 +784,15 @@ public class Router extends SimEnt {
      * @return true if this is the router's address.
      */
     private boolean addressedToRouter(NetworkAddr addr) {
-        for (int i = 0; i < _interfaces.length; ++i) {
-            var networkId = getInterfaceAddress(i);
-            if (networkId == addr.networkId() && addr.nodeId() == 0) {
-                return true;
-            }
+        return addressedToRouter(addr.networkId(), addr.nodeId());
+    }
+
+    private boolean addressedToRouter(long networkId, long nodeId) {
+        if (nodeId != 0) {
+            return false;
         }
-        return false;
+        long offset = networkId - _baseAddress.networkId();
+        return offset >= 0 && offset < _interfaces.length;
     }
 
     /**
@@ -553,12 +822,8 @@ public class Router extends SimEnt {
      * @return source address of link.
      */
     private NetworkAddr getSrcInterfaceAddress(NetworkAddr dst) {
-        for (var entry : _routingTable) {
-            if (entry.getAddr().matches(dst.networkId())) {
-                return new NetworkAddr(getInterfaceAddress(entry.getInterfaceId()), 0);
-            }
-        }
-        return null;
+        var entry = _routes.lookup(dst.networkId());
+        return entry == null ? null : NetworkAddr.of(getInterfaceAddress(entry.getInterfaceId()), 0);
     }
 
     /**
@@ -571,6 +836,19 @@ public class Router extends SimEnt {
         return String.format("Router %s", _name);
     }
 
+    public ForwardingCache getForwardingCache() {
+        return _forwardingCache;
+    }
+
+    public int getPacketsDroppedNoInterface() {
+        return _pktsDroppedNoInterface;
+    }
+
+    // Number of bindings in the cache, including expired ones the expiry timer has not removed yet.
+    public int getBindingCount() {
+        return _bindingCache.size();
+    }
+
     /**
      * Prints statistics and configuration of router.
      */
@@ -593,6 +871,23 @@ public class Router extends SimEnt {
         }
     }
 
+    // Writes the routing table to the trace, one record per entry.
+    private void traceRoutingTable() {
+        tracer().trace(TRACE_ROUTING_TABLE, this);
+        for (var entry : _routingTable) {
+            tracer().trace(TRACE_ROUTE, entry.getInterfaceId(), entry.getAddr());
+        }
+    }
+
+    // Writes the proxy advertisement cache to the trace, one record per entry.
+    private void traceProxyAdvertisements() {
+        tracer().trace(TRACE_PROXY_CACHE, this);
+        for (var entry : _proxyAdvertisements.entrySet()) {
+            var prefix = new NetworkAddr(entry.getValue().advertisement.getNetworkPrefix(), 0);
+            tracer().trace(TRACE_PROXY_ENTRY, entry.getKey(), prefix);
+        }
+    }
+
     /**
      * Pretty prints the proxy advertisement cache to standard out.
      */
@@ -612,8 +907,7 @@ public class Router extends SimEnt {
     protected void debugBindingCache() {
         //System.out.printf("%s Binding Cache:%n", this);
         System.out.printf("- Binding cache:%n");
-        for (var entry : _bindingCache.entrySet()) {
-            System.out.printf("  %s -> %s%n", entry.getKey(), entry.getValue());
-        }
+        _bindingCache.forEach((homeNetwork, homeNode, careOfNetwork, careOfNode, expires) ->
+                System.out.printf("  %s -> %s%n", new NetworkAddr(homeNetwork, homeNode), new NetworkAddr(careOfNetwork, careOfNode)));
     }
 }
@@ -6,10 +6,24 @@ import Sim.Events.StartHandover;
 import Sim.Traffic.ConstantBitRate;
 import Sim.Traffic.CountingSink;
 import Sim.Traffic.Sink;
+import Sim.Trace.BinaryTraceSink;
+import Sim.Trace.ConsoleTraceSink;
+import Sim.Trace.TraceLevel;
+import Sim.Trace.TraceSink;
 import Sim.Traffic.TrafficGenerator;
 
+import java.io.IOException;
+import java.nio.file.Path;
+
 public class Run {
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
+        // Every simulation has its own engine, all entities are created in it.
+        SimEngine engine = new SimEngine();
+
+        // Trace everything, to the console or, when a file is given, as binary records that TraceDump can read back.
+        TraceSink trace = args.length > 0 ? new BinaryTraceSink(Path.of(args[0])) : new ConsoleTraceSink(System.out);
+        engine.getTracer().enable(trace, TraceLevel.DEBUG);
+
         // Creates two links.
         Link link1, link2;
         if (true) {
@@ -18,12 +32,12 @@ public class Run {
             double linkPacketDropRate = 0;
 
             // Use lossy links.
-            link1 = new LossyLink(linkDelay, linkJitter, linkPacketDropRate);
-            link2 = new LossyLink(linkDelay, linkJitter, linkPacketDropRate);
+            link1 = new LossyLink(engine, linkDelay, linkJitter, linkPacketDropRate);
+            link2 = new LossyLink(engine, linkDelay, linkJitter, linkPacketDropRate);
         } else {
             // Use regular links.
-            link1 = new Link();
-            link2 = new Link();
+            link1 = new Link(engine);
+            link2 = new Link(engine);
         }
 
         // Network addresses.
@@ -41,8 +55,8 @@ public class Run {
         Sink host1_sink = new CountingSink();
         Sink host2_sink = new CountingSink();
 
-        Node host1 = new Node("MN", MNAddress, HNAddress, host1_traffic, host1_sink);
-        Node host2 = new Node("CN", CNAddress, FNAddress, host2_traffic, host2_sink);
+        Node host1 = new Node(engine, "MN", MNAddress, HNAddress, host1_traffic, host1_sink);
+        Node host2 = new Node(engine, "CN", CNAddress, FNAddress, host2_traffic, host2_sink);
 
         // Connect links to hosts
         host1.setPeer(link1);
@@ -50,13 +64,13 @@ public class Run {
 
         // Creates as router and connect links to it. Information about the host connected to the other side of the link
         // is also provided.
-        Router routeNode = new Router("HA", 5, HNAddress);
-        Router routeNode2 = new Router("R2", 5, FNAddress);
+        Router routeNode = new Router(engine, "HA", 5, HNAddress);
+        Router routeNode2 = new Router(engine, "R2", 5, FNAddress);
         routeNode.connectInterface(0, MNAddress, link1);
         routeNode2.connectInterface(0, CNAddress, link2);
 
         // Create a connection between routers.
-        Link routerToRouter = new Link();
+        Link routerToRouter = new Link(engine);
         routeNode.connectInterface(1, FNAddress, routerToRouter);
         routeNode2.connectInterface(1, HNAddress, routerToRouter);
 
@@ -67,26 +81,27 @@ public class Run {
         } else {
             handover = new StartHandover(routeNode2, "R2", 3); // Fast handover.
         }
-        SimEngine.instance().register(host1, host1, handover, 1000);
+        engine.register(host1, host1, handover, 1000);
 
         routeNode.startSendingProxyAdvertisements(0);
         routeNode2.startSendingProxyAdvertisements(0);
 
-        //SimEngine.instance().register(link1, routeNode, new EnterNetwork(host1, 0), 0);
-        //SimEngine.instance().register(link2, routeNode2, new EnterNetwork(host2, 0), 0);
+        //engine.register(link1, routeNode, new EnterNetwork(host1, 0), 0);
+        //engine.register(link2, routeNode2, new EnterNetwork(host2, 0), 0);
 
         // Generate some traffic
         host1.StartSending(CNAddress, 0);
         host2.StartSending(MNAddress, 0);
 
         // Start the simulation engine and off we go!
-        Thread t = new Thread(SimEngine.instance());
+        Thread t = new Thread(engine);
         t.start();
         try {
             t.join();
         } catch (Exception e) {
             System.out.println("The motor seems to have a problem, time for service?");
         }
+        trace.close();
 
         host1.onSimulationComplete();
         host2.onSimulationComplete();
@@ -0,0 +1,93 @@
+package Sim.Sampling;
+
+import java.util.random.RandomGenerator;
+
+/**
+ * Draws indices from an arbitrary discrete distribution in constant time, with the alias method as described by Vose
+ * ("A linear algorithm for generating random numbers with a given distribution", 1991).
+ * <p>
+ * The table has one column per index, each of total probability 1/n, holding part of its own index and the rest of
+ * one other index, its alias. A draw picks a column and then one of its two indices, so it takes one uniform number
+ * however many indices there are. Building the table takes linear time.
+ */
+public final class AliasTable {
+    // Probability of keeping the column's own index rather than taking its alias.
+    private final double[] _probability;
+    private final int[] _alias;
+
+    /**
+     * Builds the table.
+     *
+     * @param weights weight of each index, not negative and not all 0. They do not have to add up to 1.
+     */
+    public AliasTable(double[] weights) {
+        int n = weights.length;
+        if (n == 0) {
+            throw new IllegalArgumentException("an alias table needs at least one weight");
+        }
+        double sum = 0;
+        for (double weight : weights) {
+            if (!(weight >= 0) || Double.isInfinite(weight)) {
+                throw new IllegalArgumentException("weights must be finite and not negative: " + weight);
+            }
+            sum += weight;
+        }
+        if (sum == 0) {
+            throw new IllegalArgumentException("weights must not all be 0");
+        }
+
+        _probability = new double[n];
+        _alias = new int[n];
+
+        // Columns with less than their share are filled up from columns with more, which then go on with what is left.
+        var scaled = new double[n];
+        var small = new int[n];
+        var large = new int[n];
+        int smallCount = 0;
+        int largeCount = 0;
+        for (int i = 0; i < n; ++i) {
+            scaled[i] = weights[i] * n / sum;
+            if (scaled[i] < 1) {
+                small[smallCount++] = i;
+            } else {
+                large[largeCount++] = i;
+            }
+        }
+        while (smallCount > 0 && largeCount > 0) {
+            int less = small[--smallCount];
+            int more = large[--largeCount];
+            _probability[less] = scaled[less];
+            _alias[less] = more;
+            scaled[more] = scaled[more] + scaled[less] - 1;
+            if (scaled[more] < 1) {
+                small[smallCount++] = more;
+            } else {
+                large[largeCount++] = more;
+            }
+        }
+        // What is left is 1 but for rounding.
+        while (largeCount > 0) {
+            _probability[large[--largeCount]] = 1;
+        }
+        while (smallCount > 0) {
+            _probability[small[--smallCount]] = 1;
+        }
+    }
+
+    public int size() {
+        return _probability.length;
+    }
+
+    /**
+     * Draws an index.
+     *
+     * @param random random stream to draw from.
+     * @return an index, with probability proportional to its weight.
+     */
+    public int sample(RandomGenerator random) {
+        // The integer part of one uniform number picks the column and the fraction picks within it.
+        double u = random.nextDouble() * _probability.length;
+        int column = (int) u;
+        return u - column < _probability[column] ? column : _alias[column];
+    }
+}
@@ -1,32 +1,291 @@
 package Sim;
 
-import java.util.TreeMap;
+import Sim.Trace.PacketRecorder;
+import Sim.Trace.Tracer;
+
+import java.util.Arrays;
 
 // This class implements the simulation engine
-// As long as there are events in the queue, the simulaiton 
+// As long as there are events in the queue, the simulaiton
 // will run. When empty, the engine stops
+// Each simulation has its own engine, which is handed to the entities when they are created. Engines share no state,
+// so independent simulations can run at the same time on different threads.
 public final class SimEngine implements Runnable {
-    private static SimEngine _instance;
-    private final TreeMap _simTimeTree = new TreeMap();
+    private EventQueue _eventQueue = new HeapEventQueue();
     private boolean _quit = false;
-    private static double _simTime = 0;
+    private double _simTime = 0;
+
+    // Trace of the simulation, off until a sink is attached.
+    private final Tracer _tracer = new Tracer(this);
+
+    // Random number streams of the entities in the simulation.
+    private RandomStreams _randomStreams = new RandomStreams(RandomStreams.DEFAULT_SEED);
+
+    // Records every dispatched event when set.
+    private PacketRecorder _recorder = null;
+
+    // Fluid flows of background nodes, created with the first of them.
+    private FluidModel _fluidModel = null;
+
+    // Id handed to the next entity created with this engine.
+    private int _nextEntityId = 0;
+
+    // Tie breaker of the next event registered without a sender. Events with a sender are numbered by the sender, see
+    // SimTimeSlot.resolver.
+    private long _nextResolver = 0;
+
+    // Handles that have been dispatched and can be reused by schedule. The pool never holds more than MAX_POOLED
+    // handles, anything above that is left to the garbage collector.
+    private static final int MAX_POOLED = 1 << 16;
+    private EventHandle[] _pool = new EventHandle[64];
+    private int _pooled = 0;
+
+    // Erased events are only marked and left in the queue, they are skipped when dequeued. Once they make up more
+    // than half of the queue they are removed in one pass.
+    private static final int MIN_COMPACTION_SIZE = 1024;
+    private int _tombstones = 0;
+    private long _cancelled = 0;
+    private long _tombstonesSkipped = 0;
+    private long _compactions = 0;
+
+    // Number of events delivered to their targets.
+    private long _dispatched = 0;
+
+    // Implemented by engines that split a simulation over several SimEngines, each running as a logical process.
+    interface Coordinator {
+        // Called for every event scheduled in a logical process. Returns a handle if the coordinator took care of the
+        // event, or null if the event should be queued in the process as usual.
+        EventHandle register(SimEngine from, SimEnt registrator, SimEnt target, Event event, double time, double delay);
+
+        // Called before an event changes an entity other than its target.
+        default void modifying(SimEngine from, SimEnt entity) {
+        }
+
+        // Called when a pending event has been erased in a logical process.
+        default void erased(SimEngine from, EventHandle handle) {
+        }
+    }
+
+    // Set when the engine runs as a logical process, events are offered to the coordinator before they are queued.
+    Coordinator _coordinator = null;
+    int _logicalProcess = -1;
+
+    // Worker threads of a parallel engine bind their logical process to the thread, so entities running on that
+    // thread schedule into it instead of the engine they were created with. The flag avoids the thread local lookup
+    // when nothing has been bound.
+    private static final ThreadLocal<SimEngine> _bound = new ThreadLocal<>();
+    private static volatile boolean _hasBound = false;
 
     // This method is called to when scheduling an event for some target. Examples of events are messages,
     // timer events etc.
     public EventHandle register(SimEnt registrator, SimEnt target, Event event, double delayedExecution) {
-        double scheduleForTime = getTime() + delayedExecution;
-        EventHandle handle = new EventHandle(registrator, target, event, new SimTimeSlot(scheduleForTime));
-        _simTimeTree.put(handle._simSlot, handle);
+        double scheduleForTime = _simTime + delayedExecution;
+        if (_coordinator != null) {
+            EventHandle handle = _coordinator.register(this, registrator, target, event, scheduleForTime, delayedExecution);
+            if (handle != null) {
+                return handle;
+            }
+        }
+
+        EventHandle handle = new EventHandle(registrator, target, event, new SimTimeSlot(scheduleForTime, resolver(registrator, target)));
+        handle._pending = true;
+        _eventQueue.add(handle);
         return handle;
     }
 
-    public static double getTime() {
+    // Schedules an event like register, but without handing out the handle. Since nobody else can hold on to it, the
+    // handle is taken from a pool and returned there once the event has been dispatched. Use this for fire and
+    // forget events such as forwarded packets and periodic timers, it does not allocate once the pool is warm.
+    public void schedule(SimEnt registrator, SimEnt target, Event event, double delayedExecution) {
+        double scheduleForTime = _simTime + delayedExecution;
+        if (_coordinator != null && _coordinator.register(this, registrator, target, event, scheduleForTime, delayedExecution) != null) {
+            return;
+        }
+        scheduleAt(registrator, target, event, scheduleForTime);
+    }
+
+    // Schedules a pooled event like schedule, but hands out the handle so the event can still be erased while it is
+    // pending. The handle goes back to the pool once the event has been dispatched, so it is only used for the event
+    // while EventHandle.isPending(event) holds.
+    EventHandle schedulePooled(SimEnt registrator, SimEnt target, Event event, double delayedExecution) {
+        double scheduleForTime = _simTime + delayedExecution;
+        if (_coordinator != null) {
+            EventHandle handle = _coordinator.register(this, registrator, target, event, scheduleForTime, delayedExecution);
+            if (handle != null) {
+                return handle;
+            }
+        }
+        return scheduleAt(registrator, target, event, scheduleForTime);
+    }
+
+    // Queues a pooled event at an absolute time, this never hands the event to another logical process.
+    EventHandle scheduleAt(SimEnt registrator, SimEnt target, Event event, double scheduleForTime) {
+        return scheduleAt(registrator, target, event, scheduleForTime, resolver(registrator, target));
+    }
+
+    // Queues a pooled event with a tie breaker it was given in another engine, such as an event sent from another
+    // logical process.
+    EventHandle scheduleAt(SimEnt registrator, SimEnt target, Event event, double scheduleForTime, long resolver) {
+        EventHandle handle;
+        if (_pooled > 0) {
+            handle = _pool[--_pooled];
+            _pool[_pooled] = null;
+            handle.set(registrator, target, event, scheduleForTime, resolver);
+        } else {
+            handle = new EventHandle(registrator, target, event, new SimTimeSlot(scheduleForTime, resolver));
+            handle._pooled = true;
+        }
+        handle._pending = true;
+        _eventQueue.add(handle);
+        return handle;
+    }
+
+    // Returns the current simulation time.
+    public double getTime() {
         return _simTime;
     }
 
-    // To erase a scheduled event, this method can be used
+    // Returns the trace the entities of this simulation write to.
+    public Tracer getTracer() {
+        return _tracer;
+    }
+
+    // Sets the master seed that the random streams of entities are derived from. Entities take their streams when they
+    // are created, so this is called before building the topology.
+    public void setSeed(long seed) {
+        _randomStreams = new RandomStreams(seed);
+    }
+
+    public RandomStreams getRandomStreams() {
+        return _randomStreams;
+    }
+
+    // Returns the fluid flows of the simulation. Only a sequential engine has them, since flows cross the links of
+    // every logical process on their route at once.
+    FluidModel getFluidModel() {
+        if (_coordinator != null) {
+            throw new IllegalStateException("Fluid flows need a sequential engine");
+        }
+        if (_fluidModel == null) {
+            _fluidModel = new FluidModel();
+        }
+        return _fluidModel;
+    }
+
+    // Records every event dispatched from now on, pass null to stop recording. The recorder is not closed by the
+    // engine. Only events dispatched by this engine are recorded, not those run by the logical processes of a parallel
+    // engine.
+    public void setPacketRecorder(PacketRecorder recorder) {
+        _recorder = recorder;
+    }
+
+    public PacketRecorder getPacketRecorder() {
+        return _recorder;
+    }
+
+    // Called by an entity before it is changed by an event sent to another entity, such as a link a router connects
+    // to, so a coordinator that rolls events back can restore that entity too.
+    void modifying(SimEnt entity) {
+        if (_coordinator != null) {
+            _coordinator.modifying(this, entity);
+        }
+    }
+
+    // Hands out the id of a new entity.
+    int nextEntityId() {
+        if (_nextEntityId > SimTimeSlot.MAX_ENTITY_ID) {
+            throw new IllegalStateException("A simulation can have at most " + (SimTimeSlot.MAX_ENTITY_ID + 1) + " entities");
+        }
+        return _nextEntityId++;
+    }
+
+    // Returns the tie breaker of a new event, handed out by its sender, or by the engine for events without one.
+    long resolver(SimEnt registrator, SimEnt target) {
+        return registrator == null ? _nextResolver++ : registrator.nextResolver(target);
+    }
+
+    // To erase a scheduled event, this method can be used. This is O(1), the event is only marked as cancelled and
+    // dropped when it reaches the front of the queue or when the queue is compacted.
     public void deregister(EventHandle handle) {
-        _simTimeTree.remove(handle._simSlot);
+        if (!handle._pending || handle._cancelled) {
+            return;
+        }
+        handle._cancelled = true;
+        _tombstones += 1;
+        _cancelled += 1;
+        if (_coordinator != null) {
+            _coordinator.erased(this, handle);
+        }
+
+        if (_tombstones >= MIN_COMPACTION_SIZE && _tombstones > _eventQueue.size() / 2) {
+            compact();
+        }
+    }
+
+    // Takes back the erasure of an event, for a coordinator undoing the event that erased it. The event is queued again
+    // if it has already been dropped from the queue.
+    void restore(EventHandle handle) {
+        if (!handle._cancelled) {
+            return;
+        }
+        handle._cancelled = false;
+        _cancelled -= 1;
+        if (handle._pending) {
+            _tombstones -= 1;
+        } else {
+            enqueue(handle);
+        }
+    }
+
+    // Removes all cancelled events from the queue.
+    public void compact() {
+        _eventQueue.removeCancelled();
+        _tombstones = 0;
+        _compactions += 1;
+    }
+
+    // Number of events that are still going to be dispatched.
+    public int getPendingEventCount() {
+        return _eventQueue.size() - _tombstones;
+    }
+
+    // Total number of events erased since the engine was created.
+    public long getCancelledCount() {
+        return _cancelled;
+    }
+
+    // Number of cancelled events currently left in the queue.
+    public int getTombstoneCount() {
+        return _tombstones;
+    }
+
+    // Number of cancelled events that were dequeued and skipped by the run loop.
+    public long getTombstonesSkipped() {
+        return _tombstonesSkipped;
+    }
+
+    // Number of times the queue has been compacted.
+    public long getCompactionCount() {
+        return _compactions;
+    }
+
+    // Total number of events delivered to their targets since the engine was created, cancelled events not included.
+    public long getDispatchedCount() {
+        return _dispatched;
+    }
+
+    // Selects the data structure that holds the pending events. Events already scheduled are moved over to the
+    // new queue, so this can be called at any point before or between runs.
+    public void setEventQueue(EventQueue eventQueue) {
+        EventHandle handle;
+        while ((handle = _eventQueue.poll()) != null) {
+            eventQueue.add(handle);
+        }
+        _eventQueue = eventQueue;
+    }
+
+    public EventQueue getEventQueue() {
+        return _eventQueue;
     }
 
     // To force a stop of the motor, even when events are still
@@ -35,42 +294,138 @@ public final class SimEngine implements Runnable {
         _quit = true;
     }
 
+    boolean isStopped() {
+        return _quit;
+    }
+
     // To empty all events in the queue and restart the engine
     // this method can be used. You however need to add a new
     // event directly otherwise the engine will stop due to no events
     public void reset() {
-        _simTimeTree.clear();
+        EventHandle handle;
+        while ((handle = _eventQueue.poll()) != null) {
+            handle._pending = false;
+        }
+        _tombstones = 0;
         _simTime = 0;
         _quit = false;
     }
 
-    // We can only have one engine in the simulator so this method
-    // sees to that. In other words we have implemented a singleton
-    public static SimEngine instance() {
-        if (_instance == null) {
-            _instance = new SimEngine();
+    // Returns the engine bound to the calling thread by a parallel engine, or the given engine if there is none.
+    static SimEngine current(SimEngine engine) {
+        if (_hasBound) {
+            SimEngine bound = _bound.get();
+            if (bound != null) {
+                return bound;
+            }
+        }
+        return engine;
+    }
+
+    // Makes entities run on the calling thread schedule into the given engine, pass null to remove the binding.
+    static void bind(SimEngine engine) {
+        if (engine == null) {
+            _bound.remove();
+        } else {
+            _hasBound = true;
+            _bound.set(engine);
         }
-        return _instance;
     }
 
     // This is the motor itself, is fetches events from the event list as long as there
     // still are events present or until the stop method has been called
     public void run() {
-        EventHandle handleToNextEvent = null;
-        SimTimeSlot nextEventToExecute = null;
+        EventHandle handleToNextEvent;
 
         do {
-            if (_simTimeTree.size() == 0)
+            handleToNextEvent = _eventQueue.poll();
+            if (handleToNextEvent == null)
                 _quit = true;
-            else {
-                nextEventToExecute = (SimTimeSlot) _simTimeTree.firstKey();
-                handleToNextEvent = (EventHandle) _simTimeTree.get(nextEventToExecute);
-                _simTime = nextEventToExecute._msek;
-                handleToNextEvent._event.entering(handleToNextEvent._target);
-                handleToNextEvent._target.recv(handleToNextEvent._registrator, handleToNextEvent._event);
-                deregister(handleToNextEvent);
-            }
+            else
+                dispatch(handleToNextEvent);
         } while (!_quit);
         reset();
     }
-}
\ No newline at end of file
+
+    // Dispatches all events scheduled before the end time, or until the engine is stopped. Used by logical processes
+    // in a ParallelSimEngine to run one window at a time.
+    void runUntil(double end) {
+        EventHandle next;
+        while (!_quit && (next = _eventQueue.peek()) != null && next._simSlot._msek < end) {
+            dispatch(_eventQueue.poll());
+        }
+    }
+
+    // Time of the next event that is going to be dispatched, or infinity if there is none.
+    double nextEventTime() {
+        EventHandle next;
+        while ((next = _eventQueue.peek()) != null && next._cancelled) {
+            dispatch(_eventQueue.poll());
+        }
+        return next == null ? Double.POSITIVE_INFINITY : next._simSlot._msek;
+    }
+
+    // Returns the next event that is going to be dispatched, dropping cancelled events in front of it.
+    EventHandle peekLive() {
+        nextEventTime();
+        return _eventQueue.peek();
+    }
+
+    // Queues an event created by a coordinator. The event keeps its time slot, so an event that is put back after a
+    // rollback runs in the same position as before.
+    void enqueue(EventHandle handle) {
+        handle._pending = true;
+        _eventQueue.add(handle);
+    }
+
+    // Hands out the next tie breaker for events created by a coordinator.
+    long nextResolver() {
+        return _nextResolver++;
+    }
+
+    // Takes out the next live event without dispatching it, used to move events between engines.
+    EventHandle take() {
+        EventHandle handle;
+        while ((handle = _eventQueue.poll()) != null) {
+            handle._pending = false;
+            if (!handle._cancelled) {
+                return handle;
+            }
+            _tombstones -= 1;
+        }
+        return null;
+    }
+
+    // Delivers a dequeued event to its target, or skips it if it has been cancelled.
+    void dispatch(EventHandle handle) {
+        handle._pending = false;
+        if (handle._cancelled) {
+            _tombstones -= 1;
+            _tombstonesSkipped += 1;
+        } else {
+            _simTime = handle._simSlot._msek;
+            _dispatched += 1;
+            if (_recorder != null) {
+                _recorder.record(_simTime, handle._registrator, handle._target, handle._event);
+            }
+            handle._event.entering(handle._target);
+            handle._target.recv(handle._registrator, handle._event);
+        }
+
+        if (handle._pooled) {
+            recycle(handle);
+        }
+    }
+
+    // Returns a dispatched handle to the pool.
+    private void recycle(EventHandle handle) {
+        if (_pooled == _pool.length) {
+            if (_pool.length >= MAX_POOLED) {
+                return;
+            }
+            _pool = Arrays.copyOf(_pool, _pool.length * 2);
+        }
+        handle.clear();
+        _pool[_pooled++] = handle;
+    }
+}
@@ -1,9 +1,53 @@
 package Sim;
 
+import Sim.Trace.Tracer;
+
+import java.util.List;
+import java.util.Objects;
+
 // All entities like, nodes, switch, router, link etc that handles events
 // need to inherit from this class
 public abstract class SimEnt {
-    protected SimEnt() {
+    // Logical process that owns the entity when running on a ParallelSimEngine. Entities that are not owned by any
+    // process, like links with a delay between two processes, are run by the process that sends to them.
+    int _logicalProcess = -1;
+
+    // The engine this entity schedules its events in. Every entity in a simulation shares the same engine, so several
+    // simulations can run side by side as long as their entities are kept apart.
+    final SimEngine _engine;
+
+    // Number of the entity within its simulation, in the order entities were created.
+    private final int _id;
+
+    // Number of events the entity has sent, for the tie breaker of events at the same time.
+    private long _sent = 0;
+
+    protected SimEnt(SimEngine engine) {
+        _engine = Objects.requireNonNull(engine, "engine");
+        _id = engine.nextEntityId();
+    }
+
+    // Returns the number of the entity, unique among the entities created with the same engine.
+    public final int getId() {
+        return _id;
+    }
+
+    // Returns the tie breaker of the next event this entity sends to the target: its id and how many events it sent
+    // before. Entities run by every logical process that sends to them, like links between two processes, have to
+    // number the events for each target on their own, so each number is handed out by a single process.
+    long nextResolver(SimEnt target) {
+        return SimTimeSlot.resolver(_id, _sent++);
+    }
+
+    // Returns the engine running this entity. That is the engine it was created with, unless it is run by a logical
+    // process of a parallel engine.
+    public final SimEngine getEngine() {
+        return SimEngine.current(_engine);
+    }
+
+    // Returns the trace of the engine running this entity.
+    protected final Tracer tracer() {
+        return getEngine().getTracer();
     }
 
     // Called when erasing an entity like node or link etc. The SimEngine is called in case
@@ -20,12 +64,41 @@ public abstract class SimEnt {
     // This method schedules a coming event in the SimEngine
     protected final EventHandle send(SimEnt destination, Event event, double delayExecution) {
         // this object is the registrator/source submitting the event
-        return SimEngine.instance().register(this, destination, event, delayExecution);
+        return getEngine().register(this, destination, event, delayExecution);
+    }
+
+    // Schedules a coming event like send, but without returning a handle so the event cannot be erased. The engine
+    // recycles these handles, which makes this the cheaper choice for packets and timers that are never cancelled.
+    protected final void post(SimEnt destination, Event event, double delayExecution) {
+        getEngine().schedule(this, destination, event, delayExecution);
+    }
+
+    // Schedules a timer for this entity. Periodic entities can keep one timer instance and re-arm it every tick, which
+    // together with the recycled handles means no allocation per tick.
+    protected final void scheduleTimer(TimerEvent timer, double delayExecution) {
+        post(this, timer, delayExecution);
     }
 
     //Erases a scheduled event from the SimEngine
     protected final void eraseScheduledEvent(EventHandle handleToEvent) {
-        SimEngine.instance().deregister(handleToEvent);
+        getEngine().deregister(handleToEvent);
+    }
+
+    // Returns the entities this entity is directly connected to, like the links of a router. Used to discover the
+    // topology when it is split up between logical processes.
+    protected List<SimEnt> neighbours() {
+        return List.of();
+    }
+
+    // An optimistic engine runs events ahead of time and rolls entities back when an event arrives late. Entities that
+    // keep state return a copy of it here, which is handed back to restoreState on a rollback. Entities without state
+    // can keep the default, which is to save nothing.
+    protected Object saveState() {
+        return null;
+    }
+
+    protected void restoreState(Object state) {
+        // no op, can be added in child classes
     }
 
     // To be implemented in child classes acting on events/messages received
@@ -3,22 +3,37 @@ package Sim;
 // This class makes use of time stamps in milliseconds (or any granularity that you like to use)
 // In the case that two events are scheduled for the same time, the id of the entity 
 // are used to solve the conflict of who goes first.
-class SimTimeSlot implements Comparable {
+class SimTimeSlot implements Comparable<SimTimeSlot> {
+    // Bits of a resolver that number the events of one sender, the bits above hold the id of the sender plus one.
+    static final int SEQUENCE_BITS = 40;
+
+    // Largest entity id that fits in a resolver.
+    static final int MAX_ENTITY_ID = (1 << (Long.SIZE - 1 - SEQUENCE_BITS)) - 2;
+
     double _msek;
     long _resolver;
-    private static long _discriminator = 0;
 
-    SimTimeSlot(double msek) {
+    // The resolver orders events at the same time, see resolver.
+    SimTimeSlot(double msek, long resolver) {
+        set(msek, resolver);
+    }
+
+    // The resolver of the event numbered sequence among those sent by the entity with the given id. Events at the same
+    // time run by the id of their sender, then in the order it sent them, which does not depend on how a simulation is
+    // split over logical processes. Events without a sender have id -1, they go first and are numbered by the engine.
+    static long resolver(int source, long sequence) {
+        return ((long) (source + 1) << SEQUENCE_BITS) | sequence;
+    }
+
+    // Moves the slot to a new time, used when a pooled handle is reused for a new event.
+    void set(double msek, long resolver) {
         _msek = msek;
-        _resolver = _discriminator;
-        _discriminator++;
+        _resolver = resolver;
     }
 
     // This method is called when an event is scheduled to be inserted into
-    // the treeMap handled by the register method in the simulation engine.
-    public int compareTo(Object obj) {
-        SimTimeSlot other = (SimTimeSlot) obj;
-
+    // the event queue handled by the register method in the simulation engine.
+    public int compareTo(SimTimeSlot other) {
         if (this._msek < other._msek) {
             return -1;
         } else if (this._msek > other._msek) {
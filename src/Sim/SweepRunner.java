@@ -0,0 +1,159 @@
+package Sim;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * Runs many independent simulations in parallel, one for each point of a parameter sweep.
+ * <p>
+ * Every point gets its own {@link SimEngine}, and the scenario builds a separate topology in it, so the simulations
+ * share no state and can run at the same time on a fixed pool of threads. Results are returned in the same order as the
+ * points. Entities write their log to the trace of their own engine, which is off unless a sink is attached, so
+ * concurrent simulations do not mix their output. Only the statistics printed by {@code onSimulationComplete} still go
+ * to standard output.
+ * <p>
+ * Each engine is seeded before the scenario builds in it. By default every point gets the same seed, so entities with
+ * the same stream names draw the same random numbers at every point (common random numbers) and the differences
+ * between points are down to their parameters rather than to chance. With common random numbers turned off each point
+ * gets a seed of its own, derived from the master seed and its index.
+ */
+public final class SweepRunner {
+    /**
+     * Builds the simulation for one point of a sweep.
+     *
+     * @param <P> type of the parameters for a point.
+     * @param <R> type of the result of a point.
+     */
+    @FunctionalInterface
+    public interface Scenario<P, R> {
+        /**
+         * Creates the entities for a point in the given engine and schedules the initial events.
+         *
+         * @param engine engine to create the entities in.
+         * @param point  parameters for this simulation.
+         * @return called once the engine has run, to collect the result.
+         */
+        Supplier<R> build(SimEngine engine, P point);
+    }
+
+    // Number of simulations run at the same time.
+    private final int _threads;
+
+    // Master seed, and whether every point is run with it rather than with a seed of its own.
+    private long _seed = RandomStreams.DEFAULT_SEED;
+    private boolean _commonRandomNumbers = true;
+
+    /**
+     * Creates a sweep runner with one thread per available core.
+     */
+    public SweepRunner() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a sweep runner.
+     *
+     * @param threads number of simulations to run at the same time.
+     */
+    public SweepRunner(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("a sweep runner needs at least one thread");
+        }
+        _threads = threads;
+    }
+
+    public int getThreadCount() {
+        return _threads;
+    }
+
+    public void setSeed(long seed) {
+        _seed = seed;
+    }
+
+    public void setCommonRandomNumbers(boolean commonRandomNumbers) {
+        _commonRandomNumbers = commonRandomNumbers;
+    }
+
+    // Returns the seed the engine of the point with the given index is run with.
+    public long getSeed(int index) {
+        return _commonRandomNumbers ? _seed : new RandomStreams(_seed).stream("point", index).nextLong();
+    }
+
+    /**
+     * Runs the scenario once for every point, and waits for all of them to finish.
+     *
+     * @param points   parameters for each simulation.
+     * @param scenario builds the simulation for a point.
+     * @param <P>      type of the parameters for a point.
+     * @param <R>      type of the result of a point.
+     * @return the result of each point, in the same order as the points.
+     */
+    public <P, R> List<R> run(List<P> points, Scenario<P, R> scenario) {
+        var seeds = new long[points.size()];
+        for (int i = 0; i < seeds.length; ++i) {
+            seeds[i] = getSeed(i);
+        }
+        return run(points, seeds, scenario);
+    }
+
+    /**
+     * Runs the scenario once for every point, each with the seed the given function picks for it, and waits for all of
+     * them to finish.
+     *
+     * @param points   parameters for each simulation.
+     * @param seeds    master seed of the engine of each point.
+     * @param scenario builds the simulation for a point.
+     * @param <P>      type of the parameters for a point.
+     * @param <R>      type of the result of a point.
+     * @return the result of each point, in the same order as the points.
+     */
+    public <P, R> List<R> run(List<P> points, ToLongFunction<P> seeds, Scenario<P, R> scenario) {
+        return run(points, points.stream().mapToLong(seeds).toArray(), scenario);
+    }
+
+    private <P, R> List<R> run(List<P> points, long[] seeds, Scenario<P, R> scenario) {
+        var tasks = new ArrayList<Callable<R>>(points.size());
+        for (int i = 0; i < points.size(); ++i) {
+            var point = points.get(i);
+            long seed = seeds[i];
+            tasks.add(() -> {
+                var engine = new SimEngine();
+                engine.setSeed(seed);
+                var result = scenario.build(engine, point);
+                engine.run();
+                return result.get();
+            });
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(_threads, Math.max(points.size(), 1)));
+        try {
+            var futures = executor.invokeAll(tasks);
+            var results = new ArrayList<R>(futures.size());
+            for (int i = 0; i < futures.size(); ++i) {
+                results.add(result(futures.get(i), points.get(i)));
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while running the sweep", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    // Waits for a finished simulation, and rethrows its failure with the point that caused it.
+    private static <R> R result(Future<R> future, Object point) throws InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("simulation failed for " + point, e.getCause());
+        }
+    }
+}
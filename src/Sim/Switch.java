@@ -6,7 +6,8 @@ public class Switch extends SimEnt {
     private int _ports;
 
     // When creating the switch, the number of ports must be specified
-    Switch(int ports) {
+    Switch(SimEngine engine, int ports) {
+        super(engine);
         _switchTable = new SwitchTableEntry[ports];
         _ports = ports;
     }
@@ -0,0 +1,178 @@
+package Sim;
+
+import java.util.Arrays;
+
+/**
+ * Hierarchical timing wheel for deadlines of home addresses, used by home agents to expire bindings.
+ * <p>
+ * Time is counted in ticks. The wheel has four levels of 64 slots, level 0 holds the deadlines of the next 64 ticks,
+ * one per slot, level 1 the next 4096 ticks in slots of 64 ticks and so on. Whenever level 0 wraps around, the next
+ * slot of level 1 is emptied into the levels below it, and the same happens further up. Adding a deadline and
+ * expiring it are both O(1), apart from being moved down at most once per level.
+ * <p>
+ * Entries are stored in parallel arrays linked into a list per slot, so the wheel does not allocate once it has grown
+ * to hold the deadlines in flight. Entries cannot be cancelled. When a deadline moves, for instance because a binding
+ * was refreshed, the new one is added and the owner ignores the old one when it expires.
+ */
+public class TimingWheel {
+    /**
+     * Receives the home addresses whose deadline has passed, see {@link #advance}.
+     */
+    public interface Expiry {
+        void expired(long network, long node);
+    }
+
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final int LEVELS = 4;
+
+    // Deadlines further away than this are kept in the top level, and moved back up when it is emptied.
+    private static final long RANGE = 1L << (SLOT_BITS * LEVELS);
+
+    private static final int NONE = -1;
+
+    // Entries, linked through _next into the list of their slot, or into the free list.
+    private long[] _network = new long[16];
+    private long[] _node = new long[16];
+    private long[] _deadline = new long[16];
+    private int[] _next = new int[16];
+    private int _free = NONE;
+    private int _used = 0;
+    private int _size = 0;
+
+    // First entry of every slot, level by level.
+    private final int[] _heads = new int[LEVELS * SLOTS];
+
+    // Last tick that has been expired.
+    private long _now;
+
+    /**
+     * Creates an empty wheel.
+     *
+     * @param now current tick, deadlines at or before it expire on the next tick.
+     */
+    public TimingWheel(long now) {
+        _now = now;
+        Arrays.fill(_heads, NONE);
+    }
+
+    // Last tick that has been expired.
+    public long getTick() {
+        return _now;
+    }
+
+    // Number of deadlines in the wheel, including those that have been superseded.
+    public int size() {
+        return _size;
+    }
+
+    public boolean isEmpty() {
+        return _size == 0;
+    }
+
+    /**
+     * Adds the deadline of a home address.
+     *
+     * @param network  network id of the home address.
+     * @param node     node id of the home address.
+     * @param deadline tick at which the address expires.
+     */
+    public void schedule(long network, long node, long deadline) {
+        int entry = allocate();
+        _network[entry] = network;
+        _node[entry] = node;
+        _deadline[entry] = Math.max(deadline, _now + 1);
+        place(entry);
+        _size += 1;
+    }
+
+    /**
+     * Expires every tick up to and including the given one, in order.
+     *
+     * @param tick   tick to advance to.
+     * @param expiry called for every deadline that has passed.
+     */
+    public void advance(long tick, Expiry expiry) {
+        while (_now < tick) {
+            if (_size == 0) {
+                // Nothing left to expire, so the idle ticks are skipped.
+                _now = tick;
+                return;
+            }
+            _now += 1;
+            int index = (int) (_now & SLOT_MASK);
+            for (int level = 1; index == 0 && level < LEVELS; ++level) {
+                index = (int) ((_now >>> (SLOT_BITS * level)) & SLOT_MASK);
+                cascade(level * SLOTS + index);
+            }
+
+            int slot = (int) (_now & SLOT_MASK);
+            int entry = _heads[slot];
+            _heads[slot] = NONE;
+            while (entry != NONE) {
+                int next = _next[entry];
+                _next[entry] = _free;
+                _free = entry;
+                _size -= 1;
+                expiry.expired(_network[entry], _node[entry]);
+                entry = next;
+            }
+        }
+    }
+
+    /**
+     * Removes all deadlines.
+     */
+    public void clear() {
+        Arrays.fill(_heads, NONE);
+        _free = NONE;
+        _used = 0;
+        _size = 0;
+    }
+
+    // Moves the entries of a slot into the levels below, or back into the top level if they are still out of range.
+    private void cascade(int slot) {
+        int entry = _heads[slot];
+        _heads[slot] = NONE;
+        while (entry != NONE) {
+            int next = _next[entry];
+            place(entry);
+            entry = next;
+        }
+    }
+
+    // Links an entry into the slot its deadline falls in.
+    private void place(int entry) {
+        long deadline = _deadline[entry];
+        long delta = deadline - _now;
+        int level = 0;
+        if (delta >= RANGE) {
+            level = LEVELS - 1;
+            deadline = _now + RANGE - 1;
+        } else {
+            while (delta >= 1L << (SLOT_BITS * (level + 1))) {
+                level += 1;
+            }
+        }
+        int slot = level * SLOTS + (int) ((deadline >>> (SLOT_BITS * level)) & SLOT_MASK);
+        _next[entry] = _heads[slot];
+        _heads[slot] = entry;
+    }
+
+    private int allocate() {
+        if (_free != NONE) {
+            int entry = _free;
+            _free = _next[entry];
+            return entry;
+        }
+        if (_used == _next.length) {
+            int capacity = _used * 2;
+            _network = Arrays.copyOf(_network, capacity);
+            _node = Arrays.copyOf(_node, capacity);
+            _deadline = Arrays.copyOf(_deadline, capacity);
+            _next = Arrays.copyOf(_next, capacity);
+        }
+        return _used++;
+    }
+}
@@ -0,0 +1,88 @@
+package Sim;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+/**
+ * Helpers used by the parallel engines to find the entities of a simulation and spread them over logical processes.
+ */
+final class Topology {
+    private Topology() {
+    }
+
+    /**
+     * Finds every entity reachable from the roots through {@link SimEnt#neighbours()}.
+     *
+     * @param roots entities to start from.
+     * @return all reachable entities, in the order they were found.
+     */
+    static List<SimEnt> discover(Iterable<SimEnt> roots) {
+        var seen = new IdentityHashMap<SimEnt, Boolean>();
+        var entities = new ArrayList<SimEnt>();
+        var queue = new ArrayDeque<SimEnt>();
+        for (var root : roots) {
+            if (root != null && seen.put(root, Boolean.TRUE) == null) {
+                entities.add(root);
+                queue.add(root);
+            }
+        }
+        while (!queue.isEmpty()) {
+            for (var neighbour : queue.poll().neighbours()) {
+                if (neighbour != null && seen.put(neighbour, Boolean.TRUE) == null) {
+                    entities.add(neighbour);
+                    queue.add(neighbour);
+                }
+            }
+        }
+        return entities;
+    }
+
+    /**
+     * Finds the engines the entities were created with, which hold the events scheduled before a parallel run.
+     *
+     * @param entities entities to look at.
+     * @return each engine once, in the order they were first found.
+     */
+    static List<SimEngine> engines(Iterable<SimEnt> entities) {
+        var seen = new IdentityHashMap<SimEngine, Boolean>();
+        var engines = new ArrayList<SimEngine>();
+        for (var entity : entities) {
+            if (seen.put(entity._engine, Boolean.TRUE) == null) {
+                engines.add(entity._engine);
+            }
+        }
+        return engines;
+    }
+
+    /**
+     * Spreads groups of entities over a number of processes, largest group first onto the process with the fewest
+     * entities. Groups of the same size keep their order, so the result only depends on the input.
+     *
+     * @param groups    groups of entities that must stay together.
+     * @param processes number of processes.
+     * @return the process for each group.
+     */
+    static int[] pack(List<? extends List<SimEnt>> groups, int processes) {
+        var order = new ArrayList<Integer>();
+        for (int i = 0; i < groups.size(); ++i) {
+            order.add(i);
+        }
+        order.sort((lhs, rhs) -> groups.get(rhs).size() - groups.get(lhs).size());
+
+        int[] assignment = new int[groups.size()];
+        long[] load = new long[processes];
+        for (int group : order) {
+            int process = 0;
+            for (int i = 1; i < processes; ++i) {
+                if (load[i] < load[process]) {
+                    process = i;
+                }
+            }
+            load[process] += groups.get(group).size();
+            assignment[group] = process;
+        }
+        return assignment;
+    }
+}
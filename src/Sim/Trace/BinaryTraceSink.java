@@ -0,0 +1,353 @@
+package Sim.Trace;
+
+import Sim.Message;
+import Sim.NetworkAddr;
+import Sim.SimEnt;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Writes the trace as compact binary records to a file, without formatting anything on the simulation thread.
+ * <p>
+ * Records are encoded into a ring buffer, and a background thread drains the ring to the file. When the writer falls
+ * behind and the ring is full, the simulation waits for it rather than dropping records. Arguments are stored by
+ * structure instead of as text: addresses as their three fields, messages as their class and addresses, and entities and
+ * strings as references to names that are written to the file the first time they are seen. An entity is described the
+ * way it prints the first time it is traced. Use {@link TraceDump} to turn the file back into text.
+ * <p>
+ * One sink can be shared by simulations running on different threads, records are appended under a lock.
+ */
+public final class BinaryTraceSink implements TraceSink {
+    static final byte[] MAGIC = "SIMTRACE".getBytes(StandardCharsets.US_ASCII);
+    static final int VERSION = 1;
+
+    // Record tags.
+    static final int POINT = 1;
+    static final int NAME = 2;
+    static final int RECORD = 3;
+
+    // Argument tags.
+    static final int NULL = 0;
+    static final int NAME_REF = 1;
+    static final int ADDRESS = 2;
+    static final int MESSAGE = 3;
+    static final int LONG = 4;
+    static final int DOUBLE = 5;
+
+    public static final int DEFAULT_BUFFER_SIZE = 1 << 20;
+
+    private final FileChannel _channel;
+    private final Thread _writer;
+
+    // Ring of encoded records. Bytes in [_tail, _head) are waiting for the writer, the rest is free. Both positions
+    // only grow and are reduced modulo the ring size, and both are guarded by the lock on this sink.
+    private final byte[] _ring;
+    private long _head = 0;
+    private long _tail = 0;
+    private boolean _closed = false;
+    private IOException _failure = null;
+
+    // Scratch space a record is encoded into before it is copied to the ring.
+    private byte[] _record = new byte[256];
+    private int _length = 0;
+
+    // Things that have been written to the file already and can be referred to by id.
+    private final BitSet _points = new BitSet();
+    private final Map<Object, Integer> _entities = new IdentityHashMap<>();
+    private final Map<Class<?>, Integer> _classes = new IdentityHashMap<>();
+    private final Map<String, Integer> _strings = new HashMap<>();
+    private int _names = 0;
+
+    // Statistics.
+    private long _records = 0;
+    private long _stalls = 0;
+
+    public BinaryTraceSink(Path file) throws IOException {
+        this(file, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Creates a sink writing to a file, replacing it if it exists.
+     *
+     * @param file       file to write to.
+     * @param bufferSize size of the ring buffer in bytes.
+     */
+    public BinaryTraceSink(Path file, int bufferSize) throws IOException {
+        if (bufferSize < 64) {
+            throw new IllegalArgumentException("the trace buffer must hold at least 64 bytes");
+        }
+        _ring = new byte[bufferSize];
+        _channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+
+        synchronized (this) {
+            _length = 0;
+            for (byte b : MAGIC) {
+                putByte(b);
+            }
+            putVar(VERSION);
+            append();
+        }
+
+        _writer = new Thread(this::drain, "trace writer " + file.getFileName());
+        _writer.setDaemon(true);
+        _writer.start();
+    }
+
+    @Override
+    public synchronized void write(double time, TracePoint point, int argc, Object a, Object b, Object c) {
+        if (_closed) {
+            throw new IllegalStateException("the trace has been closed");
+        }
+        _length = 0;
+
+        // Definitions go before the record that first uses them, so a reader never sees an unknown id.
+        if (!_points.get(point.getId())) {
+            _points.set(point.getId());
+            putByte(POINT);
+            putVar(point.getId());
+            putByte(point.getLevel().ordinal());
+            putString(point.getFormat());
+        }
+        if (argc > 0) {
+            define(a);
+        }
+        if (argc > 1) {
+            define(b);
+        }
+        if (argc > 2) {
+            define(c);
+        }
+
+        putByte(RECORD);
+        putDouble(time);
+        putVar(point.getId());
+        putByte(argc);
+        if (argc > 0) {
+            putArgument(a);
+        }
+        if (argc > 1) {
+            putArgument(b);
+        }
+        if (argc > 2) {
+            putArgument(c);
+        }
+        append();
+        _records += 1;
+    }
+
+    /**
+     * Waits until every record has been written, then closes the file.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (_closed) {
+                return;
+            }
+            _closed = true;
+            notifyAll();
+        }
+        try {
+            _writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            _channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        synchronized (this) {
+            if (_failure != null) {
+                throw new UncheckedIOException(_failure);
+            }
+        }
+    }
+
+    public synchronized long getRecordCount() {
+        return _records;
+    }
+
+    // Number of times the simulation had to wait for the writer because the ring was full.
+    public synchronized long getStallCount() {
+        return _stalls;
+    }
+
+    // Writes the definitions of the names an argument refers to, if they have not been written yet.
+    private void define(Object arg) {
+        if (arg instanceof Message message) {
+            if (!_classes.containsKey(message.getClass())) {
+                _classes.put(message.getClass(), defineName(message.getClass().getSimpleName()));
+            }
+        } else if (arg instanceof SimEnt) {
+            if (!_entities.containsKey(arg)) {
+                _entities.put(arg, defineName(arg.toString()));
+            }
+        } else if (arg != null && !(arg instanceof NetworkAddr) && !(arg instanceof Number)) {
+            String text = arg.toString();
+            if (!_strings.containsKey(text)) {
+                _strings.put(text, defineName(text));
+            }
+        }
+    }
+
+    private int defineName(String name) {
+        int id = _names++;
+        putByte(NAME);
+        putVar(id);
+        putString(name);
+        return id;
+    }
+
+    private void putArgument(Object arg) {
+        if (arg == null) {
+            putByte(NULL);
+        } else if (arg instanceof NetworkAddr addr) {
+            putByte(ADDRESS);
+            putLong(addr.networkId());
+            putLong(addr.nodeId());
+            putVar(addr.getPrefixBits());
+        } else if (arg instanceof Message message) {
+            putByte(MESSAGE);
+            putVar(_classes.get(message.getClass()));
+            putArgument(message.source());
+            putArgument(message.destination());
+        } else if (arg instanceof Double || arg instanceof Float) {
+            putByte(DOUBLE);
+            putDouble(((Number) arg).doubleValue());
+        } else if (arg instanceof Number number) {
+            putByte(LONG);
+            long value = number.longValue();
+            putVar((value << 1) ^ (value >> 63));
+        } else if (arg instanceof SimEnt) {
+            putByte(NAME_REF);
+            putVar(_entities.get(arg));
+        } else {
+            putByte(NAME_REF);
+            putVar(_strings.get(arg.toString()));
+        }
+    }
+
+    private void putByte(int value) {
+        if (_length == _record.length) {
+            _record = Arrays.copyOf(_record, _record.length * 2);
+        }
+        _record[_length++] = (byte) value;
+    }
+
+    private void putLong(long value) {
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            putByte((int) (value >>> shift));
+        }
+    }
+
+    private void putDouble(double value) {
+        putLong(Double.doubleToRawLongBits(value));
+    }
+
+    // Unsigned variable length integer, seven bits per byte with the high bit set on all but the last.
+    private void putVar(long value) {
+        while ((value & ~0x7FL) != 0) {
+            putByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        putByte((int) value);
+    }
+
+    private void putString(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        putVar(bytes.length);
+        for (byte b : bytes) {
+            putByte(b);
+        }
+    }
+
+    // Copies the encoded record into the ring, waiting for the writer whenever the ring is full.
+    private void append() {
+        int offset = 0;
+        while (offset < _length) {
+            long free = _ring.length - (_head - _tail);
+            if (free == 0) {
+                _stalls += 1;
+                awaitSpace();
+                continue;
+            }
+            int start = (int) (_head % _ring.length);
+            int count = (int) Math.min(Math.min(free, _length - offset), _ring.length - start);
+            System.arraycopy(_record, offset, _ring, start, count);
+            if (_head == _tail) {
+                // The writer may be waiting for data.
+                notifyAll();
+            }
+            _head += count;
+            offset += count;
+        }
+    }
+
+    private void awaitSpace() {
+        notifyAll();
+        while (_ring.length == _head - _tail) {
+            if (_failure != null) {
+                throw new UncheckedIOException("writing the trace failed", _failure);
+            }
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("interrupted while waiting for the trace writer", e);
+            }
+        }
+    }
+
+    // Body of the writer thread. The bytes between the tail and the head are only touched by the writer until it moves
+    // the tail, so they are written to the file without holding the lock.
+    private void drain() {
+        try {
+            while (true) {
+                long tail;
+                long head;
+                synchronized (this) {
+                    while (_head == _tail && !_closed) {
+                        wait();
+                    }
+                    if (_head == _tail) {
+                        return;
+                    }
+                    tail = _tail;
+                    head = _head;
+                }
+
+                int start = (int) (tail % _ring.length);
+                int count = (int) Math.min(head - tail, _ring.length - start);
+                var buffer = ByteBuffer.wrap(_ring, start, count);
+                while (buffer.hasRemaining()) {
+                    _channel.write(buffer);
+                }
+
+                synchronized (this) {
+                    _tail = tail + count;
+                    notifyAll();
+                }
+            }
+        } catch (IOException e) {
+            synchronized (this) {
+                _failure = e;
+                notifyAll();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package Sim.Trace;
+
+import java.io.PrintStream;
+
+/**
+ * Formats every record as a line of text right away, prefixed with the simulation time. Meant for following a small
+ * simulation as it runs, formatting on the simulation thread is too slow for anything bigger.
+ */
+public final class ConsoleTraceSink implements TraceSink {
+    private final PrintStream _out;
+
+    public ConsoleTraceSink(PrintStream out) {
+        _out = out;
+    }
+
+    @Override
+    public void write(double time, TracePoint point, int argc, Object a, Object b, Object c) {
+        String message = switch (argc) {
+            case 0 -> point.getFormat();
+            case 1 -> String.format(point.getFormat(), a);
+            case 2 -> String.format(point.getFormat(), a, b);
+            default -> String.format(point.getFormat(), a, b, c);
+        };
+        _out.printf("[%d] %s%n", (int) time, message);
+    }
+
+    @Override
+    public void close() {
+        _out.flush();
+    }
+}
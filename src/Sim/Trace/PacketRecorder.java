@@ -0,0 +1,210 @@
+package Sim.Trace;
+
+import Sim.Event;
+import Sim.EventTypes;
+import Sim.Link;
+import Sim.Message;
+import Sim.Messages.IPv6Tunneled;
+import Sim.Node;
+import Sim.Router;
+import Sim.SimEnt;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Records every event an engine dispatches as a fixed size binary record, the simulator's counterpart of a packet
+ * capture. Attach it with {@link Sim.SimEngine#setPacketRecorder} and read the file with {@link PacketTraceAnalyzer}.
+ * <p>
+ * A dispatch record holds the time, the ids of the sending and receiving entities, the type of the event and, for
+ * messages, the addresses and sequence number of the packet. A tunneled packet is recorded with the addresses of the
+ * packet inside the tunnel, which identify its flow from end to end, and the number of tunnels around it. Entities and
+ * event types are described in records of their own before their first use, so the ids in a file do not depend on the
+ * run that wrote it.
+ * <p>
+ * Records are collected in a direct buffer that is written to the file with a {@link FileChannel} whenever it fills up.
+ * A recorder belongs to the thread running its engine.
+ */
+public final class PacketRecorder implements AutoCloseable {
+    static final byte[] MAGIC = "SIMPKTS1".getBytes(StandardCharsets.US_ASCII);
+
+    // Record tags.
+    static final byte ENTITY = 1;
+    static final byte TYPE = 2;
+    static final byte DISPATCH = 3;
+
+    // Kinds of entities.
+    static final byte OTHER = 0;
+    static final byte HOST = 1;
+    static final byte ROUTER = 2;
+    static final byte LINK = 3;
+
+    // Size of a dispatch record: tag, time, source, target, type, inner type, two addresses, sequence and depth.
+    static final int DISPATCH_SIZE = 1 + 8 + 4 + 4 + 2 + 2 + 4 * 8 + 4 + 1;
+
+    public static final int DEFAULT_BUFFER_SIZE = 1 << 20;
+
+    private final FileChannel _channel;
+    private final ByteBuffer _buffer;
+
+    // Entities and event types that have been described in the file.
+    private final BitSet _entities = new BitSet();
+    private final BitSet _types = new BitSet();
+
+    private long _records = 0;
+
+    public PacketRecorder(Path file) throws IOException {
+        this(file, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Creates a recorder writing to a file, replacing it if it exists.
+     *
+     * @param file       file to write to.
+     * @param bufferSize bytes collected before they are written.
+     */
+    public PacketRecorder(Path file, int bufferSize) throws IOException {
+        if (bufferSize < 1024) {
+            throw new IllegalArgumentException("the packet recorder buffer must hold at least 1024 bytes");
+        }
+        _buffer = ByteBuffer.allocateDirect(bufferSize);
+        _channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        _buffer.put(MAGIC);
+    }
+
+    /**
+     * Records the dispatch of an event.
+     *
+     * @param time   simulation time of the dispatch.
+     * @param source entity that scheduled the event.
+     * @param target entity receiving the event.
+     * @param event  the event.
+     */
+    public void record(double time, SimEnt source, SimEnt target, Event event) {
+        int sourceId = describe(source);
+        int targetId = describe(target);
+        int type = describe(event);
+
+        int innerType = type;
+        int depth = 0;
+        Message packet = null;
+        if (event instanceof Message message) {
+            packet = message;
+            while (packet instanceof IPv6Tunneled tunneled && tunneled.getOriginalPacket() != null) {
+                packet = tunneled.getOriginalPacket();
+                depth += 1;
+            }
+            if (depth > 0) {
+                innerType = describe(packet);
+            }
+        }
+
+        reserve(DISPATCH_SIZE);
+        _buffer.put(DISPATCH)
+                .putDouble(time)
+                .putInt(sourceId)
+                .putInt(targetId)
+                .putShort((short) type)
+                .putShort((short) innerType);
+        if (packet != null) {
+            var src = packet.source();
+            var dst = packet.destination();
+            _buffer.putLong(src == null ? 0 : src.networkId())
+                    .putLong(src == null ? 0 : src.nodeId())
+                    .putLong(dst == null ? 0 : dst.networkId())
+                    .putLong(dst == null ? 0 : dst.nodeId())
+                    .putInt(packet.seq());
+        } else {
+            _buffer.putLong(0).putLong(0).putLong(0).putLong(0).putInt(0);
+        }
+        _buffer.put((byte) depth);
+        _records += 1;
+    }
+
+    public long getRecordCount() {
+        return _records;
+    }
+
+    /**
+     * Writes out the records collected so far.
+     */
+    public void flush() {
+        _buffer.flip();
+        try {
+            while (_buffer.hasRemaining()) {
+                _channel.write(_buffer);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("writing the packet trace failed", e);
+        } finally {
+            _buffer.clear();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (_channel.isOpen()) {
+            flush();
+            _channel.close();
+        }
+    }
+
+    // Returns the id of an entity, describing it first if it has not been seen yet. Entities are recorded with -1
+    // when there is none.
+    private int describe(SimEnt entity) {
+        if (entity == null) {
+            return -1;
+        }
+        int id = entity.getId();
+        if (!_entities.get(id)) {
+            _entities.set(id);
+            byte kind = entity instanceof Node ? HOST
+                    : entity instanceof Router ? ROUTER
+                    : entity instanceof Link ? LINK
+                    : OTHER;
+            byte[] name = truncate(entity.toString());
+            reserve(1 + 4 + 1 + 2 + name.length);
+            _buffer.put(ENTITY).putInt(id).put(kind).putShort((short) name.length).put(name);
+        }
+        return id;
+    }
+
+    private int describe(Event event) {
+        int id = EventTypes.of(event);
+        if (id > Short.MAX_VALUE) {
+            throw new IllegalStateException("too many event types to record");
+        }
+        if (!_types.get(id)) {
+            _types.set(id);
+            byte[] name = truncate(event.getClass().getSimpleName());
+            reserve(1 + 2 + 1 + 2 + name.length);
+            _buffer.put(TYPE).putShort((short) id).put((byte) (event instanceof Message ? 1 : 0))
+                    .putShort((short) name.length).put(name);
+        }
+        return id;
+    }
+
+    private void reserve(int bytes) {
+        if (_buffer.remaining() < bytes) {
+            flush();
+        }
+    }
+
+    // Names are stored with a 16-bit length, and must fit in the buffer.
+    private byte[] truncate(String name) {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        int limit = Math.min(Short.MAX_VALUE, _buffer.capacity() / 2);
+        if (bytes.length <= limit) {
+            return bytes;
+        }
+        return Arrays.copyOf(bytes, limit);
+    }
+}
@@ -0,0 +1,295 @@
+package Sim.Trace;
+
+import Sim.NetworkAddr;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reads a file written by {@link PacketRecorder} one record at a time and reports, for every flow of data packets, how
+ * many packets were sent and delivered, their latency, and how long delivery stopped around each handover.
+ * <p>
+ * A flow is the traffic from one address to another, identified by the addresses inside any tunnels. A packet is sent
+ * when it is first dispatched by a node and delivered when it reaches a node other than its sender. A packet not
+ * delivered within a timeout, 10 seconds of simulated time unless set, or by the end of the trace, counts as lost. The
+ * handover gap is the longest time between two deliveries from a {@code StartHandover} event at the receiving node
+ * until the first delivery of a packet sent after that event, so the packets that were already on their way do not hide
+ * the interruption. Only the packets in flight within the timeout are kept in memory, so traces of any length can be
+ * analyzed.
+ * <p>
+ * Run with {@code java -cp bin Sim.Trace.PacketTraceAnalyzer trace.bin [--types Message,...] [--timeout ms]}, the
+ * types are the event classes that count as data packets.
+ */
+public class PacketTraceAnalyzer {
+    // Simulated time in milliseconds after which a packet that has not been delivered is taken as lost.
+    public static final double DEFAULT_TIMEOUT = 10_000;
+
+    private record FlowKey(long srcNetwork, long srcNode, long dstNetwork, long dstNode) {
+        @Override
+        public String toString() {
+            return new NetworkAddr(srcNetwork, srcNode) + " -> " + new NetworkAddr(dstNetwork, dstNode);
+        }
+    }
+
+    // A packet that has been sent and not delivered yet.
+    private static final class Packet {
+        final double sent;
+        final int sender;
+        boolean tunneled = false;
+
+        Packet(double sent, int sender) {
+            this.sent = sent;
+            this.sender = sender;
+        }
+    }
+
+    private static final class Flow {
+        // Packets in the order they were sent, so the ones past the timeout are at the front.
+        final LinkedHashMap<Integer, Packet> inFlight = new LinkedHashMap<>();
+        long sent = 0;
+        long expired = 0;
+        long delivered = 0;
+        long tunneled = 0;
+        double latencySum = 0;
+        double latencyMin = Double.POSITIVE_INFINITY;
+        double latencyMax = 0;
+
+        // Node the packets are delivered to, once one has been.
+        int receiver = -1;
+        double lastDelivery = Double.NaN;
+
+        // Time of the handover in progress, or NaN when there is none, and the longest time without deliveries since.
+        double handover = Double.NaN;
+        double gap = 0;
+        final List<Double> gaps = new ArrayList<>();
+    }
+
+    private final Set<String> _dataTypes;
+    private final double _timeout;
+    private final Map<Integer, String> _entityNames = new HashMap<>();
+    private final Map<Integer, Byte> _entityKinds = new HashMap<>();
+    private final Map<Integer, String> _typeNames = new HashMap<>();
+    private final Map<Integer, Long> _typeCounts = new HashMap<>();
+    private final Map<FlowKey, Flow> _flows = new LinkedHashMap<>();
+    private long _records = 0;
+    private double _endTime = 0;
+
+    // Time at which the flows are next searched for packets past the timeout.
+    private double _nextExpiry;
+
+    /**
+     * Creates an analyzer with the default timeout.
+     *
+     * @param dataTypes simple names of the event classes that are data packets.
+     */
+    public PacketTraceAnalyzer(Set<String> dataTypes) {
+        this(dataTypes, DEFAULT_TIMEOUT);
+    }
+
+    /**
+     * Creates an analyzer.
+     *
+     * @param dataTypes simple names of the event classes that are data packets.
+     * @param timeout   simulated time in milliseconds after which a packet that has not been delivered is lost.
+     */
+    public PacketTraceAnalyzer(Set<String> dataTypes, double timeout) {
+        if (!(timeout > 0)) {
+            throw new IllegalArgumentException("the timeout must be positive: " + timeout);
+        }
+        _dataTypes = dataTypes;
+        _timeout = timeout;
+        _nextExpiry = timeout;
+    }
+
+    /**
+     * Reads a whole trace.
+     *
+     * @param input trace written by a {@link PacketRecorder}.
+     */
+    public void read(InputStream input) throws IOException {
+        var in = new DataInputStream(new BufferedInputStream(input, 1 << 16));
+        byte[] magic = new byte[PacketRecorder.MAGIC.length];
+        in.readFully(magic);
+        if (!Arrays.equals(magic, PacketRecorder.MAGIC)) {
+            throw new IOException("not a packet trace");
+        }
+
+        int tag;
+        while ((tag = in.read()) != -1) {
+            switch (tag) {
+                case PacketRecorder.ENTITY -> {
+                    int id = in.readInt();
+                    _entityKinds.put(id, in.readByte());
+                    _entityNames.put(id, readName(in));
+                }
+                case PacketRecorder.TYPE -> {
+                    int id = in.readShort();
+                    in.readByte();
+                    _typeNames.put(id, readName(in));
+                }
+                case PacketRecorder.DISPATCH -> readDispatch(in);
+                default -> throw new IOException("corrupt packet trace, unknown record tag " + tag);
+            }
+        }
+    }
+
+    private void readDispatch(DataInputStream in) throws IOException {
+        try {
+            double time = in.readDouble();
+            int source = in.readInt();
+            int target = in.readInt();
+            int type = in.readShort();
+            int innerType = in.readShort();
+            var key = new FlowKey(in.readLong(), in.readLong(), in.readLong(), in.readLong());
+            int seq = in.readInt();
+            int depth = in.readUnsignedByte();
+
+            _records += 1;
+            _endTime = time;
+            _typeCounts.merge(type, 1L, Long::sum);
+            if (time >= _nextExpiry) {
+                expire(time);
+            }
+
+            if ("StartHandover".equals(_typeNames.get(type))) {
+                for (var flow : _flows.values()) {
+                    if (flow.receiver == target && Double.isNaN(flow.handover)) {
+                        flow.handover = time;
+                        flow.gap = 0;
+                    }
+                }
+                return;
+            }
+            if (!_dataTypes.contains(_typeNames.get(innerType))) {
+                return;
+            }
+
+            var flow = _flows.computeIfAbsent(key, k -> new Flow());
+            var packet = flow.inFlight.get(seq);
+            if (packet == null) {
+                if (_entityKinds.getOrDefault(source, PacketRecorder.OTHER) != PacketRecorder.HOST) {
+                    // Not seen leaving its sender, either the sender was not recorded or the packet timed out.
+                    return;
+                }
+                packet = new Packet(time, source);
+                flow.inFlight.put(seq, packet);
+                flow.sent += 1;
+            }
+            packet.tunneled |= depth > 0;
+
+            if (_entityKinds.getOrDefault(target, PacketRecorder.OTHER) == PacketRecorder.HOST && target != packet.sender) {
+                flow.inFlight.remove(seq);
+                double latency = time - packet.sent;
+                flow.delivered += 1;
+                flow.tunneled += packet.tunneled ? 1 : 0;
+                flow.latencySum += latency;
+                flow.latencyMin = Math.min(flow.latencyMin, latency);
+                flow.latencyMax = Math.max(flow.latencyMax, latency);
+                if (!Double.isNaN(flow.handover)) {
+                    double since = Double.isNaN(flow.lastDelivery) ? flow.handover : flow.lastDelivery;
+                    flow.gap = Math.max(flow.gap, time - since);
+                    if (packet.sent >= flow.handover) {
+                        flow.gaps.add(flow.gap);
+                        flow.handover = Double.NaN;
+                    }
+                }
+                flow.receiver = target;
+                flow.lastDelivery = time;
+            }
+        } catch (EOFException e) {
+            throw new EOFException("packet trace ends in the middle of a record");
+        }
+    }
+
+    // Drops the packets sent more than the timeout ago, they count as lost. Run once per timeout, so a lost packet is
+    // kept for at most twice the timeout.
+    private void expire(double now) {
+        for (var flow : _flows.values()) {
+            var packets = flow.inFlight.values().iterator();
+            while (packets.hasNext()) {
+                if (packets.next().sent > now - _timeout) {
+                    break;
+                }
+                packets.remove();
+                flow.expired += 1;
+            }
+        }
+        _nextExpiry = now + _timeout;
+    }
+
+    /**
+     * Prints the report.
+     *
+     * @param out stream to print to.
+     */
+    public void report(PrintStream out) {
+        out.printf("%d records, last at %.3f%n", _records, _endTime);
+        out.println("Events by type:");
+        _typeCounts.entrySet().stream()
+                .sorted((lhs, rhs) -> Long.compare(rhs.getValue(), lhs.getValue()))
+                .forEach(entry -> out.printf("  %-24s %12d%n", _typeNames.get(entry.getKey()), entry.getValue()));
+
+        out.println("Flows:");
+        for (var entry : _flows.entrySet()) {
+            var flow = entry.getValue();
+            long lost = flow.sent - flow.delivered;
+            out.printf("  %s%n", entry.getKey());
+            out.printf("    sent %d, delivered %d, lost %d (%.2f%%, %d timed out), tunneled %d%n", flow.sent,
+                    flow.delivered, lost, flow.sent == 0 ? 0.0 : 100.0 * lost / flow.sent, flow.expired, flow.tunneled);
+            if (flow.delivered > 0) {
+                out.printf("    latency mean %.3f, min %.3f, max %.3f, delivered to %s%n",
+                        flow.latencySum / flow.delivered, flow.latencyMin, flow.latencyMax,
+                        _entityNames.get(flow.receiver));
+            }
+            for (double gap : flow.gaps) {
+                out.printf("    handover gap %.3f%n", gap);
+            }
+            if (!Double.isNaN(flow.handover)) {
+                out.printf("    handover at %.3f, nothing sent after it was delivered%n", flow.handover);
+            }
+        }
+    }
+
+    private static String readName(DataInputStream in) throws IOException {
+        byte[] name = new byte[in.readUnsignedShort()];
+        in.readFully(name);
+        return new String(name, StandardCharsets.UTF_8);
+    }
+
+    public static void main(String[] args) throws IOException {
+        Set<String> types = new HashSet<>(List.of("Message"));
+        double timeout = DEFAULT_TIMEOUT;
+        boolean valid = args.length % 2 == 1;
+        for (int i = 1; valid && i < args.length; i += 2) {
+            switch (args[i]) {
+                case "--types" -> types = new HashSet<>(List.of(args[i + 1].split(",")));
+                case "--timeout" -> timeout = Double.parseDouble(args[i + 1]);
+                default -> valid = false;
+            }
+        }
+        if (!valid) {
+            System.err.println("usage: PacketTraceAnalyzer <trace file> [--types Message,...] [--timeout ms]");
+            System.exit(2);
+        }
+        var analyzer = new PacketTraceAnalyzer(types, timeout);
+        try (var in = Files.newInputStream(Path.of(args[0]))) {
+            analyzer.read(in);
+        }
+        analyzer.report(System.out);
+    }
+}
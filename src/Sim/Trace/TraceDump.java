@@ -0,0 +1,143 @@
+package Sim.Trace;
+
+import Sim.NetworkAddr;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Reads a trace written by {@link BinaryTraceSink} and prints it as text, one line per record like the
+ * {@link ConsoleTraceSink} would have. Messages are printed as their class name and addresses.
+ * <p>
+ * Run with {@code java -cp bin Sim.Trace.TraceDump trace.bin [level]}, where the optional level leaves out the records
+ * of more verbose trace points.
+ */
+public class TraceDump {
+    private final DataInputStream _in;
+    private final List<String> _formats = new ArrayList<>();
+    private final List<TraceLevel> _levels = new ArrayList<>();
+    private final List<String> _names = new ArrayList<>();
+
+    public TraceDump(InputStream in) throws IOException {
+        _in = new DataInputStream(new BufferedInputStream(in, 1 << 16));
+        byte[] magic = new byte[BinaryTraceSink.MAGIC.length];
+        _in.readFully(magic);
+        if (!Arrays.equals(magic, BinaryTraceSink.MAGIC)) {
+            throw new IOException("not a simulation trace");
+        }
+        long version = readVar();
+        if (version != BinaryTraceSink.VERSION) {
+            throw new IOException("unsupported trace version " + version);
+        }
+    }
+
+    /**
+     * Prints every record up to a level.
+     *
+     * @param level most verbose level to print.
+     * @param out   stream to print to.
+     * @return number of records printed.
+     */
+    public long dump(TraceLevel level, PrintStream out) throws IOException {
+        long printed = 0;
+        Object[] args = new Object[3];
+        int tag;
+        while ((tag = _in.read()) != -1) {
+            switch (tag) {
+                case BinaryTraceSink.POINT -> {
+                    int id = (int) readVar();
+                    var pointLevel = TraceLevel.values()[_in.readUnsignedByte()];
+                    set(_levels, id, pointLevel);
+                    set(_formats, id, readString());
+                }
+                case BinaryTraceSink.NAME -> set(_names, (int) readVar(), readString());
+                case BinaryTraceSink.RECORD -> {
+                    double time = _in.readDouble();
+                    int point = (int) readVar();
+                    int argc = _in.readUnsignedByte();
+                    for (int i = 0; i < argc; ++i) {
+                        args[i] = readArgument();
+                    }
+                    if (_levels.get(point).ordinal() <= level.ordinal()) {
+                        String message = String.format(_formats.get(point), Arrays.copyOf(args, argc));
+                        out.printf("[%d] %s%n", (int) time, message);
+                        printed += 1;
+                    }
+                }
+                default -> throw new IOException("corrupt trace, unknown record tag " + tag);
+            }
+        }
+        return printed;
+    }
+
+    private Object readArgument() throws IOException {
+        int tag = _in.readUnsignedByte();
+        return switch (tag) {
+            case BinaryTraceSink.NULL -> null;
+            case BinaryTraceSink.NAME_REF -> _names.get((int) readVar());
+            case BinaryTraceSink.ADDRESS -> new NetworkAddr(_in.readLong(), _in.readLong(), (int) readVar());
+            case BinaryTraceSink.MESSAGE -> {
+                String name = _names.get((int) readVar());
+                Object source = readArgument();
+                Object destination = readArgument();
+                yield String.format("%s, src=%s, dst=%s", name, source, destination);
+            }
+            case BinaryTraceSink.LONG -> {
+                long value = readVar();
+                yield (value >>> 1) ^ -(value & 1);
+            }
+            case BinaryTraceSink.DOUBLE -> _in.readDouble();
+            default -> throw new IOException("corrupt trace, unknown argument tag " + tag);
+        };
+    }
+
+    private long readVar() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = _in.read();
+            if (b == -1) {
+                throw new EOFException("trace ends in the middle of a record");
+            }
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("corrupt trace, integer too long");
+    }
+
+    private String readString() throws IOException {
+        byte[] bytes = new byte[(int) readVar()];
+        _in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static <T> void set(List<T> list, int index, T value) {
+        while (list.size() <= index) {
+            list.add(null);
+        }
+        list.set(index, value);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("usage: TraceDump <trace file> [off|error|info|debug]");
+            System.exit(2);
+        }
+        var level = args.length > 1 ? TraceLevel.valueOf(args[1].toUpperCase(Locale.ROOT)) : TraceLevel.DEBUG;
+        try (var in = Files.newInputStream(Path.of(args[0]))) {
+            new TraceDump(in).dump(level, System.out);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package Sim.Trace;
+
+/**
+ * Verbosity of a trace, from nothing at all to every packet on every hop. A trace at some level includes all the levels
+ * before it.
+ */
+public enum TraceLevel {
+    /**
+     * Nothing is traced.
+     */
+    OFF,
+
+    /**
+     * Only errors, such as packets that cannot be routed.
+     */
+    ERROR,
+
+    /**
+     * Control plane changes: attachments, handovers, binding cache updates and advertisements.
+     */
+    INFO,
+
+    /**
+     * Every packet received, sent, forwarded, tunneled or dropped.
+     */
+    DEBUG,
+}
@@ -0,0 +1,60 @@
+package Sim.Trace;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A place in the code that writes to the trace, with its level and message. Trace points are defined once, typically as
+ * static fields of the entity that traces them, so a record only has to carry the id of its point and the arguments.
+ * <p>
+ * The message is a {@link String#format} pattern with one {@code %s} for each argument. The simulation time is not part
+ * of it, every record is stamped with the time by the tracer.
+ */
+public final class TracePoint {
+    private static final List<TracePoint> _points = new ArrayList<>();
+
+    private final int _id;
+    private final TraceLevel _level;
+    private final String _format;
+
+    private TracePoint(int id, TraceLevel level, String format) {
+        _id = id;
+        _level = level;
+        _format = format;
+    }
+
+    /**
+     * Defines a trace point.
+     *
+     * @param level  level the point is traced at, not OFF.
+     * @param format message pattern.
+     * @return the new trace point.
+     */
+    public static TracePoint define(TraceLevel level, String format) {
+        if (level == TraceLevel.OFF) {
+            throw new IllegalArgumentException("a trace point cannot be defined at level OFF");
+        }
+        synchronized (_points) {
+            var point = new TracePoint(_points.size(), level, format);
+            _points.add(point);
+            return point;
+        }
+    }
+
+    public int getId() {
+        return _id;
+    }
+
+    public TraceLevel getLevel() {
+        return _level;
+    }
+
+    public String getFormat() {
+        return _format;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("TracePoint %d [%s] %s", _id, _level, _format);
+    }
+}
@@ -0,0 +1,28 @@
+package Sim.Trace;
+
+/**
+ * Destination of the records of a {@link Tracer}.
+ * <p>
+ * The arguments of a record are only valid during the call, messages and addresses change as they travel through the
+ * network, so a sink must render or encode them before returning.
+ */
+public interface TraceSink extends AutoCloseable {
+    /**
+     * Writes one record.
+     *
+     * @param time  simulation time of the record.
+     * @param point trace point the record comes from.
+     * @param argc  number of arguments used, at most three.
+     * @param a     first argument, or null.
+     * @param b     second argument, or null.
+     * @param c     third argument, or null.
+     */
+    void write(double time, TracePoint point, int argc, Object a, Object b, Object c);
+
+    /**
+     * Flushes the records written so far and releases the sink.
+     */
+    @Override
+    default void close() {
+    }
+}
@@ -0,0 +1,87 @@
+package Sim.Trace;
+
+import Sim.SimEngine;
+
+/**
+ * Trace of one simulation, every {@link SimEngine} has one. It is off until a sink is attached with {@link #enable}.
+ * <p>
+ * The trace methods take their arguments as they are and check the level before doing anything else, so a disabled
+ * trace point costs a comparison. Arguments that would have to be computed should be guarded with
+ * {@link #isEnabled(TracePoint)}.
+ */
+public final class Tracer {
+    private final SimEngine _engine;
+    private TraceSink _sink = null;
+    private TraceLevel _level = TraceLevel.OFF;
+
+    // Ordinal of the level, or zero while there is no sink, so the check is a single comparison.
+    private int _threshold = 0;
+
+    public Tracer(SimEngine engine) {
+        _engine = engine;
+    }
+
+    /**
+     * Sends the records of trace points up to a level to a sink.
+     *
+     * @param sink  sink to write to.
+     * @param level most verbose level to trace.
+     */
+    public void enable(TraceSink sink, TraceLevel level) {
+        if (sink == null) {
+            throw new IllegalArgumentException("tracing needs a sink");
+        }
+        _sink = sink;
+        _level = level;
+        _threshold = level.ordinal();
+    }
+
+    /**
+     * Stops tracing. The sink is not closed, since it may be shared with other simulations.
+     */
+    public void disable() {
+        _sink = null;
+        _level = TraceLevel.OFF;
+        _threshold = 0;
+    }
+
+    public TraceSink getSink() {
+        return _sink;
+    }
+
+    public TraceLevel getLevel() {
+        return _level;
+    }
+
+    public boolean isEnabled(TracePoint point) {
+        return point.getLevel().ordinal() <= _threshold;
+    }
+
+    public boolean isEnabled(TraceLevel level) {
+        return level != TraceLevel.OFF && level.ordinal() <= _threshold;
+    }
+
+    public void trace(TracePoint point) {
+        if (isEnabled(point)) {
+            _sink.write(_engine.getTime(), point, 0, null, null, null);
+        }
+    }
+
+    public void trace(TracePoint point, Object a) {
+        if (isEnabled(point)) {
+            _sink.write(_engine.getTime(), point, 1, a, null, null);
+        }
+    }
+
+    public void trace(TracePoint point, Object a, Object b) {
+        if (isEnabled(point)) {
+            _sink.write(_engine.getTime(), point, 2, a, b, null);
+        }
+    }
+
+    public void trace(TracePoint point, Object a, Object b, Object c) {
+        if (isEnabled(point)) {
+            _sink.write(_engine.getTime(), point, 3, a, b, c);
+        }
+    }
+}
@@ -26,4 +26,9 @@ public class ConstantBitRate extends TrafficGenerator {
     public double getNextSendTime() {
         return _timeBetweenSending;
     }
+
+    @Override
+    public double getMeanInterval() {
+        return _timeBetweenSending;
+    }
 }
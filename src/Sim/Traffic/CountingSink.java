@@ -45,6 +45,38 @@ public class CountingSink implements Sink {
         _currentIdx += 1;
     }
 
+    // State saved for rollbacks in the optimistic engine.
+    private record CountingState(ArrayList<Integer> counts, ArrayList<String> names, int currentIdx) {
+    }
+
+    @Override
+    public Object saveState() {
+        return new CountingState(new ArrayList<>(_counts), new ArrayList<>(_names), _currentIdx);
+    }
+
+    @Override
+    public void restoreState(Object state) {
+        var saved = (CountingState) state;
+        _counts.clear();
+        _counts.addAll(saved.counts);
+        _names.clear();
+        _names.addAll(saved.names);
+        _currentIdx = saved.currentIdx;
+    }
+
+    /**
+     * Returns the sum of all counters.
+     *
+     * @return the number of packets received.
+     */
+    public int getTotalCount() {
+        int total = 0;
+        for (int count : _counts) {
+            total += count;
+        }
+        return total;
+    }
+
     /**
      * Print all the counts gathered.
      */
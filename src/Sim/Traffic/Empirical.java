@@ -0,0 +1,199 @@
+package Sim.Traffic;
+
+import Sim.Message;
+import Sim.RandomStreams;
+import Sim.Sampling.AliasTable;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.TreeMap;
+import java.util.random.RandomGenerator;
+
+/**
+ * Traffic Generator that sends packets with delays drawn from an empirical distribution, such as a histogram of the
+ * times between packets in a capture. Each draw takes constant time however many values there are.
+ * <p>
+ * {@link #fromTrace} builds the distribution from a packet trace, together with one of the packet sizes, which are
+ * drawn independently of the delays.
+ */
+public class Empirical extends TrafficGenerator {
+    /**
+     * Number of bins the delays of a trace are put in by default.
+     */
+    public static final int DEFAULT_BINS = 1024;
+
+    private final double[] _delays;
+    private final AliasTable _table;
+
+    // Packet sizes and the table to draw them from, or null to send packets of the default size.
+    private final int[] _sizes;
+    private final AliasTable _sizeTable;
+
+    // Mean and squared coefficient of variation of the delays and sizes drawn.
+    private final double _meanInterval;
+    private final double _intervalVariation;
+    private final double _meanPacketSize;
+    private final double _packetSizeVariation;
+
+    /**
+     * Instantiates a new generator drawing from the random stream of the node it is attached to.
+     *
+     * @param delays  delays between packets in milliseconds.
+     * @param weights how often each delay occurs, in any unit.
+     */
+    public Empirical(int packetsToSend, double[] delays, double[] weights) {
+        this(packetsToSend, delays, weights, null);
+    }
+
+    /**
+     * Instantiates a new generator with a seeded random generator, so the stream can be reproduced.
+     *
+     * @param delays  delays between packets in milliseconds.
+     * @param weights how often each delay occurs, in any unit.
+     * @param seed    seed for the random generator.
+     */
+    public Empirical(int packetsToSend, double[] delays, double[] weights, long seed) {
+        this(packetsToSend, delays, weights, RandomStreams.seeded(seed));
+    }
+
+    /**
+     * Instantiates a new generator drawing from the given random stream.
+     *
+     * @param delays  delays between packets in milliseconds.
+     * @param weights how often each delay occurs, in any unit.
+     * @param random  random stream, or null to take the one of the node the generator is attached to.
+     */
+    public Empirical(int packetsToSend, double[] delays, double[] weights, RandomGenerator.JumpableGenerator random) {
+        this(packetsToSend, delays, weights, null, null, random);
+    }
+
+    private Empirical(int packetsToSend, double[] delays, double[] weights, int[] sizes, double[] sizeWeights,
+                      RandomGenerator.JumpableGenerator random) {
+        super(packetsToSend, random);
+        if (delays.length != weights.length) {
+            throw new IllegalArgumentException("need one weight per delay, got " + delays.length + " delays and "
+                    + weights.length + " weights");
+        }
+        _delays = delays.clone();
+        _table = new AliasTable(weights);
+        _sizes = sizes;
+        _sizeTable = sizes == null ? null : new AliasTable(sizeWeights);
+
+        var intervals = moments(delays, weights);
+        _meanInterval = intervals[0];
+        _intervalVariation = intervals[1];
+        if (sizes == null) {
+            _meanPacketSize = Message.DEFAULT_SIZE;
+            _packetSizeVariation = 0;
+        } else {
+            var values = new double[sizes.length];
+            for (int i = 0; i < sizes.length; ++i) {
+                values[i] = sizes[i];
+            }
+            var packetSizes = moments(values, sizeWeights);
+            _meanPacketSize = packetSizes[0];
+            _packetSizeVariation = packetSizes[1];
+        }
+    }
+
+    // Returns the weighted mean of the values and their squared coefficient of variation.
+    private static double[] moments(double[] values, double[] weights) {
+        double total = 0;
+        double sum = 0;
+        double squares = 0;
+        for (int i = 0; i < values.length; ++i) {
+            total += weights[i];
+            sum += weights[i] * values[i];
+            squares += weights[i] * values[i] * values[i];
+        }
+        double mean = sum / total;
+        return new double[]{mean, mean == 0 ? 0 : Math.max(0, squares / total / (mean * mean) - 1)};
+    }
+
+    /**
+     * Builds the distributions of the delays and packet sizes in a trace, in the format of {@link TraceReplay}. The
+     * trace is read twice, a block at a time, and never held in memory: first for the range of the delays, then to
+     * count them in bins of equal width. Each bin is drawn as the mean of the delays in it, which keeps the mean of the
+     * trace. Packet sizes are counted exactly.
+     *
+     * @param packetsToSend how many packets to send.
+     * @param trace         trace to read.
+     * @param bins          number of bins for the delays.
+     * @param random        random stream, or null to take the one of the node the generator is attached to.
+     * @return the generator.
+     * @throws IOException if the trace cannot be read.
+     */
+    public static Empirical fromTrace(int packetsToSend, Path trace, int bins, RandomGenerator.JumpableGenerator random)
+            throws IOException {
+        if (bins < 1) {
+            throw new IllegalArgumentException("need at least one bin: " + bins);
+        }
+        try (var reader = new TraceReader(trace)) {
+            double min = Double.POSITIVE_INFINITY;
+            double max = Double.NEGATIVE_INFINITY;
+            var sizeCounts = new TreeMap<Integer, Long>();
+            while (reader.next()) {
+                min = Math.min(min, reader.gap());
+                max = Math.max(max, reader.gap());
+                sizeCounts.merge(reader.size(), 1L, Long::sum);
+            }
+            if (sizeCounts.isEmpty()) {
+                throw new IllegalArgumentException(trace + " has no packets");
+            }
+
+            double width = (max - min) / bins;
+            var sums = new double[bins];
+            var counts = new double[bins];
+            reader.rewind();
+            while (reader.next()) {
+                int bin = width == 0 ? 0 : Math.min((int) ((reader.gap() - min) / width), bins - 1);
+                sums[bin] += reader.gap();
+                counts[bin] += 1;
+            }
+            var delays = new double[bins];
+            for (int i = 0; i < bins; ++i) {
+                delays[i] = counts[i] == 0 ? 0 : sums[i] / counts[i];
+            }
+
+            var sizes = new int[sizeCounts.size()];
+            var sizeWeights = new double[sizes.length];
+            int i = 0;
+            for (var entry : sizeCounts.entrySet()) {
+                sizes[i] = entry.getKey();
+                sizeWeights[i] = entry.getValue();
+                i += 1;
+            }
+            return new Empirical(packetsToSend, delays, counts, sizes, sizeWeights, random);
+        }
+    }
+
+    @Override
+    public double getNextSendTime() {
+        return _delays[_table.sample(random())];
+    }
+
+    @Override
+    public int getPacketSize() {
+        return _sizeTable == null ? Message.DEFAULT_SIZE : _sizes[_sizeTable.sample(random())];
+    }
+
+    @Override
+    public double getMeanInterval() {
+        return _meanInterval;
+    }
+
+    @Override
+    public double getIntervalVariation() {
+        return _intervalVariation;
+    }
+
+    @Override
+    public double getMeanPacketSize() {
+        return _meanPacketSize;
+    }
+
+    @Override
+    public double getPacketSizeVariation() {
+        return _packetSizeVariation;
+    }
+}
@@ -2,7 +2,6 @@ package Sim.Traffic;
 
 import Sim.Event;
 import Sim.Message;
-import Sim.SimEngine;
 import Sim.SimEnt;
 
 import java.io.FileWriter;
@@ -39,7 +38,7 @@ public class FileSink implements Sink {
     @Override
     public void process(SimEnt src, Event ev) {
         if (ev instanceof Message msg) {
-            double currentTime = SimEngine.getTime();
+            double currentTime = src.getEngine().getTime();
             if (_lastMessage != null) {
                 double timeDifference = currentTime - _lastRecvTime;
                 int d = (int) timeDifference;
@@ -52,6 +51,40 @@ public class FileSink implements Sink {
         }
     }
 
+    // State saved for rollbacks in the optimistic engine.
+    private record FileSinkState(TreeMap<Integer, Integer> timeBetweenPackets, Message lastMessage, double lastRecvTime) {
+    }
+
+    @Override
+    public Object saveState() {
+        return new FileSinkState(new TreeMap<>(_timeBetweenPackets), _lastMessage, _lastRecvTime);
+    }
+
+    @Override
+    public void restoreState(Object state) {
+        var saved = (FileSinkState) state;
+        _timeBetweenPackets.clear();
+        _timeBetweenPackets.putAll(saved.timeBetweenPackets);
+        _lastMessage = saved.lastMessage;
+        _lastRecvTime = saved.lastRecvTime;
+    }
+
+    /**
+     * Returns the average time between two received packets, with the times truncated to whole milliseconds like in
+     * the saved statistics.
+     *
+     * @return the average time between packets, or NaN if fewer than two packets were received.
+     */
+    public double getMeanTimeBetweenPackets() {
+        long sum = 0;
+        long packets = 0;
+        for (var entry : _timeBetweenPackets.entrySet()) {
+            sum += (long) entry.getKey() * entry.getValue();
+            packets += entry.getValue();
+        }
+        return packets == 0 ? Double.NaN : (double) sum / packets;
+    }
+
     /**
      * Writes the processed message stats to `filename`. It will output a csv file containing two columns:
      * time between packets and number of packets.
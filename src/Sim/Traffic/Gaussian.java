@@ -1,13 +1,13 @@
 package Sim.Traffic;
 
-import java.util.Random;
+import Sim.RandomStreams;
+
+import java.util.random.RandomGenerator;
 
 /**
  * Traffic Generator that sends packets from a Gaussian distribution.
  */
 public class Gaussian extends TrafficGenerator {
-    private final Random _generator = new Random();
-
     // Mean of the Gaussian distribution.
     private final double _mean;
 
@@ -16,12 +16,35 @@ public class Gaussian extends TrafficGenerator {
 
     /**
      * Instantiates a new traffic generator that generates a stream of packets with a delay from a Gaussian distribution.
+     * It draws from the random stream of the node it is attached to.
      *
      * @param mean   mean of the Gaussian distribution.
      * @param stddev standard deviation of the Gaussian distribution.
      */
     public Gaussian(int packetsToSend, double mean, double stddev) {
-        super(packetsToSend);
+        this(packetsToSend, mean, stddev, null);
+    }
+
+    /**
+     * Instantiates a new Gaussian traffic generator with a seeded random generator, so the stream can be reproduced.
+     *
+     * @param mean   mean of the Gaussian distribution.
+     * @param stddev standard deviation of the Gaussian distribution.
+     * @param seed   seed for the random generator.
+     */
+    public Gaussian(int packetsToSend, double mean, double stddev, long seed) {
+        this(packetsToSend, mean, stddev, RandomStreams.seeded(seed));
+    }
+
+    /**
+     * Instantiates a new Gaussian traffic generator drawing from the given random stream.
+     *
+     * @param mean   mean of the Gaussian distribution.
+     * @param stddev standard deviation of the Gaussian distribution.
+     * @param random random stream, or null to take the one of the node the generator is attached to.
+     */
+    public Gaussian(int packetsToSend, double mean, double stddev, RandomGenerator.JumpableGenerator random) {
+        super(packetsToSend, random);
         _mean = mean;
         _stddev = stddev;
     }
@@ -34,6 +57,16 @@ public class Gaussian extends TrafficGenerator {
      */
     @Override
     public double getNextSendTime() {
-        return _generator.nextGaussian(_mean, _stddev);
+        return random().nextGaussian(_mean, _stddev);
+    }
+
+    @Override
+    public double getMeanInterval() {
+        return _mean;
+    }
+
+    @Override
+    public double getIntervalVariation() {
+        return _mean == 0 ? 0 : _stddev * _stddev / (_mean * _mean);
     }
 }
@@ -1,44 +1,67 @@
 package Sim.Traffic;
 
-import java.util.Random;
+import Sim.RandomStreams;
+import Sim.Sampling.PoissonSampler;
+
+import java.util.random.RandomGenerator;
 
 /**
- * Traffic Generator that sends packets with a delay from a Poisson distribution.
+ * Traffic Generator that sends packets with a delay from a Poisson distribution, a whole number of milliseconds with
+ * mean lambda. For packets sent as a Poisson process, with exponential times between them, see {@link PoissonProcess}.
  */
 public class Poisson extends TrafficGenerator {
-    private final Random _generator = new Random();
-
-    // Lambda value when sampling the Poisson distribution.
-    private final int _lambda;
+    // Samples the Poisson distribution with mean lambda.
+    private final PoissonSampler _sampler;
 
     /**
      * Instantiates a new traffic generator that generates a stream of packets with a delay from a Poisson distribution.
+     * It draws from the random stream of the node it is attached to.
      *
      * @param lambda lambda value when sampling the Poisson distribution.
      */
     public Poisson(int packetsToSend, int lambda) {
-        super(packetsToSend);
-        _lambda = lambda;
+        this(packetsToSend, lambda, null);
+    }
+
+    /**
+     * Instantiates a new Poisson traffic generator with a seeded random generator, so the stream can be reproduced.
+     *
+     * @param lambda lambda value when sampling the Poisson distribution.
+     * @param seed   seed for the random generator.
+     */
+    public Poisson(int packetsToSend, int lambda, long seed) {
+        this(packetsToSend, lambda, RandomStreams.seeded(seed));
+    }
+
+    /**
+     * Instantiates a new Poisson traffic generator drawing from the given random stream.
+     *
+     * @param lambda lambda value when sampling the Poisson distribution.
+     * @param random random stream, or null to take the one of the node the generator is attached to.
+     */
+    public Poisson(int packetsToSend, int lambda, RandomGenerator.JumpableGenerator random) {
+        super(packetsToSend, random);
+        _sampler = new PoissonSampler(lambda);
     }
 
     /**
-     * Generate a random delay in a Poisson distribution. Uses the Knuth algorithm with pseudocode available at:
-     * https://en.wikipedia.org/wiki/Poisson_distribution
+     * Generate a random delay in a Poisson distribution, in constant expected time for any lambda.
      *
      * @return a random delay in a Poisson distribution.
      */
     @Override
     public double getNextSendTime() {
-        double L = Math.exp(-_lambda);
-        int k = 0;
-        double p = 1;
+        return _sampler.sample(random());
+    }
 
-        do {
-            k = k + 1;
-            double u = _generator.nextDouble();
-            p = p * u;
-        } while (p > L);
+    @Override
+    public double getMeanInterval() {
+        return _sampler.getMean();
+    }
 
-        return k - 1;
+    // The variance of a Poisson distribution is its mean.
+    @Override
+    public double getIntervalVariation() {
+        return _sampler.getMean() == 0 ? 0 : 1 / _sampler.getMean();
     }
 }
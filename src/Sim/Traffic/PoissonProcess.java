@@ -0,0 +1,67 @@
+package Sim.Traffic;
+
+import Sim.RandomStreams;
+
+import java.util.random.RandomGenerator;
+
+/**
+ * Traffic Generator that sends packets as a Poisson process: the times between packets are exponentially distributed,
+ * so the number of packets sent in any period is Poisson distributed.
+ */
+public class PoissonProcess extends TrafficGenerator {
+    // Mean time between packets.
+    private final double _meanInterval;
+
+    /**
+     * Instantiates a new Poisson process drawing from the random stream of the node it is attached to.
+     *
+     * @param meanInterval mean time between packets in milliseconds, the inverse of the rate.
+     */
+    public PoissonProcess(int packetsToSend, double meanInterval) {
+        this(packetsToSend, meanInterval, null);
+    }
+
+    /**
+     * Instantiates a new Poisson process with a seeded random generator, so the stream can be reproduced.
+     *
+     * @param meanInterval mean time between packets in milliseconds, the inverse of the rate.
+     * @param seed         seed for the random generator.
+     */
+    public PoissonProcess(int packetsToSend, double meanInterval, long seed) {
+        this(packetsToSend, meanInterval, RandomStreams.seeded(seed));
+    }
+
+    /**
+     * Instantiates a new Poisson process drawing from the given random stream.
+     *
+     * @param meanInterval mean time between packets in milliseconds, the inverse of the rate.
+     * @param random       random stream, or null to take the one of the node the generator is attached to.
+     */
+    public PoissonProcess(int packetsToSend, double meanInterval, RandomGenerator.JumpableGenerator random) {
+        super(packetsToSend, random);
+        if (!(meanInterval > 0)) {
+            throw new IllegalArgumentException("mean interval must be positive: " + meanInterval);
+        }
+        _meanInterval = meanInterval;
+    }
+
+    /**
+     * Draws the time until the next packet from the exponential distribution.
+     *
+     * @return delay in milliseconds until the next packet should be sent.
+     */
+    @Override
+    public double getNextSendTime() {
+        return random().nextExponential() * _meanInterval;
+    }
+
+    @Override
+    public double getMeanInterval() {
+        return _meanInterval;
+    }
+
+    @Override
+    public double getIntervalVariation() {
+        return 1;
+    }
+}
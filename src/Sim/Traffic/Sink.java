@@ -8,4 +8,21 @@ import Sim.SimEnt;
  */
 public interface Sink {
     public void process(SimEnt src, Event ev);
+
+    /**
+     * Returns a copy of the sink's state, used when the node owning it is rolled back by the optimistic engine.
+     *
+     * @return the saved state, or null if the sink has none.
+     */
+    default Object saveState() {
+        return null;
+    }
+
+    /**
+     * Restores a state returned by `saveState`.
+     *
+     * @param state the saved state.
+     */
+    default void restoreState(Object state) {
+    }
 }
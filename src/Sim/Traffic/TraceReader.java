@@ -0,0 +1,264 @@
+package Sim.Traffic;
+
+import Sim.Message;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Streams the records of a packet trace from a file, a block at a time, so traces of any length are read in constant
+ * memory. A trace is text with one packet per line: the time since the previous packet in milliseconds and,
+ * optionally, the size of the packet in bytes, separated by spaces, tabs or a comma. Anything after that on the line is
+ * ignored, and so are empty lines and lines starting with {@code #}. Comments may hold any UTF-8 text, and a byte order
+ * mark at the start of the file is skipped.
+ * <p>
+ * Numbers are parsed straight from the buffer without creating strings, since a trace can have millions of lines.
+ */
+final class TraceReader implements Closeable {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    // Powers of ten that are exact as doubles. Multiplying or dividing an integer below 2^53 by one of them is
+    // correctly rounded, which is all a decimal number with up to 15 digits needs.
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22,
+    };
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+    private final Path _path;
+    private final FileChannel _channel;
+    private final ByteBuffer _buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+    // Offset in the file of the start of the buffer, and the number of records read.
+    private long _bufferStart = 0;
+    private long _records = 0;
+    private boolean _endOfFile = false;
+
+    // The record read last.
+    private double _gap;
+    private int _size;
+
+    TraceReader(Path path) throws IOException {
+        _path = path;
+        _channel = FileChannel.open(path, StandardOpenOption.READ);
+        _buffer.limit(0);
+    }
+
+    Path path() {
+        return _path;
+    }
+
+    double gap() {
+        return _gap;
+    }
+
+    int size() {
+        return _size;
+    }
+
+    // Offset in the file of the next record, for seek.
+    long position() {
+        return _bufferStart + _buffer.position();
+    }
+
+    long records() {
+        return _records;
+    }
+
+    /**
+     * Reads the next record.
+     *
+     * @return false at the end of the trace.
+     * @throws IOException              if the file cannot be read.
+     * @throws IllegalArgumentException if a line is not a record.
+     */
+    boolean next() throws IOException {
+        if (_bufferStart == 0 && _buffer.position() == 0) {
+            skipByteOrderMark();
+        }
+        while (true) {
+            int c = peek();
+            if (c < 0) {
+                return false;
+            }
+            if (c == '\n' || c == '\r' || c == ' ' || c == '\t') {
+                skip();
+                continue;
+            }
+            if (c == '#') {
+                skipLine();
+                continue;
+            }
+            _records += 1;
+            _gap = number();
+            skipSeparators();
+            c = peek();
+            if (c < 0 || c == '\n' || c == '\r' || c == '#') {
+                _size = Message.DEFAULT_SIZE;
+            } else {
+                double size = number();
+                if (size != Math.rint(size) || size < 0 || size > Integer.MAX_VALUE) {
+                    throw error("packet size must be a whole number of bytes");
+                }
+                _size = (int) size;
+            }
+            if (!(_gap >= 0)) {
+                throw error("time between packets must not be negative");
+            }
+            skipLine();
+            return true;
+        }
+    }
+
+    // Goes back to the start of the trace.
+    void rewind() throws IOException {
+        seek(0, 0);
+    }
+
+    // Goes back to a position returned by position, after the given number of records.
+    void seek(long position, long records) throws IOException {
+        _channel.position(position);
+        _bufferStart = position;
+        _buffer.clear().limit(0);
+        _endOfFile = false;
+        _records = records;
+    }
+
+    @Override
+    public void close() throws IOException {
+        _channel.close();
+    }
+
+    // Parses a decimal number: digits with an optional fraction and exponent.
+    private double number() throws IOException {
+        long mantissa = 0;
+        int exponent = 0;
+        boolean negative = false;
+        boolean exact = true;
+        int c = peek();
+        if (c == '-' || c == '+') {
+            negative = c == '-';
+            skip();
+            c = peek();
+        }
+        boolean fraction = false;
+        boolean any = false;
+        while (c >= 0) {
+            if (c >= '0' && c <= '9') {
+                any = true;
+                if (mantissa < MAX_EXACT_MANTISSA / 10) {
+                    mantissa = mantissa * 10 + (c - '0');
+                    if (fraction) {
+                        exponent -= 1;
+                    }
+                } else {
+                    // Digits past the precision of a double are dropped.
+                    exact = false;
+                    if (!fraction) {
+                        exponent += 1;
+                    }
+                }
+            } else if (c == '.' && !fraction) {
+                fraction = true;
+            } else {
+                break;
+            }
+            skip();
+            c = peek();
+        }
+        if (!any) {
+            throw error("expected a number");
+        }
+        if (c == 'e' || c == 'E') {
+            skip();
+            c = peek();
+            boolean negativeExponent = c == '-';
+            if (c == '-' || c == '+') {
+                skip();
+                c = peek();
+            }
+            int value = 0;
+            boolean anyExponent = false;
+            while (c >= '0' && c <= '9') {
+                anyExponent = true;
+                value = Math.min(value * 10 + (c - '0'), 10_000);
+                skip();
+                c = peek();
+            }
+            if (!anyExponent) {
+                throw error("expected an exponent");
+            }
+            exponent += negativeExponent ? -value : value;
+        }
+
+        double result;
+        if (exact && exponent >= -22 && exponent <= 22) {
+            result = exponent < 0 ? mantissa / POWERS_OF_TEN[-exponent] : mantissa * POWERS_OF_TEN[exponent];
+        } else {
+            // Rare enough that a string is fine.
+            result = Double.parseDouble(mantissa + "e" + exponent);
+        }
+        return negative ? -result : result;
+    }
+
+    private void skipByteOrderMark() throws IOException {
+        if (peek() == 0xEF && _buffer.remaining() >= 3
+                && (_buffer.get(1) & 0xFF) == 0xBB && (_buffer.get(2) & 0xFF) == 0xBF) {
+            _buffer.position(3);
+        }
+    }
+
+    private void skipSeparators() throws IOException {
+        int c = peek();
+        while (c == ' ' || c == '\t' || c == ',') {
+            skip();
+            c = peek();
+        }
+    }
+
+    private void skipLine() throws IOException {
+        int c = peek();
+        while (c >= 0 && c != '\n') {
+            skip();
+            c = peek();
+        }
+    }
+
+    // Returns the next byte, from 0 to 255, without consuming it, or -1 at the end of the file.
+    private int peek() throws IOException {
+        if (!_buffer.hasRemaining() && !fill()) {
+            return -1;
+        }
+        return _buffer.get(_buffer.position()) & 0xFF;
+    }
+
+    private void skip() {
+        _buffer.position(_buffer.position() + 1);
+    }
+
+    private boolean fill() throws IOException {
+        if (_endOfFile) {
+            return false;
+        }
+        _bufferStart += _buffer.position();
+        _buffer.clear();
+        int read;
+        do {
+            read = _channel.read(_buffer);
+        } while (read == 0);
+        _buffer.flip();
+        if (read < 0) {
+            _endOfFile = true;
+            return false;
+        }
+        return true;
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(_path + ", record " + _records + ": " + message);
+    }
+}
@@ -0,0 +1,210 @@
+package Sim.Traffic;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+
+/**
+ * Traffic Generator that replays a packet trace, such as the times between packets and their sizes from a production
+ * capture, see {@link TraceReader} for the format. The trace is streamed from the file as packets are sent, so it may
+ * be far larger than the heap.
+ * <p>
+ * The first packet is sent when the node starts sending and has the size of the first record, the time before it in
+ * the trace is not used. Every following record gives the time since the packet before and the size. The times can be
+ * scaled, and the trace can be replayed in a loop; otherwise the generator stops at its end. The file stays open until
+ * the generator is closed, since a node rolled back by the optimistic engine may have to read part of it again.
+ */
+public class TraceReplay extends TrafficGenerator implements AutoCloseable {
+    private final TraceReader _reader;
+
+    // Factor applied to the times in the trace, below 1 replays faster than recorded.
+    private final double _timeScale;
+
+    private final boolean _loop;
+
+    // Size of the next packet, and whether the trace has ended.
+    private int _size;
+    private boolean _ended = false;
+
+    // Number of times the trace has been started over.
+    private int _loops = 0;
+
+    // Statistics of the whole trace, read the first time they are asked for.
+    private Statistics _statistics = null;
+
+    private record Statistics(long records, double meanInterval, double intervalVariation, double meanPacketSize,
+                              double packetSizeVariation) {
+    }
+
+    /**
+     * Instantiates a generator replaying the whole trace once, at the speed it was recorded.
+     *
+     * @param trace file to replay.
+     * @throws IOException if the file cannot be opened or read.
+     */
+    public TraceReplay(Path trace) throws IOException {
+        this(Integer.MAX_VALUE, trace, 1, false);
+    }
+
+    /**
+     * Instantiates a generator replaying a trace.
+     *
+     * @param packetsToSend how many packets to send at most.
+     * @param trace         file to replay.
+     * @param timeScale     factor applied to the times between packets.
+     * @param loop          start the trace over at its end rather than stop.
+     * @throws IOException if the file cannot be opened or read.
+     */
+    public TraceReplay(int packetsToSend, Path trace, double timeScale, boolean loop) throws IOException {
+        super(packetsToSend);
+        if (!(timeScale >= 0) || Double.isInfinite(timeScale)) {
+            throw new IllegalArgumentException("time scale must be finite and not negative: " + timeScale);
+        }
+        _timeScale = timeScale;
+        _loop = loop;
+        _reader = new TraceReader(trace);
+        try {
+            if (!_reader.next()) {
+                throw new IllegalArgumentException(trace + " has no packets");
+            }
+        } catch (IOException | RuntimeException e) {
+            _reader.close();
+            throw e;
+        }
+        _size = _reader.size();
+    }
+
+    public int getLoops() {
+        return _loops;
+    }
+
+    @Override
+    public boolean shouldSend() {
+        return !_ended && super.shouldSend();
+    }
+
+    @Override
+    public int getPacketSize() {
+        return _size;
+    }
+
+    /**
+     * Reads the next record of the trace. At the end of a looped trace, the time to the first packet of the next round
+     * is that of the first record.
+     *
+     * @return delay in milliseconds until the next packet should be sent.
+     */
+    @Override
+    public double getNextSendTime() {
+        try {
+            if (!_reader.next()) {
+                if (!_loop) {
+                    _ended = true;
+                    return 0;
+                }
+                _reader.rewind();
+                _reader.next();
+                _loops += 1;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        _size = _reader.size();
+        return _reader.gap() * _timeScale;
+    }
+
+    /**
+     * Returns the packets to send, no more than the trace has unless it is looped.
+     *
+     * @return the number of packets.
+     */
+    @Override
+    public int getPacketsToSend() {
+        return _loop ? super.getPacketsToSend() : (int) Math.min(super.getPacketsToSend(), statistics().records);
+    }
+
+    @Override
+    public double getMeanInterval() {
+        return statistics().meanInterval * _timeScale;
+    }
+
+    @Override
+    public double getIntervalVariation() {
+        return statistics().intervalVariation;
+    }
+
+    @Override
+    public double getMeanPacketSize() {
+        return statistics().meanPacketSize;
+    }
+
+    @Override
+    public double getPacketSizeVariation() {
+        return statistics().packetSizeVariation;
+    }
+
+    // Reads the trace through once with a reader of its own. The time before the first record is only used when the
+    // trace is looped.
+    private Statistics statistics() {
+        if (_statistics != null) {
+            return _statistics;
+        }
+        try (var reader = new TraceReader(_reader.path())) {
+            double gaps = 0;
+            double gapSquares = 0;
+            double sizes = 0;
+            double sizeSquares = 0;
+            while (reader.next()) {
+                if (reader.records() > 1 || _loop) {
+                    gaps += reader.gap();
+                    gapSquares += reader.gap() * reader.gap();
+                }
+                sizes += reader.size();
+                sizeSquares += (double) reader.size() * reader.size();
+            }
+            long records = reader.records();
+            long intervals = _loop ? records : records - 1;
+            double meanInterval = intervals == 0 ? 0 : gaps / intervals;
+            double meanSize = sizes / records;
+            _statistics = new Statistics(records, meanInterval,
+                    meanInterval == 0 ? 0 : Math.max(0, gapSquares / intervals / (meanInterval * meanInterval) - 1),
+                    meanSize, meanSize == 0 ? 0 : Math.max(0, sizeSquares / records / (meanSize * meanSize) - 1));
+            return _statistics;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        _reader.close();
+    }
+
+    // State saved for rollbacks in the optimistic engine: where in the trace the generator is, so a rolled back node
+    // sends the same packets again.
+    private record TraceReplayState(Object state, long position, long records, int size, boolean ended, int loops) {
+    }
+
+    @Override
+    public Object saveState() {
+        return new TraceReplayState(super.saveState(), _reader.position(), _reader.records(), _size, _ended, _loops);
+    }
+
+    @Override
+    public void restoreState(Object state) {
+        var saved = (TraceReplayState) state;
+        super.restoreState(saved.state);
+        if (saved.ended) {
+            _ended = true;
+            return;
+        }
+        try {
+            _reader.seek(saved.position, saved.records);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        _size = saved.size;
+        _ended = false;
+        _loops = saved.loops;
+    }
+}
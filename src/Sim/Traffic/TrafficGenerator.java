@@ -1,5 +1,10 @@
 package Sim.Traffic;
 
+import Sim.Message;
+import Sim.RandomStreams;
+
+import java.util.random.RandomGenerator;
+
 /**
  * A traffic generator is a Node that can generate traffic on a Network.
  * <p>
@@ -13,12 +18,52 @@ public abstract class TrafficGenerator {
     // How many packets have been sent so far, since `StartSending` was called.
     private int _messagesSent = 0;
 
+    // Random numbers for child classes that draw them. Unless the generator was given a stream, it gets one named after
+    // the node it is attached to.
+    private RandomGenerator.JumpableGenerator _random;
+
     /**
      * Creates a new `Node` that is a traffic generator.
      */
     public TrafficGenerator(int packetsToSend) {
+        this(packetsToSend, null);
+    }
+
+    /**
+     * Creates a traffic generator drawing random numbers from the given stream.
+     *
+     * @param packetsToSend how many packets to send.
+     * @param random        random stream, or null to take one when attached to a node.
+     */
+    protected TrafficGenerator(int packetsToSend, RandomGenerator.JumpableGenerator random) {
         _packetsToSend = packetsToSend;
         _messagesSent = 0;
+        _random = random;
+    }
+
+    /**
+     * Called by the node the generator belongs to. A generator without a random stream takes the one named
+     * "{@code node}/traffic", so the same node sends the same traffic in every simulation with the same seed.
+     *
+     * @param streams random streams of the node's simulation.
+     * @param node    name of the node.
+     */
+    public void attach(RandomStreams streams, String node) {
+        if (_random == null) {
+            _random = streams.stream(node + "/traffic");
+        }
+    }
+
+    /**
+     * Returns the random stream of the generator.
+     *
+     * @return the stream.
+     */
+    protected final RandomGenerator random() {
+        if (_random == null) {
+            throw new IllegalStateException(getClass().getSimpleName() + " needs a seed or to be attached to a node");
+        }
+        return _random;
     }
 
     public boolean shouldSend() {
@@ -29,6 +74,10 @@ public abstract class TrafficGenerator {
         return _messagesSent;
     }
 
+    public int getPacketsToSend() {
+        return _packetsToSend;
+    }
+
     /**
      * Gets the time for when to send the next packet.
      *
@@ -38,7 +87,89 @@ public abstract class TrafficGenerator {
         return 1;
     }
 
+    /**
+     * Gets the size of the next packet to send.
+     *
+     * @return the size in bytes.
+     */
+    public int getPacketSize() {
+        return Message.DEFAULT_SIZE;
+    }
+
+    /**
+     * Returns the mean time between packets, used where the traffic is modelled as a rate rather than sent packet by
+     * packet.
+     *
+     * @return the mean delay in milliseconds.
+     */
+    public double getMeanInterval() {
+        return 1;
+    }
+
+    /**
+     * Returns how much the times between packets vary, as the squared coefficient of variation: 0 for constant times,
+     * 1 for exponential ones.
+     *
+     * @return the variance of the delay divided by its squared mean.
+     */
+    public double getIntervalVariation() {
+        return 0;
+    }
+
+    /**
+     * Returns the mean size of the packets.
+     *
+     * @return the mean size in bytes.
+     */
+    public double getMeanPacketSize() {
+        return Message.DEFAULT_SIZE;
+    }
+
+    /**
+     * Returns how much the sizes of the packets vary, as the squared coefficient of variation.
+     *
+     * @return the variance of the size divided by its squared mean.
+     */
+    public double getPacketSizeVariation() {
+        return 0;
+    }
+
     public void addPacketSent() {
         _messagesSent += 1;
     }
+
+    /**
+     * Counts packets as sent without sending them, for traffic that was sent as a fluid flow.
+     *
+     * @param packets number of packets.
+     */
+    public void addPacketsSent(int packets) {
+        _messagesSent += packets;
+    }
+
+    // State saved for rollbacks: the packet count and a copy of the random stream, so the packets sent again after a
+    // rollback get the same times and sizes.
+    private record TrafficGeneratorState(int messagesSent, RandomGenerator.JumpableGenerator random) {
+    }
+
+    /**
+     * Returns a copy of the generator's state, used when the node owning it is rolled back by the optimistic engine.
+     * Child classes that keep state of their own beyond what they draw from {@link #random()} add it to this one.
+     *
+     * @return the saved state.
+     */
+    public Object saveState() {
+        return new TrafficGeneratorState(_messagesSent, _random == null ? null : _random.copy());
+    }
+
+    /**
+     * Restores a state returned by `saveState`.
+     *
+     * @param state the saved state.
+     */
+    public void restoreState(Object state) {
+        var saved = (TrafficGeneratorState) state;
+        _messagesSent = saved.messagesSent;
+        _random = saved.random == null ? null : saved.random.copy();
+    }
 }
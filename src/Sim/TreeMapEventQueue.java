@@ -0,0 +1,41 @@
+package Sim;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Event queue backed by a TreeMap keyed on the time slot of each event.
+ * <p>
+ * This is the event list the engine originally used. It is kept so results and performance can be compared against
+ * the other queues.
+ */
+public class TreeMapEventQueue implements EventQueue {
+    private final TreeMap<SimTimeSlot, EventHandle> _simTimeTree = new TreeMap<>();
+
+    @Override
+    public void add(EventHandle handle) {
+        _simTimeTree.put(handle._simSlot, handle);
+    }
+
+    @Override
+    public EventHandle peek() {
+        Map.Entry<SimTimeSlot, EventHandle> first = _simTimeTree.firstEntry();
+        return first == null ? null : first.getValue();
+    }
+
+    @Override
+    public EventHandle poll() {
+        Map.Entry<SimTimeSlot, EventHandle> first = _simTimeTree.pollFirstEntry();
+        return first == null ? null : first.getValue();
+    }
+
+    @Override
+    public int size() {
+        return _simTimeTree.size();
+    }
+
+    @Override
+    public void clear() {
+        _simTimeTree.clear();
+    }
+}
@@ -0,0 +1,137 @@
+package Sim;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Checks {@link BindingCache} against a {@link HashMap} with random updates, removals and lookups. The cache starts
+ * small and grows through many doublings, so lookups, updates and removals happen while bindings are being moved from
+ * the old table, and removals shift the bindings after them in tables three quarters full.
+ * <p>
+ * Run with {@code java -cp bin Sim.BindingCacheTest}, it exits with status 1 if a check fails.
+ */
+public class BindingCacheTest {
+    private record Home(long network, long node) {
+    }
+
+    private record Binding(long careOfNetwork, long careOfNode, double expires) {
+    }
+
+    // Stop after this many failures, one broken binding usually fails every check after it.
+    private static final int MAX_FAILURES = 20;
+
+    private static int _failures = 0;
+
+    public static void main(String[] args) {
+        for (long seed = 1; seed <= 3 && _failures < MAX_FAILURES; ++seed) {
+            check(seed);
+        }
+
+        if (_failures > 0) {
+            System.out.printf("%d checks failed%n", _failures);
+            System.exit(1);
+        }
+        System.out.println("All checks passed");
+    }
+
+    private static void check(long seed) {
+        var random = new SplittableRandom(seed);
+        var cache = new BindingCache();
+        var expected = new HashMap<Home, Binding>();
+        BindingCache saved = null;
+        Map<Home, Binding> savedExpected = null;
+
+        double now = 0;
+        // Home addresses are drawn from a range that widens, so the cache keeps growing, with a few networks so
+        // bindings of neighbouring nodes share probe sequences.
+        int range = 16;
+        for (int step = 0; step < 400_000 && _failures < MAX_FAILURES; ++step) {
+            if (step % 2000 == 0 && range < 100_000) {
+                range = range * 3 / 2;
+            }
+            now += random.nextDouble();
+            var home = new Home(random.nextInt(4), random.nextInt(range));
+
+            int operation = random.nextInt(10);
+            if (operation < 5) {
+                double expires = random.nextInt(4) == 0 ? Double.POSITIVE_INFINITY : now + random.nextDouble(100);
+                var binding = new Binding(random.nextInt(8), random.nextLong(), expires);
+                cache.put(home.network, home.node, binding.careOfNetwork, binding.careOfNode, expires);
+                expected.put(home, binding);
+            } else if (operation < 7) {
+                boolean removed = cache.remove(home.network, home.node);
+                if (removed != (expected.remove(home) != null)) {
+                    fail(seed, step, "remove of " + home + " returned " + removed);
+                }
+            } else {
+                compare(seed, step, cache, expected, home, now);
+            }
+
+            if (cache.size() != expected.size()) {
+                fail(seed, step, "size " + cache.size() + ", expected " + expected.size());
+            }
+
+            // Now and then compare everything, and keep a copy to check it was not changed by later updates.
+            if (step % 25_000 == 0) {
+                compareAll(seed, step, cache, expected, now);
+                if (saved != null) {
+                    compareAll(seed, step, saved, savedExpected, now);
+                }
+                saved = cache.copy();
+                savedExpected = new HashMap<>(expected);
+            }
+        }
+        compareAll(seed, -1, cache, expected, now);
+
+        // Empty the cache, every removal shifts what follows.
+        for (var home : expected.keySet()) {
+            if (!cache.remove(home.network, home.node)) {
+                fail(seed, -1, "binding of " + home + " not found when emptying");
+            }
+        }
+        if (!cache.isEmpty()) {
+            fail(seed, -1, "cache holds " + cache.size() + " bindings after removing all");
+        }
+    }
+
+    private static void compare(long seed, int step, BindingCache cache, Map<Home, Binding> expected, Home home,
+                                double now) {
+        var binding = expected.get(home);
+        double expiry = cache.getExpiry(home.network, home.node);
+        if (binding == null ? !Double.isNaN(expiry) : expiry != binding.expires) {
+            fail(seed, step, "expiry of " + home + " is " + expiry + ", expected " + binding);
+        }
+
+        boolean valid = binding != null && binding.expires > now;
+        int position = cache.find(home.network, home.node, now);
+        if (valid != position >= 0) {
+            fail(seed, step, "find of " + home + " at " + now + " returned " + position + ", expected " + binding);
+        } else if (valid && (cache.getCareOfNetwork(position) != binding.careOfNetwork
+                || cache.getCareOfNode(position) != binding.careOfNode)) {
+            fail(seed, step, "care of address of " + home + " is " + cache.getCareOfNetwork(position) + ":"
+                    + cache.getCareOfNode(position) + ", expected " + binding);
+        }
+    }
+
+    private static void compareAll(long seed, int step, BindingCache cache, Map<Home, Binding> expected, double now) {
+        var visited = new HashMap<Home, Binding>();
+        cache.forEach((homeNetwork, homeNode, careOfNetwork, careOfNode, expires) -> {
+            if (visited.put(new Home(homeNetwork, homeNode), new Binding(careOfNetwork, careOfNode, expires)) != null) {
+                fail(seed, step, "forEach visits " + homeNetwork + ":" + homeNode + " twice");
+            }
+        });
+        if (!visited.equals(expected)) {
+            fail(seed, step, "forEach visits " + visited.size() + " bindings that differ from the " + expected.size()
+                    + " expected");
+        }
+        for (var home : expected.keySet()) {
+            compare(seed, step, cache, expected, home, now);
+        }
+    }
+
+    private static void fail(long seed, int step, String message) {
+        System.out.printf("FAILED seed %d, step %d: %s%n", seed, step, message);
+        _failures += 1;
+    }
+}
@@ -0,0 +1,163 @@
+package Sim;
+
+import Sim.Events.StartHandover;
+import Sim.Messages.MobileIPv6.BindingUpdate;
+import Sim.Traffic.ConstantBitRate;
+import Sim.Traffic.CountingSink;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+/**
+ * Checks that home agents remove bindings when their lifetime runs out, with expiry resolutions that are not exact in
+ * binary such as 0.7 ms. With those, the time of an expiry tick divided by the resolution can come out just below the
+ * tick, and the expiry time of a binding just above the time of the tick it is due at.
+ * <p>
+ * Run with {@code java -cp bin Sim.BindingExpiryTest}, it exits with status 1 if a check fails.
+ */
+public class BindingExpiryTest {
+    private static final double[] RESOLUTIONS = {0.7, 0.3, 0.1, 1.0 / 3, 100};
+
+    // Time the topology of Run is simulated for, and the wall time it may take.
+    private static final double DURATION = 20_000;
+    private static final long TIMEOUT_MS = 20_000;
+
+    // Checks the binding count of a router when it receives its timer event, and stops the run if asked to.
+    private static final class Probe extends SimEnt {
+        private final Router _router;
+        private final int _expected;
+        private final String _name;
+        private final boolean _stop;
+
+        Probe(SimEngine engine, Router router, int expected, String name, boolean stop) {
+            super(engine);
+            _router = router;
+            _expected = expected;
+            _name = name;
+            _stop = stop;
+        }
+
+        @Override
+        public void recv(SimEnt source, Event event) {
+            if (_router.getBindingCount() != _expected) {
+                fail(_name + ": " + _router.getBindingCount() + " bindings at " + getEngine().getTime() + ", expected "
+                        + _expected);
+            }
+            if (_stop) {
+                getEngine().stop();
+            }
+        }
+    }
+
+    // The runs print what the nodes receive, which is hidden, failures go to the real output.
+    private static final PrintStream OUT = System.out;
+
+    private static int _failures = 0;
+
+    public static void main(String[] args) {
+        for (double resolution : RESOLUTIONS) {
+            checkExpiry(resolution);
+            checkRefresh(resolution);
+        }
+
+        if (_failures > 0) {
+            System.out.printf("%d checks failed%n", _failures);
+            System.exit(1);
+        }
+        System.out.println("All checks passed");
+    }
+
+    // Registers one binding at a time with many lifetimes and start times, none is refreshed. Each binding must still
+    // be there half a tick before it expires and be gone one and a half ticks after, past the tick it is due at.
+    private static void checkExpiry(double resolution) {
+        var engine = new SimEngine();
+        var homeNetwork = new NetworkAddr(0x1111_0000_0000_0000L, 0, 32);
+        var router = new Router(engine, "HA", 2, homeNetwork);
+        router.setBindingExpiryResolution(resolution);
+        var home = new NetworkAddr(homeNetwork.networkId(), 1);
+        var careOf = new NetworkAddr(0x2222_0000_0000_0000L, 1);
+
+        double start = 0;
+        for (int k = 1; k <= 60; ++k) {
+            double lifetime = k * resolution;
+            var name = String.format("resolution %s, lifetime %s from %s", resolution, lifetime, start);
+            engine.register(router, router, new BindingUpdate(careOf, homeNetwork, 0, 0, home, lifetime),
+                    start - engine.getTime());
+            var before = new Probe(engine, router, 1, name + ", before it expires", false);
+            var after = new Probe(engine, router, 0, name + ", after it expires", false);
+            engine.register(before, before, new TimerEvent(), start + lifetime - resolution / 2);
+            engine.register(after, after, new TimerEvent(), start + lifetime + 1.5 * resolution);
+            // The next binding starts once this one is gone, at a time that is a different multiple of the resolution.
+            start += lifetime + 2 * resolution + k * 0.1;
+        }
+        run(engine, "resolution " + resolution + ", bindings that expire");
+        if (router.getBindingCount() != 0) {
+            fail("resolution " + resolution + ": " + router.getBindingCount() + " bindings left at the end");
+        }
+    }
+
+    // Runs the topology of Run with a binding lifetime of 500 ms, which the mobile node keeps refreshing. The expiry
+    // timer has to keep time moving.
+    private static void checkRefresh(double resolution) {
+        var engine = new SimEngine();
+        var homeNetwork = new NetworkAddr(0x1111_0000_0000_0000L, 0, 32);
+        var foreignNetwork = new NetworkAddr(0x2222_0000_0000_0000L, 0, 32);
+        var mobileAddress = new NetworkAddr(0x1111_0000_0000_0000L, 1);
+        var correspondentAddress = new NetworkAddr(0x2222_0000_0000_0000L, 2);
+
+        var link1 = new LossyLink(engine, 100, 0, 0);
+        var link2 = new LossyLink(engine, 100, 0, 0);
+        var mobile = new Node(engine, "MN", mobileAddress, homeNetwork, new ConstantBitRate(0, 100), new CountingSink());
+        var correspondent = new Node(engine, "CN", correspondentAddress, foreignNetwork, new ConstantBitRate(20, 100),
+                new CountingSink());
+        mobile.setPeer(link1);
+        correspondent.setPeer(link2);
+        mobile.setBindingLifetime(500);
+
+        var homeAgent = new Router(engine, "HA", 5, homeNetwork);
+        var router = new Router(engine, "R2", 5, foreignNetwork);
+        homeAgent.setBindingExpiryResolution(resolution);
+        router.setBindingExpiryResolution(resolution);
+        homeAgent.connectInterface(0, mobileAddress, link1);
+        router.connectInterface(0, correspondentAddress, link2);
+        var between = new Link(engine);
+        homeAgent.connectInterface(1, foreignNetwork, between);
+        router.connectInterface(1, homeNetwork, between);
+
+        engine.register(mobile, mobile, new StartHandover(router, 3), 1000);
+        homeAgent.startSendingProxyAdvertisements(0);
+        router.startSendingProxyAdvertisements(0);
+        mobile.StartSending(correspondentAddress, 0);
+        correspondent.StartSending(mobileAddress, 0);
+
+        // The refresh timer keeps the run going forever, so it is stopped after a while.
+        var stop = new Probe(engine, homeAgent, 1, "resolution " + resolution + ", refreshed binding", true);
+        engine.register(stop, stop, new TimerEvent(), DURATION);
+        run(engine, "resolution " + resolution + ", refreshed binding");
+    }
+
+    // Runs an engine on a thread of its own, a run that does not end in time fails the check and ends the program.
+    private static void run(SimEngine engine, String name) {
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        var thread = new Thread(engine);
+        thread.setDaemon(true);
+        thread.start();
+        try {
+            thread.join(TIMEOUT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            System.setOut(OUT);
+        }
+        if (thread.isAlive()) {
+            fail(name + ": the run did not end, simulated time is stuck at " + engine.getTime());
+            System.out.printf("%d checks failed%n", _failures);
+            System.exit(1);
+        }
+    }
+
+    private static void fail(String message) {
+        OUT.printf("FAILED %s%n", message);
+        _failures += 1;
+    }
+}
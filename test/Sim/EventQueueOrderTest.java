@@ -0,0 +1,166 @@
+package Sim;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Checks that {@link CalendarEventQueue}, {@link HeapEventQueue} and {@link TreeMapEventQueue} hand out events in the
+ * same order. The same random mix of events goes through all three: many at exactly the same time, fractional and far
+ * away times, events put back with the tie breaker they had, as after a rollback, enough pending events to make the
+ * calendar grow and shrink several times, and events that are cancelled and skipped or dropped by
+ * {@link EventQueue#removeCancelled}.
+ * <p>
+ * Run with {@code java -cp bin Sim.EventQueueOrderTest}, it exits with status 1 if a check fails.
+ */
+public class EventQueueOrderTest {
+    // An event in the test, the same one is added to every queue with a handle of each queue's own.
+    private record Numbered(int number) implements Event {
+        @Override
+        public void entering(SimEnt locale) {
+        }
+    }
+
+    private static int _failures = 0;
+
+    public static void main(String[] args) {
+        for (long seed = 1; seed <= 5; ++seed) {
+            check(seed);
+        }
+
+        if (_failures > 0) {
+            System.out.printf("%d checks failed%n", _failures);
+            System.exit(1);
+        }
+        System.out.println("All checks passed");
+    }
+
+    private static void check(long seed) {
+        var random = new SplittableRandom(seed);
+        EventQueue[] queues = {new CalendarEventQueue(), new HeapEventQueue(), new TreeMapEventQueue()};
+        var orders = new ArrayList<List<Integer>>();
+        for (int q = 0; q < queues.length; ++q) {
+            orders.add(new ArrayList<>());
+        }
+        // The handles of the events still pending, one array per event with a handle for each queue.
+        var pending = new ArrayList<EventHandle[]>();
+        // Tie breakers of events that have been polled, which are free to be used again.
+        var polled = new ArrayList<Long>();
+
+        double now = 0;
+        long resolver = 0;
+        int number = 0;
+        for (int phase = 0; phase < 6; ++phase) {
+            // Fill up to a few thousand events, then drain down to a few, so the calendar is resized both ways.
+            int target = phase % 2 == 0 ? 500 + random.nextInt(4000) : random.nextInt(10);
+            while (queues[1].size() != target) {
+                boolean add = queues[1].size() < target;
+                if (add) {
+                    double time = now + delay(random);
+                    long slot = resolver++;
+                    if (!polled.isEmpty() && random.nextInt(20) == 0) {
+                        // Put back an event that has run, as the optimistic engine does after a rollback, with the
+                        // tie breaker it had. It comes before the events added since at the same time.
+                        slot = polled.remove(random.nextInt(polled.size()));
+                        time = now;
+                    }
+                    var event = new Numbered(number++);
+                    var handles = new EventHandle[queues.length];
+                    for (int q = 0; q < queues.length; ++q) {
+                        handles[q] = new EventHandle(null, null, event, new SimTimeSlot(time, slot));
+                        handles[q]._pending = true;
+                        queues[q].add(handles[q]);
+                    }
+                    pending.add(handles);
+                } else {
+                    var next = new EventHandle[queues.length];
+                    for (int q = 0; q < queues.length; ++q) {
+                        next[q] = queues[q].poll();
+                        next[q]._pending = false;
+                        if (!next[q]._cancelled) {
+                            orders.get(q).add(((Numbered) next[q]._event).number());
+                        }
+                    }
+                    now = next[1]._simSlot._msek;
+                    if (polled.size() < 100) {
+                        polled.add(next[1]._simSlot._resolver);
+                    }
+                }
+
+                // Cancel a pending event now and then, and sometimes drop all cancelled events at once.
+                if (!pending.isEmpty() && random.nextInt(8) == 0) {
+                    var handles = pending.get(random.nextInt(pending.size()));
+                    for (var handle : handles) {
+                        handle._cancelled = true;
+                    }
+                }
+                if (random.nextInt(500) == 0) {
+                    int[] removed = new int[queues.length];
+                    for (int q = 0; q < queues.length; ++q) {
+                        removed[q] = queues[q].removeCancelled();
+                    }
+                    if (removed[0] != removed[1] || removed[1] != removed[2]) {
+                        fail(seed, "removeCancelled counts differ: " + removed[0] + ", " + removed[1] + ", " + removed[2]);
+                    }
+                }
+                pending.removeIf(handles -> !handles[1]._pending);
+                checkSizes(seed, queues);
+            }
+        }
+        while (queues[1].size() > 0) {
+            for (int q = 0; q < queues.length; ++q) {
+                var handle = queues[q].poll();
+                if (!handle._cancelled) {
+                    orders.get(q).add(((Numbered) handle._event).number());
+                }
+            }
+        }
+        for (int q = 0; q < queues.length; ++q) {
+            if (queues[q].poll() != null) {
+                fail(seed, queues[q].getClass().getSimpleName() + " is not empty after draining");
+            }
+        }
+
+        for (int q = 0; q < queues.length; ++q) {
+            if (q != 1 && !orders.get(q).equals(orders.get(1))) {
+                fail(seed, queues[q].getClass().getSimpleName() + " polls in another order than the heap, first "
+                        + "difference at event " + firstDifference(orders.get(q), orders.get(1)));
+            }
+        }
+    }
+
+    // Delays like those of a simulation: many events at the same time, whole and fractional milliseconds, and
+    // sometimes one far ahead so the calendar has to search past a year.
+    private static double delay(SplittableRandom random) {
+        return switch (random.nextInt(6)) {
+            case 0 -> 0;
+            case 1 -> random.nextInt(5);
+            case 2 -> random.nextInt(100) * 0.1;
+            case 3 -> random.nextDouble() * 50;
+            case 4 -> random.nextInt(10) == 0 ? 10_000 + random.nextDouble() * 1000 : 1;
+            default -> random.nextDouble(0.5, 1.5);
+        };
+    }
+
+    private static void checkSizes(long seed, EventQueue[] queues) {
+        for (var queue : queues) {
+            if (queue.size() != queues[1].size()) {
+                fail(seed, queue.getClass().getSimpleName() + " holds " + queue.size() + " events, the heap "
+                        + queues[1].size());
+            }
+        }
+    }
+
+    private static int firstDifference(List<Integer> lhs, List<Integer> rhs) {
+        int i = 0;
+        while (i < lhs.size() && i < rhs.size() && lhs.get(i).equals(rhs.get(i))) {
+            ++i;
+        }
+        return i;
+    }
+
+    private static void fail(long seed, String message) {
+        System.out.printf("FAILED seed %d: %s%n", seed, message);
+        _failures += 1;
+    }
+}
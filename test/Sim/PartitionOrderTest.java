@@ -0,0 +1,135 @@
+package Sim;
+
+import Sim.Traffic.ConstantBitRate;
+import Sim.Traffic.Sink;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Checks that a {@link ParallelSimEngine} gives the same result as a sequential {@link SimEngine}, however the topology
+ * is split. A chain of routers is connected by lossy links and by queued links with short queues, and every node sends
+ * constant bit rate traffic to the node half way along the chain, so packets from remote processes and from the local
+ * node reach a router at exactly the same times. The nodes are attached through links with a delay, so a packet from
+ * the local node is scheduled before one from a remote process, sent earlier, is delivered at the end of the window.
+ * Which of them a full queue drops, and in which order a node receives packets at the same time, depends on the order
+ * of those ties. Every node has to receive the same packets in the same order as in the sequential run.
+ * <p>
+ * Run with {@code java -cp bin Sim.PartitionOrderTest}, it exits with status 1 if a check fails.
+ */
+public class PartitionOrderTest {
+    private static final int ROUTERS = 8;
+    private static final int PACKETS = 200;
+
+    // The nodes print what they receive, which is hidden, failures go to the real output.
+    private static final PrintStream OUT = System.out;
+
+    // Records the sequence numbers of the packets a node receives, with their times, in the order they arrive.
+    private static final class RecordingSink implements Sink {
+        private final List<String> _received = new ArrayList<>();
+
+        @Override
+        public void process(SimEnt src, Event ev) {
+            _received.add(src.getEngine().getTime() + ":" + ((Message) ev).seq());
+        }
+    }
+
+    private static int _failures = 0;
+
+    public static void main(String[] args) {
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        var engine = new SimEngine();
+        var sequentialSinks = build(engine, new ArrayList<>());
+        engine.run();
+        var sequential = received(sequentialSinks);
+        if (sequential.stream().mapToInt(List::size).sum() == ROUTERS * PACKETS) {
+            fail("the queues dropped nothing, so the order of ties is not checked");
+        }
+
+        for (int processes = 1; processes <= 5; ++processes) {
+            var routers = new ArrayList<Router>();
+            var sinks = build(new SimEngine(), routers);
+            var parallel = new ParallelSimEngine(processes);
+            parallel.partition(routers.toArray(new SimEnt[0]));
+            parallel.run();
+
+            var received = received(sinks);
+            for (int i = 0; i < ROUTERS; ++i) {
+                if (!received.get(i).equals(sequential.get(i))) {
+                    fail(processes + " processes: node " + i + " received " + received.get(i).size() + " packets, "
+                            + sequential.get(i).size() + " in the sequential run, first difference at packet "
+                            + firstDifference(received.get(i), sequential.get(i)));
+                }
+            }
+        }
+        System.setOut(OUT);
+
+        if (_failures > 0) {
+            System.out.printf("%d checks failed%n", _failures);
+            System.exit(1);
+        }
+        System.out.println("All checks passed");
+    }
+
+    // Builds the chain in an engine, adding its routers to the list, and returns the sinks of the nodes.
+    private static List<RecordingSink> build(SimEngine engine, List<Router> routers) {
+        var between = new Link[ROUTERS - 1];
+        for (int i = 0; i < between.length; ++i) {
+            between[i] = i % 2 == 0 ? new LossyLink(engine, 10, 0, 0) : new QueuedLink(engine, 4e6, 10, 3);
+        }
+
+        var nodes = new ArrayList<Node>();
+        var sinks = new ArrayList<RecordingSink>();
+        for (int i = 0; i < ROUTERS; ++i) {
+            var network = new NetworkAddr(network(i), 0, 16);
+            var address = new NetworkAddr(network(i), 1);
+            var router = new Router(engine, "R" + i, 3, network);
+            var sink = new RecordingSink();
+            var node = new Node(engine, "N" + i, address, network, new ConstantBitRate(PACKETS, 5), sink);
+            var access = new LossyLink(engine, 5, 0, 0);
+            node.setPeer(access);
+            router.connectInterface(0, address, access);
+            // Networks before this router are reached through interface 1, the ones after it through interface 2.
+            for (int j = 0; j < ROUTERS; ++j) {
+                if (j != i) {
+                    router.connectInterface(j < i ? 1 : 2, new NetworkAddr(network(j), 0, 16),
+                            between[j < i ? i - 1 : i]);
+                }
+            }
+            nodes.add(node);
+            sinks.add(sink);
+            routers.add(router);
+        }
+        for (int i = 0; i < ROUTERS; ++i) {
+            nodes.get(i).StartSending(new NetworkAddr(network((i + ROUTERS / 2) % ROUTERS), 1), 0);
+        }
+        return sinks;
+    }
+
+    private static long network(int router) {
+        return (long) (router + 1) << 48;
+    }
+
+    private static List<List<String>> received(List<RecordingSink> sinks) {
+        var received = new ArrayList<List<String>>();
+        for (var sink : sinks) {
+            received.add(sink._received);
+        }
+        return received;
+    }
+
+    private static int firstDifference(List<String> lhs, List<String> rhs) {
+        int i = 0;
+        while (i < lhs.size() && i < rhs.size() && lhs.get(i).equals(rhs.get(i))) {
+            ++i;
+        }
+        return i;
+    }
+
+    private static void fail(String message) {
+        OUT.printf("FAILED %s%n", message);
+        _failures += 1;
+    }
+}
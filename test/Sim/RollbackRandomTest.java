@@ -0,0 +1,112 @@
+package Sim;
+
+import Sim.Traffic.CountingSink;
+import Sim.Traffic.PoissonProcess;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Checks that rollbacks in the {@link OptimisticSimEngine} put back the random streams of the entities they restore.
+ * A chain of routers is connected by lossy links with jitter and drops and by queued links with random early
+ * detection, and every node sends Poisson traffic to the node of the next router. Events executed again after a
+ * rollback have to draw the same numbers, so every node receives as many packets as in a sequential run.
+ * <p>
+ * Run with {@code java -cp bin Sim.RollbackRandomTest}, it exits with status 1 if a check fails.
+ */
+public class RollbackRandomTest {
+    private static final int ROUTERS = 8;
+    private static final int PACKETS = 150;
+
+    // The nodes print what they receive, which is hidden, failures go to the real output.
+    private static final PrintStream OUT = System.out;
+
+    private static int _failures = 0;
+
+    public static void main(String[] args) {
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        var engine = new SimEngine();
+        var sequentialNodes = build(engine, new ArrayList<>());
+        engine.run();
+        var sequential = received(sequentialNodes);
+
+        for (int run = 0; run < 3; ++run) {
+            var routers = new ArrayList<Router>();
+            var nodes = build(new SimEngine(), routers);
+            var optimistic = new OptimisticSimEngine(4);
+            // Small batches let the processes run apart and roll back often.
+            optimistic.setBatchSize(16);
+            optimistic.partition(routers.toArray(new SimEnt[0]));
+            optimistic.run();
+
+            if (optimistic.getRollbackCount() == 0) {
+                fail("run " + run + " did not roll back");
+            }
+            var received = received(nodes);
+            if (!received.equals(sequential)) {
+                fail("run " + run + " received " + received + ", sequential " + sequential);
+            }
+        }
+        System.setOut(OUT);
+
+        if (_failures > 0) {
+            System.out.printf("%d checks failed%n", _failures);
+            System.exit(1);
+        }
+        System.out.println("All checks passed");
+    }
+
+    // Builds the chain in an engine, adding its routers to the list, and returns the nodes.
+    private static List<Node> build(SimEngine engine, List<Router> routers) {
+        var between = new Link[ROUTERS - 1];
+        for (int i = 0; i < between.length; ++i) {
+            between[i] = i % 2 == 0
+                    ? new LossyLink(engine, 10, 3, 0.05, 7 + i)
+                    : new QueuedLink(engine, 8e5, 10, 8, new RandomEarlyDetection(1, 6, 0.3, 0.2, 7 + i));
+        }
+
+        var nodes = new ArrayList<Node>();
+        for (int i = 0; i < ROUTERS; ++i) {
+            var network = new NetworkAddr(network(i), 0, 16);
+            var address = new NetworkAddr(network(i), 1);
+            var router = new Router(engine, "R" + i, 3, network);
+            var node = new Node(engine, "N" + i, address, network, new PoissonProcess(PACKETS, 7 + i, 11 + i),
+                    new CountingSink());
+            var access = new Link(engine);
+            node.setPeer(access);
+            router.connectInterface(0, address, access);
+            // Networks before this router are reached through interface 1, the ones after it through interface 2.
+            for (int j = 0; j < ROUTERS; ++j) {
+                if (j != i) {
+                    router.connectInterface(j < i ? 1 : 2, new NetworkAddr(network(j), 0, 16),
+                            between[j < i ? i - 1 : i]);
+                }
+            }
+            nodes.add(node);
+            routers.add(router);
+        }
+        for (int i = 0; i < ROUTERS; ++i) {
+            nodes.get(i).StartSending(new NetworkAddr(network((i + 1) % ROUTERS), 1), 0);
+        }
+        return nodes;
+    }
+
+    private static long network(int router) {
+        return (long) (router + 1) << 48;
+    }
+
+    private static List<Integer> received(List<Node> nodes) {
+        var received = new ArrayList<Integer>();
+        for (var node : nodes) {
+            received.add(node.getPacketsReceived());
+        }
+        return received;
+    }
+
+    private static void fail(String message) {
+        OUT.printf("FAILED %s%n", message);
+        _failures += 1;
+    }
+}
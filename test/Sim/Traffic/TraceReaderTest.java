@@ -0,0 +1,105 @@
+package Sim.Traffic;
+
+import Sim.Message;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Checks that {@link TraceReader} reads traces with text other than ASCII: comments in UTF-8, a byte order mark at the
+ * start of the file and UTF-8 after a record on the same line. Bytes from 0x80 up must not be taken for the end of the
+ * file, which would end such traces early without an error.
+ * <p>
+ * Run with {@code java -cp bin Sim.Traffic.TraceReaderTest}, it exits with status 1 if a check fails.
+ */
+public class TraceReaderTest {
+    private static final byte[] BYTE_ORDER_MARK = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF};
+
+    private record Record(double gap, int size) {
+    }
+
+    private static int _failures = 0;
+
+    public static void main(String[] args) throws IOException {
+        check("comment", text("# capture from caf\u00e9 router\n1.0 100\n2.5 200\n"),
+                List.of(new Record(1.0, 100), new Record(2.5, 200)));
+        check("byte order mark", concat(BYTE_ORDER_MARK, text("1.0 100\n2.5\n")),
+                List.of(new Record(1.0, 100), new Record(2.5, Message.DEFAULT_SIZE)));
+        check("byte order mark and comment", concat(BYTE_ORDER_MARK, text("# \u00b5s, bytes\n3 64\n")),
+                List.of(new Record(3, 64)));
+        check("trailing comment", text("1.0 100 # \u00b5s\n2.0 300 # \u00fcn\u00efc\u00f6d\u00e9\n4\n"),
+                List.of(new Record(1.0, 100), new Record(2.0, 300), new Record(4, Message.DEFAULT_SIZE)));
+        checkRewind(concat(BYTE_ORDER_MARK, text("# \u00e9\n1 10\n2 20\n")));
+
+        if (_failures > 0) {
+            System.out.printf("%d checks failed%n", _failures);
+            System.exit(1);
+        }
+        System.out.println("All checks passed");
+    }
+
+    private static void check(String name, byte[] trace, List<Record> expected) throws IOException {
+        var actual = read(trace);
+        if (!actual.equals(expected)) {
+            fail(name, expected, actual);
+        }
+    }
+
+    // Reads the trace twice with a rewind in between, the byte order mark has to be skipped again.
+    private static void checkRewind(byte[] trace) throws IOException {
+        var file = write(trace);
+        try (var reader = new TraceReader(file)) {
+            var first = readAll(reader);
+            reader.rewind();
+            var second = readAll(reader);
+            if (first.size() != 2 || !first.equals(second)) {
+                fail("read after rewind", first, second);
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static List<Record> read(byte[] trace) throws IOException {
+        var file = write(trace);
+        try (var reader = new TraceReader(file)) {
+            return readAll(reader);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static List<Record> readAll(TraceReader reader) throws IOException {
+        var records = new ArrayList<Record>();
+        while (reader.next()) {
+            records.add(new Record(reader.gap(), reader.size()));
+        }
+        return records;
+    }
+
+    private static Path write(byte[] trace) throws IOException {
+        var file = Files.createTempFile("trace", ".txt");
+        Files.write(file, trace);
+        return file;
+    }
+
+    private static void fail(String name, Object expected, Object actual) {
+        System.out.printf("FAILED %s: expected %s, got %s%n", name, expected, actual);
+        _failures += 1;
+    }
+
+    private static byte[] text(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] concat(byte[] first, byte[] second) {
+        var result = new byte[first.length + second.length];
+        System.arraycopy(first, 0, result, 0, first.length);
+        System.arraycopy(second, 0, result, first.length, second.length);
+        return result;
+    }
+}